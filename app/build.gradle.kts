@@ -44,6 +44,24 @@ android {
         sourceCompatibility = JavaVersion.VERSION_1_8
         targetCompatibility = JavaVersion.VERSION_1_8
     }
+    androidResources {
+        // Kept uncompressed in the APK so OfflineQuestionBank can memory-map it
+        noCompress += "qbank"
+    }
+    testOptions {
+        // Networking unit tests run against a local fake server; let android.util.Log calls no-op
+        unitTests.isReturnDefaultValues = true
+        // Benchmarks only print numbers; run them on their own with -Pbenchmarks
+        unitTests.all { test ->
+            test.useJUnit {
+                if (project.hasProperty("benchmarks")) {
+                    includeCategories("com.shaivites.quizion.networking.Benchmark")
+                } else {
+                    excludeCategories("com.shaivites.quizion.networking.Benchmark")
+                }
+            }
+        }
+    }
     // Add packagingOptions if encountering duplicate classes, especially with Guava
     // Exclude Guava files if necessary, but try forcing version first
     // resources.excludes.add("META-INF/google_guava/module-info.class")
@@ -66,6 +84,18 @@ configurations.all {
 }
 
 
+// Packs the offline question JSON into the asset read by OfflineQuestionBank, using the questionbank-tool module.
+// Run after editing questions/offline_questions.json:  ./gradlew :app:packOfflineQuestions
+val questionBankTool: Configuration by configurations.creating
+
+tasks.register<JavaExec>("packOfflineQuestions") {
+    group = "build"
+    description = "Converts questions/offline_questions.json into src/main/assets/offline_questions.qbank"
+    classpath = questionBankTool
+    mainClass.set("com.shaivites.quizion.tools.QuestionBankPacker")
+    args(file("questions/offline_questions.json").path, file("src/main/assets/offline_questions.qbank").path)
+}
+
 dependencies {
     implementation("androidx.appcompat:appcompat:1.7.0") // Or your version
     implementation("io.github.shashank02051997:FancyToast:2.0.2")
@@ -91,11 +121,15 @@ dependencies {
     // Gson
     implementation("com.google.code.gson:gson:2.12.1")
 
+    // Offline question bank packer, run by packOfflineQuestions
+    questionBankTool(project(":questionbank-tool"))
+
     // Guava (Explicitly added)
     implementation("com.google.guava:guava:33.4.7-android")
 
     // Testing
     testImplementation("junit:junit:4.13.2")
+    testImplementation(project(":questionbank-tool")) // Builds packed banks for the OfflineQuestionBank tests
     androidTestImplementation("androidx.test.ext:junit:1.2.1") // Updated version
     androidTestImplementation("androidx.test.espresso:espresso-core:3.6.1") // Updated version
 }
@@ -1,5 +1,6 @@
 package com.shaivites.quizion.activities;
 
+import android.content.Context;
 import android.content.Intent;
 import android.content.res.ColorStateList;
 import android.os.Bundle;
@@ -21,16 +22,25 @@ import androidx.core.content.ContextCompat;
 import com.google.android.material.button.MaterialButton;
 import com.google.android.material.card.MaterialCardView;
 import com.google.android.material.progressindicator.LinearProgressIndicator;
-import com.google.gson.Gson;
-import com.google.gson.JsonSyntaxException;
-import com.google.gson.reflect.TypeToken;
+import com.shaivites.quizion.BuildConfig;
 import com.shaivites.quizion.R;
 import com.shaivites.quizion.models.QuizQuestion;
 import com.shaivites.quizion.networking.GeminiApiService;
+import com.shaivites.quizion.networking.ModelRouter;
+import com.shaivites.quizion.networking.OfflineQuestionBank;
+import com.shaivites.quizion.networking.QuestionDiskCache;
+import com.shaivites.quizion.networking.QuizPrefetcher;
+import com.shaivites.quizion.networking.QuizStartLadder;
+import com.shaivites.quizion.networking.QuotaExceededException;
+import com.shaivites.quizion.networking.RequestHandle;
+import com.shaivites.quizion.networking.RequestMetrics;
+import com.shaivites.quizion.networking.RequestScheduler;
+import com.shaivites.quizion.networking.SeenQuestionFilter;
 import com.shaivites.quizion.utils.PreferenceHelper;
 import com.shashank.sony.fancytoastlib.FancyToast;
 
-import java.lang.reflect.Type;
+import java.io.File;
+import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
@@ -64,13 +74,34 @@ public class QuizActivity extends AppCompatActivity implements View.OnClickListe
     private CountDownTimer countDownTimer;
     private long timeLeftInMillis;
     private static final long DEFAULT_TIME_PER_QUESTION = 30000; // 30 seconds
+    private static final int NUMBER_OF_QUESTIONS = 10;
+    private static final String DIFFICULTY = "Medium";
+    private static final int PREFETCH_LOOKAHEAD = 3; // Questions left when the next batch starts generating
+    // Non-streamed batches (prefetches) are generated as 3+3+4 concurrent requests
+    private static final int PARALLEL_CHUNKS = 3;
+    private static final long CHUNK_DEADLINE_MS = 45000; // 45 seconds
+    private static final String TOKEN_USAGE_FILE = "gemini_token_usage";
+    // JSON lines of latency and token histograms, appended every few quiz screens and tagged with the release
+    private static final String REQUEST_METRICS_FILE = "request_metrics.jsonl";
+    // Longest wait for the first live question before the quiz starts from a local batch
+    private static final long START_DEADLINE_MS = 1500;
 
     private List<QuizQuestion> questionList = new ArrayList<>();
+    private boolean questionStreamComplete = false;
+    private boolean waitingForNextQuestion = false;
+    private boolean nextQuizPrefetchRequested = false;
     private MaterialButton selectedOptionButton = null;
     private boolean answerSubmitted = false;
+    private long loadStartNanos;
+    private final Runnable startDeadline = this::onStartDeadlineExpired;
+    private boolean mergingLiveQuestions = false; // Started from a local batch while the live stream keeps running
+    private int nextLiveSlot = 0;
+    private final List<QuizQuestion> liveQuestions = new ArrayList<>();
 
     private GeminiApiService geminiApiService;
-    private Gson gson;
+    @Nullable private RequestHandle questionRequest;
+    private QuestionDiskCache questionCache;
+    private SeenQuestionFilter seenQuestions;
     private Handler mainThreadHandler;
 
     private ColorStateList defaultOptionTextColorStateList;
@@ -91,15 +122,20 @@ public class QuizActivity extends AppCompatActivity implements View.OnClickListe
         initializeColorsAndDimens();
 
         try {
-            geminiApiService = new GeminiApiService();
+            geminiApiService = GeminiApiService.getInstance();
         } catch (IllegalStateException e) {
             Log.e(TAG, "Failed to initialize GeminiApiService", e);
             FancyToast.makeText(this, "Error initializing quiz service: " + e.getMessage(), FancyToast.LENGTH_LONG,FancyToast.ERROR,false).show();
             finish();
             return;
         }
-        gson = new Gson();
+        geminiApiService.setParallelChunks(PARALLEL_CHUNKS, CHUNK_DEADLINE_MS);
+        geminiApiService.setHedgingEnabled(true); // Quiz start is latency critical; a stalled request is raced by a duplicate
+        geminiApiService.setCompactResponses(true); // Positional questions: fewer output tokens per batch
+        geminiApiService.getRateLimiter().setUsageFile(new File(getFilesDir(), TOKEN_USAGE_FILE));
         mainThreadHandler = new Handler(Looper.getMainLooper());
+        questionCache = QuestionDiskCache.getInstance(this);
+        QuizPrefetcher.getInstance().setDiskCache(questionCache);
 
         Intent intent = getIntent();
         quizMode = intent.getStringExtra("QUIZ_MODE") != null ? intent.getStringExtra("QUIZ_MODE") : "QUICK";
@@ -151,7 +187,10 @@ public class QuizActivity extends AppCompatActivity implements View.OnClickListe
     }
 
     private void setupListeners() {
-        buttonExit.setOnClickListener(v -> finish());
+        buttonExit.setOnClickListener(v -> {
+            if (questionRequest != null) questionRequest.cancel(); // Don't keep downloading while the Activity winds down
+            finish();
+        });
         buttonOption1.setOnClickListener(this);
         buttonOption2.setOnClickListener(this);
         buttonOption3.setOnClickListener(this);
@@ -160,61 +199,260 @@ public class QuizActivity extends AppCompatActivity implements View.OnClickListe
     }
 
     private void loadQuestions() {
-        Log.i(TAG, "Requesting questions from Gemini API for topic: " + topicTitle);
         showLoading(true);
-        int numberOfQuestions = 10;
-        String difficulty = "Medium";
-
+        loadStartNanos = System.nanoTime();
         Map<String, Map<String, String>> allUserStats = PreferenceHelper.getAllTopicStats(this);
+        Context appContext = getApplicationContext();
+
+        // The seen filter, the prefetched batch and the disk cache live on disk; read them on the request scheduler
+        geminiApiService.getScheduler().submit(RequestScheduler.Priority.INTERACTIVE, false, token -> {
+            SeenQuestionFilter filter = SeenQuestionFilter.getInstance(appContext);
+            geminiApiService.setSeenQuestionFilter(filter);
+            QuizStartLadder.Start start = newLadder(appContext, filter)
+                    .takeStoredStart(topicTitle, DIFFICULTY, NUMBER_OF_QUESTIONS, allUserStats);
+            questionCache.logHitRatio();
+            mainThreadHandler.post(() -> {
+                seenQuestions = filter;
+                onStoredStartLoaded(start, allUserStats);
+            });
+        });
+    }
 
-        geminiApiService.generateQuizQuestions(topicTitle, difficulty, numberOfQuestions, allUserStats, new GeminiApiService.GeminiCallback() {
-            @Override
-            public void onSuccess(String generatedJson) {
-                mainThreadHandler.post(() -> {
-                    Log.d(TAG, "Received JSON from Gemini: " + generatedJson);
-                    try {
-                        Type questionListType = new TypeToken<ArrayList<QuizQuestion>>(){}.getType();
-                        List<QuizQuestion> parsedQuestions = gson.fromJson(generatedJson, questionListType);
-
-                        if (parsedQuestions != null && !parsedQuestions.isEmpty()) {
-                            Log.i(TAG, "Successfully parsed " + parsedQuestions.size() + " questions.");
-                            questionList = parsedQuestions;
-                            totalQuestions = questionList.size();
-                            if (progressIndicator != null) {
-                                progressIndicator.setMax(totalQuestions);
-                            }
-                            currentQuestionIndex = 0;
-                            score = 0;
-                            updateScoreUI();
-
-                            showLoading(false);
-                            displayQuestion();
-                            updateProgressIndicator();
-                        } else {
-                            Log.w(TAG, "Parsed questions list is null or empty after JSON parsing.");
-                            handleQuestionLoadError("Received empty or invalid question data.");
-                        }
-                    } catch (JsonSyntaxException e) {
-                        Log.e(TAG, "Error parsing JSON response from Gemini", e);
-                        handleQuestionLoadError("Failed to parse questions. Invalid format received.");
-                    } catch (Exception e) {
-                        Log.e(TAG, "Unexpected error processing questions after fetch", e);
-                        handleQuestionLoadError("An unexpected error occurred while preparing questions.");
+    private void onStoredStartLoaded(@Nullable QuizStartLadder.Start start, Map<String, Map<String, String>> allUserStats) {
+        if (isFinishing() || isDestroyed()) {
+            if (start != null) storeUnplayed(start.questions);
+            return;
+        }
+        if (start != null) {
+            Log.i(TAG, "Starting quiz from " + start.source + " batch of " + start.questions.size() + " questions for topic: " + topicTitle);
+            startQuizWithQuestions(start.source, start.questions);
+            if (start.source == QuizStartLadder.Source.DISK_CACHE) {
+                prefetchNextQuiz(); // Fresh batch for the next round replaces the cached one
+            }
+            return;
+        }
+
+        if (!geminiApiService.isBackendAvailable()) {
+            Log.w(TAG, "Gemini backend known to be down, starting quiz from local questions");
+            startQuizFromLocalSources();
+            return;
+        }
+        requestLiveQuestions(allUserStats);
+    }
+
+    private void requestLiveQuestions(Map<String, Map<String, String>> allUserStats) {
+        int numberOfQuestions = NUMBER_OF_QUESTIONS;
+        String difficulty = DIFFICULTY;
+        Log.i(TAG, "Requesting questions from Gemini API for topic: " + topicTitle);
+        questionList = new ArrayList<>();
+        questionStreamComplete = false;
+        waitingForNextQuestion = false;
+        totalQuestions = numberOfQuestions; // Expected size, corrected once the stream completes
+        if (progressIndicator != null) {
+            progressIndicator.setMax(totalQuestions);
+        }
+
+        // Bound to this Activity: leaving the quiz aborts the download and releases the callbacks below
+        questionRequest = geminiApiService.streamQuizQuestions(topicTitle, difficulty, numberOfQuestions, allUserStats,
+                ModelRouter.Mode.parse(quizMode),
+                (question, index) -> mainThreadHandler.post(() -> onQuestionStreamed(question)),
+                new GeminiApiService.GeminiCallback() {
+                    @Override
+                    public void onSuccess(List<QuizQuestion> questions) {
+                        mainThreadHandler.post(() -> onQuestionStreamFinished(null));
+                    }
+
+                    @Override
+                    public void onError(Throwable throwable) {
+                        Log.e(TAG, "Error generating questions via Gemini API", throwable);
+                        mainThreadHandler.post(() -> onQuestionStreamFinished(throwable));
                     }
-                });
+                }).bindTo(this);
+        mainThreadHandler.postDelayed(startDeadline, START_DEADLINE_MS);
+    }
+
+    private void startQuizWithQuestions(QuizStartLadder.Source source, List<QuizQuestion> questions) {
+        recordQuizStart(source);
+        questionList = new ArrayList<>(questions);
+        questionStreamComplete = true;
+        waitingForNextQuestion = false;
+        totalQuestions = questionList.size();
+        if (progressIndicator != null) {
+            progressIndicator.setMax(totalQuestions);
+        }
+        currentQuestionIndex = 0;
+        score = 0;
+        updateScoreUI();
+        showLoading(false);
+        displayQuestion();
+        updateProgressIndicator();
+    }
+
+    private void onQuestionStreamed(QuizQuestion question) {
+        if (isFinishing()) return;
+        if (mergingLiveQuestions) {
+            mergeLiveQuestion(question);
+            return;
+        }
+        if (questionStreamComplete) return;
+        questionList.add(question);
+        if (questionList.size() == 1) {
+            Log.i(TAG, "First streamed question received, starting quiz.");
+            mainThreadHandler.removeCallbacks(startDeadline);
+            recordQuizStart(QuizStartLadder.Source.LIVE);
+            currentQuestionIndex = 0;
+            score = 0;
+            updateScoreUI();
+            showLoading(false);
+            displayQuestion();
+            updateProgressIndicator();
+        } else if (waitingForNextQuestion && currentQuestionIndex < questionList.size()) {
+            waitingForNextQuestion = false;
+            showLoading(false);
+            displayQuestion();
+            updateProgressIndicator();
+        }
+    }
+
+    private void onQuestionStreamFinished(@Nullable Throwable error) {
+        if (isFinishing()) return;
+        mainThreadHandler.removeCallbacks(startDeadline);
+        if (mergingLiveQuestions) {
+            Log.i(TAG, "Live stream finished with " + liveQuestions.size() + " questions after a local start.");
+            return;
+        }
+        questionStreamComplete = true;
+        if (questionList.isEmpty()) {
+            if (isBackendFailure(error)) {
+                Log.w(TAG, "Gemini backend failed before any question arrived, falling back to local questions");
+                startQuizFromLocalSources();
+                return;
+            }
+            showLoading(false);
+            handleQuestionLoadError(questionLoadErrorMessage(error));
+            return;
+        }
+        // Play whatever arrived; the quiz is only as long as the questions actually received
+        Log.i(TAG, "Question stream finished with " + questionList.size() + " questions.");
+        totalQuestions = questionList.size();
+        if (progressIndicator != null) {
+            progressIndicator.setMax(totalQuestions);
+        }
+        if (waitingForNextQuestion) {
+            waitingForNextQuestion = false;
+            showLoading(false);
+            displayQuestion();
+        } else if (textViewQuestionNumber != null && currentQuestionIndex < totalQuestions) {
+            textViewQuestionNumber.setText(String.format(Locale.getDefault(), "Question %d/%d", currentQuestionIndex + 1, totalQuestions));
+        }
+    }
+
+    private void onStartDeadlineExpired() {
+        if (isFinishing() || questionStreamComplete || !questionList.isEmpty()) return;
+        takeLocalStart(start -> {
+            if (questionStreamComplete || !questionList.isEmpty()) {
+                // The live stream answered while the local sources were read
+                if (start != null) storeUnplayed(start.questions);
+                return;
+            }
+            if (start == null) {
+                Log.w(TAG, "No live question within " + START_DEADLINE_MS + "ms and no local questions, still waiting for Gemini");
+                return;
             }
+            Log.i(TAG, "No live question within " + START_DEADLINE_MS + "ms, starting quiz from " + start.source);
+            // Keeps streaming; live questions take over the slots the player has not reached yet
+            mergingLiveQuestions = true;
+            nextLiveSlot = 0;
+            startQuizWithQuestions(start.source, start.questions);
+        });
+    }
 
-            @Override
-            public void onError(Throwable throwable) {
-                Log.e(TAG, "Error generating questions via Gemini API", throwable);
-                mainThreadHandler.post(() -> {
-                    showLoading(false);
-                    handleQuestionLoadError("Error fetching questions: " + throwable.getMessage());
-                });
+    private void mergeLiveQuestion(QuizQuestion question) {
+        liveQuestions.add(question);
+        nextLiveSlot = Math.max(nextLiveSlot, currentQuestionIndex + 1);
+        if (!QuizStartLadder.mergeLive(questionList, question, nextLiveSlot, NUMBER_OF_QUESTIONS)) return;
+        nextLiveSlot++;
+        if (questionList.size() != totalQuestions) {
+            totalQuestions = questionList.size();
+            if (progressIndicator != null) {
+                progressIndicator.setMax(totalQuestions);
+            }
+            if (textViewQuestionNumber != null && currentQuestionIndex < totalQuestions) {
+                textViewQuestionNumber.setText(String.format(Locale.getDefault(), "Question %d/%d", currentQuestionIndex + 1, totalQuestions));
+            }
+        }
+    }
+
+    private void startQuizFromLocalSources() {
+        takeLocalStart(start -> {
+            if (start == null) {
+                showLoading(false);
+                handleQuestionLoadError("Quiz service unavailable. Please check your connection and try again.");
+                return;
+            }
+            if (start.source == QuizStartLadder.Source.OFFLINE_BANK) {
+                FancyToast.makeText(this, "Quiz service unreachable, playing offline questions.", FancyToast.LENGTH_SHORT, FancyToast.INFO, false).show();
             }
+            startQuizWithQuestions(start.source, start.questions);
         });
     }
 
+    private interface LocalStartCallback {
+        void onLocalStart(@Nullable QuizStartLadder.Start start);
+    }
+
+    // Reads the local sources on the request scheduler and hands the result to the main thread, unless the quiz was left
+    private void takeLocalStart(LocalStartCallback callback) {
+        Map<String, Map<String, String>> allUserStats = PreferenceHelper.getAllTopicStats(this);
+        Context appContext = getApplicationContext();
+        geminiApiService.getScheduler().submit(RequestScheduler.Priority.INTERACTIVE, false, token -> {
+            QuizStartLadder.Start start = newLadder(appContext, SeenQuestionFilter.getInstance(appContext))
+                    .takeLocalStart(topicTitle, DIFFICULTY, NUMBER_OF_QUESTIONS, allUserStats);
+            mainThreadHandler.post(() -> {
+                if (isFinishing() || isDestroyed()) {
+                    if (start != null) storeUnplayed(start.questions);
+                    return;
+                }
+                callback.onLocalStart(start);
+            });
+        });
+    }
+
+    // Runs on a scheduler thread: the offline bank is mapped from the APK on first use
+    private QuizStartLadder newLadder(Context appContext, SeenQuestionFilter filter) {
+        return new QuizStartLadder(QuizPrefetcher.getInstance(), questionCache, OfflineQuestionBank.getInstance(appContext), filter);
+    }
+
+    // Puts a batch that was taken but never shown back into the disk cache, off the main thread
+    private void storeUnplayed(List<QuizQuestion> questions) {
+        geminiApiService.getScheduler().submit(RequestScheduler.Priority.BACKGROUND, false,
+                token -> questionCache.put(topicTitle, DIFFICULTY, questions));
+    }
+
+    private void recordQuizStart(QuizStartLadder.Source source) {
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - loadStartNanos);
+        Log.i(TAG, "Quiz started from " + source + " after " + elapsedMillis + "ms");
+        geminiApiService.getMetrics().record(RequestMetrics.Metric.QUIZ_START_MS, elapsedMillis);
+        PreferenceHelper.recordQuizStartSource(this, source.name());
+    }
+
+    // Network and server failures (including an open circuit) are worth a local fallback; quota and API errors are not
+    private static boolean isBackendFailure(@Nullable Throwable error) {
+        return error instanceof IOException && !(error instanceof QuotaExceededException);
+    }
+
+    private static String questionLoadErrorMessage(@Nullable Throwable error) {
+        if (error instanceof QuotaExceededException) {
+            QuotaExceededException quotaError = (QuotaExceededException) error;
+            if (quotaError.isDailyBudget()) {
+                return "Daily question limit reached. Please come back tomorrow.";
+            }
+            long seconds = Math.max(1, TimeUnit.MILLISECONDS.toSeconds(quotaError.getRetryAfterMillis()));
+            return String.format(Locale.getDefault(), "Too many quizzes started at once. Please try again in %d seconds.", seconds);
+        }
+        return error != null ? "Error fetching questions: " + error.getMessage() : "Received empty or invalid question data.";
+    }
+
     private void handleQuestionLoadError(String message) {
         FancyToast.makeText(QuizActivity.this, message, FancyToast.LENGTH_LONG,FancyToast.ERROR,false).show();
         finish();
@@ -227,6 +465,12 @@ public class QuizActivity extends AppCompatActivity implements View.OnClickListe
             return;
         }
         if (currentQuestionIndex >= questionList.size()) {
+            if (!questionStreamComplete) {
+                Log.i(TAG, "Waiting for question " + (currentQuestionIndex + 1) + " to be streamed.");
+                waitingForNextQuestion = true;
+                showLoading(true);
+                return;
+            }
             Log.i(TAG, "Reached end of question list.");
             finishQuiz();
             return;
@@ -257,6 +501,9 @@ public class QuizActivity extends AppCompatActivity implements View.OnClickListe
 
         resetOptionButtonsAppearance();
         answerSubmitted = false;
+        if (questionStreamComplete && totalQuestions - currentQuestionIndex <= PREFETCH_LOOKAHEAD) {
+            prefetchNextQuiz();
+        }
         if (buttonSubmitNext != null) {
             buttonSubmitNext.setText(R.string.submit);
             buttonSubmitNext.setEnabled(false);
@@ -380,6 +627,7 @@ public class QuizActivity extends AppCompatActivity implements View.OnClickListe
             }
         }
         PreferenceHelper.updateTopicStats(this, topicTitle, isCorrect);
+        seenQuestions.add(topicTitle, currentQuestion);
         updateScoreUI();
 
         if (buttonSubmitNext != null) {
@@ -469,6 +717,7 @@ public class QuizActivity extends AppCompatActivity implements View.OnClickListe
             countDownTimer.cancel();
         }
         Log.i(TAG, "Quiz Finished! Final Score: " + score + "/" + (totalQuestions * 10));
+        prefetchNextQuiz(); // No-op if it already started near the end of the quiz
 
         updateStreakAfterQuizCompletion();
 
@@ -522,6 +771,14 @@ public class QuizActivity extends AppCompatActivity implements View.OnClickListe
         PreferenceHelper.saveLastPlayedDateForStreak(this, currentDateStr);
     }
 
+    private void prefetchNextQuiz() {
+        if (nextQuizPrefetchRequested) return;
+        nextQuizPrefetchRequested = true;
+        // Most likely next quiz is the same topic again, tailored to the stats as they are now
+        QuizPrefetcher.getInstance().prefetch(geminiApiService, topicTitle, DIFFICULTY, NUMBER_OF_QUESTIONS,
+                PreferenceHelper.getAllTopicStats(this), ModelRouter.Mode.parse(quizMode));
+    }
+
     private void showLoading(boolean isLoading) {
         if (progressBarLoading != null && groupQuizContent != null) {
             progressBarLoading.setVisibility(isLoading ? View.VISIBLE : View.GONE);
@@ -529,11 +786,27 @@ public class QuizActivity extends AppCompatActivity implements View.OnClickListe
         }
     }
 
+    @Override
+    protected void onPause() {
+        super.onPause();
+        SeenQuestionFilter filter = seenQuestions;
+        if (filter != null) {
+            geminiApiService.getScheduler().submit(RequestScheduler.Priority.BACKGROUND, false, token -> filter.saveIfChanged());
+        }
+    }
+
     @Override
     protected void onDestroy() {
         super.onDestroy();
         if (countDownTimer != null) {
             countDownTimer.cancel();
         }
+        if (mainThreadHandler != null) {
+            mainThreadHandler.removeCallbacksAndMessages(null); // Drop stream results posted but not yet handled
+        }
+        if (geminiApiService != null) {
+            geminiApiService.reportMetrics(new File(getFilesDir(), REQUEST_METRICS_FILE),
+                    BuildConfig.VERSION_NAME + " (" + BuildConfig.VERSION_CODE + ")");
+        }
     }
 }
@@ -26,6 +26,7 @@ import com.shaivites.quizion.adapters.HomeToolsAdapter;
 import com.shaivites.quizion.adapters.TopicAdapter;
 import com.shaivites.quizion.models.ToolItem;
 import com.shaivites.quizion.models.TopicItem;
+import com.shaivites.quizion.networking.GeminiApiService;
 import com.shaivites.quizion.utils.PreferenceHelper;
 import com.shaivites.quizion.utils.DiceBearAvatarGenerator;
 import com.shashank.sony.fancytoastlib.FancyToast;
@@ -77,6 +78,16 @@ public class HomeFragment extends Fragment implements TopicAdapter.OnTopicClickL
     public void onResume() {
         super.onResume();
         setupUserInfo();
+        warmUpQuizConnection();
+    }
+
+    private void warmUpQuizConnection() {
+        // Open the Gemini connection while the user is still picking a topic
+        try {
+            GeminiApiService.getInstance().warmUpConnection();
+        } catch (IllegalStateException e) {
+            Log.w(TAG, "Skipping connection warm-up, quiz service unavailable: " + e.getMessage());
+        }
     }
 
     private void setupUserInfo() {
@@ -16,6 +16,9 @@ import com.google.android.material.button.MaterialButton;
 import com.google.android.material.materialswitch.MaterialSwitch;
 import com.shaivites.quizion.R;
 import com.shaivites.quizion.activities.SplashActivity;
+import com.shaivites.quizion.networking.QuestionDiskCache;
+import com.shaivites.quizion.networking.QuizPrefetcher;
+import com.shaivites.quizion.networking.SeenQuestionFilter;
 import com.shaivites.quizion.utils.PreferenceHelper;
 import com.shashank.sony.fancytoastlib.FancyToast;
 
@@ -67,6 +70,8 @@ public class SettingsFragment extends Fragment {
                     .setPositiveButton("Reset", (dialog, which) -> {
                         if (getContext() != null) {
                             PreferenceHelper.clearUserProgress(requireContext());
+                            // A prefetched batch tailored to the old stats is not used for the first quiz after the reset
+                            QuizPrefetcher.getInstance().invalidateIfStale(PreferenceHelper.getAllTopicStats(requireContext()));
                             FancyToast.makeText(getContext(), "Progress Reset!", FancyToast.LENGTH_SHORT,FancyToast.SUCCESS,false).show();
                         }
                     })
@@ -84,6 +89,9 @@ public class SettingsFragment extends Fragment {
                     .setPositiveButton("Logout", (dialog, which) -> {
                         if (getContext() != null && getActivity() != null) {
                             PreferenceHelper.logoutUser(requireContext());
+                            QuizPrefetcher.getInstance().clear();
+                            QuestionDiskCache.getInstance(requireContext()).clear();
+                            SeenQuestionFilter.clearSaved(requireContext());
                             FancyToast.makeText(getContext(), "Logged out successfully.", FancyToast.LENGTH_SHORT,FancyToast.SUCCESS,false).show();
                             Intent intent = new Intent(getActivity(), SplashActivity.class);
                             intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
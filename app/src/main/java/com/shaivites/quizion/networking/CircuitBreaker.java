@@ -0,0 +1,103 @@
+package com.shaivites.quizion.networking;
+
+import android.util.Log;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fails requests fast while the Gemini backend looks down, instead of letting every quiz wait out
+ * connect and read timeouts.
+ * <ul>
+ * <li>CLOSED: requests go through. {@code failureThreshold} consecutive failures open the circuit.</li>
+ * <li>OPEN: requests are rejected at once. After the open period the circuit becomes HALF_OPEN.</li>
+ * <li>HALF_OPEN: requests are still rejected while a single background probe checks the backend.
+ * A successful probe closes the circuit; a failed one opens it again for twice as long, up to a cap.</li>
+ * </ul>
+ */
+public class CircuitBreaker {
+
+    private static final String TAG = "CircuitBreaker";
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long initialOpenMillis;
+    private final long maxOpenMillis;
+
+    // Guarded by this
+    private State state = State.CLOSED;
+    private int consecutiveFailures = 0;
+    private long openMillis;
+    private long openUntilNanos;
+    private boolean probeInFlight = false;
+    private int openedCount = 0;
+    private int rejectedCount = 0;
+
+    public CircuitBreaker(int failureThreshold, long initialOpenMillis, long maxOpenMillis) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.initialOpenMillis = initialOpenMillis;
+        this.maxOpenMillis = Math.max(initialOpenMillis, maxOpenMillis);
+        this.openMillis = initialOpenMillis;
+    }
+
+    /** True if a request may go to the backend now; counts a rejection otherwise. */
+    synchronized boolean allowRequest() {
+        if (state == State.CLOSED) return true;
+        if (state == State.OPEN && System.nanoTime() >= openUntilNanos) {
+            state = State.HALF_OPEN;
+            Log.i(TAG, "Circuit half-open, backend will be probed");
+        }
+        rejectedCount++;
+        return false;
+    }
+
+    /** Claims the single background probe of the HALF_OPEN state. */
+    synchronized boolean tryStartProbe() {
+        if (state != State.HALF_OPEN || probeInFlight) return false;
+        probeInFlight = true;
+        return true;
+    }
+
+    synchronized void recordSuccess() {
+        probeInFlight = false;
+        consecutiveFailures = 0;
+        if (state != State.CLOSED) {
+            Log.i(TAG, "Backend reachable again, circuit closed");
+            state = State.CLOSED;
+            openMillis = initialOpenMillis;
+        }
+    }
+
+    synchronized void recordFailure() {
+        probeInFlight = false;
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN) {
+            openMillis = Math.min(maxOpenMillis, openMillis * 2);
+            open();
+        } else if (state == State.CLOSED && consecutiveFailures >= failureThreshold) {
+            open();
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /** Number of times the circuit opened, and of requests rejected while it was not closed. */
+    public synchronized int getOpenedCount() {
+        return openedCount;
+    }
+
+    public synchronized int getRejectedCount() {
+        return rejectedCount;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openUntilNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(openMillis);
+        openedCount++;
+        Log.w(TAG, "Circuit opened after " + consecutiveFailures + " consecutive failures, for " + openMillis + "ms");
+    }
+}
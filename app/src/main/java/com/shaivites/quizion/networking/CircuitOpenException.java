@@ -0,0 +1,13 @@
+package com.shaivites.quizion.networking;
+
+import java.io.IOException;
+
+/** Thrown without touching the network while the {@link CircuitBreaker} considers the backend down. */
+public class CircuitOpenException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    CircuitOpenException() {
+        super("Gemini backend unavailable, request not sent");
+    }
+}
@@ -0,0 +1,79 @@
+package com.shaivites.quizion.networking;
+
+import androidx.annotation.Nullable;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import com.shaivites.quizion.models.QuizQuestion;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Positional wire format for generated questions: each question is
+ * {@code ["question", "option 1", "option 2", "option 3", "option 4", "correct index"]} instead of an object
+ * repeating the {@code question}, {@code options} and {@code correctAnswerIndex} keys. Gemini is held to it with
+ * a {@code responseSchema}; the schema cannot mix types inside an array, so the index is sent as a string.
+ */
+final class CompactQuestionFormat {
+
+    static final int FIELD_COUNT = 1 + QuestionBatchPipeline.OPTION_COUNT + 1;
+
+    static final String INSTRUCTION = " Format the output STRICTLY as a JSON array where each question is itself a JSON array of exactly "
+            + FIELD_COUNT + " strings, in this order: the question text, the 4 answer choices, and the 0-based index of the correct"
+            + " answer choice written as a string (e.g. \"2\"). Only output the JSON array.";
+
+    private CompactQuestionFormat() { }
+
+    /** Array of arrays of exactly {@link #FIELD_COUNT} strings. */
+    static JsonObject responseSchema() {
+        JsonObject field = new JsonObject();
+        field.addProperty("type", "STRING");
+        JsonObject question = new JsonObject();
+        question.addProperty("type", "ARRAY");
+        question.add("items", field);
+        question.addProperty("minItems", FIELD_COUNT);
+        question.addProperty("maxItems", FIELD_COUNT);
+        JsonObject batch = new JsonObject();
+        batch.addProperty("type", "ARRAY");
+        batch.add("items", question);
+        return batch;
+    }
+
+    /** Maps one positional question back to a {@link QuizQuestion}; null if it does not have the expected shape. */
+    @Nullable
+    static QuizQuestion decode(JsonArray fields) {
+        if (fields.size() != FIELD_COUNT) return null;
+        for (JsonElement field : fields) {
+            if (!field.isJsonPrimitive()) return null;
+        }
+        int correctAnswerIndex;
+        try {
+            correctAnswerIndex = Integer.parseInt(fields.get(FIELD_COUNT - 1).getAsString().trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        List<String> options = new ArrayList<>(QuestionBatchPipeline.OPTION_COUNT);
+        for (int i = 1; i <= QuestionBatchPipeline.OPTION_COUNT; i++) {
+            options.add(fields.get(i).getAsString());
+        }
+        QuizQuestion question = new QuizQuestion();
+        question.setQuestion(fields.get(0).getAsString());
+        question.setOptions(options);
+        question.setCorrectAnswerIndex(correctAnswerIndex);
+        return question;
+    }
+
+    /** The positional form of {@code question}, as Gemini is asked to produce it. */
+    static JsonArray encode(QuizQuestion question) {
+        JsonArray fields = new JsonArray();
+        fields.add(new JsonPrimitive(question.getQuestion()));
+        for (String option : question.getOptions()) {
+            fields.add(new JsonPrimitive(option));
+        }
+        fields.add(new JsonPrimitive(String.valueOf(question.getCorrectAnswerIndex())));
+        return fields;
+    }
+}
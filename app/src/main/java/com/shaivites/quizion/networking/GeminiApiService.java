@@ -8,38 +8,149 @@ import androidx.annotation.Nullable;
 import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
-import com.google.gson.JsonSyntaxException;
 import com.shaivites.quizion.BuildConfig;
+import com.shaivites.quizion.models.QuizQuestion;
 
 import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.OutputStream;
+import java.io.InterruptedIOException;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class GeminiApiService {
 
     private static final String TAG = "GeminiApiServiceREST";
-    private final Executor backgroundExecutor = Executors.newSingleThreadExecutor();
+    private static final int REQUEST_THREADS = 3;
+    private static final int CHUNK_THREADS = 4;
+    // Room for both attempts of a hedged request from every request and chunk thread
+    private static final int HEDGE_THREADS = 2 * (REQUEST_THREADS + CHUNK_THREADS);
+    private static final long CHUNK_THREAD_TIMEOUT_S = 30;
+    private static final long DEFAULT_CHUNK_DEADLINE_MS = 45000; // 45 seconds
+    // Client-side limits, kept below the API's per-minute request quota
+    private static final int RATE_LIMIT_BURST = 5;
+    private static final int RATE_LIMIT_PER_MINUTE = 15;
+    private static final long DAILY_TOKEN_BUDGET = 1000000;
+    private static final long MAX_RATE_LIMIT_WAIT_MS = 60000; // 1 minute
+    private static final int MAX_THROTTLED_ATTEMPTS = 3;
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+    private static final int RETRY_ATTEMPTS = 3;
+    private static final long RETRY_BASE_DELAY_MS = 500;
+    private static final long RETRY_MAX_DELAY_MS = 4000;
+    // Hedging waits for this many latency samples, then fires the duplicate after the p95 time to first byte
+    private static final int MIN_HEDGE_SAMPLES = 10;
+    private static final long MIN_HEDGE_DELAY_MS = 100;
+    private static final int LATENCY_WINDOW_SIZE = 100;
+    private static final long HEDGE_THREAD_TIMEOUT_S = 30;
+    // Three requests failing in a row (each after its retries) open the circuit for 30 s, doubling up to 5 min
+    private static final int CIRCUIT_FAILURE_THRESHOLD = 3;
+    private static final long CIRCUIT_OPEN_MS = 30000;
+    private static final long CIRCUIT_MAX_OPEN_MS = 300000;
+    // maxOutputTokens per batch: a fixed allowance for the array plus a generous per-question budget
+    private static final int OUTPUT_TOKENS_OVERHEAD = 64;
+    private static final int VERBOSE_TOKENS_PER_QUESTION = 150;
+    private static final int COMPACT_TOKENS_PER_QUESTION = 110;
+    private static final int MAX_OUTPUT_TOKENS = 8192;
+    private static final String MAX_TOKENS_REASON = "MAX_TOKENS";
+    // The static prompt prefix is cached for 30 min; a prefix the API refuses to cache is retried after an hour
+    private static final long PROMPT_CACHE_TTL_MS = 30 * 60 * 1000;
+    private static final long PROMPT_CACHE_FAILURE_BACKOFF_MS = 60 * 60 * 1000;
+    // Histograms keep filling between dumps, so appending them every fifth quiz screen loses nothing but file writes
+    static final int METRICS_DUMP_INTERVAL = 5;
+    // Batches are coordinated here; their chunk requests run on chunkExecutor so a waiting coordinator never starves them
+    private final RequestScheduler scheduler = new RequestScheduler(REQUEST_THREADS);
+    private final ThreadPoolExecutor chunkExecutor = new ThreadPoolExecutor(CHUNK_THREADS, CHUNK_THREADS,
+            CHUNK_THREAD_TIMEOUT_S, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+    // Runs both attempts of a hedged request. When it is full, HedgedRequest sends without a hedge instead of queueing
+    private final ThreadPoolExecutor hedgeExecutor = new ThreadPoolExecutor(0, HEDGE_THREADS,
+            HEDGE_THREAD_TIMEOUT_S, TimeUnit.SECONDS, new SynchronousQueue<Runnable>());
     private final String apiKey;
+    private final String baseUrl;
+    private final GeminiTransport transport;
+    private final RateLimiter rateLimiter;
+    private final CircuitBreaker circuitBreaker;
     private final Gson gson = new Gson();
+    private final QuestionBatchPipeline pipeline = new QuestionBatchPipeline();
+    private final InFlightRequestCoalescer coalescer = new InFlightRequestCoalescer();
+    private final AtomicInteger repairedQuestionCount = new AtomicInteger();
+    private final AtomicInteger retryCount = new AtomicInteger();
+    private final AtomicInteger hedgedRequestCount = new AtomicInteger();
+    private final AtomicInteger hedgeWinCount = new AtomicInteger();
+    private final AtomicInteger repeatedQuestionCount = new AtomicInteger();
+    private final AtomicInteger salvagedQuestionCount = new AtomicInteger();
+    private final PerformanceContextBuilder performanceContextBuilder = new PerformanceContextBuilder();
+    private final PromptCache promptCache = new PromptCache(PROMPT_CACHE_TTL_MS, PROMPT_CACHE_FAILURE_BACKOFF_MS);
+    private final RequestMetrics metrics = new RequestMetrics();
+    private final AtomicInteger metricsReports = new AtomicInteger();
+    // Time to first byte of recent requests per endpoint; the non-streamed one includes the whole generation
+    private final LatencyWindow generateLatency = new LatencyWindow(LATENCY_WINDOW_SIZE);
+    private final LatencyWindow streamLatency = new LatencyWindow(LATENCY_WINDOW_SIZE);
+    private volatile RetryPolicy retryPolicy = new RetryPolicy(RETRY_ATTEMPTS, RETRY_BASE_DELAY_MS, RETRY_MAX_DELAY_MS);
+    private volatile boolean hedgingEnabled = false;
+    private volatile boolean compactResponses = false;
+    private volatile boolean promptCaching = false;
+    private volatile ModelRouter modelRouter = new ModelRouter();
+    @Nullable private volatile SeenQuestionFilter seenQuestionFilter;
+    private volatile int parallelChunks = 1;
+    private volatile long chunkDeadlineMillis = DEFAULT_CHUNK_DEADLINE_MS;
+
+    private static GeminiApiService sharedInstance;
 
     private static final String BASE_URL = "https://generativelanguage.googleapis.com/v1beta/models/";
-    private static final String MODEL_NAME = "gemini-1.5-flash-latest";
+    private static final String PROBE_MODEL = ModelRouter.FLASH;
     private static final String METHOD = ":generateContent";
+    private static final String STREAM_METHOD = ":streamGenerateContent";
+    private static final String COUNT_TOKENS_METHOD = ":countTokens";
+    private static final String CACHED_CONTENTS_PATH = "cachedContents";
+    // Same for every request in a format, so it can be uploaded once as cached content (see PromptCache)
+    private static final String TAILORING_INSTRUCTION = " If performance data is provided, try to tailor questions slightly, perhaps by focusing on sub-topics where the user has fewer attempts or lower accuracy, or by slightly adjusting difficulty if the user is performing very well or poorly on the requested topic.";
+    private static final String VERBOSE_FORMAT_INSTRUCTION = " Format the output STRICTLY as a valid JSON array where each object has the following keys: " +
+            "\"question\" (string: the question text), " +
+            "\"options\" (JSON array of 4 strings: the answer choices), and " +
+            "\"correctAnswerIndex\" (integer: the 0-based index of the correct answer within the \"options\" array). " +
+            "Do not include any introductory text, explanations, markdown formatting, or anything else outside the single JSON array structure. Only output the JSON array.";
+    private static final String PROBE_BODY = "{\"contents\": [{\"parts\": [{\"text\": \"ping\"}]}]}";
 
     public interface GeminiCallback {
-        void onSuccess(String generatedJsonText);
+        /** The batch's decoded, validated and normalized questions as an unmodifiable list, ready to render. */
+        void onSuccess(List<QuizQuestion> questions);
         void onError(Throwable throwable);
     }
 
+    /**
+     * Receives each question of a streamed batch as soon as its JSON object is complete.
+     * Called on the background thread, before {@link GeminiCallback#onSuccess} for the batch.
+     */
+    public interface QuestionStreamCallback {
+        void onQuestion(QuizQuestion question, int index);
+    }
+
+    // One network exchange that may be retried as a whole
+    private interface Exchange<T> {
+        T run() throws IOException;
+    }
+
     public GeminiApiService() {
         try {
             this.apiKey = BuildConfig.GEMINI_API_KEY;
@@ -51,114 +162,1011 @@ public class GeminiApiService {
             Log.e(TAG, "CRITICAL: Error accessing BuildConfig.GEMINI_API_KEY.", e);
             throw new IllegalStateException("Could not access Gemini API Key. Build configuration error.", e);
         }
+        this.baseUrl = BASE_URL;
+        this.transport = UrlConnectionTransport.getSharedPooled();
+        this.rateLimiter = new RateLimiter(RATE_LIMIT_BURST, RATE_LIMIT_PER_MINUTE, DAILY_TOKEN_BUDGET, MAX_RATE_LIMIT_WAIT_MS);
+        this.circuitBreaker = new CircuitBreaker(CIRCUIT_FAILURE_THRESHOLD, CIRCUIT_OPEN_MS, CIRCUIT_MAX_OPEN_MS);
+        chunkExecutor.allowCoreThreadTimeOut(true);
         Log.i(TAG, "GeminiApiService (REST) initialized.");
     }
 
-    public void generateQuizQuestions(String topic, String difficulty, int numberOfQuestions,
-                                      @Nullable Map<String, Map<String, String>> allTopicStats,
-                                      @NonNull GeminiCallback callback) {
-        backgroundExecutor.execute(() -> {
-            HttpURLConnection urlConnection = null;
+    // Used by tests to point the service at a local fake server; requests are not rate limited
+    GeminiApiService(String apiKey, String baseUrl, GeminiTransport transport) {
+        this(apiKey, baseUrl, transport, new RateLimiter(Integer.MAX_VALUE, Integer.MAX_VALUE, Long.MAX_VALUE, MAX_RATE_LIMIT_WAIT_MS));
+    }
+
+    GeminiApiService(String apiKey, String baseUrl, GeminiTransport transport, RateLimiter rateLimiter) {
+        this(apiKey, baseUrl, transport, rateLimiter, new CircuitBreaker(CIRCUIT_FAILURE_THRESHOLD, CIRCUIT_OPEN_MS, CIRCUIT_MAX_OPEN_MS));
+    }
+
+    GeminiApiService(String apiKey, String baseUrl, GeminiTransport transport, RateLimiter rateLimiter,
+                     CircuitBreaker circuitBreaker) {
+        this.apiKey = apiKey;
+        this.baseUrl = baseUrl;
+        this.transport = transport;
+        this.rateLimiter = rateLimiter;
+        this.circuitBreaker = circuitBreaker;
+        chunkExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * App-wide instance, so every screen shares one pooled transport.
+     * @throws IllegalStateException if the API key is not configured (same as the constructor).
+     */
+    public static synchronized GeminiApiService getInstance() {
+        if (sharedInstance == null) {
+            sharedInstance = new GeminiApiService();
+        }
+        return sharedInstance;
+    }
+
+    /**
+     * Speculatively opens a pooled connection to the API host in the background, e.g. when the
+     * topic list becomes visible, so the first quiz request skips DNS, TCP and TLS setup.
+     */
+    public void warmUpConnection() {
+        scheduler.submit(RequestScheduler.Priority.BACKGROUND, false, token -> {
             try {
-                URL url = new URL(BASE_URL + MODEL_NAME + METHOD + "?key=" + apiKey);
-                Log.d(TAG, "Request URL: " + url.toString());
-
-                urlConnection = (HttpURLConnection) url.openConnection();
-                urlConnection.setRequestMethod("POST");
-                urlConnection.setRequestProperty("Content-Type", "application/json");
-                urlConnection.setRequestProperty("Accept", "application/json");
-                urlConnection.setDoOutput(true);
-                urlConnection.setConnectTimeout(20000); // 20 seconds
-                urlConnection.setReadTimeout(60000);    // 60 seconds
-
-                String jsonRequestBody = buildRequestBody(topic, difficulty, numberOfQuestions, allTopicStats);
-                Log.d(TAG, "Request Body: " + jsonRequestBody);
-
-                try (OutputStream os = urlConnection.getOutputStream()) {
-                    byte[] input = jsonRequestBody.getBytes(StandardCharsets.UTF_8);
-                    os.write(input, 0, input.length);
-                }
+                transport.warmUp(new URL(baseUrl));
+            } catch (IOException e) {
+                Log.w(TAG, "Invalid base URL for warm-up: " + baseUrl, e);
+            }
+        });
+    }
 
-                int responseCode = urlConnection.getResponseCode();
-                Log.i(TAG, "Gemini API Response Code: " + responseCode);
+    /**
+     * Generates a batch of questions and reports them to {@code callback} on a background thread. {@code mode}
+     * is the quiz mode the batch is for; together with the batch size it picks the model through the
+     * {@link ModelRouter}. The returned handle cancels the request for this caller; see {@link RequestHandle}.
+     */
+    public RequestHandle generateQuizQuestions(String topic, String difficulty, int numberOfQuestions,
+                                               @Nullable Map<String, Map<String, String>> allTopicStats,
+                                               @NonNull ModelRouter.Mode mode, @NonNull GeminiCallback callback) {
+        return generateQuizQuestions(topic, difficulty, numberOfQuestions, allTopicStats, mode,
+                RequestScheduler.Priority.INTERACTIVE, callback);
+    }
 
-                InputStream inputStream = (responseCode >= 200 && responseCode < 300) ?
-                        urlConnection.getInputStream() : urlConnection.getErrorStream();
+    /**
+     * Same as {@link #generateQuizQuestions(String, String, int, Map, ModelRouter.Mode, GeminiCallback)} at the
+     * given priority. Background requests queue behind interactive ones and may be aborted and restarted to make
+     * room for them.
+     */
+    public RequestHandle generateQuizQuestions(String topic, String difficulty, int numberOfQuestions,
+                                               @Nullable Map<String, Map<String, String>> allTopicStats,
+                                               @NonNull ModelRouter.Mode mode,
+                                               @NonNull RequestScheduler.Priority priority,
+                                               @NonNull GeminiCallback callback) {
+        String requestKey = InFlightRequestCoalescer.key(topic, difficulty, numberOfQuestions, allTopicStats, mode, priority, false);
+        RequestHandle handle = coalescer.joinOrStart(requestKey, null, callback);
+        if (handle.startsRequest()) { // Otherwise an identical request is already in flight and will answer this caller
+            InFlightRequestCoalescer.SharedCall sharedCall = handle.getCall();
+            sharedCall.setToken(executeGenerateRequest(topic, difficulty, numberOfQuestions, allTopicStats, mode, priority, sharedCall));
+        }
+        return handle;
+    }
 
-                StringBuilder response = new StringBuilder();
-                if (inputStream != null) {
-                    try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
-                        String line;
-                        while ((line = reader.readLine()) != null) {
-                            response.append(line.trim());
-                        }
-                    }
+    /**
+     * Splits every non-streamed batch into up to {@code chunks} smaller requests that run concurrently,
+     * e.g. 3+3+4 for 10 questions, and merges them once all finished or {@code deadlineMillis} passed.
+     * A value of 1 sends the whole batch as one request.
+     */
+    public void setParallelChunks(int chunks, long deadlineMillis) {
+        this.parallelChunks = Math.max(1, Math.min(chunks, CHUNK_THREADS));
+        this.chunkDeadlineMillis = deadlineMillis;
+    }
+
+    /** Replaces the policy for retrying transient failures (5xx, timeouts, dropped connections). */
+    public void setRetryPolicy(@NonNull RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
+
+    /**
+     * Enables hedged requests: once enough latencies are known, a request that has not answered after the
+     * p95 time to first byte is sent a second time and the slower copy is aborted. Trades a few percent
+     * more API calls for a shorter latency tail.
+     */
+    public void setHedgingEnabled(boolean enabled) {
+        this.hedgingEnabled = enabled;
+    }
+
+    /**
+     * Asks Gemini for questions as positional arrays held to a response schema ({@link CompactQuestionFormat})
+     * instead of keyed objects: fewer output tokens, so batches generate faster. Callbacks receive the same
+     * decoded questions either way.
+     */
+    public void setCompactResponses(boolean enabled) {
+        this.compactResponses = enabled;
+    }
+
+    /**
+     * Uploads the static instruction block of the prompt (tailoring and format rules) once per model as Gemini
+     * cached content and references it by name, so requests send fewer input tokens. The upload runs in the
+     * background and is renewed before it expires; until then, or if the API refuses it, the block is sent inline.
+     */
+    public void setPromptCaching(boolean enabled) {
+        this.promptCaching = enabled;
+    }
+
+    PromptCache getPromptCache() {
+        return promptCache;
+    }
+
+    /** Replaces the model routing table; latencies recorded by the previous router are not carried over. */
+    public void setModelRouter(@NonNull ModelRouter router) {
+        this.modelRouter = router;
+    }
+
+    /** Routing decisions and rolling per-model latency. */
+    public ModelRouter getModelRouter() {
+        return modelRouter;
+    }
+
+    /**
+     * Drops questions the user has probably answered before from every generated batch, topping the batch up
+     * like rejected questions, and asks Gemini to avoid the most recent ones. Null disables filtering.
+     */
+    public void setSeenQuestionFilter(@Nullable SeenQuestionFilter filter) {
+        this.seenQuestionFilter = filter;
+    }
+
+    private RequestToken executeGenerateRequest(String topic, String difficulty, int numberOfQuestions,
+                                                @Nullable Map<String, Map<String, String>> allTopicStats, ModelRouter.Mode mode,
+                                                RequestScheduler.Priority priority, @NonNull GeminiCallback callback) {
+        final int chunks = Math.min(parallelChunks, numberOfQuestions);
+        // Preemptible: nothing reaches the callback until the whole batch is done, so a restart is invisible
+        return scheduler.submit(priority, true, token -> {
+            try {
+                long startNanos = System.nanoTime();
+                List<QuizQuestion> questions = chunks > 1
+                        ? generateChunked(topic, difficulty, numberOfQuestions, allTopicStats, mode, chunks, token)
+                        : generateSingle(topic, difficulty, numberOfQuestions, allTopicStats, mode, token);
+                if (token.tryComplete()) {
+                    metrics.record(RequestMetrics.Metric.BATCH_MS, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+                    callback.onSuccess(questions);
                 } else {
-                    Log.e(TAG, "InputStream was null for response code: " + responseCode);
+                    reportAborted(token, callback);
+                }
+            } catch (Exception e) {
+                if (!token.tryComplete()) {
+                    reportAborted(token, callback);
+                    return;
                 }
-                String responseBody = response.toString();
-                Log.d(TAG, "Raw Response Body: " + responseBody);
+                Log.e(TAG, "Error during Gemini REST API call", e);
+                callback.onError(e);
+            }
+        });
+    }
+
+    // A preempted request is silently re-run by the scheduler; a cancelled one is reported as such
+    private static void reportAborted(RequestToken token, GeminiCallback callback) {
+        if (token.isCancelled()) {
+            callback.onError(new CancellationException("Request cancelled"));
+        } else {
+            Log.d(TAG, "Request preempted, it will be restarted");
+        }
+    }
+
+    /** Aborts all queued and running requests and stops the worker threads. The service cannot be used afterwards. */
+    public void shutdown() {
+        scheduler.shutdown();
+        chunkExecutor.shutdownNow();
+        hedgeExecutor.shutdownNow();
+    }
+
+    /** Queue-time, preemption and cancellation metrics of this service's requests. */
+    public RequestScheduler getScheduler() {
+        return scheduler;
+    }
+
+    /** Rate limit queue depth, throttle events and daily token usage of this service's requests. */
+    public RateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    /** Latency and token histograms of this service's requests; the app adds its quiz start latency. */
+    public RequestMetrics getMetrics() {
+        return metrics;
+    }
 
-                if (responseCode == HttpURLConnection.HTTP_OK) {
-                    String extractedJson = extractGeneratedJson(responseBody);
-                    if (extractedJson != null) {
-                        callback.onSuccess(extractedJson);
+    /**
+     * Called when a quiz screen is left: logs the routing and metrics tables at DEBUG and, on every
+     * {@link #METRICS_DUMP_INTERVAL}th call, appends the metrics to {@code file} on the request scheduler
+     * (see {@link RequestMetrics#dump}).
+     */
+    public void reportMetrics(@NonNull File file, @NonNull String release) {
+        NetworkLog.d(TAG, () -> "Model routing:\n" + modelRouter);
+        NetworkLog.d(TAG, () -> "Request metrics:\n" + metrics);
+        if (metricsReports.incrementAndGet() % METRICS_DUMP_INTERVAL != 0) return;
+        scheduler.submit(RequestScheduler.Priority.BACKGROUND, false, token -> {
+            try {
+                metrics.dump(file, release);
+            } catch (IOException e) {
+                Log.w(TAG, "Could not save request metrics to " + file, e);
+            }
+        });
+    }
+
+    /**
+     * False while the backend is considered down: requests would fail at once with a {@link CircuitOpenException},
+     * so callers should use a local question source instead. Starts a background probe once the circuit's open
+     * period is over; requests go through again as soon as it succeeds.
+     */
+    public boolean isBackendAvailable() {
+        if (circuitBreaker.allowRequest()) return true;
+        probeBackendIfDue();
+        return false;
+    }
+
+    // Asks for a token count, which generates nothing, to see whether the backend answers again
+    private void probeBackendIfDue() {
+        if (!circuitBreaker.tryStartProbe()) return;
+        scheduler.submit(RequestScheduler.Priority.BACKGROUND, false, token -> {
+            try {
+                URL url = new URL(baseUrl + PROBE_MODEL + COUNT_TOKENS_METHOD + "?key=" + apiKey);
+                try (TransportResponse response = transport.post(url, PROBE_BODY, "application/json", token)) {
+                    Log.i(TAG, "Backend probe answered " + response.getCode());
+                    if (TransientHttpException.isTransient(response.getCode())) {
+                        circuitBreaker.recordFailure();
                     } else {
-                        Log.e(TAG, "Failed to extract valid content from successful API response. Body: " + responseBody);
-                        callback.onError(new Exception("Failed to extract valid content from API response. The response might be blocked or in an unexpected format."));
+                        circuitBreaker.recordSuccess(); // Even a 4xx proves the backend is reachable
                     }
+                }
+            } catch (IOException e) {
+                Log.w(TAG, "Backend probe failed", e);
+                circuitBreaker.recordFailure();
+            }
+        });
+    }
+
+    private List<QuizQuestion> generateSingle(String topic, String difficulty, int numberOfQuestions,
+                                              @Nullable Map<String, Map<String, String>> allTopicStats,
+                                              ModelRouter.Mode mode, RequestToken token) throws Exception {
+        GeneratedText generated = requestGeneratedJson(topic, difficulty, numberOfQuestions, allTopicStats, mode, null, token);
+        QuestionBatchPipeline.Result result = processBatch(generated.json);
+        List<QuizQuestion> unseen = new ArrayList<>();
+        for (QuizQuestion question : result.getQuestions()) {
+            if (!isRepeat(question)) unseen.add(question);
+        }
+        int repeats = result.getQuestions().size() - unseen.size();
+        int missing = generated.truncated
+                ? numberOfQuestions - unseen.size() // Questions cut off by MAX_TOKENS are topped up too
+                : Math.min(result.getTimings().getRejectedCount() + repeats, numberOfQuestions - unseen.size());
+        if (missing > 0) unseen.addAll(requestReplacements(topic, difficulty, missing, allTopicStats, mode, unseen, token));
+        // Only repeats: a quiz of seen questions beats none
+        return readyBatch(unseen.isEmpty() ? result.getQuestions() : unseen, numberOfQuestions);
+    }
+
+    // Fans the batch out over chunkExecutor and merges the de-duplicated results in chunk order
+    private List<QuizQuestion> generateChunked(String topic, String difficulty, int numberOfQuestions,
+                                               @Nullable Map<String, Map<String, String>> allTopicStats,
+                                               ModelRouter.Mode mode, int chunks, RequestToken token) throws Exception {
+        long startNanos = System.nanoTime();
+        long deadlineNanos = startNanos + TimeUnit.MILLISECONDS.toNanos(chunkDeadlineMillis);
+        int[] sizes = chunkSizes(numberOfQuestions, chunks);
+        boolean[] truncated = new boolean[sizes.length]; // Written by each chunk before its future completes
+        List<Future<QuestionBatchPipeline.Result>> futures = new ArrayList<>();
+        for (int i = 0; i < sizes.length; i++) {
+            final int chunk = i;
+            final int size = sizes[i];
+            final String chunkHint = String.format(Locale.US,
+                    " This request is part %d of %d of one quiz generated in parallel: focus on sub-topic area %d of %d so the parts do not overlap.",
+                    i + 1, sizes.length, i + 1, sizes.length);
+            futures.add(chunkExecutor.submit(() -> {
+                GeneratedText generated = requestGeneratedJson(topic, difficulty, size, allTopicStats, mode, chunkHint, token);
+                truncated[chunk] = generated.truncated;
+                return processBatch(generated.json);
+            }));
+        }
+
+        List<QuizQuestion> merged = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        int shortfall = 0; // Rejected or duplicate questions that a follow-up request may replace
+        Exception firstError = null;
+        for (int i = 0; i < futures.size(); i++) {
+            Future<QuestionBatchPipeline.Result> future = futures.get(i);
+            try {
+                QuestionBatchPipeline.Result result = future.get(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+                shortfall += truncated[i]
+                        ? Math.max(0, sizes[i] - result.getQuestions().size())
+                        : result.getTimings().getRejectedCount();
+                for (QuizQuestion question : result.getQuestions()) {
+                    if (seen.add(questionKey(question)) && !isRepeat(question)) merged.add(question);
+                    else shortfall++;
+                }
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                Log.w(TAG, "Chunk missed the " + chunkDeadlineMillis + "ms deadline, merging without it");
+            } catch (ExecutionException e) {
+                Log.w(TAG, "Chunk request failed, merging without it", e.getCause());
+                if (firstError == null) firstError = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+            }
+        }
+        if (merged.isEmpty()) {
+            throw firstError != null ? firstError : new Exception("No question chunk finished before the deadline.");
+        }
+
+        int missing = Math.min(shortfall, numberOfQuestions - merged.size());
+        if (missing > 0 && System.nanoTime() < deadlineNanos) {
+            merged.addAll(requestReplacements(topic, difficulty, missing, allTopicStats, mode, merged, token));
+        }
+        long mergedNanos = System.nanoTime() - startNanos;
+        NetworkLog.i(TAG, () -> "Merged " + merged.size() + " questions from " + sizes.length + " chunks in "
+                + TimeUnit.NANOSECONDS.toMillis(mergedNanos) + "ms");
+        return readyBatch(merged, numberOfQuestions);
+    }
+
+    // What callbacks receive: at most the requested number of questions, in an unmodifiable list
+    private static List<QuizQuestion> readyBatch(List<QuizQuestion> questions, int numberOfQuestions) {
+        int size = Math.min(questions.size(), numberOfQuestions);
+        return Collections.unmodifiableList(new ArrayList<>(questions.subList(0, size)));
+    }
+
+    /** Splits {@code total} into {@code chunks} near-equal sizes with the larger ones last, e.g. 10/3 -> 3,3,4. */
+    static int[] chunkSizes(int total, int chunks) {
+        int[] sizes = new int[chunks];
+        for (int i = 0; i < chunks; i++) {
+            sizes[i] = total / chunks + (i >= chunks - total % chunks ? 1 : 0);
+        }
+        return sizes;
+    }
+
+    // Blocking generateContent round trip; returns the generated JSON array text. Runs on the background executor.
+    private GeneratedText requestGeneratedJson(String topic, String difficulty, int numberOfQuestions,
+                                        @Nullable Map<String, Map<String, String>> allTopicStats, ModelRouter.Mode mode,
+                                        @Nullable String extraInstruction, RequestToken token) throws Exception {
+        ModelRouter router = modelRouter;
+        String model = router.route(mode, numberOfQuestions);
+        URL url = new URL(baseUrl + model + METHOD + "?key=" + apiKey);
+        NetworkLog.d(TAG, () -> "Request URL: " + NetworkLog.redact(url.toString()));
+
+        boolean compact = compactResponses;
+        String cachedPrefix = cachedPromptPrefix(model, compact);
+        String jsonRequestBody = buildRequestBody(topic, difficulty, numberOfQuestions, allTopicStats, extraInstruction, compact, cachedPrefix);
+        NetworkLog.body(TAG, "Request Body", jsonRequestBody);
+
+        long startNanos = System.nanoTime();
+        RawResponse raw = exchangeGenerate(url, jsonRequestBody, token);
+        if (cachedPrefix != null && isCachedPrefixRejected(raw.code, raw.errorBody)) {
+            int rejectedCode = raw.code;
+            NetworkLog.w(TAG, () -> "Cached prompt prefix " + cachedPrefix + " rejected (" + rejectedCode + "), resending it inline");
+            promptCache.invalidate(cachedPrefix);
+            raw = exchangeGenerate(url, buildRequestBody(topic, difficulty, numberOfQuestions, allTopicStats, extraInstruction,
+                    compact, cachedPromptPrefix(model, compact)), token);
+        }
+        int responseCode = raw.code;
+        GeminiResponseParser.Envelope envelope = raw.envelope;
+        String errorBody = raw.errorBody;
+
+        if (responseCode != HttpURLConnection.HTTP_OK) {
+            throw apiError("Gemini API Error", responseCode, errorBody);
+        }
+        router.recordLatency(model, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        if (envelope != null) {
+            logBatchCost(model, numberOfQuestions, envelope.promptTokenCount, envelope.cachedContentTokenCount,
+                    envelope.candidatesTokenCount, startNanos);
+            metrics.recordTokens(envelope.promptTokenCount, envelope.candidatesTokenCount, envelope.totalTokenCount);
+        }
+        long extractStartNanos = System.nanoTime();
+        String extractedJson = envelope != null ? extractGeneratedJson(envelope) : null;
+        metrics.record(RequestMetrics.Metric.ENVELOPE_US,
+                TimeUnit.NANOSECONDS.toMicros(raw.envelopeNanos + System.nanoTime() - extractStartNanos));
+        if (extractedJson == null) {
+            Log.e(TAG, "Failed to extract valid content from successful API response.");
+            throw new Exception("Failed to extract valid content from API response. The response might be blocked or in an unexpected format.");
+        }
+        return new GeneratedText(extractedJson, MAX_TOKENS_REASON.equals(envelope.finishReason));
+    }
+
+    private static class GeneratedText {
+        final String json;
+        final boolean truncated; // Cut off by MAX_TOKENS; json holds only the questions that were complete
+
+        GeneratedText(String json, boolean truncated) {
+            this.json = json;
+            this.truncated = truncated;
+        }
+    }
+
+    private RawResponse exchangeGenerate(URL url, String jsonRequestBody, RequestToken token) throws IOException {
+        return withRetries(() -> {
+            try (TransportResponse response = sendHedged(url, jsonRequestBody, "application/json", generateLatency, token)) {
+                RawResponse result = new RawResponse(response.getCode());
+                NetworkLog.i(TAG, () -> "Gemini API Response Code: " + result.code + " (TTFB " + response.getTimeToFirstByteMillis() + "ms"
+                        + (response.isReusedConnection() ? ", pooled connection)" : ")"));
+                if (response.getBody() == null) {
+                    Log.e(TAG, "InputStream was null for response code: " + result.code);
+                } else if (result.code == HttpURLConnection.HTTP_OK) {
+                    // Single pass over the body: only the candidate text and status fields are kept
+                    long parseStartNanos = System.nanoTime();
+                    long transferNanosBefore = response.getTransferNanos();
+                    result.envelope = parseEnvelope(response.getBody());
+                    // Parsing pulls the body off the network as it goes; only the time not spent waiting for it counts
+                    result.envelopeNanos = Math.max(0, System.nanoTime() - parseStartNanos
+                            - (response.getTransferNanos() - transferNanosBefore));
+                    if (result.envelope != null) rateLimiter.recordUsage(result.envelope.totalTokenCount);
                 } else {
-                    String errorMsg = parseError(responseBody);
-                    Log.e(TAG, "Gemini API Error: " + responseCode + " - " + errorMsg);
-                    callback.onError(new Exception("Gemini API Error: " + responseCode + ". " + errorMsg));
+                    result.errorBody = readFully(response.getBody()); // Error bodies are small and may not be JSON
+                }
+                metrics.recordTransport(response);
+                return result;
+            }
+        }, token);
+    }
+
+    private static class RawResponse {
+        final int code;
+        @Nullable GeminiResponseParser.Envelope envelope;
+        @Nullable String errorBody;
+        long envelopeNanos; // CPU time of parsing the envelope, without waiting for the body
+
+        RawResponse(int code) {
+            this.code = code;
+        }
+    }
+
+    /**
+     * Asks for exactly {@code missing} new questions to stand in for ones the pipeline rejected or a truncated
+     * response cut off, instead of
+     * regenerating the whole batch. Replacements that repeat a question already in {@code existing} are dropped.
+     * Never throws: a failed repair just leaves the batch short.
+     */
+    private List<QuizQuestion> requestReplacements(String topic, String difficulty, int missing,
+                                                   @Nullable Map<String, Map<String, String>> allTopicStats,
+                                                   ModelRouter.Mode mode, List<QuizQuestion> existing, RequestToken token) {
+        NetworkLog.i(TAG, () -> "Requesting " + missing + " replacement question(s) for missing or invalid items on topic: " + topic);
+        List<QuizQuestion> replacements = new ArrayList<>();
+        try {
+            List<QuizQuestion> generated = processBatch(requestGeneratedJson(topic, difficulty, missing, allTopicStats, mode, null, token).json).getQuestions();
+            Set<String> seen = new HashSet<>();
+            for (QuizQuestion question : existing) seen.add(questionKey(question));
+            for (QuizQuestion question : generated) {
+                if (replacements.size() >= missing) break;
+                if (seen.add(questionKey(question)) && !isRepeat(question)) replacements.add(question);
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "Replacement request failed, continuing with a shorter batch", e);
+        }
+        repairedQuestionCount.addAndGet(replacements.size());
+        return replacements;
+    }
+
+    /**
+     * Streaming variant of {@link #generateQuizQuestions} using the SSE {@code :streamGenerateContent} endpoint.
+     * Each question is handed to {@code questionCallback} as soon as its JSON object closes, so the quiz can
+     * start after the first one. {@code callback} still signals completion of the whole batch with every
+     * delivered question. Invalid questions are dropped and topped up with a small follow-up request.
+     */
+    public RequestHandle streamQuizQuestions(String topic, String difficulty, int numberOfQuestions,
+                                             @Nullable Map<String, Map<String, String>> allTopicStats,
+                                             @NonNull ModelRouter.Mode mode,
+                                             @NonNull QuestionStreamCallback questionCallback,
+                                             @NonNull GeminiCallback callback) {
+        // Streams always run at interactive priority, see executeStreamRequest
+        String requestKey = InFlightRequestCoalescer.key(topic, difficulty, numberOfQuestions, allTopicStats, mode,
+                RequestScheduler.Priority.INTERACTIVE, true);
+        RequestHandle handle = coalescer.joinOrStart(requestKey, questionCallback, callback);
+        if (handle.startsRequest()) { // Otherwise joined an identical in-flight request, already streamed questions were replayed
+            InFlightRequestCoalescer.SharedCall sharedCall = handle.getCall();
+            sharedCall.setToken(executeStreamRequest(topic, difficulty, numberOfQuestions, allTopicStats, mode, sharedCall, sharedCall));
+        }
+        return handle;
+    }
+
+    private RequestToken executeStreamRequest(String topic, String difficulty, int numberOfQuestions,
+                                              @Nullable Map<String, Map<String, String>> allTopicStats, ModelRouter.Mode mode,
+                                              @NonNull QuestionStreamCallback questionCallback,
+                                              @NonNull GeminiCallback callback) {
+        // Never preempted: questions already handed out would be delivered twice on a restart
+        return scheduler.submit(RequestScheduler.Priority.INTERACTIVE, false, token -> {
+            try {
+                ModelRouter router = modelRouter;
+                String model = router.route(mode, numberOfQuestions);
+                URL url = new URL(baseUrl + model + STREAM_METHOD + "?alt=sse&key=" + apiKey);
+                NetworkLog.d(TAG, () -> "Stream Request URL: " + NetworkLog.redact(url.toString()));
+
+                boolean compact = compactResponses;
+                String cachedPrefix = cachedPromptPrefix(model, compact);
+                String jsonRequestBody = buildRequestBody(topic, difficulty, numberOfQuestions, allTopicStats, null, compact, cachedPrefix);
+                long startNanos = System.nanoTime();
+                StreamState state;
+                // Only sending is retried: once questions were handed out, a retry would deliver them twice
+                TransportResponse sent = withRetries(
+                        () -> sendHedged(url, jsonRequestBody, "text/event-stream", streamLatency, token), token);
+                if (cachedPrefix != null && isCachedPrefixErrorCode(sent.getCode())) {
+                    int code = sent.getCode();
+                    String errorBody;
+                    try (TransportResponse rejected = sent) {
+                        errorBody = readFully(rejected.getBody()); // Error bodies are small
+                    }
+                    if (!isCachedPrefixRejected(code, errorBody)) throw apiError("Gemini API Stream Error", code, errorBody);
+                    NetworkLog.w(TAG, () -> "Cached prompt prefix " + cachedPrefix + " rejected (" + code + "), resending it inline");
+                    promptCache.invalidate(cachedPrefix);
+                    String inlineBody = buildRequestBody(topic, difficulty, numberOfQuestions, allTopicStats, null,
+                            compact, cachedPromptPrefix(model, compact));
+                    sent = withRetries(() -> sendHedged(url, inlineBody, "text/event-stream", streamLatency, token), token);
                 }
+                try (TransportResponse response = sent) {
+                    state = streamResponse(response, questionCallback, startNanos, token);
+                    metrics.recordTransport(response);
+                }
+                rateLimiter.recordUsage(state.totalTokenCount);
+                metrics.recordTokens(state.promptTokenCount, state.outputTokenCount, state.totalTokenCount);
+                metrics.record(RequestMetrics.Metric.ENVELOPE_US, TimeUnit.NANOSECONDS.toMicros(state.envelopeNanos));
+                if (state.blockReason == null) router.recordLatency(model, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+                logBatchCost(model, numberOfQuestions, state.promptTokenCount, state.cachedTokenCount, state.outputTokenCount, startNanos);
+                // The stream's connection is released before any follow-up request goes out
+                finishStream(state, topic, difficulty, numberOfQuestions, allTopicStats, mode, questionCallback, callback, token);
             } catch (Exception e) {
-                Log.e(TAG, "Error during Gemini REST API call", e);
+                if (!token.tryComplete()) {
+                    reportAborted(token, callback);
+                    return;
+                }
+                Log.e(TAG, "Error during Gemini REST API stream", e);
                 callback.onError(e);
+            }
+        });
+    }
+
+    /**
+     * Sends the request once the rate limiter allows it. A 429 pauses the limiter for the server's
+     * Retry-After and the request queues again, up to {@link #MAX_THROTTLED_ATTEMPTS} times.
+     */
+    private TransportResponse postRateLimited(URL url, String jsonBody, String accept, RequestToken token) throws IOException {
+        for (int attempt = 1; ; attempt++) {
+            rateLimiter.acquire(token);
+            TransportResponse response = transport.post(url, jsonBody, accept, token);
+            if (response.getCode() != HTTP_TOO_MANY_REQUESTS) return response;
+            long retryAfterMillis;
+            try {
+                String retryDelay = null;
+                try {
+                    retryDelay = GeminiResponseParser.parse(readFully(response.getBody())).retryDelay;
+                } catch (IOException e) {
+                    Log.w(TAG, "Could not parse 429 response body", e);
+                }
+                retryAfterMillis = RateLimiter.parseRetryAfter(response.getHeader("Retry-After"), retryDelay, System.currentTimeMillis());
             } finally {
-                if (urlConnection != null) {
-                    urlConnection.disconnect();
+                response.close();
+            }
+            rateLimiter.onServerThrottled(retryAfterMillis);
+            if (attempt >= MAX_THROTTLED_ATTEMPTS) {
+                throw new QuotaExceededException("Gemini API rate limit exceeded (HTTP 429)", false, retryAfterMillis);
+            }
+        }
+    }
+
+    // One attempt: rate limited, with 5xx answers turned into TransientHttpException so they can be retried or hedged
+    private TransportResponse sendOnce(URL url, String jsonBody, String accept, RequestToken token) throws IOException {
+        TransportResponse response = postRateLimited(url, jsonBody, accept, token);
+        int code = response.getCode();
+        if (!TransientHttpException.isTransient(code)) return response;
+        String errorMsg;
+        try {
+            errorMsg = parseError(readFully(response.getBody()));
+        } finally {
+            response.close();
+        }
+        Log.w(TAG, "Gemini API transient error: " + code + " - " + errorMsg);
+        throw new TransientHttpException(code, "Gemini API Error: " + code + ". " + errorMsg);
+    }
+
+    // Hedges sendOnce once enough latencies of this endpoint are known, otherwise sends it directly
+    private TransportResponse sendHedged(URL url, String jsonBody, String accept, LatencyWindow latencies,
+                                         RequestToken token) throws IOException {
+        TransportResponse response;
+        if (!hedgingEnabled || latencies.size() < MIN_HEDGE_SAMPLES) {
+            response = sendOnce(url, jsonBody, accept, token);
+        } else {
+            long hedgeDelayMillis = Math.max(MIN_HEDGE_DELAY_MS, latencies.percentile(0.95));
+            HedgedRequest hedged = new HedgedRequest(hedgeExecutor, token);
+            response = hedged.send(attemptToken -> sendOnce(url, jsonBody, accept, attemptToken), hedgeDelayMillis);
+            if (hedged.wasHedged()) {
+                hedgedRequestCount.incrementAndGet();
+                if (hedged.hedgeWon()) hedgeWinCount.incrementAndGet();
+                NetworkLog.i(TAG, () -> "Hedged request after " + hedgeDelayMillis + "ms, " + (hedged.hedgeWon() ? "duplicate" : "original") + " won");
+            } else if (hedged.wasHedgeSkipped()) {
+                NetworkLog.d(TAG, () -> "No thread free for a hedge, request sent once");
+            }
+        }
+        latencies.record(response.getTimeToFirstByteMillis());
+        return response;
+    }
+
+    /**
+     * Runs exchange again after a jittered backoff while it fails transiently and attempts are left.
+     * Fails at once while the circuit is open; a request that still fails transiently after its retries
+     * counts as a circuit breaker failure, any answer from the backend as a success.
+     */
+    private <T> T withRetries(Exchange<T> exchange, RequestToken token) throws IOException {
+        if (!circuitBreaker.allowRequest()) {
+            probeBackendIfDue();
+            throw new CircuitOpenException();
+        }
+        RetryPolicy policy = retryPolicy;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                T result = exchange.run();
+                circuitBreaker.recordSuccess();
+                return result;
+            } catch (IOException e) {
+                if (token.isAborted()) throw e;
+                if (!policy.shouldRetry(e, attempt)) {
+                    if (policy.isRetryable(e)) circuitBreaker.recordFailure();
+                    throw e;
                 }
+                long delayMillis = policy.backoffMillis(attempt);
+                retryCount.incrementAndGet();
+                Log.w(TAG, "Attempt " + attempt + " failed (" + e + "), retrying in " + delayMillis + "ms");
+                sleepUnlessAborted(delayMillis, token);
+            }
+        }
+    }
+
+    private static void sleepUnlessAborted(long millis, RequestToken token) throws InterruptedIOException {
+        CountDownLatch aborted = new CountDownLatch(1);
+        Closeable wakeUp = aborted::countDown;
+        if (!token.addAbortAction(wakeUp)) token.throwIfAborted();
+        try {
+            aborted.await(millis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted during retry backoff");
+        } finally {
+            token.removeAbortAction(wakeUp);
+        }
+        token.throwIfAborted();
+    }
+
+    // Name of the cached static prompt prefix for model, or null to send it inline; starts its upload when due
+    @Nullable
+    private String cachedPromptPrefix(String model, boolean compact) {
+        if (!promptCaching) return null;
+        String prefix = staticInstruction(compact);
+        String name = promptCache.lookup(model, prefix);
+        if (promptCache.tryStartCreate(model, prefix)) uploadPromptPrefix(model, prefix);
+        return name;
+    }
+
+    private void uploadPromptPrefix(String model, String prefix) {
+        scheduler.submit(RequestScheduler.Priority.BACKGROUND, false, token -> {
+            long startNanos = System.nanoTime();
+            try {
+                int modelsPath = baseUrl.lastIndexOf("models/");
+                String apiRoot = modelsPath >= 0 ? baseUrl.substring(0, modelsPath) : baseUrl;
+                URL url = new URL(apiRoot + CACHED_CONTENTS_PATH + "?key=" + apiKey);
+                try (TransportResponse response = sendOnce(url, promptCache.createRequestBody(model, prefix), "application/json", token)) {
+                    String body = readFully(response.getBody());
+                    if (response.getCode() == HttpURLConnection.HTTP_OK) {
+                        promptCache.onCreated(model, prefix, body, startNanos);
+                    } else {
+                        Log.w(TAG, "Cached content refused: " + response.getCode() + " - " + parseError(body));
+                        promptCache.onCreateFailed(model, prefix);
+                    }
+                }
+            } catch (IOException e) {
+                Log.w(TAG, "Cached content upload failed", e);
+                promptCache.onCreateFailed(model, prefix);
             }
         });
     }
 
-    private String buildRequestBody(String topic, String difficulty, int numberOfQuestions, @Nullable Map<String, Map<String, String>> allTopicStats) {
+    // The API answers a request naming an expired or deleted cached content with one of these
+    private static boolean isCachedPrefixErrorCode(int code) {
+        return code == HttpURLConnection.HTTP_BAD_REQUEST || code == HttpURLConnection.HTTP_FORBIDDEN
+                || code == HttpURLConnection.HTTP_NOT_FOUND;
+    }
+
+    /**
+     * True if the error is about the cached content the request named, e.g. 403 "CachedContent not found (or
+     * permission denied)". Other errors with the same codes, such as an invalid argument, are not retried inline.
+     */
+    static boolean isCachedPrefixRejected(int code, @Nullable String errorBody) {
+        if (!isCachedPrefixErrorCode(code) || errorBody == null || errorBody.isEmpty()) return false;
+        String message;
+        try {
+            message = GeminiResponseParser.parse(errorBody).errorMessage;
+        } catch (IOException e) {
+            return false;
+        }
+        if (message == null) return false;
+        String lowerCase = message.toLowerCase(Locale.US);
+        return lowerCase.contains("cachedcontent") || lowerCase.contains("cached content");
+    }
+
+    private Exception apiError(String label, int code, @Nullable String errorBody) {
+        String errorMsg = parseError(errorBody);
+        Log.e(TAG, label + ": " + code + " - " + errorMsg);
+        return new Exception("Gemini API Error: " + code + ". " + errorMsg);
+    }
+
+    // Prompt and output tokens and end-to-end time of one batch, to compare prompt contexts and response formats
+    private void logBatchCost(String model, int numberOfQuestions, int promptTokens, int cachedTokens, int outputTokens,
+                              long startNanos) {
+        long elapsedNanos = System.nanoTime() - startNanos;
+        NetworkLog.i(TAG, () -> String.format(Locale.US, "Batch of %d questions on %s (%s format): %d prompt tokens (%d cached), %d output tokens, %dms",
+                numberOfQuestions, model, compactResponses ? "compact" : "verbose", promptTokens, cachedTokens, outputTokens,
+                TimeUnit.NANOSECONDS.toMillis(elapsedNanos)));
+    }
+
+    /** Output token budget for a batch of {@code numberOfQuestions} in the given format. */
+    static int maxOutputTokens(int numberOfQuestions, boolean compact) {
+        int perQuestion = compact ? COMPACT_TOKENS_PER_QUESTION : VERBOSE_TOKENS_PER_QUESTION;
+        return Math.min(MAX_OUTPUT_TOKENS, OUTPUT_TOKENS_OVERHEAD + Math.max(1, numberOfQuestions) * perQuestion);
+    }
+
+    private static String questionKey(QuizQuestion question) {
+        return question.getQuestion().toLowerCase(Locale.US);
+    }
+
+    // True if the seen question filter says the user already answered this question; counted as a repeat
+    private boolean isRepeat(QuizQuestion question) {
+        SeenQuestionFilter filter = seenQuestionFilter;
+        if (filter == null || !filter.mightHaveSeen(question)) return false;
+        repeatedQuestionCount.incrementAndGet();
+        NetworkLog.d(TAG, () -> "Dropping repeated question: " + question.getQuestion());
+        return true;
+    }
+
+    /** Number of question requests answered by sharing an identical in-flight request instead of sending a new one. */
+    public int getCoalescedRequestCount() {
+        return coalescer.getCoalescedRequestCount();
+    }
+
+    /** Number of generated questions dropped because the user had probably seen them before. */
+    public int getRepeatedQuestionCount() {
+        return repeatedQuestionCount.get();
+    }
+
+    /** Number of complete questions kept from responses cut off by MAX_TOKENS, instead of retrying the batch. */
+    public int getSalvagedQuestionCount() {
+        return salvagedQuestionCount.get();
+    }
+
+    /** Number of invalid generated questions replaced through a follow-up request so far. */
+    public int getRepairedQuestionCount() {
+        return repairedQuestionCount.get();
+    }
+
+    /** Number of requests sent again after a transient failure. */
+    public int getRetryCount() {
+        return retryCount.get();
+    }
+
+    /** Number of requests for which a hedge was sent, and how often the hedge answered first. */
+    public int getHedgedRequestCount() {
+        return hedgedRequestCount.get();
+    }
+
+    public int getHedgeWinCount() {
+        return hedgeWinCount.get();
+    }
+
+    private StreamState streamResponse(TransportResponse response, QuestionStreamCallback questionCallback,
+                                       long startNanos, RequestToken token) throws Exception {
+        int responseCode = response.getCode();
+        NetworkLog.i(TAG, () -> "Gemini API Stream Response Code: " + responseCode + " (TTFB " + response.getTimeToFirstByteMillis() + "ms)");
+
+        if (responseCode != HttpURLConnection.HTTP_OK || response.getBody() == null) {
+            throw apiError("Gemini API Stream Error", responseCode, readFully(response.getBody()));
+        }
+
+        JsonArrayStreamSplitter splitter = new JsonArrayStreamSplitter();
+        StreamState state = new StreamState(startNanos);
+
+        // The body stream is closed by the TransportResponse, which may return the connection to the pool
+        BufferedReader reader = new BufferedReader(new InputStreamReader(response.getBody(), StandardCharsets.UTF_8));
+        StringBuilder eventData = new StringBuilder();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            token.throwIfAborted(); // Nobody is waiting for the rest of the stream any more
+            if (line.isEmpty()) { // Blank line terminates an SSE event
+                handleStreamEvent(eventData, state, splitter, questionCallback);
+                if (state.blockReason != null) break;
+            } else if (line.startsWith("data:")) {
+                if (eventData.length() > 0) eventData.append('\n');
+                eventData.append(line.substring(line.startsWith("data: ") ? 6 : 5));
+            }
+            // Other SSE fields (event:, id:, comments) are not used by the Gemini stream
+        }
+        handleStreamEvent(eventData, state, splitter, questionCallback); // Stream may end without a trailing blank line
+        return state;
+    }
+
+    // Tops up rejected questions, then reports the batch of every delivered question
+    private void finishStream(StreamState state, String topic, String difficulty, int numberOfQuestions,
+                              @Nullable Map<String, Map<String, String>> allTopicStats, ModelRouter.Mode mode,
+                              QuestionStreamCallback questionCallback, GeminiCallback callback, RequestToken token) {
+        if (!token.tryComplete()) {
+            reportAborted(token, callback);
+            return;
+        }
+        if (state.blockReason != null) {
+            Log.w(TAG, "Streamed content blocked or stopped. Reason: " + state.blockReason);
+            callback.onError(new Exception("Gemini stream stopped: " + state.blockReason + ". The response might be blocked."));
+            return;
+        }
+        int missing = MAX_TOKENS_REASON.equals(state.finishReason)
+                ? numberOfQuestions - state.questionCount // Every question closed before the cut-off was already delivered
+                : Math.min(state.timings.getRejectedCount() + state.repeats.size(), numberOfQuestions - state.questionCount);
+        if (MAX_TOKENS_REASON.equals(state.finishReason)) {
+            salvagedQuestionCount.addAndGet(state.questionCount);
+            Log.w(TAG, "Stream hit MAX_TOKENS after " + state.questionCount + " complete question(s); topping up " + missing);
+        }
+        if (missing > 0) {
+            for (QuizQuestion replacement : requestReplacements(topic, difficulty, missing, allTopicStats, mode, state.questions, token)) {
+                deliverQuestion(replacement, state, questionCallback);
+            }
+        }
+        if (state.questionCount == 0) { // Only repeats: a quiz of seen questions beats none
+            for (QuizQuestion repeat : state.repeats) deliverQuestion(repeat, state, questionCallback);
+        }
+        if (state.questionCount == 0) {
+            Log.e(TAG, "Stream finished without any complete question. Text: " + NetworkLog.preview(state.textHead.toString()));
+            callback.onError(new Exception("Failed to extract valid content from API stream."));
+        } else {
+            NetworkLog.i(TAG, () -> "Stream finished with " + state.questionCount + " questions. Finish reason: " + state.finishReason
+                    + ". Pipeline: " + state.timings);
+            metrics.record(RequestMetrics.Metric.DECODE_US, decodeMicros(state.timings));
+            metrics.record(RequestMetrics.Metric.BATCH_MS, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - state.startNanos));
+            callback.onSuccess(Collections.unmodifiableList(new ArrayList<>(state.questions)));
+        }
+    }
+
+    private static class StreamState {
+        final long startNanos;
+        int questionCount = 0;
+        final List<QuizQuestion> questions = new ArrayList<>();
+        final List<QuizQuestion> repeats = new ArrayList<>(); // Held back by the seen question filter
+        final StringBuilder textHead = new StringBuilder(); // Only what an error log can show of the generated text
+        final QuestionBatchPipeline.StageTimings timings = new QuestionBatchPipeline.StageTimings();
+        @Nullable String finishReason;
+        @Nullable String blockReason;
+        int totalTokenCount;
+        int promptTokenCount;
+        int cachedTokenCount;
+        int outputTokenCount;
+        long envelopeNanos; // Parsing SSE chunks, excluding the wait for them
+
+        StreamState(long startNanos) {
+            this.startNanos = startNanos;
+        }
+    }
+
+    private void handleStreamEvent(StringBuilder eventData, StreamState state, JsonArrayStreamSplitter splitter,
+                                   QuestionStreamCallback questionCallback) {
+        if (eventData.length() == 0) return;
+        String data = eventData.toString();
+        eventData.setLength(0);
+        try {
+            long parseStartNanos = System.nanoTime();
+            GeminiResponseParser.Envelope chunk = GeminiResponseParser.parse(data);
+            state.envelopeNanos += System.nanoTime() - parseStartNanos;
+            if (chunk.totalTokenCount > 0) state.totalTokenCount = chunk.totalTokenCount; // Running total, not per chunk
+            if (chunk.promptTokenCount > 0) state.promptTokenCount = chunk.promptTokenCount;
+            if (chunk.cachedContentTokenCount > 0) state.cachedTokenCount = chunk.cachedContentTokenCount;
+            if (chunk.candidatesTokenCount > 0) state.outputTokenCount = chunk.candidatesTokenCount;
+            if (chunk.blockReason != null) {
+                state.blockReason = chunk.blockReason;
+                return;
+            }
+            if (chunk.text != null) {
+                int room = NetworkLog.PREVIEW_CHARS - state.textHead.length();
+                if (room > 0) state.textHead.append(chunk.text, 0, Math.min(room, chunk.text.length()));
+                List<String> completed = splitter.feed(chunk.text);
+                for (String questionJson : completed) {
+                    emitStreamedQuestion(questionJson, state, questionCallback);
+                }
+            }
+            if (chunk.finishReason != null) {
+                state.finishReason = chunk.finishReason;
+                if (!"STOP".equals(state.finishReason) && !MAX_TOKENS_REASON.equals(state.finishReason)) {
+                    state.blockReason = state.finishReason; // SAFETY, RECITATION, ... end the stream
+                }
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Skipping malformed SSE event: " + NetworkLog.preview(data), e);
+        }
+    }
+
+    // Decoding, validation and normalization happen here on the network thread; callers only see ready questions
+    private void emitStreamedQuestion(String questionJson, StreamState state, QuestionStreamCallback questionCallback) {
+        QuizQuestion question = pipeline.processSingle(questionJson, state.timings);
+        if (question == null) return;
+        if (isRepeat(question)) {
+            state.repeats.add(question);
+        } else {
+            deliverQuestion(question, state, questionCallback);
+        }
+    }
+
+    private void deliverQuestion(QuizQuestion question, StreamState state, QuestionStreamCallback questionCallback) {
+        if (state.questionCount == 0) {
+            metrics.record(RequestMetrics.Metric.FIRST_QUESTION_MS, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - state.startNanos));
+        }
+        state.questions.add(question);
+        questionCallback.onQuestion(question, state.questionCount);
+        state.questionCount++;
+    }
+
+    private QuestionBatchPipeline.Result processBatch(@Nullable String batchJson) {
+        QuestionBatchPipeline.Result result = pipeline.process(batchJson);
+        metrics.record(RequestMetrics.Metric.DECODE_US, decodeMicros(result.getTimings()));
+        return result;
+    }
+
+    private static long decodeMicros(QuestionBatchPipeline.StageTimings timings) {
+        return timings.getDecodeMicros() + timings.getValidateMicros() + timings.getNormalizeMicros();
+    }
+
+    // A dropped connection mid-body is rethrown so the request can be retried; malformed JSON is not
+    @Nullable
+    private GeminiResponseParser.Envelope parseEnvelope(InputStream body) throws IOException {
+        try {
+            return GeminiResponseParser.parse(body);
+        } catch (IOException e) {
+            if (retryPolicy.isRetryable(e)) throw e;
+            Log.e(TAG, "Error parsing Gemini JSON response envelope", e);
+            return null;
+        }
+    }
+
+    // Leaves closing the stream to the owning TransportResponse
+    private static String readFully(@Nullable InputStream inputStream) throws IOException {
+        if (inputStream == null) return "";
+        StringBuilder response = new StringBuilder();
+        InputStreamReader reader = new InputStreamReader(inputStream, StandardCharsets.UTF_8);
+        char[] buffer = new char[2048];
+        int read;
+        while ((read = reader.read(buffer)) != -1) {
+            response.append(buffer, 0, read);
+        }
+        return response.toString();
+    }
+
+    /** The static part of every prompt in the given format: what {@link PromptCache} uploads. */
+    static String staticInstruction(boolean compact) {
+        return TAILORING_INSTRUCTION + (compact ? CompactQuestionFormat.INSTRUCTION : VERBOSE_FORMAT_INSTRUCTION);
+    }
+
+    // With a cachedPrefix the static instruction is referenced by name instead of being sent inline
+    private String buildRequestBody(String topic, String difficulty, int numberOfQuestions,
+                                    @Nullable Map<String, Map<String, String>> allTopicStats, @Nullable String extraInstruction,
+                                    boolean compact, @Nullable String cachedPrefix) {
         JsonObject root = new JsonObject();
         JsonArray contentsArray = new JsonArray();
         JsonObject contentObject = new JsonObject();
         JsonArray partsArray = new JsonArray();
         JsonObject partObject = new JsonObject();
 
-        StringBuilder performanceContextSb = new StringBuilder();
-        if (allTopicStats != null && !allTopicStats.isEmpty()) {
-            performanceContextSb.append(" User's current performance in various topics (correct answers:total questions): ");
-            int count = 0;
-            for (Map.Entry<String, Map<String, String>> entry : allTopicStats.entrySet()) {
-                if (count >= 5) break; // Limit context to avoid overly long prompts
-                String topicName = entry.getKey();
-                Map<String, String> stats = entry.getValue();
-                performanceContextSb.append(String.format(Locale.US, "%s (%s:%s), ", topicName, stats.get("correct"), stats.get("total")));
-                count++;
-            }
-            if (performanceContextSb.length() > 2) { // Remove trailing comma and space
-                performanceContextSb.setLength(performanceContextSb.length() - 2);
+        String performanceContext = performanceContextBuilder.build(topic, allTopicStats); // Cached until the stats change
+
+        // A handful of recently answered questions; the seen question filter catches any other repeat afterwards
+        SeenQuestionFilter filter = seenQuestionFilter;
+        List<String> avoid = filter != null ? filter.getAvoidHints(topic) : Collections.<String>emptyList();
+        StringBuilder avoidSb = new StringBuilder();
+        if (!avoid.isEmpty()) {
+            avoidSb.append(" The user has already answered these questions, do not repeat them: ");
+            for (String text : avoid) {
+                avoidSb.append(gson.toJson(text)).append("; ");
             }
-            performanceContextSb.append(".");
+            avoidSb.setLength(avoidSb.length() - 2);
+            avoidSb.append(".");
         }
-        String performanceContext = performanceContextSb.toString();
 
         @SuppressLint("DefaultLocale") String prompt = String.format(
                 "Generate exactly %d multiple-choice quiz questions about the topic '%s'. " +
-                        "The difficulty level should be '%s'.%s" + // Performance context inserted here
-                        " If performance data is provided, try to tailor questions slightly, perhaps by focusing on sub-topics where the user has fewer attempts or lower accuracy, or by slightly adjusting difficulty if the user is performing very well or poorly on '%s'." +
-                        " Format the output STRICTLY as a valid JSON array where each object has the following keys: " +
-                        "\"question\" (string: the question text), " +
-                        "\"options\" (JSON array of 4 strings: the answer choices), and " +
-                        "\"correctAnswerIndex\" (integer: the 0-based index of the correct answer within the \"options\" array). " +
-                        "Do not include any introductory text, explanations, markdown formatting, or anything else outside the single JSON array structure. Only output the JSON array.",
-                numberOfQuestions, topic, difficulty, performanceContext, topic // topic repeated for tailoring instruction
+                        "The difficulty level should be '%s'.%s%s%s", // Performance context, avoid list and chunk instruction inserted here
+                numberOfQuestions, topic, difficulty, performanceContext, avoidSb, extraInstruction != null ? extraInstruction : ""
         );
+        if (cachedPrefix != null) {
+            root.addProperty("cachedContent", cachedPrefix);
+        } else {
+            prompt += staticInstruction(compact);
+        }
 
         partObject.addProperty("text", prompt);
         partsArray.add(partObject);
@@ -170,9 +1178,12 @@ public class GeminiApiService {
         generationConfig.addProperty("temperature", 0.8); // Slightly higher for more variety
         generationConfig.addProperty("topK", 1);
         generationConfig.addProperty("topP", 0.95); // Adjusted topP
-        generationConfig.addProperty("maxOutputTokens", 4096); // Increased for potentially longer JSON
+        generationConfig.addProperty("maxOutputTokens", maxOutputTokens(numberOfQuestions, compact)); // Sized to the batch
         // Adding response_mime_type for explicit JSON output
         generationConfig.addProperty("response_mime_type", "application/json");
+        if (compact) {
+            generationConfig.add("response_schema", CompactQuestionFormat.responseSchema());
+        }
 
         root.add("generationConfig", generationConfig);
 
@@ -193,101 +1204,91 @@ public class GeminiApiService {
     }
 
     @Nullable
-    private String extractGeneratedJson(String responseBody) {
-        if (responseBody == null || responseBody.isEmpty()) {
-            Log.w(TAG, "Attempted to extract JSON from empty/null response body.");
+    private String extractGeneratedJson(GeminiResponseParser.Envelope envelope) {
+        if (envelope.blockReason != null) {
+            Log.w(TAG, "Content blocked by API. Reason: " + envelope.blockReason);
+            if (envelope.safetyRatings != null) {
+                Log.w(TAG, "Safety Ratings: " + envelope.safetyRatings);
+            }
+            return null; // Blocked content
+        }
+        if (!envelope.hasCandidates) {
+            Log.w(TAG, "Could not find candidates in the Gemini response.");
             return null;
         }
-        try {
-            JsonObject jsonResponse = JsonParser.parseString(responseBody).getAsJsonObject();
-
-            if (jsonResponse.has("promptFeedback")) {
-                JsonObject feedback = jsonResponse.getAsJsonObject("promptFeedback");
-                if (feedback.has("blockReason")) {
-                    String reason = feedback.get("blockReason").getAsString();
-                    Log.w(TAG, "Content blocked by API. Reason: " + reason);
-                    if (feedback.has("safetyRatings")) {
-                        Log.w(TAG, "Safety Ratings: " + feedback.getAsJsonArray("safetyRatings").toString());
-                    }
-                    return null; // Blocked content
-                }
-            }
-
-            if (jsonResponse.has("candidates")) {
-                JsonArray candidates = jsonResponse.getAsJsonArray("candidates");
-                if (candidates != null && !candidates.isEmpty()) {
-                    JsonObject firstCandidate = candidates.get(0).getAsJsonObject();
-                    if (firstCandidate.has("finishReason") && !"STOP".equals(firstCandidate.get("finishReason").getAsString())) {
-                        String reason = firstCandidate.get("finishReason").getAsString();
-                        Log.w(TAG, "Candidate finish reason was not STOP: " + reason + ". This might indicate an issue or blocked content.");
-                        if ("SAFETY".equals(reason) && firstCandidate.has("safetyRatings")) {
-                            Log.w(TAG, "Safety Ratings for non-STOP: " + firstCandidate.getAsJsonArray("safetyRatings").toString());
-                        }
-                        // If the finish reason is due to safety or other errors, we might not have valid content.
-                        if (!"STOP".equals(reason) && !"MAX_TOKENS".equals(reason)) return null; // MAX_TOKENS might still have partial valid JSON
-                    }
 
-                    if (firstCandidate.has("content")) {
-                        JsonObject content = firstCandidate.getAsJsonObject("content");
-                        if (content.has("parts")) {
-                            JsonArray parts = content.getAsJsonArray("parts");
-                            if (parts != null && !parts.isEmpty()) {
-                                JsonObject firstPart = parts.get(0).getAsJsonObject();
-                                if (firstPart.has("text")) {
-                                    String rawText = firstPart.get("text").getAsString();
-                                    Log.d(TAG, "Raw text from Gemini part: " + rawText);
-
-                                    // The API should directly return JSON if response_mime_type is set.
-                                    // No need to strip markdown if API respects response_mime_type.
-                                    if (rawText.trim().startsWith("[") && rawText.trim().endsWith("]")) {
-                                        // Basic validation that it looks like a JSON array.
-                                        // More robust validation might involve trying to parse it here.
-                                        return rawText.trim();
-                                    } else {
-                                        Log.w(TAG, "Expected direct JSON array from Gemini due to response_mime_type, but received: " + rawText);
-                                        // Fallback to try stripping markdown just in case
-                                        String cleanedJson = rawText.trim();
-                                        if (cleanedJson.startsWith("```json")) {
-                                            cleanedJson = cleanedJson.substring(7).trim();
-                                        } else if (cleanedJson.startsWith("```")) {
-                                            cleanedJson = cleanedJson.substring(3).trim();
-                                        }
-                                        if (cleanedJson.endsWith("```")) {
-                                            cleanedJson = cleanedJson.substring(0, cleanedJson.length() - 3).trim();
-                                        }
-                                        if (cleanedJson.startsWith("[") && cleanedJson.endsWith("]")) {
-                                            return cleanedJson;
-                                        }
-                                        Log.e(TAG, "Fallback markdown stripping also failed to yield a JSON array.");
-                                        return null;
-                                    }
-                                }
-                            }
-                        }
-                    }
-                }
+        String reason = envelope.finishReason;
+        if (reason != null && !"STOP".equals(reason)) {
+            Log.w(TAG, "Candidate finish reason was not STOP: " + reason + ". This might indicate an issue or blocked content.");
+            if ("SAFETY".equals(reason) && envelope.safetyRatings != null) {
+                Log.w(TAG, "Safety Ratings for non-STOP: " + envelope.safetyRatings);
             }
-            Log.w(TAG, "Could not find generated text in the expected JSON structure. Full response: " + responseBody);
+            // If the finish reason is due to safety or other errors, we might not have valid content.
+            if (!MAX_TOKENS_REASON.equals(reason)) return null; // MAX_TOKENS might still have partial valid JSON
+        }
+
+        String rawText = envelope.text;
+        if (rawText == null) {
+            Log.w(TAG, "Could not find generated text in the first candidate.");
             return null;
-        } catch (JsonSyntaxException | IllegalStateException | ClassCastException e) {
-            Log.e(TAG, "Error parsing Gemini JSON response in extractGeneratedJson. Response body: " + responseBody, e);
+        }
+        NetworkLog.body(TAG, "Raw text from Gemini part", rawText);
+        if (MAX_TOKENS_REASON.equals(reason)) return salvageCompleteElements(rawText);
+
+        // The API should directly return JSON if response_mime_type is set.
+        // No need to strip markdown if API respects response_mime_type.
+        String trimmed = rawText.trim();
+        if (trimmed.startsWith("[") && trimmed.endsWith("]")) {
+            // Basic validation that it looks like a JSON array.
+            return trimmed;
+        }
+        Log.w(TAG, "Expected direct JSON array from Gemini due to response_mime_type, but received: " + NetworkLog.preview(rawText));
+        // Fallback to try stripping markdown just in case
+        String cleanedJson = trimmed;
+        if (cleanedJson.startsWith("```json")) {
+            cleanedJson = cleanedJson.substring(7).trim();
+        } else if (cleanedJson.startsWith("```")) {
+            cleanedJson = cleanedJson.substring(3).trim();
+        }
+        if (cleanedJson.endsWith("```")) {
+            cleanedJson = cleanedJson.substring(0, cleanedJson.length() - 3).trim();
+        }
+        if (cleanedJson.startsWith("[") && cleanedJson.endsWith("]")) {
+            return cleanedJson;
+        }
+        Log.e(TAG, "Fallback markdown stripping also failed to yield a JSON array.");
+        return null;
+    }
+
+    /**
+     * Rebuilds a truncated JSON array from the elements that closed before the cut-off, e.g.
+     * {@code [{...}, {...}, {"question": "Wh} -> [{...}, {...}]}. Null if not even one element is complete.
+     */
+    @Nullable
+    private String salvageCompleteElements(String truncatedText) {
+        List<String> elements = new JsonArrayStreamSplitter().feed(truncatedText);
+        if (elements.isEmpty()) {
+            Log.e(TAG, "Truncated response did not contain a single complete question.");
             return null;
         }
+        salvagedQuestionCount.addAndGet(elements.size());
+        Log.w(TAG, "Response hit MAX_TOKENS; salvaged " + elements.size() + " complete question(s)");
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < elements.size(); i++) {
+            if (i > 0) json.append(',');
+            json.append(elements.get(i));
+        }
+        return json.append(']').toString();
     }
 
     private String parseError(String errorBody) {
         if (errorBody == null || errorBody.isEmpty()) return "Unknown error (empty error body)";
         try {
-            JsonObject jsonError = JsonParser.parseString(errorBody).getAsJsonObject();
-            if (jsonError.has("error")) {
-                JsonObject errorObj = jsonError.getAsJsonObject("error");
-                if (errorObj.has("message")) {
-                    return errorObj.get("message").getAsString();
-                }
-            }
-        } catch (Exception e) {
-            Log.w(TAG, "Could not parse error JSON: " + errorBody, e);
+            String message = GeminiResponseParser.parse(errorBody).errorMessage;
+            if (message != null) return message;
+        } catch (IOException e) {
+            Log.w(TAG, "Could not parse error JSON: " + NetworkLog.preview(errorBody), e);
         }
         return errorBody;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,272 @@
+package com.shaivites.quizion.networking;
+
+import androidx.annotation.Nullable;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Single-pass streaming parser for Gemini {@code generateContent} envelopes (and SSE chunks, which use
+ * the same shape). Walks the response with a {@link JsonReader} and keeps only what the app needs:
+ * the first candidate's text, its finish reason, block reasons and safety ratings, token usage, and
+ * API error messages with their retry delay. Everything else is skipped without building a tree or buffering the body as a String.
+ * The gain is memory, not speed: on a large response the heap grows by about a quarter of what the tree
+ * path needs, while parse time is about the same (see GeminiResponseParserTest).
+ */
+final class GeminiResponseParser {
+
+    private GeminiResponseParser() {
+    }
+
+    /** The parts of a response envelope the app cares about. */
+    static final class Envelope {
+        /** Concatenated text of the first candidate's parts, null if it had none. */
+        @Nullable String text;
+        @Nullable String finishReason;
+        @Nullable String blockReason;
+        /** Compact "CATEGORY=PROBABILITY, ..." summary of the safety ratings, for logging. */
+        @Nullable String safetyRatings;
+        @Nullable String errorMessage;
+        /** Server-suggested wait from the error's RetryInfo detail, e.g. "37s". */
+        @Nullable String retryDelay;
+        boolean hasCandidates;
+        int promptTokenCount;
+        /** Part of promptTokenCount served from cached content. */
+        int cachedContentTokenCount;
+        int candidatesTokenCount;
+        /** Tokens billed for the request; in a stream, the running total up to this chunk. */
+        int totalTokenCount;
+    }
+
+    static Envelope parse(InputStream inputStream) throws IOException {
+        return parse(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+    }
+
+    static Envelope parse(String json) throws IOException {
+        return parse(new StringReader(json));
+    }
+
+    /** Parses one envelope from {@code reader}. Does not close the reader. */
+    static Envelope parse(Reader reader) throws IOException {
+        Envelope envelope = new Envelope();
+        JsonReader jsonReader = new JsonReader(reader);
+        try {
+            jsonReader.beginObject();
+            while (jsonReader.hasNext()) {
+                switch (jsonReader.nextName()) {
+                    case "candidates":
+                        readCandidates(jsonReader, envelope);
+                        break;
+                    case "promptFeedback":
+                        readPromptFeedback(jsonReader, envelope);
+                        break;
+                    case "error":
+                        readError(jsonReader, envelope);
+                        break;
+                    case "usageMetadata":
+                        readUsageMetadata(jsonReader, envelope);
+                        break;
+                    default:
+                        jsonReader.skipValue();
+                }
+            }
+            jsonReader.endObject();
+            if (envelope.totalTokenCount == 0) {
+                envelope.totalTokenCount = envelope.promptTokenCount + envelope.candidatesTokenCount;
+            }
+        } catch (IllegalStateException | NumberFormatException e) {
+            throw new IOException("Malformed Gemini response envelope", e);
+        }
+        return envelope;
+    }
+
+    private static void readCandidates(JsonReader reader, Envelope envelope) throws IOException {
+        if (skipIfNull(reader)) return;
+        reader.beginArray();
+        boolean first = true;
+        while (reader.hasNext()) {
+            if (!first) {
+                reader.skipValue(); // Only the first candidate is used
+                continue;
+            }
+            first = false;
+            envelope.hasCandidates = true;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "content":
+                        readContent(reader, envelope);
+                        break;
+                    case "finishReason":
+                        envelope.finishReason = nextStringOrNull(reader);
+                        break;
+                    case "safetyRatings":
+                        envelope.safetyRatings = readSafetyRatings(reader);
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+        reader.endArray();
+    }
+
+    private static void readContent(JsonReader reader, Envelope envelope) throws IOException {
+        if (skipIfNull(reader)) return;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (!"parts".equals(reader.nextName())) {
+                reader.skipValue();
+                continue;
+            }
+            if (skipIfNull(reader)) continue;
+            reader.beginArray();
+            while (reader.hasNext()) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    if ("text".equals(reader.nextName())) {
+                        String text = nextStringOrNull(reader);
+                        if (text != null) envelope.text = envelope.text == null ? text : envelope.text + text;
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            }
+            reader.endArray();
+        }
+        reader.endObject();
+    }
+
+    private static void readPromptFeedback(JsonReader reader, Envelope envelope) throws IOException {
+        if (skipIfNull(reader)) return;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "blockReason":
+                    envelope.blockReason = nextStringOrNull(reader);
+                    break;
+                case "safetyRatings":
+                    envelope.safetyRatings = readSafetyRatings(reader);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    private static void readError(JsonReader reader, Envelope envelope) throws IOException {
+        if (skipIfNull(reader)) return;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "message":
+                    envelope.errorMessage = nextStringOrNull(reader);
+                    break;
+                case "details":
+                    readErrorDetails(reader, envelope);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    // Quota errors carry a google.rpc.RetryInfo detail with the delay the client should wait
+    private static void readErrorDetails(JsonReader reader, Envelope envelope) throws IOException {
+        if (skipIfNull(reader)) return;
+        reader.beginArray();
+        while (reader.hasNext()) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if ("retryDelay".equals(reader.nextName())) {
+                    envelope.retryDelay = nextStringOrNull(reader);
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+        reader.endArray();
+    }
+
+    private static void readUsageMetadata(JsonReader reader, Envelope envelope) throws IOException {
+        if (skipIfNull(reader)) return;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "promptTokenCount":
+                    envelope.promptTokenCount = reader.nextInt();
+                    break;
+                case "cachedContentTokenCount":
+                    envelope.cachedContentTokenCount = reader.nextInt();
+                    break;
+                case "candidatesTokenCount":
+                    envelope.candidatesTokenCount = reader.nextInt();
+                    break;
+                case "totalTokenCount":
+                    envelope.totalTokenCount = reader.nextInt();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    @Nullable
+    private static String readSafetyRatings(JsonReader reader) throws IOException {
+        if (skipIfNull(reader)) return null;
+        StringBuilder summary = new StringBuilder();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            String category = null;
+            String probability = null;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "category":
+                        category = nextStringOrNull(reader);
+                        break;
+                    case "probability":
+                        probability = nextStringOrNull(reader);
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+            if (summary.length() > 0) summary.append(", ");
+            summary.append(category).append('=').append(probability);
+        }
+        reader.endArray();
+        return summary.toString();
+    }
+
+    @Nullable
+    private static String nextStringOrNull(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        return reader.nextString();
+    }
+
+    private static boolean skipIfNull(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return true;
+        }
+        return false;
+    }
+}
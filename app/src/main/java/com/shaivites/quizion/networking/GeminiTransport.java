@@ -0,0 +1,31 @@
+package com.shaivites.quizion.networking;
+
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.net.URL;
+
+/**
+ * Transport used by {@link GeminiApiService} to talk to the Gemini REST endpoints.
+ * Implementations decide how connections are opened, reused and pre-warmed.
+ */
+public interface GeminiTransport {
+
+    /**
+     * Sends a JSON POST and returns once the response status and headers have arrived.
+     * The caller must close the returned response so the connection can be released or reused.
+     */
+    TransportResponse post(URL url, String jsonBody, String accept) throws IOException;
+
+    /**
+     * Like {@link #post(URL, String, String)}, but registers the live connection with {@code token} so
+     * cancelling or preempting the request aborts it. Throws {@link java.io.InterruptedIOException} once aborted.
+     */
+    TransportResponse post(URL url, String jsonBody, String accept, @Nullable RequestToken token) throws IOException;
+
+    /**
+     * Speculatively opens a connection to the host of {@code url} so the next request skips
+     * DNS, TCP and TLS setup. Blocking; call it from a background thread.
+     */
+    void warmUp(URL url);
+}
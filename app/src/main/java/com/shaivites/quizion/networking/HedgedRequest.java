@@ -0,0 +1,164 @@
+package com.shaivites.quizion.networking;
+
+import androidx.annotation.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends a request and, if it has produced no response after a delay, a duplicate ("hedge") of it.
+ * Whichever answers first wins and the other attempt is aborted through its own {@link RequestToken}.
+ * Each attempt's token is linked to the request's token, so cancelling the request aborts both.
+ * If the executor rejects an attempt, the request goes without the hedge: the original is then sent on the
+ * calling thread, or left to finish alone. Single use.
+ */
+final class HedgedRequest {
+
+    private static final long WAIT_SLICE_MS = 100;
+
+    interface Attempt {
+        TransportResponse send(RequestToken attemptToken) throws IOException;
+    }
+
+    private final Executor executor;
+    private final RequestToken requestToken;
+
+    // Guarded by this
+    private final List<RequestToken> attemptTokens = new ArrayList<>();
+    private final List<Closeable> links = new ArrayList<>();
+    @Nullable private TransportResponse winner;
+    private int winnerIndex = -1;
+    @Nullable private IOException firstError;
+    private int pending = 0;
+    private boolean decided = false;
+    private boolean hedgeSkipped = false;
+
+    HedgedRequest(Executor executor, RequestToken requestToken) {
+        this.executor = executor;
+        this.requestToken = requestToken;
+    }
+
+    /** Blocks until one attempt answered, or both failed, in which case the first failure is thrown. */
+    TransportResponse send(Attempt attempt, long hedgeDelayMillis) throws IOException {
+        if (!launch(attempt)) {
+            synchronized (this) {
+                hedgeSkipped = true;
+            }
+            return attempt.send(requestToken);
+        }
+        TransportResponse response;
+        synchronized (this) {
+            long hedgeAtNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(hedgeDelayMillis);
+            try {
+                while (winner == null && pending > 0 && !requestToken.isAborted()) {
+                    boolean hedgeDue = attemptTokens.size() == 1 && !hedgeSkipped;
+                    long untilHedge = hedgeAtNanos - System.nanoTime();
+                    if (hedgeDue && untilHedge <= 0) {
+                        if (!launch(attempt)) hedgeSkipped = true;
+                        continue;
+                    }
+                    long waitMillis = hedgeDue ? TimeUnit.NANOSECONDS.toMillis(untilHedge) : WAIT_SLICE_MS;
+                    wait(Math.max(1, Math.min(WAIT_SLICE_MS, waitMillis)));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            decided = true; // Attempts that answer from now on are closed
+            response = winner;
+            for (int i = 0; i < attemptTokens.size(); i++) {
+                if (i != winnerIndex) {
+                    requestToken.removeAbortAction(links.get(i));
+                    attemptTokens.get(i).cancel();
+                }
+            }
+        }
+        if (response == null) {
+            requestToken.throwIfAborted();
+            if (firstError != null) throw firstError;
+            throw new InterruptedIOException("Interrupted while waiting for a hedged request");
+        }
+        final TransportResponse won = response;
+        final Closeable winnerLink = links.get(winnerIndex);
+        // The winning attempt stays abortable through the request's token until its body has been read
+        return new TransportResponse(won.getCode(), won.getBody(), won::getHeader, won.getRequestStartNanos(),
+                won.getConnectedNanos(), won.getFirstByteNanos(), won.isReusedConnection(), () -> {
+                    requestToken.removeAbortAction(winnerLink);
+                    won.close();
+                });
+    }
+
+    /** True if the duplicate request was sent. */
+    synchronized boolean wasHedged() {
+        return attemptTokens.size() > 1;
+    }
+
+    /** True if the duplicate was due but not sent because the executor had no thread for it. */
+    synchronized boolean wasHedgeSkipped() {
+        return hedgeSkipped;
+    }
+
+    /** True if the duplicate answered before the original. */
+    synchronized boolean hedgeWon() {
+        return winnerIndex == 1;
+    }
+
+    // Returns false, leaving no trace of the attempt, if the executor has no thread for it
+    private synchronized boolean launch(final Attempt attempt) {
+        final int index = attemptTokens.size();
+        final RequestToken attemptToken = new RequestToken();
+        Closeable link = attemptToken::cancel;
+        attemptTokens.add(attemptToken);
+        links.add(link);
+        pending++;
+        requestToken.addAbortAction(link); // Cancels the attempt right away if the request is already aborted
+        try {
+            executor.execute(newAttemptTask(attempt, index, attemptToken));
+            return true;
+        } catch (RejectedExecutionException e) {
+            requestToken.removeAbortAction(link);
+            attemptTokens.remove(index);
+            links.remove(index);
+            pending--;
+            return false;
+        }
+    }
+
+    private Runnable newAttemptTask(final Attempt attempt, final int index, final RequestToken attemptToken) {
+        return () -> {
+            try {
+                TransportResponse response = attempt.send(attemptToken);
+                boolean won;
+                synchronized (HedgedRequest.this) {
+                    won = winner == null && !decided;
+                    if (won) {
+                        winner = response;
+                        winnerIndex = index;
+                    }
+                    pending--;
+                    HedgedRequest.this.notifyAll();
+                }
+                if (!won) closeQuietly(response);
+            } catch (IOException e) {
+                synchronized (HedgedRequest.this) {
+                    if (firstError == null && !attemptToken.isCancelled()) firstError = e;
+                    pending--;
+                    HedgedRequest.this.notifyAll();
+                }
+            }
+        };
+    }
+
+    private static void closeQuietly(TransportResponse response) {
+        try {
+            response.close();
+        } catch (IOException ignored) {
+            // The losing attempt was aborted anyway
+        }
+    }
+}
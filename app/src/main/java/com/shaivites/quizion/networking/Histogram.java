@@ -0,0 +1,92 @@
+package com.shaivites.quizion.networking;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Counts values into fixed buckets, so percentiles can be tracked over any number of requests in constant
+ * memory and histograms from different runs or releases can be added up bucket by bucket. Thread-safe.
+ * <p>
+ * Bucket {@code i} holds values up to and including {@code bounds[i]}; one more bucket takes everything above
+ * the last bound. Percentiles are therefore estimates: the upper bound of the bucket the rank falls into,
+ * capped at the largest value recorded.
+ */
+public final class Histogram {
+
+    private final long[] bounds;
+    private final long[] counts;
+    private long count = 0;
+    private long sum = 0;
+    private long max = 0;
+
+    /** @param bounds strictly increasing bucket upper bounds */
+    public Histogram(long... bounds) {
+        for (int i = 1; i < bounds.length; i++) {
+            if (bounds[i] <= bounds[i - 1]) throw new IllegalArgumentException("Bucket bounds must increase: " + Arrays.toString(bounds));
+        }
+        this.bounds = bounds.clone();
+        this.counts = new long[bounds.length + 1];
+    }
+
+    public synchronized void record(long value) {
+        int bucket = Arrays.binarySearch(bounds, value);
+        counts[bucket >= 0 ? bucket : -bucket - 1]++;
+        count++;
+        sum += value;
+        max = count == 1 ? value : Math.max(max, value);
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    public synchronized long getMax() {
+        return max;
+    }
+
+    /** Mean of the recorded values, exact since the sum is kept; 0 while empty. */
+    public synchronized long getMean() {
+        return count == 0 ? 0 : sum / count;
+    }
+
+    /** Estimated nearest-rank percentile, e.g. 0.95 for p95. Returns 0 while empty. */
+    public synchronized long percentile(double fraction) {
+        if (count == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(fraction * count));
+        long seen = 0;
+        for (int i = 0; i < bounds.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) return Math.min(bounds[i], max);
+        }
+        return max;
+    }
+
+    public long[] getBounds() {
+        return bounds.clone();
+    }
+
+    /** Count per bucket; one longer than {@link #getBounds()}, the last entry is the overflow bucket. */
+    public synchronized long[] getBucketCounts() {
+        return counts.clone();
+    }
+
+    /** A copy of this histogram as it is now, after which this one starts over empty. */
+    public synchronized Histogram copyAndReset() {
+        Histogram copy = new Histogram(bounds);
+        System.arraycopy(counts, 0, copy.counts, 0, counts.length);
+        copy.count = count;
+        copy.sum = sum;
+        copy.max = max;
+        Arrays.fill(counts, 0);
+        count = 0;
+        sum = 0;
+        max = 0;
+        return copy;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format(Locale.US, "n=%d, p50=%d, p95=%d, p99=%d, max=%d",
+                count, percentile(0.5), percentile(0.95), percentile(0.99), max);
+    }
+}
@@ -0,0 +1,287 @@
+package com.shaivites.quizion.networking;
+
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.shaivites.quizion.models.QuizQuestion;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Single-flight layer for question generation: concurrent callers asking for the same
+ * (topic, difficulty, count, stats, quiz mode) share one HTTP request and one parsed result. The
+ * mode is part of the key because it picks the model. Streamed and batch requests, and requests of
+ * different priority, are never shared: a streaming caller would get nothing until a batch finished,
+ * and an interactive caller must not ride on a background request that the scheduler may queue or
+ * preempt.
+ * Typical duplicates are a double-tapped topic card, an Activity recreated by rotation,
+ * or Quick Quiz and the General Knowledge topic firing together.
+ */
+class InFlightRequestCoalescer {
+
+    private static final String TAG = "RequestCoalescer";
+
+    private final Map<String, SharedCall> inFlight = new HashMap<>();
+    private final AtomicInteger startedRequests = new AtomicInteger();
+    private final AtomicInteger coalescedRequests = new AtomicInteger();
+
+    static String key(String topic, String difficulty, int numberOfQuestions,
+                      @Nullable Map<String, Map<String, String>> allTopicStats, ModelRouter.Mode mode,
+                      RequestScheduler.Priority priority, boolean streamed) {
+        return topic + "|" + difficulty + "|" + numberOfQuestions + "|" + statsFingerprint(allTopicStats)
+                + "|" + mode + "|" + priority + (streamed ? "|stream" : "|batch");
+    }
+
+    // Order-independent fingerprint, getAllTopicStats returns a HashMap
+    static String statsFingerprint(@Nullable Map<String, Map<String, String>> allTopicStats) {
+        if (allTopicStats == null || allTopicStats.isEmpty()) return "0";
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Map<String, String>> entry : new TreeMap<>(allTopicStats).entrySet()) {
+            Map<String, String> stats = entry.getValue();
+            sb.append(entry.getKey()).append('=')
+                    .append(stats.get("correct")).append(':').append(stats.get("total")).append(';');
+        }
+        return Integer.toHexString(sb.toString().hashCode());
+    }
+
+    /**
+     * Registers a caller for {@code key}. If {@link RequestHandle#startsRequest()} is true the caller has to
+     * send the request and feed its results into {@link RequestHandle#getCall()}; otherwise it was attached
+     * to a call already in flight.
+     */
+    RequestHandle joinOrStart(String key, @Nullable GeminiApiService.QuestionStreamCallback questionCallback,
+                              GeminiApiService.GeminiCallback callback) {
+        while (true) {
+            SharedCall existing;
+            SharedCall created = null;
+            synchronized (inFlight) {
+                existing = inFlight.get(key);
+                if (existing == null) {
+                    created = new SharedCall(key);
+                    inFlight.put(key, created);
+                }
+            }
+            if (created != null) {
+                created.addSubscriber(questionCallback, callback);
+                startedRequests.incrementAndGet();
+                return new RequestHandle(created, true, questionCallback, callback);
+            }
+            if (existing.addSubscriber(questionCallback, callback)) {
+                int saved = coalescedRequests.incrementAndGet();
+                Log.i(TAG, "Joined in-flight request for " + key + ". Requests saved so far: " + saved);
+                return new RequestHandle(existing, false, questionCallback, callback);
+            }
+            // The existing call completed between the lookup and the join. A completed call has already left
+            // inFlight, so the next round starts a fresh one.
+        }
+    }
+
+    /** Number of requests that were answered by joining an identical in-flight request instead of sending one. */
+    int getCoalescedRequestCount() {
+        return coalescedRequests.get();
+    }
+
+    /** Number of requests actually sent through this layer. */
+    int getStartedRequestCount() {
+        return startedRequests.get();
+    }
+
+    // May be called holding the call's monitor; inFlight is never held while taking a call's monitor
+    private void remove(SharedCall call) {
+        synchronized (inFlight) {
+            if (inFlight.get(call.key) == call) inFlight.remove(call.key);
+        }
+    }
+
+    /**
+     * One in-flight request fanned out to every subscriber. Questions streamed before a subscriber
+     * joined are replayed to it so late joiners see the full batch. Subscriber callbacks always run
+     * outside this call's monitor; only the bookkeeping is synchronized.
+     */
+    class SharedCall implements GeminiApiService.QuestionStreamCallback, GeminiApiService.GeminiCallback {
+
+        private final String key;
+        private final List<Subscriber> subscribers = new ArrayList<>();
+        private List<QuizQuestion> streamedQuestions = new ArrayList<>();
+        private boolean completed = false;
+        private boolean abandoned = false;
+        @Nullable private RequestToken token;
+        // Outcome kept for subscribers that were still catching up on replayed questions when the call completed
+        @Nullable private List<QuizQuestion> result;
+        @Nullable private Throwable error;
+
+        SharedCall(String key) {
+            this.key = key;
+        }
+
+        // Returns false if the call already completed and cannot take new subscribers
+        boolean addSubscriber(@Nullable GeminiApiService.QuestionStreamCallback questionCallback,
+                              GeminiApiService.GeminiCallback callback) {
+            Subscriber subscriber = new Subscriber(questionCallback, callback);
+            List<QuizQuestion> replay;
+            synchronized (this) {
+                if (completed) return false;
+                subscribers.add(subscriber);
+                if (questionCallback == null || streamedQuestions.isEmpty()) return true;
+                subscriber.catchingUp = true;
+                replay = streamedQuestions;
+            }
+            catchUp(subscriber, replay);
+            return true;
+        }
+
+        /*
+         * Replays already streamed questions on the joining thread. Questions that arrive meanwhile are appended
+         * to the same list and picked up by the next round, so the subscriber sees them in order; once it is
+         * level it receives further questions live, or the outcome if the call completed during the replay.
+         */
+        private void catchUp(Subscriber subscriber, List<QuizQuestion> replay) {
+            int delivered = 0;
+            while (true) {
+                List<QuizQuestion> pending;
+                synchronized (this) {
+                    if (subscriber.removed) return;
+                    if (delivered == replay.size()) {
+                        subscriber.catchingUp = false;
+                        if (!completed) return;
+                        pending = null;
+                    } else {
+                        pending = new ArrayList<>(replay.subList(delivered, replay.size()));
+                    }
+                }
+                if (pending == null) break;
+                for (QuizQuestion question : pending) {
+                    subscriber.questionCallback.onQuestion(question, delivered++);
+                }
+            }
+            List<QuizQuestion> finalResult;
+            Throwable finalError;
+            synchronized (this) {
+                finalResult = result;
+                finalError = error;
+            }
+            if (finalError != null) {
+                subscriber.callback.onError(finalError);
+            } else {
+                subscriber.callback.onSuccess(finalResult);
+            }
+        }
+
+        /** Attaches the scheduler token of the request feeding this call, so it can be aborted once nobody waits for it. */
+        void setToken(RequestToken token) {
+            boolean cancelNow;
+            synchronized (this) {
+                this.token = token;
+                cancelNow = abandoned;
+            }
+            if (cancelNow) token.cancel();
+        }
+
+        // The last subscriber leaving abandons the call: it stops taking joiners and its request is aborted
+        void removeSubscriber(@Nullable GeminiApiService.QuestionStreamCallback questionCallback,
+                              @Nullable GeminiApiService.GeminiCallback callback) {
+            RequestToken abandonedToken;
+            synchronized (this) {
+                if (completed) return;
+                Iterator<Subscriber> iterator = subscribers.iterator();
+                while (iterator.hasNext()) {
+                    Subscriber subscriber = iterator.next();
+                    if (subscriber.callback == callback) {
+                        subscriber.removed = true;
+                        iterator.remove();
+                    }
+                }
+                if (!subscribers.isEmpty()) return;
+                completed = true;
+                abandoned = true;
+                abandonedToken = token;
+                clearSubscribers();
+                remove(this); // Before the monitor is released, so no joiner finds a completed call in inFlight
+            }
+            Log.i(TAG, "Every caller cancelled " + key + ", aborting the request");
+            if (abandonedToken != null) abandonedToken.cancel();
+        }
+
+        // Called from the single thread reading the stream, so questions reach each live subscriber in order
+        @Override
+        public void onQuestion(QuizQuestion question, int index) {
+            List<GeminiApiService.QuestionStreamCallback> live = new ArrayList<>();
+            synchronized (this) {
+                if (completed) return;
+                streamedQuestions.add(question);
+                for (Subscriber subscriber : subscribers) {
+                    if (subscriber.questionCallback != null && !subscriber.catchingUp) live.add(subscriber.questionCallback);
+                }
+            }
+            for (GeminiApiService.QuestionStreamCallback subscriber : live) {
+                subscriber.onQuestion(question, index);
+            }
+        }
+
+        @Override
+        public void onSuccess(List<QuizQuestion> questions) {
+            remove(this);
+            List<GeminiApiService.GeminiCallback> ready;
+            synchronized (this) {
+                if (completed) return;
+                completed = true;
+                result = questions;
+                ready = completableCallbacks();
+            }
+            for (GeminiApiService.GeminiCallback subscriber : ready) {
+                subscriber.onSuccess(questions);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            remove(this);
+            List<GeminiApiService.GeminiCallback> ready;
+            synchronized (this) {
+                if (completed) return;
+                completed = true;
+                error = throwable;
+                ready = completableCallbacks();
+            }
+            for (GeminiApiService.GeminiCallback subscriber : ready) {
+                subscriber.onError(throwable);
+            }
+        }
+
+        // Callbacks of subscribers that are not catching up; those still replaying deliver the outcome themselves
+        private List<GeminiApiService.GeminiCallback> completableCallbacks() {
+            List<GeminiApiService.GeminiCallback> ready = new ArrayList<>();
+            for (Subscriber subscriber : subscribers) {
+                if (!subscriber.catchingUp) ready.add(subscriber.callback);
+            }
+            clearSubscribers();
+            return ready;
+        }
+
+        // A finished call may stay reachable from a worker thread; it must not keep callers alive
+        private void clearSubscribers() {
+            subscribers.clear();
+            streamedQuestions = new ArrayList<>(); // A subscriber still catching up keeps reading the old list
+        }
+    }
+
+    private static final class Subscriber {
+        @Nullable final GeminiApiService.QuestionStreamCallback questionCallback;
+        final GeminiApiService.GeminiCallback callback;
+        // Guarded by the SharedCall the subscriber belongs to
+        boolean catchingUp = false;
+        boolean removed = false;
+
+        Subscriber(@Nullable GeminiApiService.QuestionStreamCallback questionCallback, GeminiApiService.GeminiCallback callback) {
+            this.questionCallback = questionCallback;
+            this.callback = callback;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.shaivites.quizion.networking;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Incrementally splits a streamed top-level JSON array into its element objects or arrays.
+ * Text can be fed in arbitrary fragments (e.g. SSE chunks); every time an element
+ * closes its raw JSON is returned so it can be decoded right away.
+ */
+class JsonArrayStreamSplitter {
+
+    private final StringBuilder currentElement = new StringBuilder();
+    private boolean insideArray = false;
+    private int depth = 0; // Nesting depth inside the current element, 0 = between elements
+    private boolean inString = false;
+    private boolean escaped = false;
+    private int emittedCount = 0;
+
+    /**
+     * Feeds the next text fragment and returns any elements completed by it, in order.
+     */
+    List<String> feed(CharSequence fragment) {
+        if (fragment == null || fragment.length() == 0) return Collections.emptyList();
+        List<String> completed = null;
+
+        for (int i = 0; i < fragment.length(); i++) {
+            char c = fragment.charAt(i);
+
+            if (!insideArray) {
+                if (c == '[') insideArray = true; // Anything before the array (e.g. a markdown fence) is ignored
+                continue;
+            }
+
+            if (depth == 0) {
+                if (c == '{' || c == '[') {
+                    depth = 1;
+                    currentElement.setLength(0);
+                    currentElement.append(c);
+                } else if (c == ']') {
+                    insideArray = false; // End of the array, ignore trailing text
+                }
+                continue;
+            }
+
+            currentElement.append(c);
+            if (inString) {
+                if (escaped) {
+                    escaped = false;
+                } else if (c == '\\') {
+                    escaped = true;
+                } else if (c == '"') {
+                    inString = false;
+                }
+                continue;
+            }
+
+            if (c == '"') {
+                inString = true;
+            } else if (c == '{' || c == '[') {
+                depth++;
+            } else if (c == '}' || c == ']') {
+                depth--;
+                if (depth == 0) {
+                    if (completed == null) completed = new ArrayList<>();
+                    completed.add(currentElement.toString());
+                    currentElement.setLength(0);
+                    emittedCount++;
+                }
+            }
+        }
+        return completed != null ? completed : Collections.<String>emptyList();
+    }
+
+    /** Number of complete elements returned so far. */
+    int getEmittedCount() {
+        return emittedCount;
+    }
+
+    /** True if an element has been started but not closed yet. */
+    boolean hasPartialElement() {
+        return depth > 0;
+    }
+}
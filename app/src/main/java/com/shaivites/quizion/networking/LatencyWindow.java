@@ -0,0 +1,34 @@
+package com.shaivites.quizion.networking;
+
+import java.util.Arrays;
+
+/** Sliding window over the most recent request latencies, for percentile estimates. Thread-safe. */
+final class LatencyWindow {
+
+    private final long[] samples;
+    private int count = 0;
+    private int next = 0;
+
+    LatencyWindow(int capacity) {
+        samples = new long[capacity];
+    }
+
+    synchronized void record(long millis) {
+        samples[next] = millis;
+        next = (next + 1) % samples.length;
+        count = Math.min(count + 1, samples.length);
+    }
+
+    synchronized int size() {
+        return count;
+    }
+
+    /** Nearest-rank percentile, e.g. 0.95 for p95. Returns 0 while the window is empty. */
+    synchronized long percentile(double fraction) {
+        if (count == 0) return 0;
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(fraction * count);
+        return sorted[Math.max(0, Math.min(count, rank) - 1)];
+    }
+}
@@ -0,0 +1,210 @@
+package com.shaivites.quizion.networking;
+
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Picks the Gemini model for a request from a table keyed by quiz mode and batch size, and keeps each model
+ * within its latency target.
+ * <p>
+ * Every finished batch records its latency against the model that generated it. Once a model has
+ * {@link #MIN_SAMPLES} recent samples and their p95 exceeds the model's target, it is demoted: requests routed
+ * to it go to its faster fallback instead for {@code demotionMillis}. After that it is tried again with a
+ * fresh latency window. A model without a fallback is never demoted.
+ */
+public class ModelRouter {
+
+    private static final String TAG = "ModelRouter";
+    private static final int WINDOW_SIZE = 20;
+    // A full window: its nearest-rank p95 is the second slowest sample, so one cold connection cannot demote a model
+    static final int MIN_SAMPLES = WINDOW_SIZE;
+    private static final long DEFAULT_DEMOTION_MS = TimeUnit.MINUTES.toMillis(5);
+
+    static final String PRO = "gemini-1.5-pro-latest";
+    static final String FLASH = "gemini-1.5-flash-latest";
+    static final String FLASH_8B = "gemini-1.5-flash-8b-latest";
+
+    /** The {@code QUIZ_MODE} a quiz was started in. */
+    public enum Mode {
+        QUICK, TOPIC, AI_CHALLENGE;
+
+        /** The mode named by a {@code QUIZ_MODE} extra; QUICK for null or unknown names. */
+        public static Mode parse(@Nullable String name) {
+            if (name != null) {
+                for (Mode mode : values()) {
+                    if (mode.name().equals(name)) return mode;
+                }
+            }
+            return QUICK;
+        }
+    }
+
+    /** A model, the p95 batch latency it has to stay under, and the faster model it is demoted to otherwise. */
+    public static final class Model {
+        final String name;
+        final long p95TargetMillis;
+        @Nullable final String fallback;
+
+        public Model(String name, long p95TargetMillis, @Nullable String fallback) {
+            this.name = name;
+            this.p95TargetMillis = p95TargetMillis;
+            this.fallback = fallback;
+        }
+    }
+
+    /** Sends requests of {@code mode} for at most {@code maxQuestions} questions to {@code model}. */
+    public static final class Route {
+        final Mode mode;
+        final int maxQuestions;
+        final String model;
+
+        public Route(Mode mode, int maxQuestions, String model) {
+            this.mode = mode;
+            this.maxQuestions = maxQuestions;
+            this.model = model;
+        }
+    }
+
+    // Quick quizzes favour speed; AI challenges get the stronger model for small (e.g. chunked) batches
+    static final List<Model> DEFAULT_MODELS = Arrays.asList(
+            new Model(PRO, 12000, FLASH),
+            new Model(FLASH, 6000, FLASH_8B),
+            new Model(FLASH_8B, 6000, null));
+    static final List<Route> DEFAULT_ROUTES = Arrays.asList(
+            new Route(Mode.QUICK, Integer.MAX_VALUE, FLASH_8B),
+            new Route(Mode.TOPIC, Integer.MAX_VALUE, FLASH),
+            new Route(Mode.AI_CHALLENGE, 4, PRO),
+            new Route(Mode.AI_CHALLENGE, Integer.MAX_VALUE, FLASH));
+
+    private final Map<String, Model> models = new HashMap<>();
+    private final List<Route> routes;
+    private final String defaultModel;
+    private final long demotionMillis;
+    // Guarded by this
+    private final Map<String, ModelState> states = new LinkedHashMap<>();
+    private int demotionCount = 0;
+
+    private static final class ModelState {
+        LatencyWindow latency = new LatencyWindow(WINDOW_SIZE);
+        long demotedUntilNanos = 0; // 0 while not demoted
+        int routedCount = 0;
+    }
+
+    public ModelRouter() {
+        this(DEFAULT_MODELS, DEFAULT_ROUTES, DEFAULT_DEMOTION_MS);
+    }
+
+    /**
+     * Routes are matched in order: the first one for the mode whose {@code maxQuestions} fits the batch wins.
+     * Batches no route matches go to the first model.
+     */
+    public ModelRouter(List<Model> models, List<Route> routes, long demotionMillis) {
+        if (models.isEmpty()) throw new IllegalArgumentException("No models configured");
+        for (Model model : models) {
+            this.models.put(model.name, model);
+            states.put(model.name, new ModelState());
+        }
+        for (Model model : models) {
+            if (model.fallback != null && !this.models.containsKey(model.fallback)) {
+                throw new IllegalArgumentException("Fallback to unknown model " + model.fallback);
+            }
+        }
+        for (Route route : routes) {
+            if (!this.models.containsKey(route.model)) {
+                throw new IllegalArgumentException("Route to unknown model " + route.model);
+            }
+        }
+        this.routes = Collections.unmodifiableList(new ArrayList<>(routes));
+        this.defaultModel = models.get(0).name;
+        this.demotionMillis = demotionMillis;
+    }
+
+    /** The model to send a batch of {@code numberOfQuestions} in {@code mode} to; counts the decision. */
+    public synchronized String route(Mode mode, int numberOfQuestions) {
+        String model = configuredModel(mode, numberOfQuestions);
+        for (int hops = 0; hops < models.size() && isDemoted(model); hops++) { // Bounded, fallbacks may form a cycle
+            model = models.get(model).fallback;
+        }
+        states.get(model).routedCount++;
+        return model;
+    }
+
+    /** Records how long a batch on {@code model} took, and demotes the model if it broke its target. */
+    public synchronized void recordLatency(String model, long millis) {
+        ModelState state = states.get(model);
+        Model config = models.get(model);
+        if (state == null) return;
+        state.latency.record(millis);
+        if (config.fallback == null || state.demotedUntilNanos != 0 || state.latency.size() < MIN_SAMPLES) return;
+        long p95 = state.latency.percentile(0.95);
+        if (p95 > config.p95TargetMillis) {
+            state.demotedUntilNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(demotionMillis);
+            demotionCount++;
+            NetworkLog.w(TAG, () -> "Demoting " + model + " to " + config.fallback + " for " + demotionMillis + "ms: p95 "
+                    + p95 + "ms > target " + config.p95TargetMillis + "ms");
+        }
+    }
+
+    public synchronized long getLatencyPercentile(String model, double fraction) {
+        ModelState state = states.get(model);
+        return state != null ? state.latency.percentile(fraction) : 0;
+    }
+
+    /** Number of batches routed to each model so far, in the order the models were configured. */
+    public synchronized Map<String, Integer> getRoutedCounts() {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        for (Map.Entry<String, ModelState> entry : states.entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().routedCount);
+        }
+        return counts;
+    }
+
+    /** Number of times a model was demoted for breaking its latency target. */
+    public synchronized int getDemotionCount() {
+        return demotionCount;
+    }
+
+    public synchronized boolean isModelDemoted(String model) {
+        return states.containsKey(model) && isDemoted(model);
+    }
+
+    /** One line per model: routed batches, p50/p95 latency and whether it is demoted. */
+    @Override
+    public synchronized String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, ModelState> entry : states.entrySet()) {
+            ModelState state = entry.getValue();
+            sb.append(String.format(Locale.US, "%s: routed=%d, p50=%dms, p95=%dms%s%n", entry.getKey(),
+                    state.routedCount, state.latency.percentile(0.5), state.latency.percentile(0.95),
+                    state.demotedUntilNanos != 0 ? ", demoted" : ""));
+        }
+        return sb.toString();
+    }
+
+    private String configuredModel(Mode mode, int numberOfQuestions) {
+        for (Route route : routes) {
+            if (route.mode == mode && numberOfQuestions <= route.maxQuestions) return route.model;
+        }
+        return defaultModel;
+    }
+
+    // Ends an expired demotion with a fresh window, so old slow samples do not demote the model again at once
+    private boolean isDemoted(String model) {
+        ModelState state = states.get(model);
+        if (state.demotedUntilNanos == 0) return false;
+        if (System.nanoTime() < state.demotedUntilNanos) return true;
+        state.demotedUntilNanos = 0;
+        state.latency = new LatencyWindow(WINDOW_SIZE);
+        NetworkLog.i(TAG, () -> "Routing to " + model + " again after its demotion");
+        return false;
+    }
+}
@@ -0,0 +1,101 @@
+package com.shaivites.quizion.networking;
+
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.shaivites.quizion.BuildConfig;
+
+/**
+ * Logging for the networking layer that costs nothing when the level is off.
+ * <p>
+ * Messages are passed as {@link Message} lambdas and only built if their level is enabled, so hot request
+ * paths do not concatenate URLs, bodies or formatted numbers just to drop them. Request and response bodies
+ * go through {@link #body} and {@link #preview}: at most {@link #PREVIEW_CHARS} characters, API keys in
+ * {@code key=} query parameters redacted, and in release builds reduced to their length.
+ */
+final class NetworkLog {
+
+    static final int PREVIEW_CHARS = 256;
+    private static final String KEY_PARAM = "key=";
+    private static final String REDACTED = "REDACTED";
+
+    /** A log message built on demand. */
+    interface Message {
+        String get();
+    }
+
+    private static volatile int minLevel = BuildConfig.DEBUG ? Log.DEBUG : Log.INFO;
+    private static volatile boolean bodyLogging = BuildConfig.DEBUG;
+
+    private NetworkLog() {
+    }
+
+    /** Overrides the build type defaults: DEBUG and body previews in debug builds, INFO and no bodies in release. */
+    static void configure(int minLevel, boolean bodyLogging) {
+        NetworkLog.minLevel = minLevel;
+        NetworkLog.bodyLogging = bodyLogging;
+    }
+
+    static boolean isEnabled(int level) {
+        return level >= minLevel;
+    }
+
+    static void d(String tag, Message message) {
+        if (isEnabled(Log.DEBUG)) Log.d(tag, message.get());
+    }
+
+    static void i(String tag, Message message) {
+        if (isEnabled(Log.INFO)) Log.i(tag, message.get());
+    }
+
+    static void w(String tag, Message message) {
+        if (isEnabled(Log.WARN)) Log.w(tag, message.get());
+    }
+
+    static void w(String tag, Message message, Throwable throwable) {
+        if (isEnabled(Log.WARN)) Log.w(tag, message.get(), throwable);
+    }
+
+    /** Logs a preview of a request or response body at DEBUG; skipped entirely unless body logging is on. */
+    static void body(String tag, String label, @Nullable String body) {
+        if (bodyLogging && isEnabled(Log.DEBUG)) Log.d(tag, label + ": " + preview(body));
+    }
+
+    /**
+     * What may be logged of {@code text}: its first {@link #PREVIEW_CHARS} characters with API keys redacted,
+     * or only its length while body logging is off. For warnings that have to show what went wrong.
+     */
+    static String preview(@Nullable String text) {
+        if (text == null) return "null";
+        if (!bodyLogging) return "[" + text.length() + " chars]";
+        if (text.length() <= PREVIEW_CHARS) return redact(text);
+        return redact(text.substring(0, PREVIEW_CHARS)) + "... [" + text.length() + " chars]";
+    }
+
+    /** {@code text} with the value of every {@code key=} query parameter replaced, e.g. in request URLs. */
+    static String redact(String text) {
+        int start = text.indexOf(KEY_PARAM);
+        if (start < 0) return text;
+        StringBuilder redacted = new StringBuilder(text.length());
+        int copied = 0;
+        while (start >= 0) {
+            int valueStart = start + KEY_PARAM.length();
+            redacted.append(text, copied, valueStart);
+            copied = valueStart;
+            char before = start > 0 ? text.charAt(start - 1) : '?';
+            if (before == '?' || before == '&') { // Not e.g. "monkey="
+                int end = valueStart;
+                while (end < text.length() && !isValueEnd(text.charAt(end))) end++;
+                redacted.append(REDACTED);
+                copied = end;
+            }
+            start = text.indexOf(KEY_PARAM, valueStart);
+        }
+        return redacted.append(text, copied, text.length()).toString();
+    }
+
+    private static boolean isValueEnd(char c) {
+        return c == '&' || c == '#' || c == '"' || Character.isWhitespace(c);
+    }
+}
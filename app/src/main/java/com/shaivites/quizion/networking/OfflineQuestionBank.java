@@ -0,0 +1,169 @@
+package com.shaivites.quizion.networking;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.util.Log;
+
+import com.shaivites.quizion.models.QuizQuestion;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Questions bundled with the app ({@code assets/offline_questions.qbank}), grouped by topic.
+ * The local source a quiz falls back to when the Gemini backend is unavailable.
+ * <p>
+ * The asset is in the packed format written by the {@code questionbank-tool} module at build time and is
+ * memory-mapped, not parsed: opening the bank reads the header and topic index, and each question is decoded
+ * only when it is drawn.
+ */
+public class OfflineQuestionBank {
+
+    private static final String TAG = "OfflineQuestionBank";
+    static final String ASSET_NAME = "offline_questions.qbank";
+
+    // Packed format, as written by QuestionBankPacker
+    static final int MAGIC = 0x51424E4B; // "QBNK"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 5 * 4;
+    static final int TOPIC_ENTRY_BYTES = 3 * 4;
+
+    private static OfflineQuestionBank instance;
+
+    private final ByteBuffer packed;
+    private final int questionCount;
+    private final int questionIndexOffset;
+    private final int stringTableOffset;
+    // Lower-cased topic -> {first question, question count}
+    private final Map<String, int[]> topics = new HashMap<>();
+    private final Random random = new Random();
+
+    /** Maps the bundled bank on first use. Touches only its header, so it may be called on the main thread. */
+    public static synchronized OfflineQuestionBank getInstance(Context context) {
+        if (instance == null) {
+            // The asset is stored uncompressed (see noCompress in build.gradle.kts), so it can be mapped in place
+            try (AssetFileDescriptor descriptor = context.getApplicationContext().getAssets().openFd(ASSET_NAME);
+                 FileInputStream in = descriptor.createInputStream()) {
+                instance = new OfflineQuestionBank(in.getChannel().map(
+                        FileChannel.MapMode.READ_ONLY, descriptor.getStartOffset(), descriptor.getLength()));
+            } catch (IOException | IllegalArgumentException e) {
+                Log.e(TAG, "Could not load the offline question bank", e);
+                instance = empty();
+            }
+        }
+        return instance;
+    }
+
+    /** A bank without topics or questions. */
+    static OfflineQuestionBank empty() {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(MAGIC).putInt(VERSION).putInt(0).putInt(0).putInt(HEADER_BYTES);
+        return new OfflineQuestionBank(header);
+    }
+
+    /** Reads the header and topic index of a packed bank; throws IllegalArgumentException if it is not one. */
+    OfflineQuestionBank(ByteBuffer packed) {
+        this.packed = packed;
+        if (packed.capacity() < HEADER_BYTES || packed.getInt(0) != MAGIC) {
+            throw new IllegalArgumentException("Not a packed question bank");
+        }
+        if (packed.getInt(4) != VERSION) {
+            throw new IllegalArgumentException("Unsupported question bank version " + packed.getInt(4));
+        }
+        int topicCount = packed.getInt(8);
+        questionCount = packed.getInt(12);
+        stringTableOffset = packed.getInt(16);
+        questionIndexOffset = HEADER_BYTES + topicCount * TOPIC_ENTRY_BYTES;
+        if (topicCount < 0 || questionCount < 0 || stringTableOffset < questionIndexOffset + questionCount * 4
+                || stringTableOffset > packed.capacity()) {
+            throw new IllegalArgumentException("Corrupt question bank header");
+        }
+        for (int i = 0; i < topicCount; i++) {
+            int entry = HEADER_BYTES + i * TOPIC_ENTRY_BYTES;
+            String name = readString(packed.getInt(entry));
+            topics.put(name.toLowerCase(Locale.US), new int[]{packed.getInt(entry + 4), packed.getInt(entry + 8)});
+        }
+    }
+
+    public boolean hasTopic(String topic) {
+        return topics.containsKey(topic.toLowerCase(Locale.US));
+    }
+
+    /**
+     * Up to {@code count} questions on {@code topic} in random order. Topics the bank does not know
+     * (e.g. "Mixed AI Questions") draw from every topic. Returns an empty list if the bank is empty.
+     */
+    public List<QuizQuestion> getQuestions(String topic, int count) {
+        int[] range = topics.get(topic.toLowerCase(Locale.US));
+        int first = range != null ? range[0] : 0;
+        int size = range != null ? range[1] : questionCount;
+        List<QuizQuestion> questions = new ArrayList<>();
+        for (int index : sample(size, Math.min(count, size))) {
+            questions.add(readQuestion(first + index));
+        }
+        return Collections.unmodifiableList(questions);
+    }
+
+    public int size() {
+        return questionCount;
+    }
+
+    // Random order of k distinct indexes below n (Floyd's sampling), without an n-sized array
+    private List<Integer> sample(int n, int k) {
+        Set<Integer> chosen = new HashSet<>();
+        List<Integer> picks = new ArrayList<>(Math.max(0, k));
+        for (int j = n - k; j < n; j++) {
+            int candidate = random.nextInt(j + 1);
+            int pick = chosen.add(candidate) ? candidate : j;
+            chosen.add(pick);
+            picks.add(pick);
+        }
+        Collections.shuffle(picks, random);
+        return picks;
+    }
+
+    private QuizQuestion readQuestion(int index) {
+        int[] position = {packed.getInt(questionIndexOffset + index * 4)};
+        QuizQuestion question = new QuizQuestion();
+        question.setQuestion(readString(readVarint(position)));
+        String[] options = new String[readVarint(position)];
+        for (int i = 0; i < options.length; i++) {
+            options[i] = readString(readVarint(position));
+        }
+        question.setOptions(Collections.unmodifiableList(Arrays.asList(options)));
+        question.setCorrectAnswerIndex(packed.get(position[0]));
+        return question;
+    }
+
+    private String readString(int ref) {
+        int[] position = {stringTableOffset + ref};
+        byte[] utf8 = new byte[readVarint(position)];
+        for (int i = 0; i < utf8.length; i++) {
+            utf8[i] = packed.get(position[0] + i);
+        }
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    // Absolute reads only, so concurrent callers never share a buffer position
+    private int readVarint(int[] position) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = packed.get(position[0]++);
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.shaivites.quizion.networking;
+
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Renders the user's per-topic stats into the sentence of performance context added to question prompts.
+ * <p>
+ * Topics are ranked by how closely their name matches the requested topic, how weak the user is at them and
+ * how recently they were played, then added best first while the sentence fits a fixed token budget.
+ * The rendered sentence is cached until the topic or the stats change, which is the case for every request
+ * of a quiz and all of its chunks and prefetches.
+ */
+final class PerformanceContextBuilder {
+
+    static final int DEFAULT_TOKEN_BUDGET = 48;
+    static final int CHARS_PER_TOKEN = 4; // Rough average for English text
+    private static final String PREFIX = " User's current performance in various topics (correct answers:total questions): ";
+    private static final double RELEVANCE_WEIGHT = 4.0;
+    private static final double WEAKNESS_WEIGHT = 2.0;
+    private static final double RECENCY_WEIGHT = 1.0;
+    private static final long RECENCY_HALF_LIFE_MS = TimeUnit.DAYS.toMillis(7);
+
+    private final int maxChars;
+    // Guarded by this
+    @Nullable private String cachedTopic;
+    @Nullable private Map<String, Map<String, String>> cachedStats;
+    private String cachedContext = "";
+    private int renderCount = 0;
+
+    PerformanceContextBuilder() {
+        this(DEFAULT_TOKEN_BUDGET);
+    }
+
+    PerformanceContextBuilder(int tokenBudget) {
+        this.maxChars = tokenBudget * CHARS_PER_TOKEN;
+    }
+
+    /** The context sentence for a request on {@code topic}, or "" if there are no stats to report. */
+    String build(String topic, @Nullable Map<String, Map<String, String>> allTopicStats) {
+        return build(topic, allTopicStats, System.currentTimeMillis());
+    }
+
+    synchronized String build(String topic, @Nullable Map<String, Map<String, String>> allTopicStats, long nowMillis) {
+        if (allTopicStats == null || allTopicStats.isEmpty()) return "";
+        if (topic.equals(cachedTopic) && allTopicStats.equals(cachedStats)) return cachedContext;
+        cachedContext = render(topic, allTopicStats, nowMillis);
+        cachedTopic = topic;
+        cachedStats = new HashMap<>(allTopicStats);
+        renderCount++;
+        return cachedContext;
+    }
+
+    /** Number of times the context was rendered instead of served from the cache. */
+    synchronized int getRenderCount() {
+        return renderCount;
+    }
+
+    private String render(String topic, Map<String, Map<String, String>> allTopicStats, long nowMillis) {
+        Set<String> topicWords = words(topic);
+        List<RankedTopic> ranked = new ArrayList<>(allTopicStats.size());
+        for (Map.Entry<String, Map<String, String>> entry : allTopicStats.entrySet()) {
+            Map<String, String> stats = entry.getValue();
+            int correct = parseInt(stats.get("correct"));
+            int total = parseInt(stats.get("total"));
+            if (total <= 0) continue; // Nothing to tailor to yet
+            double score = RELEVANCE_WEIGHT * relevance(topicWords, topic, entry.getKey())
+                    + WEAKNESS_WEIGHT * (1.0 - (correct + 1.0) / (total + 2.0)) // Smoothed error rate
+                    + RECENCY_WEIGHT * recency(stats.get("lastPlayed"), nowMillis);
+            ranked.add(new RankedTopic(entry.getKey(), correct, total, score));
+        }
+        if (ranked.isEmpty()) return "";
+        Collections.sort(ranked, (a, b) -> a.score != b.score ? Double.compare(b.score, a.score) : a.name.compareTo(b.name));
+
+        StringBuilder context = new StringBuilder(maxChars).append(PREFIX);
+        int added = 0;
+        for (RankedTopic candidate : ranked) {
+            int length = candidate.name.length() + String.valueOf(candidate.correct).length()
+                    + String.valueOf(candidate.total).length() + 4; // "name (c:t)"
+            int separator = added > 0 ? 2 : 0;
+            if (context.length() + separator + length + 1 > maxChars) continue; // A shorter one may still fit
+            if (added > 0) context.append(", ");
+            context.append(candidate.name).append(" (").append(candidate.correct).append(':').append(candidate.total).append(')');
+            added++;
+        }
+        return added > 0 ? context.append('.').toString() : "";
+    }
+
+    // 1 for the requested topic itself, otherwise the share of words the two names have in common
+    private static double relevance(Set<String> topicWords, String topic, String candidate) {
+        if (candidate.trim().equalsIgnoreCase(topic.trim())) return 1.0;
+        Set<String> candidateWords = words(candidate);
+        if (topicWords.isEmpty() || candidateWords.isEmpty()) return 0.0;
+        int common = 0;
+        for (String word : candidateWords) {
+            if (topicWords.contains(word)) common++;
+        }
+        return (double) common / (topicWords.size() + candidateWords.size() - common);
+    }
+
+    // 1 if played just now, halving every week; 0 if never recorded
+    private static double recency(@Nullable String lastPlayed, long nowMillis) {
+        if (lastPlayed == null) return 0.0;
+        long ageMillis;
+        try {
+            ageMillis = Math.max(0, nowMillis - Long.parseLong(lastPlayed));
+        } catch (NumberFormatException e) {
+            return 0.0;
+        }
+        return Math.pow(0.5, (double) ageMillis / RECENCY_HALF_LIFE_MS);
+    }
+
+    // Lower-cased letter and digit runs; a hand-rolled scan, this runs for every stats entry on every render
+    private static Set<String> words(String name) {
+        Set<String> words = new HashSet<>();
+        int start = -1;
+        for (int i = 0; i <= name.length(); i++) {
+            boolean wordChar = i < name.length() && Character.isLetterOrDigit(name.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                words.add(name.substring(start, i).toLowerCase(Locale.US));
+                start = -1;
+            }
+        }
+        return words;
+    }
+
+    private static int parseInt(@Nullable String value) {
+        if (value == null) return 0;
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static final class RankedTopic {
+        final String name;
+        final int correct;
+        final int total;
+        final double score;
+
+        RankedTopic(String name, int correct, int total, double score) {
+            this.name = name;
+            this.correct = correct;
+            this.total = total;
+            this.score = score;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.shaivites.quizion.networking;
+
+import androidx.annotation.Nullable;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bookkeeping for the static instruction block of question prompts uploaded as Gemini cached content
+ * ({@code cachedContents}), so requests reference it by name instead of sending it every time.
+ * <p>
+ * One entry per model and prefix text. Lookups never block: while an entry is missing, expired or about to
+ * expire, {@link #tryStartCreate} lets one caller upload it in the background and requests send the prefix
+ * inline meanwhile. A failed upload (e.g. the prefix is below the API's minimum size for caching) is not
+ * tried again for {@code failureBackoffMillis}. The network calls themselves are made by
+ * {@link GeminiApiService}.
+ */
+final class PromptCache {
+
+    private static final String TAG = "PromptCache";
+    private static final long REFRESH_MARGIN_MS = TimeUnit.SECONDS.toMillis(30);
+
+    private final long ttlMillis;
+    private final long failureBackoffMillis;
+    // Guarded by this; keyed by model and prefix
+    private final Map<String, Entry> entries = new HashMap<>();
+    private int createdCount = 0;
+    private int hitCount = 0;
+    private int missCount = 0;
+
+    private static final class Entry {
+        @Nullable String name;
+        long expiresAtNanos;
+        long retryAtNanos;  // After a failed upload
+        boolean creating;
+    }
+
+    PromptCache(long ttlMillis, long failureBackoffMillis) {
+        this.ttlMillis = Math.max(ttlMillis, 2 * REFRESH_MARGIN_MS);
+        this.failureBackoffMillis = failureBackoffMillis;
+    }
+
+    /** Name of the live cached content holding {@code prefix} for {@code model}, or null to send it inline. */
+    @Nullable
+    synchronized String lookup(String model, String prefix) {
+        Entry entry = entries.get(key(model, prefix));
+        if (entry != null && entry.name != null && System.nanoTime() < entry.expiresAtNanos) {
+            hitCount++;
+            return entry.name;
+        }
+        missCount++;
+        return null;
+    }
+
+    /**
+     * Claims the upload of {@code prefix} for {@code model} if it is missing or expires within 30 s and
+     * no upload is running or backing off. The caller has to report the outcome through
+     * {@link #onCreated} or {@link #onCreateFailed}.
+     */
+    synchronized boolean tryStartCreate(String model, String prefix) {
+        String key = key(model, prefix);
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            entry = new Entry();
+            entries.put(key, entry);
+        }
+        long now = System.nanoTime();
+        if (entry.creating || now < entry.retryAtNanos) return false;
+        if (entry.name != null && now < entry.expiresAtNanos - TimeUnit.MILLISECONDS.toNanos(REFRESH_MARGIN_MS)) {
+            return false;
+        }
+        entry.creating = true;
+        return true;
+    }
+
+    /** Body of the {@code cachedContents} create request for {@code prefix} on {@code model}. */
+    String createRequestBody(String model, String prefix) {
+        JsonObject part = new JsonObject();
+        part.addProperty("text", prefix);
+        JsonArray parts = new JsonArray();
+        parts.add(part);
+        JsonObject systemInstruction = new JsonObject();
+        systemInstruction.add("parts", parts);
+        JsonObject root = new JsonObject();
+        root.addProperty("model", "models/" + model);
+        root.add("systemInstruction", systemInstruction);
+        root.addProperty("ttl", TimeUnit.MILLISECONDS.toSeconds(ttlMillis) + "s");
+        return root.toString();
+    }
+
+    /** Records the upload answered by {@code responseBody}; counts as a failure if it carries no name. */
+    synchronized void onCreated(String model, String prefix, String responseBody, long requestStartNanos) {
+        String name = null;
+        try {
+            JsonElement nameElement = JsonParser.parseString(responseBody).getAsJsonObject().get("name");
+            if (nameElement != null && nameElement.isJsonPrimitive()) name = nameElement.getAsString();
+        } catch (JsonParseException | IllegalStateException e) {
+            NetworkLog.w(TAG, () -> "Unexpected cached content response: " + NetworkLog.preview(responseBody), e);
+        }
+        if (name == null) {
+            onCreateFailed(model, prefix);
+            return;
+        }
+        Entry entry = entries.get(key(model, prefix));
+        entry.creating = false;
+        entry.name = name;
+        // Counted from before the request, so the local expiry never trails the server's
+        entry.expiresAtNanos = requestStartNanos + TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        createdCount++;
+        String cachedName = name;
+        NetworkLog.i(TAG, () -> "Prompt prefix for " + model + " cached as " + cachedName);
+    }
+
+    synchronized void onCreateFailed(String model, String prefix) {
+        Entry entry = entries.get(key(model, prefix));
+        entry.creating = false;
+        entry.retryAtNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(failureBackoffMillis);
+        NetworkLog.w(TAG, () -> "Could not cache the prompt prefix for " + model + ", sending it inline for "
+                + failureBackoffMillis + "ms");
+    }
+
+    /** Forgets {@code name} after the API rejected a request referencing it, e.g. because it expired early. */
+    synchronized void invalidate(String name) {
+        for (Entry entry : entries.values()) {
+            if (name.equals(entry.name)) {
+                entry.name = null;
+                entry.expiresAtNanos = 0;
+            }
+        }
+    }
+
+    /** Number of prefixes uploaded so far, including re-creations after expiry. */
+    synchronized int getCreatedCount() {
+        return createdCount;
+    }
+
+    /** Number of requests that referenced a cached prefix. */
+    synchronized int getHitCount() {
+        return hitCount;
+    }
+
+    /** Number of requests that sent the prefix inline because no cached one was live. */
+    synchronized int getMissCount() {
+        return missCount;
+    }
+
+    private static String key(String model, String prefix) {
+        return model + '|' + prefix;
+    }
+}
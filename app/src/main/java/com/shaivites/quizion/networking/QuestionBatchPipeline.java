@@ -0,0 +1,233 @@
+package com.shaivites.quizion.networking;
+
+import androidx.annotation.Nullable;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.shaivites.quizion.models.QuizQuestion;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Background stage between the network and the UI: decodes generated JSON into {@link QuizQuestion}s,
+ * validates them and normalizes their text, so the main thread only ever receives ready-to-render,
+ * immutable questions. Time spent in each stage is recorded per batch and in process-wide totals.
+ * <p>
+ * Questions may be objects or in the positional {@link CompactQuestionFormat}; both decode the same way.
+ */
+public final class QuestionBatchPipeline {
+
+    private static final String TAG = "QuestionBatchPipeline";
+    public static final int OPTION_COUNT = 4;
+    private static final String CORRECT_INDEX_KEY = "correctAnswerIndex";
+
+    private static final AtomicLong totalDecodeNanos = new AtomicLong();
+    private static final AtomicLong totalValidateNanos = new AtomicLong();
+    private static final AtomicLong totalNormalizeNanos = new AtomicLong();
+    private static final AtomicLong totalRejected = new AtomicLong();
+
+    private final Gson gson = new Gson();
+
+    /** Time spent per stage, accumulated over one batch (or one stream of single questions). */
+    public static final class StageTimings {
+        long decodeNanos;
+        long validateNanos;
+        long normalizeNanos;
+        int rejectedCount;
+
+        public long getDecodeMicros() {
+            return TimeUnit.NANOSECONDS.toMicros(decodeNanos);
+        }
+
+        public long getValidateMicros() {
+            return TimeUnit.NANOSECONDS.toMicros(validateNanos);
+        }
+
+        public long getNormalizeMicros() {
+            return TimeUnit.NANOSECONDS.toMicros(normalizeNanos);
+        }
+
+        public int getRejectedCount() {
+            return rejectedCount;
+        }
+
+        void add(StageTimings other) {
+            decodeNanos += other.decodeNanos;
+            validateNanos += other.validateNanos;
+            normalizeNanos += other.normalizeNanos;
+            rejectedCount += other.rejectedCount;
+        }
+
+        @Override
+        public String toString() {
+            return "decode=" + getDecodeMicros() + "us, validate=" + getValidateMicros()
+                    + "us, normalize=" + getNormalizeMicros() + "us, rejected=" + rejectedCount;
+        }
+    }
+
+    /** Output of {@link #process}: the valid questions as an unmodifiable list, plus stage timings. */
+    public static final class Result {
+        private final List<QuizQuestion> questions;
+        private final StageTimings timings;
+
+        Result(List<QuizQuestion> questions, StageTimings timings) {
+            this.questions = questions;
+            this.timings = timings;
+        }
+
+        public List<QuizQuestion> getQuestions() {
+            return questions;
+        }
+
+        public StageTimings getTimings() {
+            return timings;
+        }
+    }
+
+    /** Runs a whole generated JSON array through decode, validate and normalize. Call off the main thread. */
+    public Result process(@Nullable String batchJson) {
+        StageTimings timings = new StageTimings();
+        long start = System.nanoTime();
+        List<QuizQuestion> decoded;
+        try {
+            decoded = batchJson != null ? decodeBatch(batchJson) : null;
+        } catch (JsonParseException e) {
+            NetworkLog.w(TAG, () -> "Question batch could not be decoded", e);
+            decoded = null;
+        }
+        timings.decodeNanos += System.nanoTime() - start;
+
+        List<QuizQuestion> ready = new ArrayList<>();
+        if (decoded != null) {
+            for (QuizQuestion question : decoded) {
+                QuizQuestion normalized = validateAndNormalize(question, timings);
+                if (normalized != null) ready.add(normalized);
+            }
+        }
+        record(timings);
+        NetworkLog.d(TAG, () -> "Processed batch of " + ready.size() + " questions: " + timings);
+        return new Result(Collections.unmodifiableList(ready), timings);
+    }
+
+    /**
+     * Decodes, validates and normalizes one streamed question object.
+     * Returns null if it is malformed or invalid; timings accumulate into {@code timings}.
+     */
+    @Nullable
+    public QuizQuestion processSingle(String questionJson, StageTimings timings) {
+        StageTimings questionTimings = new StageTimings();
+        long start = System.nanoTime();
+        QuizQuestion decoded;
+        try {
+            decoded = decodeQuestion(JsonParser.parseString(questionJson));
+        } catch (JsonParseException e) {
+            NetworkLog.w(TAG, () -> "Streamed question could not be decoded", e);
+            decoded = null;
+        }
+        questionTimings.decodeNanos = System.nanoTime() - start;
+        QuizQuestion normalized = validateAndNormalize(decoded, questionTimings);
+        timings.add(questionTimings);
+        record(questionTimings);
+        return normalized;
+    }
+
+    // Null for anything but a JSON array; elements that are not questions decode to null entries
+    @Nullable
+    private List<QuizQuestion> decodeBatch(String batchJson) {
+        JsonElement root = JsonParser.parseString(batchJson);
+        if (!root.isJsonArray()) return null;
+        JsonArray elements = root.getAsJsonArray();
+        List<QuizQuestion> decoded = new ArrayList<>(elements.size());
+        for (JsonElement element : elements) {
+            try {
+                decoded.add(decodeQuestion(element));
+            } catch (JsonParseException e) { // e.g. "correctAnswerIndex":"two"; only this element is lost
+                NetworkLog.w(TAG, () -> "Question in batch could not be decoded", e);
+                decoded.add(null);
+            }
+        }
+        return decoded;
+    }
+
+    // Gson would default a missing correctAnswerIndex to 0, which passes validation; such objects decode to null
+    @Nullable
+    private QuizQuestion decodeQuestion(JsonElement element) {
+        if (element.isJsonArray()) return CompactQuestionFormat.decode(element.getAsJsonArray());
+        if (!element.isJsonObject()) return null;
+        JsonElement index = element.getAsJsonObject().get(CORRECT_INDEX_KEY);
+        if (index == null || index.isJsonNull()) return null;
+        return gson.fromJson(element, QuizQuestion.class);
+    }
+
+    @Nullable
+    private static QuizQuestion validateAndNormalize(@Nullable QuizQuestion question, StageTimings timings) {
+        long validateStart = System.nanoTime();
+        boolean valid = isValid(question);
+        timings.validateNanos += System.nanoTime() - validateStart;
+        if (!valid) {
+            timings.rejectedCount++;
+            NetworkLog.d(TAG, () -> "Rejected invalid question: " + NetworkLog.preview(String.valueOf(question)));
+            return null;
+        }
+        long normalizeStart = System.nanoTime();
+        QuizQuestion normalized = normalize(question);
+        timings.normalizeNanos += System.nanoTime() - normalizeStart;
+        return normalized;
+    }
+
+    /** Non-blank question text, exactly 4 non-blank options and a correct index pointing at one of them. */
+    public static boolean isValid(@Nullable QuizQuestion question) {
+        if (question == null || isBlank(question.getQuestion())) return false;
+        List<String> options = question.getOptions();
+        if (options == null || options.size() != OPTION_COUNT) return false;
+        for (String option : options) {
+            if (isBlank(option)) return false;
+        }
+        return question.getCorrectAnswerIndex() >= 0 && question.getCorrectAnswerIndex() < OPTION_COUNT;
+    }
+
+    // Trimmed copy with collapsed whitespace and an unmodifiable options list
+    private static QuizQuestion normalize(QuizQuestion question) {
+        QuizQuestion normalized = new QuizQuestion();
+        normalized.setQuestion(cleanText(question.getQuestion()));
+        List<String> options = new ArrayList<>(OPTION_COUNT);
+        for (String option : question.getOptions()) {
+            options.add(cleanText(option));
+        }
+        normalized.setOptions(Collections.unmodifiableList(options));
+        normalized.setCorrectAnswerIndex(question.getCorrectAnswerIndex());
+        return normalized;
+    }
+
+    private static String cleanText(String text) {
+        return text.trim().replaceAll("\\s+", " ");
+    }
+
+    private static boolean isBlank(@Nullable String text) {
+        return text == null || text.trim().isEmpty();
+    }
+
+    private static void record(StageTimings timings) {
+        totalDecodeNanos.addAndGet(timings.decodeNanos);
+        totalValidateNanos.addAndGet(timings.validateNanos);
+        totalNormalizeNanos.addAndGet(timings.normalizeNanos);
+        totalRejected.addAndGet(timings.rejectedCount);
+    }
+
+    /** Process-wide totals of every batch and streamed question seen so far. */
+    public static StageTimings getTotals() {
+        StageTimings totals = new StageTimings();
+        totals.decodeNanos = totalDecodeNanos.get();
+        totals.validateNanos = totalValidateNanos.get();
+        totals.normalizeNanos = totalNormalizeNanos.get();
+        totals.rejectedCount = (int) totalRejected.get();
+        return totals;
+    }
+}
@@ -0,0 +1,259 @@
+package com.shaivites.quizion.networking;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.shaivites.quizion.models.QuizQuestion;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Bounded on-disk cache of validated question batches, keyed by topic and difficulty.
+ * <p>
+ * One file per entry. Entries expire after a per-entry TTL and the least recently used ones are
+ * evicted once the directory grows past {@code maxBytes}. Recency is kept in the files' modification
+ * time so the LRU order survives process restarts.
+ * <p>
+ * Only batches nobody has played yet belong here, such as prefetched ones; {@link #take} removes a batch
+ * as it is served so a replay never repeats it. Every method may touch the disk, so call them off the main thread.
+ */
+public class QuestionDiskCache {
+
+    private static final String TAG = "QuestionDiskCache";
+    private static final String DIR_NAME = "question_cache";
+    private static final String FILE_SUFFIX = ".json";
+    private static final long DEFAULT_MAX_BYTES = 256 * 1024;           // ~30 batches of 10 questions
+    private static final long DEFAULT_TTL_MS = 24L * 60 * 60 * 1000;    // 24 hours
+
+    private static QuestionDiskCache instance;
+
+    private final File directory;
+    private final long maxBytes;
+    private final long defaultTtlMillis;
+    private final Gson gson = new Gson();
+    // File name -> size in bytes, in least-recently-used first order
+    private final LinkedHashMap<String, Long> lruIndex = new LinkedHashMap<>(16, 0.75f, true);
+    private boolean indexLoaded = false;
+    private long totalBytes = 0;
+    private int hitCount = 0;
+    private int missCount = 0;
+
+    // Serialized form of one cache entry
+    private static class Entry {
+        String topic;
+        String difficulty;
+        long createdAtMillis;
+        long expiresAtMillis;
+        List<QuizQuestion> questions;
+    }
+
+    public static synchronized QuestionDiskCache getInstance(Context context) {
+        if (instance == null) {
+            instance = new QuestionDiskCache(new File(context.getApplicationContext().getCacheDir(), DIR_NAME),
+                    DEFAULT_MAX_BYTES, DEFAULT_TTL_MS);
+        }
+        return instance;
+    }
+
+    QuestionDiskCache(File directory, long maxBytes, long defaultTtlMillis) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.defaultTtlMillis = defaultTtlMillis;
+    }
+
+    /** Returns the cached batch, or null on a miss or an expired entry. Counts towards the hit ratio. */
+    @Nullable
+    public synchronized List<QuizQuestion> get(String topic, String difficulty) {
+        loadIndexIfNeeded();
+        String fileName = fileName(topic, difficulty);
+        if (!lruIndex.containsKey(fileName)) {
+            missCount++;
+            return null;
+        }
+        File file = new File(directory, fileName);
+        Entry entry = readEntry(file);
+        if (entry == null || entry.questions == null || entry.questions.isEmpty()
+                || System.currentTimeMillis() >= entry.expiresAtMillis) {
+            removeFile(fileName);
+            missCount++;
+            return null;
+        }
+        lruIndex.get(fileName); // Access-ordered map: marks the entry as most recently used
+        //noinspection ResultOfMethodCallIgnored
+        file.setLastModified(System.currentTimeMillis());
+        hitCount++;
+        return Collections.unmodifiableList(entry.questions);
+    }
+
+    /** Returns the cached batch like {@link #get} and removes it, for a batch that is about to be played. */
+    @Nullable
+    public synchronized List<QuizQuestion> take(String topic, String difficulty) {
+        List<QuizQuestion> questions = get(topic, difficulty);
+        if (questions != null) removeFile(fileName(topic, difficulty));
+        return questions;
+    }
+
+    public void put(String topic, String difficulty, List<QuizQuestion> questions) {
+        put(topic, difficulty, questions, defaultTtlMillis);
+    }
+
+    /** Stores the valid questions of a batch, replacing any previous entry for the same key. */
+    public synchronized void put(String topic, String difficulty, List<QuizQuestion> questions, long ttlMillis) {
+        List<QuizQuestion> valid = new ArrayList<>();
+        for (QuizQuestion question : questions) {
+            if (QuestionBatchPipeline.isValid(question)) valid.add(question);
+        }
+        if (valid.isEmpty()) return;
+        loadIndexIfNeeded();
+        if (!directory.exists() && !directory.mkdirs()) {
+            Log.w(TAG, "Could not create cache directory " + directory);
+            return;
+        }
+
+        Entry entry = new Entry();
+        entry.topic = topic;
+        entry.difficulty = difficulty;
+        entry.createdAtMillis = System.currentTimeMillis();
+        entry.expiresAtMillis = entry.createdAtMillis + ttlMillis;
+        entry.questions = valid;
+
+        String fileName = fileName(topic, difficulty);
+        File file = new File(directory, fileName);
+        File tempFile = new File(directory, fileName + ".tmp");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(tempFile), StandardCharsets.UTF_8)) {
+            gson.toJson(entry, writer);
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to write cache entry for " + topic, e);
+            //noinspection ResultOfMethodCallIgnored
+            tempFile.delete();
+            return;
+        }
+        removeFile(fileName);
+        if (!tempFile.renameTo(file)) {
+            Log.w(TAG, "Failed to commit cache entry for " + topic);
+            //noinspection ResultOfMethodCallIgnored
+            tempFile.delete();
+            return;
+        }
+        lruIndex.put(fileName, file.length());
+        totalBytes += file.length();
+        trimToSize();
+    }
+
+    public synchronized void remove(String topic, String difficulty) {
+        loadIndexIfNeeded();
+        removeFile(fileName(topic, difficulty));
+    }
+
+    public synchronized void clear() {
+        loadIndexIfNeeded();
+        for (String fileName : new ArrayList<>(lruIndex.keySet())) {
+            removeFile(fileName);
+        }
+    }
+
+    public synchronized int getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized int getMissCount() {
+        return missCount;
+    }
+
+    /** Fraction of lookups served from disk, 0 when nothing was looked up yet. */
+    public synchronized double getHitRatio() {
+        int lookups = hitCount + missCount;
+        return lookups == 0 ? 0 : (double) hitCount / lookups;
+    }
+
+    /** Logs the hit ratio at debug level; the message is only built when debug logging is enabled. */
+    public void logHitRatio() {
+        NetworkLog.d(TAG, () -> String.format(Locale.US, "Question cache hit ratio: %.2f (%d hits, %d misses)",
+                getHitRatio(), getHitCount(), getMissCount()));
+    }
+
+    public synchronized long getSizeBytes() {
+        loadIndexIfNeeded();
+        return totalBytes;
+    }
+
+    public synchronized int getEntryCount() {
+        loadIndexIfNeeded();
+        return lruIndex.size();
+    }
+
+    private void trimToSize() {
+        Iterator<Map.Entry<String, Long>> iterator = lruIndex.entrySet().iterator();
+        while (totalBytes > maxBytes && iterator.hasNext()) {
+            Map.Entry<String, Long> eldest = iterator.next();
+            iterator.remove();
+            totalBytes -= eldest.getValue();
+            //noinspection ResultOfMethodCallIgnored
+            new File(directory, eldest.getKey()).delete();
+            NetworkLog.d(TAG, () -> "Evicted least recently used cache entry " + eldest.getKey());
+        }
+    }
+
+    private void removeFile(String fileName) {
+        Long size = lruIndex.remove(fileName);
+        if (size != null) totalBytes -= size;
+        //noinspection ResultOfMethodCallIgnored
+        new File(directory, fileName).delete();
+    }
+
+    private void loadIndexIfNeeded() {
+        if (indexLoaded) return;
+        indexLoaded = true;
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(FILE_SUFFIX));
+        if (files == null) return;
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                return Long.compare(a.lastModified(), b.lastModified());
+            }
+        });
+        for (File file : files) {
+            lruIndex.put(file.getName(), file.length());
+            totalBytes += file.length();
+        }
+        trimToSize();
+    }
+
+    @Nullable
+    private Entry readEntry(File file) {
+        try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+            return gson.fromJson(reader, Entry.class);
+        } catch (IOException | JsonParseException e) {
+            Log.w(TAG, "Dropping unreadable cache entry " + file.getName(), e);
+            return null;
+        }
+    }
+
+    private static String fileName(String topic, String difficulty) {
+        String key = topic + "|" + difficulty;
+        String readable = key.replaceAll("[^a-zA-Z0-9]", "_").toLowerCase(Locale.US);
+        if (readable.length() > 40) readable = readable.substring(0, 40);
+        return readable + "_" + Integer.toHexString(key.hashCode()) + FILE_SUFFIX;
+    }
+}
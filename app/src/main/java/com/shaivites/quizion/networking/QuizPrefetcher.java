@@ -0,0 +1,198 @@
+package com.shaivites.quizion.networking;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.shaivites.quizion.models.QuizQuestion;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Generates the most likely next quiz batch in the background while the current quiz is played,
+ * so the next quiz start does not pay for a cold Gemini round trip.
+ * <p>
+ * Only one batch is kept. It remembers the topic stats it was generated for and is dropped when the
+ * stats for that topic have moved far enough that the tailored questions no longer fit, or when it is too old.
+ */
+public class QuizPrefetcher {
+
+    private static final String TAG = "QuizPrefetcher";
+    private static final long MAX_BATCH_AGE_MS = 30 * 60 * 1000; // 30 minutes
+    static final int STALE_ANSWER_COUNT = 6;      // New answers on the topic since the prefetch
+    static final double STALE_ACCURACY_DELTA = 0.2; // Shift in the topic's correct ratio since the prefetch
+
+    private static QuizPrefetcher instance;
+
+    @Nullable private QuestionDiskCache diskCache;
+    @Nullable private PrefetchedBatch batch;
+    @Nullable private String inFlightKey;
+
+    private static class PrefetchedBatch {
+        final String key;
+        final String topic;
+        final String difficulty;
+        final List<QuizQuestion> questions;
+        final Map<String, Map<String, String>> statsSnapshot;
+        final long createdAtMillis;
+
+        PrefetchedBatch(String key, String topic, String difficulty, List<QuizQuestion> questions,
+                        Map<String, Map<String, String>> statsSnapshot, long createdAtMillis) {
+            this.key = key;
+            this.topic = topic;
+            this.difficulty = difficulty;
+            this.questions = questions;
+            this.statsSnapshot = statsSnapshot;
+            this.createdAtMillis = createdAtMillis;
+        }
+    }
+
+    public static synchronized QuizPrefetcher getInstance() {
+        if (instance == null) {
+            instance = new QuizPrefetcher();
+        }
+        return instance;
+    }
+
+    /**
+     * Fresh batches are also written through to this cache, so they outlive the process. The copy is
+     * removed again when {@link #takeBatch} hands the batch out.
+     */
+    public synchronized void setDiskCache(@Nullable QuestionDiskCache diskCache) {
+        this.diskCache = diskCache;
+    }
+
+    /**
+     * Starts generating the next batch for {@code topic} unless an equivalent batch is already
+     * prefetched or being fetched. {@code allTopicStats} should be the latest stats, including
+     * answers from the quiz in progress; {@code mode} is the quiz mode the batch is generated for.
+     */
+    public void prefetch(@NonNull GeminiApiService service, String topic, String difficulty, int numberOfQuestions,
+                         @Nullable Map<String, Map<String, String>> allTopicStats, @NonNull ModelRouter.Mode mode) {
+        final String key = batchKey(topic, difficulty, numberOfQuestions);
+        final Map<String, Map<String, String>> snapshot = copyStats(allTopicStats);
+        synchronized (this) {
+            if (key.equals(inFlightKey)) return;
+            if (batch != null && batch.key.equals(key) && !isStale(batch, snapshot, System.currentTimeMillis())) return;
+            inFlightKey = key;
+        }
+        Log.i(TAG, "Prefetching next batch for topic: " + topic);
+
+        // Background priority: a quiz the user is starting right now takes precedence over the prefetch
+        service.generateQuizQuestions(topic, difficulty, numberOfQuestions, snapshot, mode, RequestScheduler.Priority.BACKGROUND,
+                new GeminiApiService.GeminiCallback() {
+                    @Override
+                    public void onSuccess(List<QuizQuestion> questions) {
+                        QuestionDiskCache cache;
+                        synchronized (QuizPrefetcher.this) {
+                            cache = diskCache;
+                        }
+                        // Written before the batch is published, so takeBatch always finds the copy it has to delete
+                        if (cache != null && !questions.isEmpty()) cache.put(topic, difficulty, questions);
+                        synchronized (QuizPrefetcher.this) {
+                            if (key.equals(inFlightKey)) inFlightKey = null;
+                            if (questions.isEmpty()) return;
+                            batch = new PrefetchedBatch(key, topic, difficulty, questions, snapshot, System.currentTimeMillis());
+                        }
+                        Log.i(TAG, "Prefetched " + questions.size() + " questions for topic: " + topic);
+                    }
+
+                    @Override
+                    public void onError(Throwable throwable) {
+                        synchronized (QuizPrefetcher.this) {
+                            if (key.equals(inFlightKey)) inFlightKey = null;
+                        }
+                        Log.w(TAG, "Prefetch failed for topic: " + topic, throwable);
+                    }
+                });
+    }
+
+    /**
+     * Hands out the prefetched batch if it matches the request and is still fresh for the current stats.
+     * A batch is used at most once; a stale one is discarded. Either way its disk copy is deleted, so call
+     * this off the main thread when a disk cache is set.
+     */
+    @Nullable
+    public List<QuizQuestion> takeBatch(String topic, String difficulty, int numberOfQuestions,
+                                        @Nullable Map<String, Map<String, String>> currentTopicStats) {
+        PrefetchedBatch candidate;
+        QuestionDiskCache cache;
+        synchronized (this) {
+            if (batch == null || !batch.key.equals(batchKey(topic, difficulty, numberOfQuestions))) return null;
+            candidate = batch;
+            batch = null;
+            cache = diskCache;
+        }
+        if (cache != null) cache.remove(topic, difficulty);
+        if (isStale(candidate, copyStats(currentTopicStats), System.currentTimeMillis())) {
+            Log.i(TAG, "Discarding stale prefetched batch for topic: " + topic);
+            return null;
+        }
+        return candidate.questions;
+    }
+
+    /**
+     * Drops the prefetched batch and its disk copy if the given stats make it stale, whatever topic it is for,
+     * e.g. after progress was reset. {@link #takeBatch} only checks a batch that matches its request.
+     */
+    public void invalidateIfStale(@Nullable Map<String, Map<String, String>> currentTopicStats) {
+        PrefetchedBatch stale;
+        QuestionDiskCache cache;
+        synchronized (this) {
+            if (batch == null || !isStale(batch, copyStats(currentTopicStats), System.currentTimeMillis())) return;
+            stale = batch;
+            batch = null;
+            cache = diskCache;
+        }
+        Log.i(TAG, "Invalidating stale prefetched batch for topic: " + stale.topic);
+        if (cache != null) cache.remove(stale.topic, stale.difficulty);
+    }
+
+    public synchronized void clear() {
+        batch = null;
+    }
+
+    private static boolean isStale(PrefetchedBatch batch, Map<String, Map<String, String>> currentStats, long nowMillis) {
+        if (nowMillis - batch.createdAtMillis > MAX_BATCH_AGE_MS) return true;
+        return isStatsDrifted(batch.statsSnapshot, currentStats, batch.topic);
+    }
+
+    /** True if the topic's stats moved enough since {@code snapshot} that a tailored batch should be regenerated. */
+    static boolean isStatsDrifted(Map<String, Map<String, String>> snapshot,
+                                  Map<String, Map<String, String>> currentStats, String topic) {
+        int[] before = readStats(snapshot, topic);
+        int[] now = readStats(currentStats, topic);
+        if (now[1] < before[1]) return true; // Progress was reset
+        if (now[1] - before[1] >= STALE_ANSWER_COUNT) return true;
+        double accuracyBefore = before[1] > 0 ? (double) before[0] / before[1] : 0;
+        double accuracyNow = now[1] > 0 ? (double) now[0] / now[1] : 0;
+        return before[1] > 0 && Math.abs(accuracyNow - accuracyBefore) > STALE_ACCURACY_DELTA;
+    }
+
+    // Returns {correct, total}; PreferenceHelper stores stats keyed by the topic title with spaces kept
+    private static int[] readStats(Map<String, Map<String, String>> stats, String topic) {
+        Map<String, String> topicStats = stats.get(topic);
+        if (topicStats == null) return new int[]{0, 0};
+        try {
+            return new int[]{Integer.parseInt(topicStats.get("correct")), Integer.parseInt(topicStats.get("total"))};
+        } catch (NumberFormatException e) {
+            return new int[]{0, 0};
+        }
+    }
+
+    private static Map<String, Map<String, String>> copyStats(@Nullable Map<String, Map<String, String>> stats) {
+        Map<String, Map<String, String>> copy = new HashMap<>();
+        if (stats == null) return copy;
+        for (Map.Entry<String, Map<String, String>> entry : stats.entrySet()) {
+            copy.put(entry.getKey(), new HashMap<>(entry.getValue()));
+        }
+        return copy;
+    }
+
+    private static String batchKey(String topic, String difficulty, int numberOfQuestions) {
+        return topic + "|" + difficulty + "|" + numberOfQuestions;
+    }
+}
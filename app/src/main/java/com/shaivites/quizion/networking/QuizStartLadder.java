@@ -0,0 +1,130 @@
+package com.shaivites.quizion.networking;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.shaivites.quizion.models.QuizQuestion;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The local sources a quiz can start from when the live Gemini batch is not there in time, best first:
+ * a prefetched batch, the disk cache, then the bundled offline bank. Questions the user already answered
+ * are filtered out of each of them.
+ * <p>
+ * A quiz started from a local source keeps the live stream running; {@link #mergeLive} then swaps the
+ * live questions in for the local ones the player has not reached yet.
+ */
+public class QuizStartLadder {
+
+    /** Where the questions of a quiz start came from. */
+    public enum Source {
+        PREFETCHED, DISK_CACHE, LIVE, OFFLINE_BANK
+    }
+
+    public static class Start {
+        public final Source source;
+        public final List<QuizQuestion> questions;
+
+        Start(Source source, List<QuizQuestion> questions) {
+            this.source = source;
+            this.questions = questions;
+        }
+    }
+
+    private final QuizPrefetcher prefetcher;
+    private final QuestionDiskCache diskCache;
+    private final OfflineQuestionBank offlineBank;
+    @Nullable private final SeenQuestionFilter seenFilter;
+
+    public QuizStartLadder(@NonNull QuizPrefetcher prefetcher, @NonNull QuestionDiskCache diskCache,
+                           @NonNull OfflineQuestionBank offlineBank) {
+        this(prefetcher, diskCache, offlineBank, null);
+    }
+
+    /** Questions {@code seenFilter} reports as already answered are dropped from every source. */
+    public QuizStartLadder(@NonNull QuizPrefetcher prefetcher, @NonNull QuestionDiskCache diskCache,
+                           @NonNull OfflineQuestionBank offlineBank, @Nullable SeenQuestionFilter seenFilter) {
+        this.prefetcher = prefetcher;
+        this.diskCache = diskCache;
+        this.offlineBank = offlineBank;
+        this.seenFilter = seenFilter;
+    }
+
+    /**
+     * The prefetched or cached batch for the quiz, or null if neither has unseen questions for it. The batch
+     * is consumed. Reads from disk, so call it off the main thread.
+     */
+    @Nullable
+    public Start takeStoredStart(String topic, String difficulty, int numberOfQuestions,
+                                 @Nullable Map<String, Map<String, String>> currentTopicStats) {
+        prefetcher.invalidateIfStale(currentTopicStats); // Also a batch for another topic, which takeBatch leaves alone
+        List<QuizQuestion> prefetched = unseen(prefetcher.takeBatch(topic, difficulty, numberOfQuestions, currentTopicStats));
+        if (!prefetched.isEmpty()) return new Start(Source.PREFETCHED, prefetched);
+        List<QuizQuestion> cached = unseen(diskCache.take(topic, difficulty));
+        if (!cached.isEmpty()) return new Start(Source.DISK_CACHE, cached);
+        return null;
+    }
+
+    /**
+     * The best local batch for the quiz, or null if no source has questions for it. A prefetched or cached
+     * batch is consumed. The offline bank is the last resort, so it fills up with seen questions when it runs
+     * out of unseen ones. Reads from disk, so call it off the main thread.
+     */
+    @Nullable
+    public Start takeLocalStart(String topic, String difficulty, int numberOfQuestions,
+                                @Nullable Map<String, Map<String, String>> currentTopicStats) {
+        Start stored = takeStoredStart(topic, difficulty, numberOfQuestions, currentTopicStats);
+        if (stored != null) return stored;
+        // Draw extra so dropping seen questions still leaves a full quiz
+        List<QuizQuestion> offline = unseenFirst(offlineBank.getQuestions(topic, numberOfQuestions * 2), numberOfQuestions);
+        if (!offline.isEmpty()) return new Start(Source.OFFLINE_BANK, offline);
+        return null;
+    }
+
+    /**
+     * Puts a live question into {@code questions} at {@code slot}, replacing the local question there, or
+     * appends it if a short local batch ends at {@code slot}. Returns false if the slot is past the end of a
+     * quiz of {@code maxQuestions}, or the quiz already has the question.
+     */
+    public static boolean mergeLive(List<QuizQuestion> questions, QuizQuestion live, int slot, int maxQuestions) {
+        if (slot < 0 || slot > questions.size() || slot >= maxQuestions) return false;
+        String text = normalized(live);
+        for (QuizQuestion question : questions) {
+            if (normalized(question).equals(text)) return false;
+        }
+        if (slot == questions.size()) {
+            questions.add(live);
+        } else {
+            questions.set(slot, live);
+        }
+        return true;
+    }
+
+    private List<QuizQuestion> unseen(@Nullable List<QuizQuestion> questions) {
+        if (questions == null) return Collections.emptyList();
+        if (seenFilter == null) return questions;
+        List<QuizQuestion> unseen = new ArrayList<>();
+        for (QuizQuestion question : questions) {
+            if (!seenFilter.mightHaveSeen(question)) unseen.add(question);
+        }
+        return unseen;
+    }
+
+    private List<QuizQuestion> unseenFirst(List<QuizQuestion> questions, int count) {
+        List<QuizQuestion> ordered = new ArrayList<>(unseen(questions));
+        for (QuizQuestion question : questions) {
+            if (ordered.size() >= count) break;
+            if (!ordered.contains(question)) ordered.add(question);
+        }
+        return ordered.size() > count ? new ArrayList<>(ordered.subList(0, count)) : ordered;
+    }
+
+    private static String normalized(QuizQuestion question) {
+        return question.getQuestion() == null ? "" : question.getQuestion().trim().toLowerCase(Locale.US);
+    }
+}
@@ -0,0 +1,31 @@
+package com.shaivites.quizion.networking;
+
+import java.io.IOException;
+
+/**
+ * Thrown when the {@link RateLimiter} gives up on a request: the daily token budget is spent, or the
+ * API kept answering 429 and the wait it asked for is longer than a user would sit through.
+ */
+public class QuotaExceededException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final boolean dailyBudget;
+    private final long retryAfterMillis;
+
+    QuotaExceededException(String message, boolean dailyBudget, long retryAfterMillis) {
+        super(message);
+        this.dailyBudget = dailyBudget;
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    /** True if the daily token budget is spent, so nothing will succeed before the quota day rolls over. */
+    public boolean isDailyBudget() {
+        return dailyBudget;
+    }
+
+    /** How long until a new request is expected to go through. */
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+}
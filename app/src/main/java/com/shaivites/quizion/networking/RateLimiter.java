@@ -0,0 +1,328 @@
+package com.shaivites.quizion.networking;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Client-side token bucket in front of every Gemini generate request.
+ * <p>
+ * Bursts (a user tapping through topic cards, parallel chunks, prefetches) are smoothed to the
+ * per-minute quota: a request that finds the bucket empty waits its turn in FIFO order instead of
+ * failing. A 429 from the API pauses all requests for the {@code Retry-After} the server asked for.
+ * Tokens reported in {@code usageMetadata} are charged against a daily budget; once it is spent,
+ * requests fail fast with a {@link QuotaExceededException} until the quota day rolls over.
+ * <p>
+ * The usage file is read and written on a background thread of its own, never while a request holds
+ * the limiter's lock: writes are coalesced, so a burst of responses costs one write of the latest total.
+ */
+public class RateLimiter {
+
+    private static final String TAG = "RateLimiter";
+    static final long DEFAULT_RETRY_AFTER_MS = 10000; // 10 seconds, when a 429 does not say how long to wait
+    private static final long MAX_RETRY_AFTER_MS = 5 * 60 * 1000; // 5 minutes
+    private static final long WAIT_SLICE_MS = 100; // How often a waiting request checks whether it was cancelled
+    // Gemini quotas reset at midnight Pacific time
+    private static final TimeZone QUOTA_TIME_ZONE = TimeZone.getTimeZone("America/Los_Angeles");
+    private static final long PERSIST_THREAD_TIMEOUT_S = 30;
+
+    private final int burstCapacity;
+    private final long nanosPerPermit;
+    private final long dailyTokenBudget;
+    private final long maxWaitMillis;
+
+    // All state below is guarded by this
+    private final List<Object> waiters = new ArrayList<>(); // FIFO; only the head may take a permit
+    private double permits;
+    private long lastRefillNanos;
+    private long pausedUntilNanos;
+    private int maxQueueDepth = 0;
+    private int delayedRequestCount = 0;
+    private int serverThrottleCount = 0;
+    private int usageDay;
+    private long tokensUsedToday = 0;
+    @Nullable private File usageFile;
+    private boolean saveQueued = false;
+
+    // One thread, so the usage file is loaded before any save and saves land in order
+    private final ThreadPoolExecutor persistExecutor = new ThreadPoolExecutor(1, 1, PERSIST_THREAD_TIMEOUT_S, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(), runnable -> {
+                Thread thread = new Thread(runnable, "rate-limiter-usage");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    /**
+     * @param burstCapacity     requests that may go out back to back after an idle period
+     * @param requestsPerMinute sustained request rate
+     * @param dailyTokenBudget  total tokens the app may spend per quota day
+     * @param maxWaitMillis     longest a request may wait for a permit before it fails instead
+     */
+    public RateLimiter(int burstCapacity, int requestsPerMinute, long dailyTokenBudget, long maxWaitMillis) {
+        this.burstCapacity = Math.max(1, burstCapacity);
+        this.nanosPerPermit = TimeUnit.MINUTES.toNanos(1) / Math.max(1, requestsPerMinute);
+        this.dailyTokenBudget = dailyTokenBudget;
+        this.maxWaitMillis = maxWaitMillis;
+        this.permits = this.burstCapacity;
+        this.lastRefillNanos = System.nanoTime();
+        this.pausedUntilNanos = lastRefillNanos;
+        this.usageDay = quotaDay(System.currentTimeMillis());
+        persistExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Persists the daily token usage in {@code file}, so the budget survives process restarts.
+     * Usage already recorded in the file for the current quota day is loaded in the background.
+     */
+    public void setUsageFile(@NonNull File file) {
+        synchronized (this) {
+            if (file.equals(usageFile)) return;
+            usageFile = file;
+        }
+        persistExecutor.execute(() -> loadUsage(file));
+    }
+
+    private void loadUsage(File file) {
+        if (!file.exists()) return;
+        int day;
+        long tokens;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line = reader.readLine();
+            String[] fields = line != null ? line.trim().split(" ") : new String[0];
+            if (fields.length != 2) return;
+            day = Integer.parseInt(fields[0]);
+            tokens = Long.parseLong(fields[1]);
+        } catch (IOException | NumberFormatException e) {
+            Log.w(TAG, "Could not read token usage from " + file, e);
+            return;
+        }
+        synchronized (this) {
+            rollOverDay();
+            if (day == usageDay) tokensUsedToday = Math.max(tokensUsedToday, tokens);
+        }
+    }
+
+    /**
+     * Blocks until the request may be sent. Waiting requests are served in arrival order.
+     * @throws QuotaExceededException if the daily budget is spent or the wait would exceed the limit
+     * @throws InterruptedIOException if {@code token} is cancelled or preempted while waiting
+     */
+    void acquire(@Nullable RequestToken token) throws IOException {
+        Object ticket = new Object();
+        synchronized (this) {
+            checkDailyBudget();
+            waiters.add(ticket);
+            maxQueueDepth = Math.max(maxQueueDepth, waiters.size());
+            long startNanos = System.nanoTime();
+            boolean delayed = false;
+            try {
+                while (true) {
+                    if (token != null) token.throwIfAborted();
+                    long now = System.nanoTime();
+                    refill(now);
+                    int position = waiters.indexOf(ticket);
+                    long waitNanos = nanosUntilPermits(now, position + 1);
+                    if (waitNanos == 0 && position == 0) {
+                        permits -= 1;
+                        return;
+                    }
+                    long totalWaitMillis = TimeUnit.NANOSECONDS.toMillis(now - startNanos + waitNanos);
+                    if (totalWaitMillis > maxWaitMillis) {
+                        throw new QuotaExceededException("Gemini API rate limit reached, try again in "
+                                + TimeUnit.NANOSECONDS.toSeconds(waitNanos) + "s", false, TimeUnit.NANOSECONDS.toMillis(waitNanos));
+                    }
+                    if (!delayed && waitNanos > 0) {
+                        delayed = true;
+                        delayedRequestCount++;
+                        Log.i(TAG, "Request queued for ~" + TimeUnit.NANOSECONDS.toMillis(waitNanos) + "ms, "
+                                + waiters.size() + " waiting");
+                    }
+                    wait(Math.max(1, Math.min(WAIT_SLICE_MS, TimeUnit.NANOSECONDS.toMillis(waitNanos))));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for a rate limit permit");
+            } finally {
+                waiters.remove(ticket);
+                notifyAll(); // The next waiter may be at the head now
+            }
+        }
+    }
+
+    /** The API answered 429: holds back every request until {@code retryAfterMillis} has passed. */
+    synchronized void onServerThrottled(long retryAfterMillis) {
+        long now = System.nanoTime();
+        pausedUntilNanos = Math.max(pausedUntilNanos, now + TimeUnit.MILLISECONDS.toNanos(retryAfterMillis));
+        permits = 0; // Our view of the quota was too optimistic
+        lastRefillNanos = now;
+        serverThrottleCount++;
+        Log.w(TAG, "Throttled by the API, pausing requests for " + retryAfterMillis + "ms");
+        notifyAll();
+    }
+
+    /** Charges {@code totalTokens} from a response's usageMetadata against today's budget. */
+    synchronized void recordUsage(int totalTokens) {
+        if (totalTokens <= 0) return;
+        rollOverDay();
+        tokensUsedToday += totalTokens;
+        if (usageFile != null && !saveQueued) {
+            saveQueued = true;
+            persistExecutor.execute(this::saveUsage);
+        }
+    }
+
+    /** Requests currently waiting for a permit. */
+    public synchronized int getQueueDepth() {
+        return waiters.size();
+    }
+
+    public synchronized int getMaxQueueDepth() {
+        return maxQueueDepth;
+    }
+
+    /** Requests that had to wait for a permit instead of going out at once. */
+    public synchronized int getDelayedRequestCount() {
+        return delayedRequestCount;
+    }
+
+    /** 429 responses received so far. */
+    public synchronized int getServerThrottleCount() {
+        return serverThrottleCount;
+    }
+
+    public synchronized long getTokensUsedToday() {
+        rollOverDay();
+        return tokensUsedToday;
+    }
+
+    public synchronized long getRemainingDailyTokens() {
+        rollOverDay();
+        return Math.max(0, dailyTokenBudget - tokensUsedToday);
+    }
+
+    /**
+     * Milliseconds to wait after a 429. Prefers the {@code Retry-After} header (delta-seconds or an HTTP date),
+     * then the error body's RetryInfo {@code retryDelay} (e.g. "37s" or "1.5s"), else {@link #DEFAULT_RETRY_AFTER_MS}.
+     */
+    static long parseRetryAfter(@Nullable String retryAfterHeader, @Nullable String retryDelay, long nowMillis) {
+        long millis = -1;
+        if (retryAfterHeader != null && !retryAfterHeader.trim().isEmpty()) {
+            String value = retryAfterHeader.trim();
+            try {
+                millis = TimeUnit.SECONDS.toMillis(Long.parseLong(value));
+            } catch (NumberFormatException notSeconds) {
+                SimpleDateFormat httpDate = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+                httpDate.setTimeZone(TimeZone.getTimeZone("GMT"));
+                try {
+                    millis = Math.max(0, httpDate.parse(value).getTime() - nowMillis);
+                } catch (ParseException e) {
+                    Log.w(TAG, "Unparseable Retry-After header: " + value);
+                }
+            }
+        }
+        if (millis < 0 && retryDelay != null && retryDelay.trim().endsWith("s")) {
+            String seconds = retryDelay.trim();
+            try {
+                millis = (long) (Double.parseDouble(seconds.substring(0, seconds.length() - 1)) * 1000);
+            } catch (NumberFormatException e) {
+                Log.w(TAG, "Unparseable retryDelay: " + retryDelay);
+            }
+        }
+        if (millis < 0) millis = DEFAULT_RETRY_AFTER_MS;
+        return Math.min(millis, MAX_RETRY_AFTER_MS);
+    }
+
+    private void refill(long now) {
+        if (now > lastRefillNanos) {
+            permits = Math.min(burstCapacity, permits + (double) (now - lastRefillNanos) / nanosPerPermit);
+            lastRefillNanos = now;
+        }
+    }
+
+    // Time until {@code count} permits have accumulated and no server pause is in effect
+    private long nanosUntilPermits(long now, int count) {
+        long untilResume = Math.max(0, pausedUntilNanos - now);
+        long untilRefill = permits >= count ? 0 : (long) Math.ceil((count - permits) * nanosPerPermit);
+        return Math.max(untilResume, untilRefill);
+    }
+
+    private void checkDailyBudget() throws QuotaExceededException {
+        rollOverDay();
+        if (tokensUsedToday >= dailyTokenBudget) {
+            long untilReset = millisUntilNextQuotaDay(System.currentTimeMillis());
+            Log.w(TAG, "Daily token budget of " + dailyTokenBudget + " spent, resets in " + untilReset + "ms");
+            throw new QuotaExceededException("Daily question limit reached", true, untilReset);
+        }
+    }
+
+    private void rollOverDay() {
+        int today = quotaDay(System.currentTimeMillis());
+        if (today != usageDay) {
+            usageDay = today;
+            tokensUsedToday = 0;
+        }
+    }
+
+    // Writes the latest total; usage recorded while a save is queued rides along with it
+    private void saveUsage() {
+        File file;
+        String line;
+        synchronized (this) {
+            saveQueued = false;
+            file = usageFile;
+            line = usageDay + " " + tokensUsedToday;
+        }
+        if (file == null) return;
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            writer.write(line);
+        } catch (IOException e) {
+            Log.w(TAG, "Could not save token usage to " + file, e);
+        }
+    }
+
+    // Used by tests: waits until the usage file was loaded and every queued save written
+    void awaitPersisted() throws InterruptedException, ExecutionException {
+        persistExecutor.submit(() -> { }).get();
+    }
+
+    private static int quotaDay(long timeMillis) {
+        Calendar calendar = Calendar.getInstance(QUOTA_TIME_ZONE, Locale.US);
+        calendar.setTime(new Date(timeMillis));
+        return calendar.get(Calendar.YEAR) * 1000 + calendar.get(Calendar.DAY_OF_YEAR);
+    }
+
+    private static long millisUntilNextQuotaDay(long nowMillis) {
+        Calendar calendar = Calendar.getInstance(QUOTA_TIME_ZONE, Locale.US);
+        calendar.setTime(new Date(nowMillis));
+        calendar.add(Calendar.DAY_OF_YEAR, 1);
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        return calendar.getTimeInMillis() - nowMillis;
+    }
+}
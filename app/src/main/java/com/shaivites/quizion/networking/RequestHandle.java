@@ -0,0 +1,72 @@
+package com.shaivites.quizion.networking;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.lifecycle.DefaultLifecycleObserver;
+import androidx.lifecycle.LifecycleOwner;
+
+/**
+ * One caller's stake in a question request, returned by {@link GeminiApiService#generateQuizQuestions}
+ * and {@link GeminiApiService#streamQuizQuestions}.
+ * <p>
+ * {@link #cancel()} detaches the caller's callbacks, so nothing it captured (typically an Activity) stays
+ * reachable from the networking layer. When the last caller of a shared request cancels, the HTTP exchange
+ * is aborted and parsing stops. {@link #bindTo} does this automatically when a lifecycle is destroyed.
+ */
+public final class RequestHandle {
+
+    private final InFlightRequestCoalescer.SharedCall call;
+    private final boolean startsRequest;
+    @Nullable private GeminiApiService.QuestionStreamCallback questionCallback;
+    @Nullable private GeminiApiService.GeminiCallback callback;
+    private boolean cancelled = false;
+
+    RequestHandle(InFlightRequestCoalescer.SharedCall call, boolean startsRequest,
+                  @Nullable GeminiApiService.QuestionStreamCallback questionCallback,
+                  GeminiApiService.GeminiCallback callback) {
+        this.call = call;
+        this.startsRequest = startsRequest;
+        this.questionCallback = questionCallback;
+        this.callback = callback;
+    }
+
+    /** Stops delivering results to this caller. Safe to call more than once, or after the request finished. */
+    public void cancel() {
+        GeminiApiService.QuestionStreamCallback detachedQuestionCallback;
+        GeminiApiService.GeminiCallback detachedCallback;
+        synchronized (this) {
+            if (cancelled) return;
+            cancelled = true;
+            detachedQuestionCallback = questionCallback;
+            detachedCallback = callback;
+            questionCallback = null;
+            callback = null;
+        }
+        call.removeSubscriber(detachedQuestionCallback, detachedCallback);
+    }
+
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    /** Cancels this request when {@code owner} is destroyed, e.g. an Activity that is finishing. */
+    public RequestHandle bindTo(@NonNull LifecycleOwner owner) {
+        owner.getLifecycle().addObserver(new DefaultLifecycleObserver() {
+            @Override
+            public void onDestroy(@NonNull LifecycleOwner source) {
+                source.getLifecycle().removeObserver(this);
+                cancel();
+            }
+        });
+        return this;
+    }
+
+    // True if this caller has to send the request rather than having joined one already in flight
+    boolean startsRequest() {
+        return startsRequest;
+    }
+
+    InFlightRequestCoalescer.SharedCall getCall() {
+        return call;
+    }
+}
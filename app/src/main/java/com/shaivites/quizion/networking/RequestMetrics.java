@@ -0,0 +1,138 @@
+package com.shaivites.quizion.networking;
+
+import androidx.annotation.NonNull;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Fixed-bucket histograms of where the time and tokens of question requests go, from connecting to the
+ * decoded questions, plus the quiz start latency the app reports. Every exchange with the API records its
+ * transport timings, every successful batch its parse times and {@code usageMetadata} token counts.
+ * <p>
+ * Histograms can be queried in-process through {@link #getHistogram} and appended to a file with
+ * {@link #dump}, one JSON line per dump tagged with the app release, so percentiles can be compared across
+ * releases by adding up the bucket counts of their lines.
+ */
+public final class RequestMetrics {
+
+    private static final long[] MILLIS_BOUNDS = {10, 25, 50, 100, 250, 500, 1000, 2000, 3000, 5000, 8000, 12000, 20000, 30000, 60000};
+    private static final long[] MICROS_BOUNDS = {50, 100, 250, 500, 1000, 2500, 5000, 10000, 25000, 50000, 100000, 250000};
+    private static final long[] TOKEN_BOUNDS = {50, 100, 200, 400, 800, 1600, 3200, 6400, 12800, 25600};
+
+    public enum Metric {
+        /** DNS lookup, TCP and TLS handshake; close to 0 when a pooled connection was reused. */
+        CONNECT_MS(MILLIS_BOUNDS),
+        /** From sending the request until the status line arrived; includes generation for non-streamed calls. */
+        TTFB_MS(MILLIS_BOUNDS),
+        /** Time spent waiting for body bytes; for streams this is where generation happens. */
+        TRANSFER_MS(MILLIS_BOUNDS),
+        /** CPU time to pull the candidate text and usage out of the response envelope(s). */
+        ENVELOPE_US(MICROS_BOUNDS),
+        /** CPU time to decode, validate and normalize the questions of a batch. */
+        DECODE_US(MICROS_BOUNDS),
+        /** From starting a streamed batch until its first question was handed out. */
+        FIRST_QUESTION_MS(MILLIS_BOUNDS),
+        /** From starting a batch request until its questions were ready, retries included. */
+        BATCH_MS(MILLIS_BOUNDS),
+        /** From the quiz screen asking for questions until the first one was shown, whatever its source. */
+        QUIZ_START_MS(MILLIS_BOUNDS),
+        PROMPT_TOKENS(TOKEN_BOUNDS),
+        CANDIDATE_TOKENS(TOKEN_BOUNDS),
+        TOTAL_TOKENS(TOKEN_BOUNDS);
+
+        final long[] bounds;
+
+        Metric(long[] bounds) {
+            this.bounds = bounds;
+        }
+    }
+
+    private final Map<Metric, Histogram> histograms = new EnumMap<>(Metric.class);
+
+    public RequestMetrics() {
+        for (Metric metric : Metric.values()) histograms.put(metric, new Histogram(metric.bounds));
+    }
+
+    public void record(@NonNull Metric metric, long value) {
+        histograms.get(metric).record(value);
+    }
+
+    /** The live histogram of {@code metric}; it keeps filling up until the next {@link #dump}. */
+    public Histogram getHistogram(@NonNull Metric metric) {
+        return histograms.get(metric);
+    }
+
+    /** Connect, time to first byte and body transfer of one exchange, once its body was read. */
+    void recordTransport(TransportResponse response) {
+        if (response.getConnectMillis() >= 0) record(Metric.CONNECT_MS, response.getConnectMillis());
+        record(Metric.TTFB_MS, response.getTimeToFirstByteMillis());
+        record(Metric.TRANSFER_MS, response.getTransferMillis());
+    }
+
+    void recordTokens(int promptTokens, int candidateTokens, int totalTokens) {
+        if (totalTokens <= 0) return; // No usageMetadata in the response
+        record(Metric.PROMPT_TOKENS, promptTokens);
+        record(Metric.CANDIDATE_TOKENS, candidateTokens);
+        record(Metric.TOTAL_TOKENS, totalTokens);
+    }
+
+    /**
+     * Appends every non-empty histogram to {@code file} as one JSON line tagged with {@code release}, then
+     * starts all histograms over, so consecutive lines never count a request twice. Does nothing if nothing
+     * was recorded since the last dump.
+     */
+    public void dump(@NonNull File file, @NonNull String release) throws IOException {
+        JsonObject metrics = new JsonObject();
+        for (Map.Entry<Metric, Histogram> entry : histograms.entrySet()) {
+            Histogram histogram = entry.getValue().copyAndReset();
+            if (histogram.getCount() > 0) metrics.add(entry.getKey().name().toLowerCase(Locale.US), toJson(histogram));
+        }
+        if (metrics.size() == 0) return;
+        JsonObject line = new JsonObject();
+        line.addProperty("release", release);
+        line.addProperty("time", System.currentTimeMillis());
+        line.add("metrics", metrics);
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8)) {
+            writer.write(line.toString());
+            writer.write('\n');
+        }
+    }
+
+    private static JsonObject toJson(Histogram histogram) {
+        JsonObject json = new JsonObject();
+        json.addProperty("count", histogram.getCount());
+        json.addProperty("mean", histogram.getMean());
+        json.addProperty("p50", histogram.percentile(0.5));
+        json.addProperty("p95", histogram.percentile(0.95));
+        json.addProperty("p99", histogram.percentile(0.99));
+        json.addProperty("max", histogram.getMax());
+        JsonArray bounds = new JsonArray();
+        for (long bound : histogram.getBounds()) bounds.add(bound);
+        JsonArray counts = new JsonArray();
+        for (long count : histogram.getBucketCounts()) counts.add(count);
+        json.add("bounds", bounds);
+        json.add("counts", counts);
+        return json;
+    }
+
+    /** One line per metric with samples: count and p50/p95/p99. */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<Metric, Histogram> entry : histograms.entrySet()) {
+            if (entry.getValue().getCount() > 0) sb.append(entry.getKey()).append(": ").append(entry.getValue()).append('\n');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,226 @@
+package com.shaivites.quizion.networking;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded, priority-ordered executor for API requests.
+ * <p>
+ * Interactive work (starting a quiz) always runs before queued background work (prefetching). When an
+ * interactive request arrives and every slot is busy, the most recently started preemptible background
+ * request is aborted through its {@link RequestToken} and re-queued, so the user never waits behind a
+ * prefetch. Idle worker threads time out, so the pool costs nothing between quizzes.
+ */
+public class RequestScheduler {
+
+    private static final String TAG = "RequestScheduler";
+    private static final long IDLE_THREAD_TIMEOUT_S = 30;
+    private static final long SLOW_QUEUE_LOG_MS = 100;
+
+    public enum Priority {
+        INTERACTIVE, // Ordinal order is queue order
+        BACKGROUND
+    }
+
+    /**
+     * A unit of work. Implementations pass the token on to the transport, call {@link RequestToken#tryComplete()}
+     * before delivering a result and stop quietly once the token is preempted. Work whose token was cancelled
+     * while queued is still run once, so it can report the cancellation.
+     */
+    public interface Work {
+        void run(RequestToken token);
+    }
+
+    private final int maxConcurrent;
+    private final ThreadPoolExecutor executor;
+    private final AtomicLong sequence = new AtomicLong();
+    private final List<Task> running = new ArrayList<>(); // Guarded by this
+
+    // Queue-time metrics per priority, guarded by this
+    private final long[] startedCount = new long[Priority.values().length];
+    private final long[] totalQueueNanos = new long[Priority.values().length];
+    private final long[] maxQueueNanos = new long[Priority.values().length];
+    private int preemptedCount = 0;
+    private int cancelledCount = 0;
+
+    public RequestScheduler(int maxConcurrent) {
+        this.maxConcurrent = maxConcurrent;
+        final AtomicInteger threadNumber = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "gemini-request-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        executor = new ThreadPoolExecutor(maxConcurrent, maxConcurrent, IDLE_THREAD_TIMEOUT_S, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<Runnable>(), threadFactory);
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Queues {@code work} and returns the token that cancels it.
+     * Only preemptible background work may be aborted and re-run for interactive requests,
+     * so it must not have side effects that would repeat, such as streaming partial results.
+     */
+    public RequestToken submit(@NonNull Priority priority, boolean preemptible, @NonNull Work work) {
+        final Task task = new Task(priority, preemptible && priority == Priority.BACKGROUND, work, sequence.getAndIncrement());
+        task.token.setCancelListener(this::onCancelled);
+        enqueue(task);
+        if (priority == Priority.INTERACTIVE) preemptBackgroundIfSaturated();
+        return task.token;
+    }
+
+    /** Stops accepting work and aborts everything queued or running. */
+    public void shutdown() {
+        List<Task> toAbort;
+        synchronized (this) {
+            toAbort = new ArrayList<>(running);
+        }
+        for (Runnable queued : executor.shutdownNow()) {
+            ((Task) queued).token.cancel();
+        }
+        for (Task task : toAbort) {
+            task.token.cancel();
+        }
+    }
+
+    public int getQueuedCount() {
+        return executor.getQueue().size();
+    }
+
+    public synchronized int getRunningCount() {
+        return running.size();
+    }
+
+    /** Mean time requests of {@code priority} spent queued before starting, 0 if none started yet. */
+    public synchronized long getAverageQueueMillis(Priority priority) {
+        long started = startedCount[priority.ordinal()];
+        return started == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalQueueNanos[priority.ordinal()] / started);
+    }
+
+    public synchronized long getMaxQueueMillis(Priority priority) {
+        return TimeUnit.NANOSECONDS.toMillis(maxQueueNanos[priority.ordinal()]);
+    }
+
+    public synchronized long getStartedCount(Priority priority) {
+        return startedCount[priority.ordinal()];
+    }
+
+    public synchronized int getPreemptedCount() {
+        return preemptedCount;
+    }
+
+    public synchronized int getCancelledCount() {
+        return cancelledCount;
+    }
+
+    private void enqueue(Task task) {
+        task.enqueuedAtNanos = System.nanoTime();
+        executor.execute(task);
+    }
+
+    private void preemptBackgroundIfSaturated() {
+        Task victim = null;
+        synchronized (this) {
+            if (running.size() < maxConcurrent) return;
+            // The most recently started request loses the least work when it is restarted
+            for (Task task : running) {
+                if (task.preemptible && !task.token.isAborted()
+                        && (victim == null || task.startedAtNanos > victim.startedAtNanos)) {
+                    victim = task;
+                }
+            }
+            if (victim == null) return;
+        }
+        if (victim.token.preempt()) {
+            synchronized (this) {
+                preemptedCount++;
+            }
+            Log.i(TAG, "Preempted background request #" + victim.sequenceNumber + " for interactive work");
+        }
+    }
+
+    private synchronized void onCancelled() {
+        cancelledCount++;
+    }
+
+    private void recordStart(Task task) {
+        long queuedNanos = task.startedAtNanos - task.enqueuedAtNanos;
+        int index = task.priority.ordinal();
+        startedCount[index]++;
+        totalQueueNanos[index] += queuedNanos;
+        maxQueueNanos[index] = Math.max(maxQueueNanos[index], queuedNanos);
+        if (queuedNanos > TimeUnit.MILLISECONDS.toNanos(SLOW_QUEUE_LOG_MS)) {
+            Log.d(TAG, task.priority + " request #" + task.sequenceNumber + " waited "
+                    + TimeUnit.NANOSECONDS.toMillis(queuedNanos) + "ms in the queue");
+        }
+    }
+
+    private final class Task implements Runnable, Comparable<Task> {
+        final Priority priority;
+        final boolean preemptible;
+        final Work work;
+        final long sequenceNumber; // Kept across re-queues, so a preempted request stays first among its peers
+        final RequestToken token = new RequestToken();
+        long enqueuedAtNanos;
+        long startedAtNanos;
+
+        Task(Priority priority, boolean preemptible, Work work, long sequenceNumber) {
+            this.priority = priority;
+            this.preemptible = preemptible;
+            this.work = work;
+            this.sequenceNumber = sequenceNumber;
+        }
+
+        @Override
+        public void run() {
+            if (token.isCancelled()) {
+                runQuietly(); // Lets the work report the cancellation without counting as a started request
+                return;
+            }
+            synchronized (RequestScheduler.this) {
+                startedAtNanos = System.nanoTime();
+                running.add(this);
+                recordStart(this);
+            }
+            try {
+                runQuietly();
+            } finally {
+                boolean requeue;
+                synchronized (RequestScheduler.this) {
+                    running.remove(this);
+                    requeue = token.isPreempted() && !token.isCancelled() && !executor.isShutdown();
+                }
+                if (requeue) {
+                    token.clearPreempted();
+                    enqueue(this);
+                }
+            }
+        }
+
+        private void runQuietly() {
+            try {
+                work.run(token);
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Request #" + sequenceNumber + " failed unexpectedly", e);
+            }
+        }
+
+        @Override
+        public int compareTo(@Nullable Task other) {
+            if (other == null) return -1;
+            if (priority != other.priority) return priority.compareTo(other.priority);
+            return Long.compare(sequenceNumber, other.sequenceNumber);
+        }
+    }
+}
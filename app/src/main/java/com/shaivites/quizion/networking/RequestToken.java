@@ -0,0 +1,117 @@
+package com.shaivites.quizion.networking;
+
+import androidx.annotation.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Cancellation and preemption signal for one request run by the {@link RequestScheduler}.
+ * <p>
+ * The transport registers an abort action for each live connection (e.g. {@code disconnect()}),
+ * so cancelling or preempting the request stops the HTTP exchange at once instead of letting it
+ * run to completion. A preempted request is re-queued by the scheduler; a cancelled one is dropped.
+ */
+public final class RequestToken {
+
+    private boolean cancelled = false;
+    private boolean preempted = false;
+    private boolean completed = false;
+    private final List<Closeable> abortActions = new ArrayList<>();
+    @Nullable private Runnable cancelListener;
+
+    /** Cancels the request: removes it from the queue if it has not started, aborts its I/O otherwise. */
+    public void cancel() {
+        List<Closeable> actions;
+        Runnable listener;
+        synchronized (this) {
+            if (cancelled) return;
+            cancelled = true;
+            actions = new ArrayList<>(abortActions);
+            listener = cancelListener;
+        }
+        if (listener != null) listener.run();
+        abortAll(actions);
+    }
+
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    /** True once the request was cancelled or preempted; work in progress should stop quietly. */
+    public synchronized boolean isAborted() {
+        return cancelled || preempted;
+    }
+
+    // Returns false if the request already finished or was aborted, in which case nothing is re-run
+    boolean preempt() {
+        List<Closeable> actions;
+        synchronized (this) {
+            if (cancelled || preempted || completed) return false;
+            preempted = true;
+            actions = new ArrayList<>(abortActions);
+        }
+        abortAll(actions);
+        return true;
+    }
+
+    /**
+     * Claims the right to deliver the result. Returns false if the request was aborted first;
+     * once it returned true the request can no longer be preempted, so its result is delivered exactly once.
+     */
+    synchronized boolean tryComplete() {
+        if (cancelled || preempted) return false;
+        completed = true;
+        return true;
+    }
+
+    synchronized boolean isPreempted() {
+        return preempted;
+    }
+
+    // Called by the scheduler before a preempted request runs again
+    synchronized void clearPreempted() {
+        preempted = false;
+    }
+
+    /**
+     * Registers an action that aborts in-flight I/O. If the request is already aborted the action
+     * runs immediately and false is returned, so the caller can bail out.
+     */
+    boolean addAbortAction(Closeable action) {
+        synchronized (this) {
+            if (!cancelled && !preempted) {
+                abortActions.add(action);
+                return true;
+            }
+        }
+        abortAll(Collections.singletonList(action));
+        return false;
+    }
+
+    synchronized void removeAbortAction(Closeable action) {
+        abortActions.remove(action);
+    }
+
+    synchronized void setCancelListener(@Nullable Runnable cancelListener) {
+        this.cancelListener = cancelListener;
+    }
+
+    void throwIfAborted() throws InterruptedIOException {
+        if (isAborted()) throw new InterruptedIOException("Request " + (isCancelled() ? "cancelled" : "preempted"));
+    }
+
+    private static void abortAll(List<Closeable> actions) {
+        for (Closeable action : actions) {
+            try {
+                action.close();
+            } catch (IOException | RuntimeException ignored) {
+                // The connection is being torn down anyway
+            }
+        }
+    }
+}
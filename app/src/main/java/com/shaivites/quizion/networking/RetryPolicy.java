@@ -0,0 +1,66 @@
+package com.shaivites.quizion.networking;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.util.Random;
+
+/**
+ * Decides which failed Gemini requests are tried again and how long to back off in between.
+ * <p>
+ * Only transient failures are retried: 5xx answers, timeouts, refused or reset connections and
+ * DNS hiccups. Client errors, quota errors and aborted requests fail at once. The backoff doubles
+ * with each attempt up to a cap, with "equal jitter" (half fixed, half random) so clients that
+ * failed together do not retry in lockstep.
+ */
+public class RetryPolicy {
+
+    private final int maxAttempts;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+    private final Random random;
+
+    /**
+     * @param maxAttempts     total attempts including the first one; 1 disables retries
+     * @param baseDelayMillis backoff cap before the first retry, doubled for each further one
+     * @param maxDelayMillis  upper bound of the backoff cap
+     */
+    public RetryPolicy(int maxAttempts, long baseDelayMillis, long maxDelayMillis) {
+        this(maxAttempts, baseDelayMillis, maxDelayMillis, new Random());
+    }
+
+    RetryPolicy(int maxAttempts, long baseDelayMillis, long maxDelayMillis, Random random) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+        this.random = random;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    boolean isRetryable(Throwable error) {
+        return error instanceof TransientHttpException
+                || error instanceof SocketTimeoutException
+                || error instanceof SocketException // Covers refused and reset connections
+                || error instanceof EOFException
+                || error instanceof UnknownHostException;
+    }
+
+    /** Delay before retrying after the {@code failedAttempt}-th attempt (1-based) failed. */
+    long backoffMillis(int failedAttempt) {
+        long cap = baseDelayMillis << Math.min(failedAttempt - 1, 30);
+        if (cap <= 0 || cap > maxDelayMillis) cap = maxDelayMillis;
+        long half = cap / 2;
+        synchronized (random) {
+            return half + (long) (random.nextDouble() * (cap - half + 1));
+        }
+    }
+
+    boolean shouldRetry(IOException error, int failedAttempt) {
+        return failedAttempt < maxAttempts && isRetryable(error);
+    }
+}
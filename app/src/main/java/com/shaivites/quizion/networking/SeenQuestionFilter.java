@@ -0,0 +1,302 @@
+package com.shaivites.quizion.networking;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.shaivites.quizion.models.QuizQuestion;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Remembers the questions the user has already answered, so repeats can be dropped from generated batches.
+ * <p>
+ * A Bloom filter over hashes of the normalized question text and its three-word shingles: a question is a
+ * repeat if its text was seen, or if most of its shingles were (the same question reworded slightly).
+ * Memory stays bounded with two generations: once the current one holds {@code questionsPerGeneration}
+ * questions it becomes the previous one and the oldest generation is forgotten. A few recent question texts
+ * per topic are kept as well, to tell Gemini what to avoid. Both are saved to a file and survive restarts.
+ */
+public class SeenQuestionFilter {
+
+    private static final String TAG = "SeenQuestionFilter";
+    private static final String FILE_NAME = "seen_questions.bin";
+    private static final int FILE_MAGIC = 0x5351464C; // "SQFL"
+    private static final int DEFAULT_BITS = 1 << 17;              // 16 KB per generation
+    private static final int DEFAULT_HASHES = 4;
+    private static final int DEFAULT_QUESTIONS_PER_GENERATION = 500; // ~0.1% false positives per shingle when full
+    static final int SHINGLE_WORDS = 3;
+    static final double NEAR_DUPLICATE_RATIO = 0.8;                // Seen share of shingles that makes a rewording a repeat
+    static final int AVOID_HINTS_PER_TOPIC = 5;
+    private static final int MAX_HINT_TOPICS = 20;
+    private static final int MAX_HINT_LENGTH = 80;
+
+    private static SeenQuestionFilter instance;
+
+    private final int bitCount;
+    private final int hashCount;
+    private final int questionsPerGeneration;
+    // Guarded by this
+    private long[] current;
+    private long[] previous;
+    private int currentQuestions = 0;
+    // Lower-cased topic -> most recent question texts first, least recently used topic first
+    private final LinkedHashMap<String, Deque<String>> recentByTopic = new LinkedHashMap<>(16, 0.75f, true);
+    @Nullable private File file;
+    private boolean dirty = false;
+
+    /** The app-wide filter. Loads the saved filter on first use, so call it off the main thread. */
+    public static synchronized SeenQuestionFilter getInstance(Context context) {
+        if (instance == null) {
+            instance = new SeenQuestionFilter(DEFAULT_BITS, DEFAULT_HASHES, DEFAULT_QUESTIONS_PER_GENERATION);
+            instance.setFile(new File(context.getApplicationContext().getFilesDir(), FILE_NAME));
+        }
+        return instance;
+    }
+
+    /**
+     * Forgets every seen question, e.g. when the user logs out, and deletes the saved filter. Does not
+     * load the filter just to clear it.
+     */
+    public static synchronized void clearSaved(Context context) {
+        if (instance != null) {
+            instance.clear();
+            return;
+        }
+        //noinspection ResultOfMethodCallIgnored
+        new File(context.getApplicationContext().getFilesDir(), FILE_NAME).delete();
+    }
+
+    SeenQuestionFilter(int bitCount, int hashCount, int questionsPerGeneration) {
+        this.bitCount = Math.max(64, bitCount) / 64 * 64;
+        this.hashCount = Math.max(1, hashCount);
+        this.questionsPerGeneration = Math.max(1, questionsPerGeneration);
+        this.current = new long[this.bitCount / 64];
+        this.previous = new long[this.bitCount / 64];
+    }
+
+    /** Loads the filter saved in {@code file}, if any, and saves to it from now on. */
+    public synchronized void setFile(File file) {
+        this.file = file;
+        if (!file.exists()) return;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != FILE_MAGIC || in.readInt() != bitCount || in.readInt() != hashCount) {
+                Log.w(TAG, "Ignoring seen questions saved with another filter layout");
+                return;
+            }
+            int savedQuestions = in.readInt();
+            long[] savedCurrent = readBits(in, current.length);
+            long[] savedPrevious = readBits(in, previous.length);
+            LinkedHashMap<String, Deque<String>> savedRecent = new LinkedHashMap<>(16, 0.75f, true);
+            int topics = in.readInt();
+            for (int i = 0; i < topics; i++) {
+                String topic = in.readUTF();
+                Deque<String> texts = new ArrayDeque<>();
+                int count = in.readInt();
+                for (int j = 0; j < count; j++) texts.addLast(in.readUTF());
+                savedRecent.put(topic, texts);
+            }
+            current = savedCurrent;
+            previous = savedPrevious;
+            currentQuestions = savedQuestions;
+            recentByTopic.clear();
+            recentByTopic.putAll(savedRecent);
+        } catch (IOException e) {
+            Log.w(TAG, "Could not read seen questions from " + file, e);
+        }
+    }
+
+    /** Marks a question as seen by the user on {@code topic}. */
+    public synchronized void add(String topic, QuizQuestion question) {
+        List<String> tokens = tokens(question);
+        if (tokens.isEmpty()) return;
+        if (currentQuestions >= questionsPerGeneration) {
+            long[] forgotten = previous;
+            previous = current;
+            Arrays.fill(forgotten, 0L);
+            current = forgotten;
+            currentQuestions = 0;
+            Log.i(TAG, "Seen question filter rotated; the oldest generation was forgotten");
+        }
+        insert(exactKey(tokens));
+        for (String shingle : shingles(tokens)) insert(shingle);
+        currentQuestions++;
+
+        String topicKey = topic.toLowerCase(Locale.US);
+        Deque<String> recent = recentByTopic.get(topicKey);
+        if (recent == null) {
+            recent = new ArrayDeque<>();
+            recentByTopic.put(topicKey, recent);
+        }
+        String text = question.getQuestion().trim();
+        recent.addFirst(text.length() > MAX_HINT_LENGTH ? text.substring(0, MAX_HINT_LENGTH) : text);
+        while (recent.size() > AVOID_HINTS_PER_TOPIC) recent.removeLast();
+        Iterator<String> eldest = recentByTopic.keySet().iterator();
+        while (recentByTopic.size() > MAX_HINT_TOPICS) {
+            eldest.next();
+            eldest.remove();
+        }
+        dirty = true;
+    }
+
+    /** True if the question, or a slight rewording of it, was probably seen before. False positives are rare. */
+    public synchronized boolean mightHaveSeen(QuizQuestion question) {
+        List<String> tokens = tokens(question);
+        if (tokens.isEmpty()) return false;
+        if (contains(exactKey(tokens))) return true;
+        List<String> shingles = shingles(tokens);
+        if (shingles.size() < SHINGLE_WORDS) return false; // Too short to judge by shingles
+        int seen = 0;
+        for (String shingle : shingles) {
+            if (contains(shingle)) seen++;
+        }
+        return seen >= NEAR_DUPLICATE_RATIO * shingles.size();
+    }
+
+    /** The most recently seen question texts on {@code topic}, newest first; at most {@link #AVOID_HINTS_PER_TOPIC}. */
+    public synchronized List<String> getAvoidHints(String topic) {
+        Deque<String> recent = recentByTopic.get(topic.toLowerCase(Locale.US));
+        return recent != null ? new ArrayList<>(recent) : new ArrayList<String>();
+    }
+
+    /** Writes the filter to its file if anything was added since the last save. Cheap to call often. */
+    public synchronized void saveIfChanged() {
+        if (!dirty || file == null) return;
+        File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(FILE_MAGIC);
+            out.writeInt(bitCount);
+            out.writeInt(hashCount);
+            out.writeInt(currentQuestions);
+            writeBits(out, current);
+            writeBits(out, previous);
+            out.writeInt(recentByTopic.size());
+            for (Map.Entry<String, Deque<String>> topic : recentByTopic.entrySet()) {
+                out.writeUTF(topic.getKey());
+                out.writeInt(topic.getValue().size());
+                for (String text : topic.getValue()) out.writeUTF(text);
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Could not save seen questions to " + file, e);
+            return;
+        }
+        if (!temp.renameTo(file)) {
+            Log.w(TAG, "Could not replace " + file);
+            return;
+        }
+        dirty = false;
+    }
+
+    /** Forgets every seen question and avoid hint and deletes the saved file. */
+    public synchronized void clear() {
+        Arrays.fill(current, 0L);
+        Arrays.fill(previous, 0L);
+        currentQuestions = 0;
+        recentByTopic.clear();
+        dirty = false;
+        if (file != null) {
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+        }
+    }
+
+    /** Size of the bit arrays held in memory, independent of how many questions were added. */
+    public int getMemoryBytes() {
+        return 2 * bitCount / 8;
+    }
+
+    private void insert(String item) {
+        long hash = hash64(item);
+        for (int i = 0; i < hashCount; i++) {
+            int bit = bitIndex(hash, i);
+            current[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    private boolean contains(String item) {
+        long hash = hash64(item);
+        return contains(current, hash) || contains(previous, hash);
+    }
+
+    private boolean contains(long[] bits, long hash) {
+        for (int i = 0; i < hashCount; i++) {
+            int bit = bitIndex(hash, i);
+            if ((bits[bit >>> 6] & (1L << bit)) == 0) return false;
+        }
+        return true;
+    }
+
+    // Double hashing: the i-th probe is derived from the two halves of one 64-bit hash (Kirsch-Mitzenmacher)
+    private int bitIndex(long hash, int i) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        return ((h1 + i * h2) & Integer.MAX_VALUE) % bitCount;
+    }
+
+    // 64-bit FNV-1a over the UTF-8 bytes
+    private static long hash64(String item) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : item.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    // Lower-cased words with punctuation removed, so spacing and punctuation differences do not matter
+    static List<String> tokens(QuizQuestion question) {
+        List<String> tokens = new ArrayList<>();
+        if (question == null || question.getQuestion() == null) return tokens;
+        for (String token : question.getQuestion().toLowerCase(Locale.US).split("[^\\p{L}\\p{N}]+")) {
+            if (!token.isEmpty()) tokens.add(token);
+        }
+        return tokens;
+    }
+
+    private static String exactKey(List<String> tokens) {
+        StringBuilder key = new StringBuilder("q:");
+        for (String token : tokens) key.append(token).append(' ');
+        return key.toString();
+    }
+
+    private static List<String> shingles(List<String> tokens) {
+        List<String> shingles = new ArrayList<>();
+        for (int i = 0; i + SHINGLE_WORDS <= tokens.size(); i++) {
+            StringBuilder shingle = new StringBuilder("s:");
+            for (int j = i; j < i + SHINGLE_WORDS; j++) shingle.append(tokens.get(j)).append(' ');
+            shingles.add(shingle.toString());
+        }
+        return shingles;
+    }
+
+    private static long[] readBits(DataInputStream in, int expectedLength) throws IOException {
+        int length = in.readInt();
+        if (length != expectedLength) throw new IOException("Unexpected filter size " + length);
+        long[] bits = new long[length];
+        for (int i = 0; i < bits.length; i++) bits[i] = in.readLong();
+        return bits;
+    }
+
+    private static void writeBits(DataOutputStream out, long[] bits) throws IOException {
+        out.writeInt(bits.length);
+        for (long word : bits) out.writeLong(word);
+    }
+}
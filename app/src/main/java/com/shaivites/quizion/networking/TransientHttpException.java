@@ -0,0 +1,24 @@
+package com.shaivites.quizion.networking;
+
+import java.io.IOException;
+
+/** A 5xx answer from the API that is likely to succeed when retried, such as 503 UNAVAILABLE. */
+public class TransientHttpException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int code;
+
+    TransientHttpException(int code, String message) {
+        super(message);
+        this.code = code;
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    static boolean isTransient(int code) {
+        return code == 500 || code == 502 || code == 503 || code == 504;
+    }
+}
@@ -0,0 +1,133 @@
+package com.shaivites.quizion.networking;
+
+import androidx.annotation.Nullable;
+
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Status, headers and body stream of a request sent through a {@link GeminiTransport},
+ * plus the timings needed to compare transports.
+ */
+public class TransportResponse implements Closeable {
+
+    public interface HeaderLookup {
+        @Nullable String get(String name);
+    }
+
+    private final int code;
+    @Nullable private final TimedInputStream body;
+    private final HeaderLookup headers;
+    private final long requestStartNanos;
+    private final long connectedNanos; // -1 if the transport could not tell
+    private final long firstByteNanos;
+    private final boolean reusedConnection;
+    private final Closeable releaser;
+
+    public TransportResponse(int code, @Nullable InputStream body, HeaderLookup headers,
+                             long requestStartNanos, long firstByteNanos, boolean reusedConnection,
+                             Closeable releaser) {
+        this(code, body, headers, requestStartNanos, -1, firstByteNanos, reusedConnection, releaser);
+    }
+
+    public TransportResponse(int code, @Nullable InputStream body, HeaderLookup headers,
+                             long requestStartNanos, long connectedNanos, long firstByteNanos,
+                             boolean reusedConnection, Closeable releaser) {
+        this.code = code;
+        this.body = body != null ? new TimedInputStream(body) : null;
+        this.headers = headers;
+        this.requestStartNanos = requestStartNanos;
+        this.connectedNanos = connectedNanos;
+        this.firstByteNanos = firstByteNanos;
+        this.reusedConnection = reusedConnection;
+        this.releaser = releaser;
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    /** Response body (the error stream for non-2xx codes). May be null if the server sent none. */
+    @Nullable
+    public InputStream getBody() {
+        return body;
+    }
+
+    @Nullable
+    public String getHeader(String name) {
+        return headers.get(name);
+    }
+
+    /** Time from starting the request until the status line and headers were received. */
+    public long getTimeToFirstByteMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(firstByteNanos - requestStartNanos);
+    }
+
+    /** DNS lookup plus TCP and TLS handshake, or -1 if the transport does not report it. */
+    public long getConnectMillis() {
+        return connectedNanos < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(connectedNanos - requestStartNanos);
+    }
+
+    /** Time spent blocked reading the body so far; for a stream this includes waiting for the server to generate. */
+    public long getTransferMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(getTransferNanos());
+    }
+
+    public long getTransferNanos() {
+        return body != null ? body.readNanos : 0;
+    }
+
+    public long getRequestStartNanos() {
+        return requestStartNanos;
+    }
+
+    public long getConnectedNanos() {
+        return connectedNanos;
+    }
+
+    public long getFirstByteNanos() {
+        return firstByteNanos;
+    }
+
+    /** True if the transport expects this request to have gone over an already open connection. */
+    public boolean isReusedConnection() {
+        return reusedConnection;
+    }
+
+    @Override
+    public void close() throws IOException {
+        releaser.close();
+    }
+
+    // Adds up the time spent inside read calls; only read by the thread consuming the body
+    private static final class TimedInputStream extends FilterInputStream {
+        long readNanos;
+
+        TimedInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            long start = System.nanoTime();
+            try {
+                return super.read();
+            } finally {
+                readNanos += System.nanoTime() - start;
+            }
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            long start = System.nanoTime();
+            try {
+                return super.read(b, off, len);
+            } finally {
+                readNanos += System.nanoTime() - start;
+            }
+        }
+    }
+}
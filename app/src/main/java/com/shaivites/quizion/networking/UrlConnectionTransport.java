@@ -0,0 +1,192 @@
+package com.shaivites.quizion.networking;
+
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link GeminiTransport} on top of {@link HttpURLConnection}.
+ * <p>
+ * In pooled mode a finished response is drained and closed so the socket goes back to the platform
+ * keep-alive pool; only a body with more than {@link #MAX_DRAIN_BYTES} left unread is dropped together
+ * with its connection instead. The one-shot mode keeps the old behaviour of a fresh connection per
+ * request and exists to measure the difference.
+ */
+public class UrlConnectionTransport implements GeminiTransport {
+
+    private static final String TAG = "UrlConnectionTransport";
+    private static final int CONNECT_TIMEOUT_MS = 20000; // 20 seconds
+    private static final int READ_TIMEOUT_MS = 60000;    // 60 seconds
+    private static final int MAX_POOLED_CONNECTIONS = 5;
+    private static final long WARM_UP_INTERVAL_MS = 60000; // Idle pooled connections outlive this comfortably
+    // Reading more than this to save a connection costs more than opening a new one, e.g. for an abandoned stream
+    static final int MAX_DRAIN_BYTES = 8 * 1024;
+
+    private static UrlConnectionTransport sharedPooled;
+
+    private final boolean pooled;
+    // Last time a request or warm-up reached a host, used to skip redundant warm-ups
+    private final Map<String, Long> lastContactByHost = new ConcurrentHashMap<>();
+
+    public UrlConnectionTransport(boolean pooled) {
+        this.pooled = pooled;
+    }
+
+    /** The app-wide keep-alive transport; sharing it is what lets requests reuse connections. */
+    public static synchronized UrlConnectionTransport getSharedPooled() {
+        if (sharedPooled == null) {
+            System.setProperty("http.keepAlive", "true");
+            System.setProperty("http.maxConnections", String.valueOf(MAX_POOLED_CONNECTIONS));
+            sharedPooled = new UrlConnectionTransport(true);
+        }
+        return sharedPooled;
+    }
+
+    public boolean isPooled() {
+        return pooled;
+    }
+
+    @Override
+    public TransportResponse post(URL url, String jsonBody, String accept) throws IOException {
+        return post(url, jsonBody, accept, null);
+    }
+
+    @Override
+    public TransportResponse post(URL url, String jsonBody, String accept, @Nullable RequestToken token) throws IOException {
+        long requestStartNanos = System.nanoTime();
+        boolean likelyReused = pooled && isRecentlyContacted(url);
+        HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
+        // Disconnecting makes any blocked write or read on this connection fail right away
+        final Closeable abort = urlConnection::disconnect;
+        if (token != null && !token.addAbortAction(abort)) {
+            throw new InterruptedIOException("Request aborted before it was sent");
+        }
+        try {
+            urlConnection.setRequestMethod("POST");
+            urlConnection.setRequestProperty("Content-Type", "application/json");
+            urlConnection.setRequestProperty("Accept", accept);
+            urlConnection.setRequestProperty("Connection", pooled ? "keep-alive" : "close");
+            urlConnection.setDoOutput(true);
+            urlConnection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+            urlConnection.setReadTimeout(READ_TIMEOUT_MS);
+
+            byte[] input = jsonBody.getBytes(StandardCharsets.UTF_8);
+            urlConnection.setFixedLengthStreamingMode(input.length);
+            // Connecting explicitly separates DNS, TCP and TLS setup from the time to first byte
+            urlConnection.connect();
+            long connectedNanos = System.nanoTime();
+            try (OutputStream os = urlConnection.getOutputStream()) {
+                os.write(input, 0, input.length);
+            }
+
+            int responseCode = urlConnection.getResponseCode();
+            long firstByteNanos = System.nanoTime();
+            markContacted(url);
+
+            InputStream body = (responseCode >= 200 && responseCode < 300) ?
+                    urlConnection.getInputStream() : urlConnection.getErrorStream();
+            final HttpURLConnection connection = urlConnection;
+            return new TransportResponse(responseCode, body, connection::getHeaderField,
+                    requestStartNanos, connectedNanos, firstByteNanos, likelyReused, () -> {
+                        if (token != null) token.removeAbortAction(abort);
+                        if (token != null && token.isAborted()) {
+                            connection.disconnect(); // Already torn down, nothing left to drain
+                        } else {
+                            release(connection, body);
+                        }
+                    });
+        } catch (IOException | RuntimeException e) {
+            if (token != null) token.removeAbortAction(abort);
+            urlConnection.disconnect(); // A failed connection must not go back to the pool
+            if (token != null && token.isAborted()) {
+                InterruptedIOException aborted = new InterruptedIOException("Request " + (token.isCancelled() ? "cancelled" : "preempted"));
+                aborted.initCause(e);
+                throw aborted;
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public void warmUp(URL url) {
+        if (!pooled || isRecentlyContacted(url)) return;
+        HttpURLConnection urlConnection = null;
+        long start = System.nanoTime();
+        try {
+            // A HEAD to the host root is enough to resolve DNS and finish the TCP/TLS handshake;
+            // the status code is irrelevant, only the pooled connection matters.
+            URL hostUrl = new URL(url.getProtocol(), url.getHost(), url.getPort(), "/");
+            urlConnection = (HttpURLConnection) hostUrl.openConnection();
+            urlConnection.setRequestMethod("HEAD");
+            urlConnection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+            urlConnection.setReadTimeout(CONNECT_TIMEOUT_MS);
+            int code = urlConnection.getResponseCode();
+            InputStream body = code >= 400 ? urlConnection.getErrorStream() : urlConnection.getInputStream();
+            drainAndClose(urlConnection, body);
+            markContacted(url);
+            Log.d(TAG, "Warmed up connection to " + url.getHost() + " in " + (System.nanoTime() - start) / 1000000 + "ms");
+        } catch (IOException e) {
+            Log.w(TAG, "Connection warm-up to " + url.getHost() + " failed", e);
+            if (urlConnection != null) urlConnection.disconnect();
+        }
+    }
+
+    private void release(HttpURLConnection connection, InputStream body) {
+        if (pooled) {
+            drainAndClose(connection, body); // Fully consumed streams return the socket to the keep-alive pool
+        } else {
+            try {
+                if (body != null) body.close();
+            } catch (IOException ignored) {
+                // Connection is dropped below anyway
+            }
+            connection.disconnect();
+        }
+    }
+
+    private static void drainAndClose(HttpURLConnection connection, @Nullable InputStream body) {
+        if (body == null) return;
+        boolean drained = false;
+        try {
+            byte[] buffer = new byte[4096];
+            long discarded = 0;
+            int read = 0;
+            while (discarded <= MAX_DRAIN_BYTES && (read = body.read(buffer)) != -1) {
+                discarded += read;
+            }
+            drained = read == -1;
+        } catch (IOException e) {
+            Log.d(TAG, "Could not drain response body for reuse: " + e.getMessage());
+        }
+        if (!drained) connection.disconnect(); // Not reused: closing the socket beats downloading the rest
+        try {
+            body.close();
+        } catch (IOException ignored) {
+            // Only means this connection is not reused
+        }
+    }
+
+    private boolean isRecentlyContacted(URL url) {
+        Long last = lastContactByHost.get(hostKey(url));
+        return last != null && System.currentTimeMillis() - last < WARM_UP_INTERVAL_MS;
+    }
+
+    private void markContacted(URL url) {
+        lastContactByHost.put(hostKey(url), System.currentTimeMillis());
+    }
+
+    private static String hostKey(URL url) {
+        return url.getHost() + ":" + (url.getPort() != -1 ? url.getPort() : url.getDefaultPort());
+    }
+}
@@ -29,6 +29,8 @@ public class PreferenceHelper {
 
     private static final String NOTIFICATION_PREF_KEY = "notifications_enabled";
 
+    private static final String QUIZ_START_SOURCE_PREFIX = "quiz_start_source_"; // Quiz starts served per question source
+
 
     private static SharedPreferences getPrefs(Context context) {
         return context.getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE);
@@ -140,18 +142,23 @@ public class PreferenceHelper {
     // --- Topic Performance Stats ---
     public static void saveTopicStats(Context context, String topicTitle, int correctAnswers, int totalQuestions) {
         String key = TOPIC_STATS_PREFIX + topicTitle.replaceAll("\\s+", "_").replaceAll("[^a-zA-Z0-9_]", ""); // Sanitize
-        String stats = correctAnswers + ":" + totalQuestions;
+        String stats = correctAnswers + ":" + totalQuestions + ":" + System.currentTimeMillis(); // Played now, for recency
         getPrefs(context).edit().putString(key, stats).apply();
     }
 
     public static Map<String, String> getTopicStats(Context context, String topicTitle) {
         String key = TOPIC_STATS_PREFIX + topicTitle.replaceAll("\\s+", "_").replaceAll("[^a-zA-Z0-9_]", "");
-        String statsStr = getPrefs(context).getString(key, "0:0");
+        return parseTopicStats(getPrefs(context).getString(key, "0:0"));
+    }
+
+    // "correct:total" or "correct:total:lastPlayedMillis"; lastPlayed is only present once a topic was played
+    private static Map<String, String> parseTopicStats(String statsStr) {
         String[] parts = statsStr.split(":");
         Map<String, String> statsMap = new HashMap<>();
-        if (parts.length == 2) {
+        if (parts.length == 2 || parts.length == 3) {
             statsMap.put("correct", parts[0]);
             statsMap.put("total", parts[1]);
+            if (parts.length == 3) statsMap.put("lastPlayed", parts[2]);
         } else {
             statsMap.put("correct", "0");
             statsMap.put("total", "0");
@@ -177,16 +184,7 @@ public class PreferenceHelper {
         for (Map.Entry<String, ?> entry : allEntries.entrySet()) {
             if (entry.getKey().startsWith(TOPIC_STATS_PREFIX)) {
                 String topicName = entry.getKey().substring(TOPIC_STATS_PREFIX.length()).replaceAll("_", " ");
-                String[] parts = ((String) entry.getValue()).split(":");
-                Map<String, String> statsMap = new HashMap<>();
-                if (parts.length == 2) {
-                    statsMap.put("correct", parts[0]);
-                    statsMap.put("total", parts[1]);
-                } else {
-                    statsMap.put("correct", "0");
-                    statsMap.put("total", "0");
-                }
-                allTopicStats.put(topicName, statsMap);
+                allTopicStats.put(topicName, parseTopicStats((String) entry.getValue()));
             }
         }
         return allTopicStats;
@@ -216,6 +214,24 @@ public class PreferenceHelper {
     }
 
 
+    // --- Quiz Start Sources ---
+    public static void recordQuizStartSource(Context context, String source) {
+        String key = QUIZ_START_SOURCE_PREFIX + source;
+        SharedPreferences prefs = getPrefs(context);
+        prefs.edit().putInt(key, prefs.getInt(key, 0) + 1).apply();
+    }
+
+    public static Map<String, Integer> getQuizStartSourceCounts(Context context) {
+        Map<String, Integer> counts = new HashMap<>();
+        for (Map.Entry<String, ?> entry : getPrefs(context).getAll().entrySet()) {
+            if (entry.getKey().startsWith(QUIZ_START_SOURCE_PREFIX) && entry.getValue() instanceof Integer) {
+                counts.put(entry.getKey().substring(QUIZ_START_SOURCE_PREFIX.length()), (Integer) entry.getValue());
+            }
+        }
+        return counts;
+    }
+
+
     // --- Notification Preference ---
     public static void saveNotificationPreference(Context context, boolean enabled) {
         getPrefs(context).edit().putBoolean(NOTIFICATION_PREF_KEY, enabled).apply();
@@ -0,0 +1,9 @@
+package com.shaivites.quizion.networking;
+
+/**
+ * JUnit category of the benchmark tests. They print numbers through {@link BenchmarkHarness} and only assert
+ * correctness, so the default unit test run leaves them out; {@code ./gradlew testDebugUnitTest -Pbenchmarks}
+ * runs only them.
+ */
+public interface Benchmark {
+}
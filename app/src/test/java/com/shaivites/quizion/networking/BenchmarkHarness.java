@@ -0,0 +1,79 @@
+package com.shaivites.quizion.networking;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+
+/** Timing and allocation measurements shared by the {@link Benchmark} tests. */
+final class BenchmarkHarness {
+
+    static final int WARM_UP_ROUNDS = 5;
+    static final int MEASURED_ROUNDS = 10;
+
+    interface Task<T> {
+        T run() throws Exception;
+    }
+
+    /** Average cost of one run, and the result of the last one so callers can check it. */
+    static final class Measurement<T> {
+        final long micros;
+        final long heapBytes;
+        final T result;
+
+        Measurement(long micros, long heapBytes, T result) {
+            this.micros = micros;
+            this.heapBytes = heapBytes;
+            this.result = result;
+        }
+    }
+
+    private BenchmarkHarness() {
+    }
+
+    /**
+     * Runs {@code task} {@link #WARM_UP_ROUNDS} times, then {@link #MEASURED_ROUNDS} times after a GC each,
+     * averaging time and heap growth. Heap growth is a rough figure; prefer {@link #allocatedBytesPerRound}.
+     */
+    static <T> Measurement<T> measure(Task<T> task) throws Exception {
+        for (int i = 0; i < WARM_UP_ROUNDS; i++) task.run();
+        long totalNanos = 0;
+        long totalHeap = 0;
+        T result = null;
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            System.gc();
+            long heapBefore = runtime.totalMemory() - runtime.freeMemory();
+            long start = System.nanoTime();
+            result = task.run();
+            totalNanos += System.nanoTime() - start;
+            totalHeap += Math.max(0, runtime.totalMemory() - runtime.freeMemory() - heapBefore);
+        }
+        return new Measurement<>(totalNanos / MEASURED_ROUNDS / 1000, totalHeap / MEASURED_ROUNDS, result);
+    }
+
+    /** Average nanoseconds per run of {@code task} over {@code rounds} runs, after as many warm-up runs. */
+    static long nanosPerRound(int rounds, Runnable task) {
+        for (int i = 0; i < rounds; i++) task.run();
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) task.run();
+        return (System.nanoTime() - start) / rounds;
+    }
+
+    /** True if this JVM counts the bytes each thread allocates, which {@link #allocatedBytesPerRound} needs. */
+    static boolean canCountAllocations() {
+        return ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean;
+    }
+
+    /** Bytes the calling thread allocates per run of {@code task} over {@code rounds} runs, after as many warm-up runs. */
+    static long allocatedBytesPerRound(int rounds, Runnable task) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        for (int i = 0; i < rounds; i++) task.run();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < rounds; i++) task.run();
+        return (threads.getThreadAllocatedBytes(threadId) - before) / rounds;
+    }
+
+    static void report(String format, Object... args) {
+        System.out.println(String.format(Locale.US, format, args));
+    }
+}
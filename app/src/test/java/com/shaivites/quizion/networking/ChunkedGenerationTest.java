@@ -0,0 +1,114 @@
+package com.shaivites.quizion.networking;
+
+import com.shaivites.quizion.models.QuizQuestion;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class ChunkedGenerationTest {
+
+    private FakeGeminiServer server;
+    private GeminiApiService service;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new FakeGeminiServer();
+        service = new GeminiApiService("test-key", server.baseUrl(), new UrlConnectionTransport(true));
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
+
+    @Test
+    public void chunkSizesPutLargerChunksLast() {
+        assertArrayEquals(new int[]{3, 3, 4}, GeminiApiService.chunkSizes(10, 3));
+        assertArrayEquals(new int[]{5, 5}, GeminiApiService.chunkSizes(10, 2));
+        assertArrayEquals(new int[]{2, 2, 3, 3}, GeminiApiService.chunkSizes(10, 4));
+    }
+
+    @Test
+    public void mergesChunksIntoOneDeduplicatedBatch() throws Exception {
+        server.generateRequestedCount(0);
+        service.setParallelChunks(3, 10000);
+
+        List<QuizQuestion> questions = generate(10);
+
+        assertEquals(10, questions.size());
+        Set<String> texts = new HashSet<>();
+        for (QuizQuestion question : questions) texts.add(question.getQuestion());
+        assertEquals(10, texts.size());
+        assertEquals(3, server.requestCount());
+        for (String body : server.requestBodies()) {
+            assertTrue(body.contains("of one quiz generated in parallel"));
+        }
+    }
+
+    @Test
+    public void returnsFinishedChunksWhenDeadlineHits() throws Exception {
+        // The chunk of 1 finishes after ~1s, the chunk of 2 needs ~2s: half a second of slack either side of the deadline
+        server.generateRequestedCount(1000);
+        service.setParallelChunks(2, 1500);
+
+        List<QuizQuestion> questions = generate(3);
+
+        assertEquals(1, questions.size());
+        assertEquals(2, server.requestCount());
+    }
+
+    /**
+     * Time to a 10-question batch at ~40ms of output per question, as one request and as 3 parallel chunks.
+     * Prints both; only that each yields the full batch is asserted.
+     */
+    @Test
+    @Category(Benchmark.class)
+    public void benchmarkChunkedAgainstSingleRequest() throws Exception {
+        server.generateRequestedCount(40); // ~40ms of output tokens per question
+        generate(2); // Warm up the connection pool and class loading
+
+        long start = System.nanoTime();
+        assertEquals(10, generate(10).size());
+        long singleMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        service.setParallelChunks(3, 10000);
+        start = System.nanoTime();
+        assertEquals(10, generate(10).size());
+        long chunkedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        BenchmarkHarness.report("10-question batch: single request %dms, 3 parallel chunks %dms", singleMs, chunkedMs);
+    }
+
+    private List<QuizQuestion> generate(int count) throws Exception {
+        AtomicReference<List<QuizQuestion>> questions = new AtomicReference<>();
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(1);
+        service.generateQuizQuestions("Science", "Medium", count, null, ModelRouter.Mode.TOPIC, new GeminiApiService.GeminiCallback() {
+            @Override
+            public void onSuccess(List<QuizQuestion> result) {
+                questions.set(result);
+                done.countDown();
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                error.set(throwable);
+                done.countDown();
+            }
+        });
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertNull(error.get());
+        return questions.get();
+    }
+}
@@ -0,0 +1,111 @@
+package com.shaivites.quizion.networking;
+
+import com.shaivites.quizion.models.QuizQuestion;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class CircuitBreakerTest {
+
+    @Test
+    public void opensAfterConsecutiveFailuresOnly() {
+        CircuitBreaker breaker = new CircuitBreaker(3, 1000, 1000);
+        breaker.recordFailure();
+        breaker.recordFailure();
+        breaker.recordSuccess(); // Resets the streak
+        breaker.recordFailure();
+        breaker.recordFailure();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        breaker.recordFailure();
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest());
+        assertEquals(1, breaker.getRejectedCount());
+    }
+
+    @Test
+    public void halfOpenAllowsOneProbeAndReopensForLongerOnFailure() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker(1, 100, 1000);
+        breaker.recordFailure();
+        Thread.sleep(150);
+
+        assertFalse(breaker.allowRequest()); // User requests keep using the fallback while probing
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertTrue(breaker.tryStartProbe());
+        assertFalse(breaker.tryStartProbe());
+
+        breaker.recordFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        Thread.sleep(150);
+        assertFalse(breaker.allowRequest());
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState()); // Open period doubled to 200ms
+        Thread.sleep(100);
+        assertFalse(breaker.allowRequest());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+
+        assertTrue(breaker.tryStartProbe());
+        breaker.recordSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.allowRequest());
+    }
+
+    @Test
+    public void serviceFailsFastWhileOpenAndRecoversThroughProbe() throws Exception {
+        try (FakeGeminiServer server = new FakeGeminiServer()) {
+            server.respondWith(FakeGeminiServer.questionsJson(3)).failNext(2, 503);
+            CircuitBreaker breaker = new CircuitBreaker(2, 300, 1000);
+            GeminiApiService service = new GeminiApiService("test-key", server.baseUrl(), new UrlConnectionTransport(true),
+                    new RateLimiter(100, 6000, Long.MAX_VALUE, 1000), breaker);
+            service.setRetryPolicy(new RetryPolicy(1, 10, 10));
+            try {
+                assertTrue(generate(service) instanceof TransientHttpException);
+                assertTrue(generate(service) instanceof TransientHttpException);
+                assertFalse(service.isBackendAvailable());
+
+                long start = System.nanoTime();
+                assertTrue(generate(service) instanceof CircuitOpenException);
+                assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 200);
+                assertEquals(2, server.requestCount()); // Nothing was sent while open
+
+                Thread.sleep(350);
+                assertFalse(service.isBackendAvailable()); // Starts the background probe
+                for (int i = 0; i < 50 && breaker.getState() != CircuitBreaker.State.CLOSED; i++) {
+                    Thread.sleep(20);
+                }
+                assertTrue(server.requestBodies().get(2).contains("ping"));
+                assertTrue(service.isBackendAvailable());
+                assertNull(generate(service));
+                assertEquals(1, breaker.getOpenedCount());
+            } finally {
+                service.shutdown();
+            }
+        }
+    }
+
+    // Returns the error the request failed with, null on success
+    private static Throwable generate(GeminiApiService service) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        service.generateQuizQuestions("Science", "Medium", 3, null, ModelRouter.Mode.TOPIC, new GeminiApiService.GeminiCallback() {
+            @Override
+            public void onSuccess(List<QuizQuestion> questions) {
+                done.countDown();
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                error.set(throwable);
+                done.countDown();
+            }
+        });
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        return error.get();
+    }
+}
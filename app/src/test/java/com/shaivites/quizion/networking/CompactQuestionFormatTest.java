@@ -0,0 +1,143 @@
+package com.shaivites.quizion.networking;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.shaivites.quizion.models.QuizQuestion;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class CompactQuestionFormatTest {
+
+    private final QuestionBatchPipeline pipeline = new QuestionBatchPipeline();
+
+    @Test
+    public void pipelineDecodesCompactAndObjectQuestionsAlike() {
+        String json = "[[\"  What is 2 + 2? \", \"3\", \"4\", \"5\", \"6\", \"1\"],"
+                + " [\"Bad index\", \"a\", \"b\", \"c\", \"d\", \"four\"],"
+                + " [\"Too few fields\", \"a\", \"b\", \"1\"],"
+                + " {\"question\": \"Object?\", \"options\": [\"a\", \"b\", \"c\", \"d\"], \"correctAnswerIndex\": 3}]";
+
+        QuestionBatchPipeline.Result result = pipeline.process(json);
+
+        assertEquals(2, result.getQuestions().size());
+        assertEquals("What is 2 + 2?", result.getQuestions().get(0).getQuestion());
+        assertEquals(Arrays.asList("3", "4", "5", "6"), result.getQuestions().get(0).getOptions());
+        assertEquals(1, result.getQuestions().get(0).getCorrectAnswerIndex());
+        assertEquals(2, result.getTimings().getRejectedCount());
+        QuizQuestion single = pipeline.processSingle("[\"Q?\", \"a\", \"b\", \"c\", \"d\", \"2\"]", new QuestionBatchPipeline.StageTimings());
+        assertEquals(2, single.getCorrectAnswerIndex());
+    }
+
+    @Test
+    public void outputBudgetGrowsWithBatchSizeUpToTheCap() {
+        assertTrue(GeminiApiService.maxOutputTokens(10, true) < GeminiApiService.maxOutputTokens(10, false));
+        assertTrue(GeminiApiService.maxOutputTokens(3, false) < GeminiApiService.maxOutputTokens(10, false));
+        assertTrue(GeminiApiService.maxOutputTokens(10, false) < 4096); // The old fixed budget
+        assertEquals(8192, GeminiApiService.maxOutputTokens(500, false));
+    }
+
+    @Test
+    public void compactStreamIsRequestedWithSchemaAndDeliveredAsQuestions() throws Exception {
+        try (FakeGeminiServer server = new FakeGeminiServer()) {
+            server.respondWith(compactJson(sampleQuestions(3))).streamChunks(30, 0);
+            GeminiApiService service = new GeminiApiService("test-key", server.baseUrl(), new UrlConnectionTransport(true));
+            service.setCompactResponses(true);
+
+            List<QuizQuestion> received = new CopyOnWriteArrayList<>();
+            AtomicReference<List<QuizQuestion>> batch = new AtomicReference<>();
+            stream(service, 3, received, batch);
+
+            assertEquals(3, received.size());
+            assertEquals(sampleQuestions(3).get(2).getQuestion(), received.get(2).getQuestion());
+            assertEquals(2, received.get(2).getCorrectAnswerIndex());
+            assertEquals(received.get(1).getOptions(), batch.get().get(1).getOptions()); // Callers get the same decoded questions
+
+            JsonObject config = JsonParser.parseString(server.requestBodies().get(0)).getAsJsonObject().getAsJsonObject("generationConfig");
+            assertEquals(GeminiApiService.maxOutputTokens(3, true), config.get("maxOutputTokens").getAsInt());
+            assertEquals("ARRAY", config.getAsJsonObject("response_schema").getAsJsonObject("items").get("type").getAsString());
+        }
+    }
+
+    /**
+     * Streams the same 10 questions in both formats with a fixed time per output character, a stand-in for
+     * per-token generation time. Prints size, estimated output tokens (~4 characters per token) and
+     * end-to-end time per batch; only correctness is asserted.
+     */
+    @Test
+    @Category(Benchmark.class)
+    public void benchmarkCompactAgainstVerboseFormat() throws Exception {
+        List<QuizQuestion> questions = sampleQuestions(10);
+        String verbose = new Gson().toJson(questions);
+        String compact = compactJson(questions);
+        long verboseMillis = measureStream(verbose, false);
+        long compactMillis = measureStream(compact, true);
+        assertTrue(compact.length() < verbose.length());
+        BenchmarkHarness.report("10-question batch: verbose %d chars / ~%d tokens / %dms, compact %d chars / ~%d tokens / %dms",
+                verbose.length(), verbose.length() / 4, verboseMillis, compact.length(), compact.length() / 4, compactMillis);
+    }
+
+    // End-to-end millis until the callback
+    private static long measureStream(String text, boolean compact) throws Exception {
+        try (FakeGeminiServer server = new FakeGeminiServer()) {
+            server.respondWith(text).streamChunks(40, 10);
+            GeminiApiService service = new GeminiApiService("test-key", server.baseUrl(), new UrlConnectionTransport(true));
+            service.setCompactResponses(compact);
+            List<QuizQuestion> received = new CopyOnWriteArrayList<>();
+            long start = System.nanoTime();
+            stream(service, 10, received, new AtomicReference<List<QuizQuestion>>());
+            assertEquals(10, received.size());
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        }
+    }
+
+    private static void stream(GeminiApiService service, int count, List<QuizQuestion> received,
+                               AtomicReference<List<QuizQuestion>> batch) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        service.streamQuizQuestions("Science", "Medium", count, null, ModelRouter.Mode.TOPIC,
+                (question, index) -> received.add(question),
+                new GeminiApiService.GeminiCallback() {
+                    @Override
+                    public void onSuccess(List<QuizQuestion> questions) {
+                        batch.set(questions);
+                        done.countDown();
+                    }
+
+                    @Override
+                    public void onError(Throwable throwable) {
+                        done.countDown();
+                    }
+                });
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+    }
+
+    private static String compactJson(List<QuizQuestion> questions) {
+        JsonArray batch = new JsonArray();
+        for (QuizQuestion question : questions) batch.add(CompactQuestionFormat.encode(question));
+        return batch.toString();
+    }
+
+    private static List<QuizQuestion> sampleQuestions(int count) {
+        List<QuizQuestion> questions = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            QuizQuestion question = new QuizQuestion();
+            question.setQuestion("Which element of the periodic table has the atomic number " + (i + 1) + "?");
+            question.setOptions(Arrays.asList("Hydrogen " + i, "Helium " + i, "Lithium " + i, "Carbon " + i));
+            question.setCorrectAnswerIndex(i % 4);
+            questions.add(question);
+        }
+        return questions;
+    }
+}
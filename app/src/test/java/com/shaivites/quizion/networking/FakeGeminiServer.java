@@ -0,0 +1,570 @@
+package com.shaivites.quizion.networking;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Minimal in-process stand-in for the Gemini REST API, used by the networking unit tests and load runs.
+ * Speaks just enough HTTP/1.1 over a plain {@link ServerSocket} (keep-alive, Content-Length and
+ * chunked bodies) to serve a canned generated text either as a single generateContent response
+ * or split into SSE chunks, after a configurable latency and at a configurable token rate.
+ * Faults (error statuses, dropped connections, stalls, safety blocks, truncation) can be injected
+ * into the next requests.
+ */
+class FakeGeminiServer implements AutoCloseable {
+
+    private static final Pattern REQUESTED_COUNT = Pattern.compile("Generate exactly (\\d+)");
+    private static final Pattern CACHED_CONTENT = Pattern.compile("\"cachedContent\":\"([^\"]+)\"");
+    private static final int CHARS_PER_TOKEN = 4;
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService connectionExecutor = Executors.newCachedThreadPool();
+    private final AtomicInteger requestCount = new AtomicInteger();
+    private final AtomicInteger connectionCount = new AtomicInteger();
+    private final AtomicLong streamedBytes = new AtomicLong();
+    private final Queue<String> queuedTexts = new ConcurrentLinkedQueue<>();
+    private final List<String> requestBodies = new CopyOnWriteArrayList<>();
+    private final List<String> requestPaths = new CopyOnWriteArrayList<>();
+    private volatile String generatedText = "[]";
+    private volatile int chunkSize = 40;
+    private volatile long chunkDelayMs = 0;
+    private volatile String finishReason = "STOP";
+    private volatile long perQuestionDelayMs = -1; // >= 0: generate the prompt's requested count instead of a canned text
+    private final AtomicInteger questionSerial = new AtomicInteger();
+    private final Queue<Fault> faults = new ConcurrentLinkedQueue<>();
+    private volatile int usageTokens = 0;
+    private volatile int promptTokens = 0;
+    private volatile int candidatesTokens = 0;
+    private volatile long firstByteDelayMs = 0;
+    private volatile int tokensPerSecond = 0; // 0: no generation time
+    private final Set<String> liveCachedContents = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger cachedContentSerial = new AtomicInteger();
+    private volatile boolean refuseCachedContents = false;
+
+    FakeGeminiServer() throws IOException {
+        serverSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        connectionExecutor.execute(this::acceptLoop);
+    }
+
+    /** Base URL to hand to {@link GeminiApiService} (ends with the models path, like the real one). */
+    String baseUrl() {
+        return "http://127.0.0.1:" + serverSocket.getLocalPort() + "/v1beta/models/";
+    }
+
+    FakeGeminiServer respondWith(String text) {
+        this.generatedText = text;
+        return this;
+    }
+
+    /** Serves {@code texts} to the next requests in order, then falls back to {@link #respondWith}. */
+    FakeGeminiServer thenRespondWith(String... texts) {
+        queuedTexts.addAll(Arrays.asList(texts));
+        return this;
+    }
+
+    /**
+     * Answers each request with as many unique questions as its prompt asks for, taking
+     * {@code perQuestionDelayMs} per question to mimic output-token generation time.
+     */
+    FakeGeminiServer generateRequestedCount(long perQuestionDelayMs) {
+        this.perQuestionDelayMs = perQuestionDelayMs;
+        return this;
+    }
+
+    FakeGeminiServer streamChunks(int chunkSize, long chunkDelayMs) {
+        this.chunkSize = chunkSize;
+        this.chunkDelayMs = chunkDelayMs;
+        return this;
+    }
+
+    /** Answers the next {@code count} requests with 429, sending {@code retryAfter} as Retry-After unless null. */
+    FakeGeminiServer throttleNext(int count, String retryAfter) {
+        for (int i = 0; i < count; i++) faults.add(Fault.status(429, retryAfter));
+        return this;
+    }
+
+    /** Answers the next {@code count} requests with an error {@code code}, e.g. 503. */
+    FakeGeminiServer failNext(int count, int code) {
+        for (int i = 0; i < count; i++) faults.add(Fault.status(code, null));
+        return this;
+    }
+
+    /** Resets the connection of the next {@code count} requests without sending a response. */
+    FakeGeminiServer dropNext(int count) {
+        for (int i = 0; i < count; i++) faults.add(Fault.drop());
+        return this;
+    }
+
+    /** Holds back the response to the next {@code count} requests for {@code delayMs} before sending it normally. */
+    FakeGeminiServer stallNext(int count, long delayMs) {
+        for (int i = 0; i < count; i++) faults.add(Fault.stall(delayMs));
+        return this;
+    }
+
+    /** Holds back every generation request for {@code delayMs} before its status line, like queueing and prompt processing. */
+    FakeGeminiServer latency(long delayMs) {
+        this.firstByteDelayMs = delayMs;
+        return this;
+    }
+
+    /**
+     * Generates output at {@code tokensPerSecond} (about 4 characters per token): a generateContent body is
+     * held back for the whole text, a stream sends each chunk once its share has been generated.
+     */
+    FakeGeminiServer paceTokens(int tokensPerSecond) {
+        this.tokensPerSecond = tokensPerSecond;
+        return this;
+    }
+
+    /** Answers the next {@code count} requests with a prompt blocked for {@code reason}, e.g. "SAFETY", and no candidates. */
+    FakeGeminiServer blockNext(int count, String reason) {
+        for (int i = 0; i < count; i++) faults.add(Fault.block(reason));
+        return this;
+    }
+
+    /** Cuts the generated text of the next {@code count} requests after {@code chars} characters, finishing with MAX_TOKENS. */
+    FakeGeminiServer truncateNext(int count, int chars) {
+        for (int i = 0; i < count; i++) faults.add(Fault.truncate(chars));
+        return this;
+    }
+
+    /** Reports {@code totalTokens} in the usageMetadata of every successful response. */
+    FakeGeminiServer usageTokens(int totalTokens) {
+        this.usageTokens = totalTokens;
+        return this;
+    }
+
+    /** Reports prompt and candidate token counts, and their sum as the total, in every successful response. */
+    FakeGeminiServer usageTokens(int promptTokens, int candidatesTokens) {
+        this.promptTokens = promptTokens;
+        this.candidatesTokens = candidatesTokens;
+        this.usageTokens = promptTokens + candidatesTokens;
+        return this;
+    }
+
+    FakeGeminiServer finishReason(String finishReason) {
+        this.finishReason = finishReason;
+        return this;
+    }
+
+    /** Lets every cached content created so far expire: requests naming one are answered with 404 from now on. */
+    FakeGeminiServer expireCachedContents() {
+        liveCachedContents.clear();
+        return this;
+    }
+
+    /** Answers cachedContents create requests with 400, like the API does for content below its minimum size. */
+    FakeGeminiServer refuseCachedContents() {
+        this.refuseCachedContents = true;
+        return this;
+    }
+
+    /** Number of cached contents created so far. */
+    int cachedContentCount() {
+        return cachedContentSerial.get();
+    }
+
+    int requestCount() {
+        return requestCount.get();
+    }
+
+    /** Bodies of the POST requests received so far, in arrival order. */
+    List<String> requestBodies() {
+        return requestBodies;
+    }
+
+    /** Paths (without the query) of the POST requests received so far, in arrival order. */
+    List<String> requestPaths() {
+        return requestPaths;
+    }
+
+    /** Bytes of SSE events successfully written to clients so far. */
+    long streamedBytes() {
+        return streamedBytes.get();
+    }
+
+    /** Number of TCP connections accepted so far. */
+    int connectionCount() {
+        return connectionCount.get();
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                connectionCount.incrementAndGet();
+                connectionExecutor.execute(() -> serveConnection(socket));
+            } catch (IOException e) {
+                return; // Server closed
+            }
+        }
+    }
+
+    private void serveConnection(Socket socket) {
+        try (Socket s = socket) {
+            InputStream in = new BufferedInputStream(s.getInputStream());
+            OutputStream out = s.getOutputStream();
+            while (true) {
+                Request request = Request.read(in);
+                if (request == null) return; // Client closed the connection
+                requestCount.incrementAndGet();
+                if (!handle(request, out)) {
+                    s.setSoLinger(true, 0); // Close with a TCP reset, like a crashed backend
+                    return;
+                }
+                if ("close".equalsIgnoreCase(request.headers.get("connection"))) return;
+            }
+        } catch (IOException ignored) {
+            // Client went away mid-response
+        }
+    }
+
+    // Returns false if the connection must be closed without a response
+    private boolean handle(Request request, OutputStream out) throws IOException {
+        if ("HEAD".equals(request.method)) {
+            writeHead(out, 404, "text/plain", 0, null); // Connection warm-up probe
+            return true;
+        }
+        synchronized (requestPaths) { // Keeps both lists index-aligned
+            requestBodies.add(request.bodyText());
+            requestPaths.add(request.path);
+        }
+        if (request.path.endsWith("/cachedContents")) {
+            if (refuseCachedContents) {
+                writeError(out, 400, "Cached content is too small");
+            } else {
+                String name = "cachedContents/" + cachedContentSerial.incrementAndGet();
+                liveCachedContents.add(name);
+                byte[] body = ("{\"name\": \"" + name + "\", \"model\": \"models/test\"}").getBytes(StandardCharsets.UTF_8);
+                writeHead(out, 200, "application/json", body.length, null);
+                out.write(body);
+                out.flush();
+            }
+            return true;
+        }
+        Matcher cachedContent = CACHED_CONTENT.matcher(request.bodyText());
+        if (cachedContent.find() && !liveCachedContents.contains(cachedContent.group(1))) {
+            writeError(out, 404, "CachedContent not found (or permission denied)");
+            return true;
+        }
+        sleep(firstByteDelayMs);
+        Fault fault = faults.poll();
+        if (fault != null) {
+            if (fault.drop) return false;
+            if (fault.blockReason != null) {
+                writeResponse(out, request, blockedEnvelope(fault.blockReason));
+                return true;
+            }
+            if (fault.code != 0) {
+                byte[] body = ("{\"error\": {\"code\": " + fault.code + ", \"message\": \""
+                        + (fault.code == 429 ? "Resource has been exhausted" : "The service is currently unavailable")
+                        + "\"}}").getBytes(StandardCharsets.UTF_8);
+                writeHead(out, fault.code, "application/json", body.length,
+                        fault.retryAfter != null ? "Retry-After: " + fault.retryAfter : null);
+                out.write(body);
+                out.flush();
+                return true;
+            }
+            sleep(fault.delayMs);
+        }
+        String queued = queuedTexts.poll();
+        String generatedText = queued != null ? queued : this.generatedText;
+        if (queued == null && perQuestionDelayMs >= 0) {
+            Matcher matcher = REQUESTED_COUNT.matcher(request.bodyText());
+            int count = matcher.find() ? Integer.parseInt(matcher.group(1)) : 0;
+            generatedText = questionsJson(questionSerial.getAndAdd(count), count);
+            sleep(count * perQuestionDelayMs);
+        }
+        String finishReason = this.finishReason;
+        if (fault != null && fault.truncateAt >= 0 && fault.truncateAt < generatedText.length()) {
+            generatedText = generatedText.substring(0, fault.truncateAt);
+            finishReason = "MAX_TOKENS";
+        }
+        if (request.path.endsWith(":streamGenerateContent")) {
+            writeHead(out, 200, "text/event-stream", -1, null);
+            List<String> chunks = split(generatedText, chunkSize);
+            for (int i = 0; i < chunks.size(); i++) {
+                boolean last = i == chunks.size() - 1;
+                sleep(generationMillis(chunks.get(i)));
+                String event = "data: " + envelope(chunks.get(i), last ? finishReason : null, last ? promptTokens : 0,
+                        last ? candidatesTokens : 0, last ? usageTokens : 0) + "\r\n\r\n";
+                byte[] eventBytes = event.getBytes(StandardCharsets.UTF_8);
+                writeChunk(out, eventBytes);
+                streamedBytes.addAndGet(eventBytes.length);
+                sleep(chunkDelayMs);
+            }
+            writeChunk(out, new byte[0]);
+        } else {
+            sleep(generationMillis(generatedText));
+            byte[] body = envelope(generatedText, finishReason, promptTokens, candidatesTokens, usageTokens).getBytes(StandardCharsets.UTF_8);
+            writeHead(out, 200, "application/json", body.length, null);
+            out.write(body);
+            out.flush();
+        }
+        return true;
+    }
+
+    // A complete response to either endpoint; a stream gets it as its only event
+    private void writeResponse(OutputStream out, Request request, String envelope) throws IOException {
+        if (request.path.endsWith(":streamGenerateContent")) {
+            writeHead(out, 200, "text/event-stream", -1, null);
+            writeChunk(out, ("data: " + envelope + "\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+            writeChunk(out, new byte[0]);
+        } else {
+            byte[] body = envelope.getBytes(StandardCharsets.UTF_8);
+            writeHead(out, 200, "application/json", body.length, null);
+            out.write(body);
+            out.flush();
+        }
+    }
+
+    private long generationMillis(String text) {
+        int rate = tokensPerSecond;
+        return rate > 0 ? (long) text.length() * 1000 / ((long) CHARS_PER_TOKEN * rate) : 0;
+    }
+
+    private static void writeError(OutputStream out, int code, String message) throws IOException {
+        byte[] body = ("{\"error\": {\"code\": " + code + ", \"message\": \"" + message + "\"}}").getBytes(StandardCharsets.UTF_8);
+        writeHead(out, code, "application/json", body.length, null);
+        out.write(body);
+        out.flush();
+    }
+
+    private static void writeHead(OutputStream out, int code, String contentType, int contentLength,
+                                  String extraHeader) throws IOException {
+        StringBuilder head = new StringBuilder();
+        head.append("HTTP/1.1 ").append(code).append(code == 200 ? " OK" : " Error").append("\r\n");
+        head.append("Content-Type: ").append(contentType).append("\r\n");
+        if (extraHeader != null) head.append(extraHeader).append("\r\n");
+        if (contentLength >= 0) {
+            head.append("Content-Length: ").append(contentLength).append("\r\n");
+        } else {
+            head.append("Transfer-Encoding: chunked\r\n");
+        }
+        head.append("\r\n");
+        out.write(head.toString().getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+
+    private static void writeChunk(OutputStream out, byte[] data) throws IOException {
+        out.write((Integer.toHexString(data.length) + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.write(data);
+        out.write("\r\n".getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+
+    static String envelope(String text, String finishReason) {
+        return envelope(text, finishReason, 0);
+    }
+
+    static String envelope(String text, String finishReason, int totalTokens) {
+        return envelope(text, finishReason, 0, 0, totalTokens);
+    }
+
+    static String envelope(String text, String finishReason, int promptTokens, int candidatesTokens, int totalTokens) {
+        JsonObject part = new JsonObject();
+        part.addProperty("text", text);
+        JsonArray parts = new JsonArray();
+        parts.add(part);
+        JsonObject content = new JsonObject();
+        content.add("parts", parts);
+        content.addProperty("role", "model");
+        JsonObject candidate = new JsonObject();
+        candidate.add("content", content);
+        if (finishReason != null) candidate.addProperty("finishReason", finishReason);
+        if ("SAFETY".equals(finishReason)) candidate.add("safetyRatings", safetyRatings());
+        JsonArray candidates = new JsonArray();
+        candidates.add(candidate);
+        JsonObject root = new JsonObject();
+        root.add("candidates", candidates);
+        if (totalTokens > 0) {
+            JsonObject usage = new JsonObject();
+            if (promptTokens > 0) usage.addProperty("promptTokenCount", promptTokens);
+            if (candidatesTokens > 0) usage.addProperty("candidatesTokenCount", candidatesTokens);
+            usage.addProperty("totalTokenCount", totalTokens);
+            root.add("usageMetadata", usage);
+        }
+        return root.toString();
+    }
+
+    static String blockedEnvelope(String blockReason) {
+        JsonObject feedback = new JsonObject();
+        feedback.addProperty("blockReason", blockReason);
+        feedback.add("safetyRatings", safetyRatings());
+        JsonObject root = new JsonObject();
+        root.add("promptFeedback", feedback);
+        return root.toString();
+    }
+
+    private static JsonArray safetyRatings() {
+        JsonObject rating = new JsonObject();
+        rating.addProperty("category", "HARM_CATEGORY_DANGEROUS_CONTENT");
+        rating.addProperty("probability", "HIGH");
+        JsonArray ratings = new JsonArray();
+        ratings.add(rating);
+        return ratings;
+    }
+
+    static String questionsJson(int count) {
+        return questionsJson(0, count);
+    }
+
+    static String questionsJson(int first, int count) {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = first; i < first + count; i++) {
+            if (i > first) sb.append(",\n  ");
+            sb.append("{\"question\": \"Question ").append(i).append(" with {braces} and \\\"quotes\\\"?\", ")
+                    .append("\"options\": [\"A").append(i).append("\", \"B\", \"C\", \"D\"], ")
+                    .append("\"correctAnswerIndex\": ").append(i % 4).append("}");
+        }
+        return sb.append("]").toString();
+    }
+
+    private static List<String> split(String text, int size) {
+        List<String> chunks = new ArrayList<>();
+        for (int i = 0; i < text.length(); i += size) {
+            chunks.add(text.substring(i, Math.min(text.length(), i + size)));
+        }
+        if (chunks.isEmpty()) chunks.add("");
+        return chunks;
+    }
+
+    private static void sleep(long ms) {
+        if (ms <= 0) return;
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            serverSocket.close();
+        } catch (IOException ignored) {
+        }
+        connectionExecutor.shutdownNow();
+    }
+
+    /** A fault to inject into one request instead of (or before, or into) the normal response. */
+    private static class Fault {
+        int code;
+        String retryAfter;
+        boolean drop;
+        long delayMs;
+        String blockReason;
+        int truncateAt = -1;
+
+        static Fault status(int code, String retryAfter) {
+            Fault fault = new Fault();
+            fault.code = code;
+            fault.retryAfter = retryAfter;
+            return fault;
+        }
+
+        static Fault drop() {
+            Fault fault = new Fault();
+            fault.drop = true;
+            return fault;
+        }
+
+        static Fault stall(long delayMs) {
+            Fault fault = new Fault();
+            fault.delayMs = delayMs;
+            return fault;
+        }
+
+        static Fault block(String reason) {
+            Fault fault = new Fault();
+            fault.blockReason = reason;
+            return fault;
+        }
+
+        static Fault truncate(int chars) {
+            Fault fault = new Fault();
+            fault.truncateAt = chars;
+            return fault;
+        }
+    }
+
+    /** A parsed HTTP request: request line, lower-cased headers and the raw body. */
+    static class Request {
+        String method;
+        String path;
+        String query;
+        final Map<String, String> headers = new LinkedHashMap<>();
+        byte[] body;
+
+        static Request read(InputStream in) throws IOException {
+            String requestLine = readLine(in);
+            if (requestLine == null || requestLine.isEmpty()) return null;
+            Request request = new Request();
+            String[] parts = requestLine.split(" ");
+            request.method = parts[0];
+            String target = parts.length > 1 ? parts[1] : "/";
+            int q = target.indexOf('?');
+            request.path = q >= 0 ? target.substring(0, q) : target;
+            request.query = q >= 0 ? target.substring(q + 1) : "";
+            String line;
+            while ((line = readLine(in)) != null && !line.isEmpty()) {
+                int colon = line.indexOf(':');
+                if (colon > 0) {
+                    request.headers.put(line.substring(0, colon).trim().toLowerCase(Locale.US), line.substring(colon + 1).trim());
+                }
+            }
+            String contentLength = request.headers.get("content-length");
+            int length = contentLength != null ? Integer.parseInt(contentLength) : 0;
+            request.body = new byte[length];
+            int read = 0;
+            while (read < length) {
+                int n = in.read(request.body, read, length - read);
+                if (n < 0) throw new IOException("Truncated request body");
+                read += n;
+            }
+            return request;
+        }
+
+        String bodyText() {
+            return new String(body, StandardCharsets.UTF_8);
+        }
+
+        private static String readLine(InputStream in) throws IOException {
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            int b;
+            while ((b = in.read()) != -1) {
+                if (b == '\n') break;
+                if (b != '\r') line.write(b);
+            }
+            if (b == -1 && line.size() == 0) return null;
+            return new String(line.toByteArray(), StandardCharsets.US_ASCII);
+        }
+    }
+}
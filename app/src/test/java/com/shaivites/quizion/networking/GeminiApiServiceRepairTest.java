@@ -0,0 +1,201 @@
+package com.shaivites.quizion.networking;
+
+import com.shaivites.quizion.models.QuizQuestion;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class GeminiApiServiceRepairTest {
+
+    private FakeGeminiServer server;
+    private GeminiApiService service;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new FakeGeminiServer();
+        service = new GeminiApiService("test-key", server.baseUrl(), new UrlConnectionTransport(true));
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
+
+    @Test
+    public void streamReplacesOnlyInvalidQuestions() throws Exception {
+        server.thenRespondWith(batchWithTwoInvalid(), replacements(2)).streamChunks(60, 0);
+
+        List<QuizQuestion> received = new CopyOnWriteArrayList<>();
+        AtomicReference<List<QuizQuestion>> batch = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(1);
+        service.streamQuizQuestions("Science", "Medium", 10, null, ModelRouter.Mode.TOPIC,
+                (question, index) -> received.add(question),
+                callback(batch, done));
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(10, received.size());
+        assertEquals("Replacement 1?", received.get(9).getQuestion());
+        assertEquals(2, server.requestCount());
+        assertTrue(server.requestBodies().get(1).contains("Generate exactly 2 multiple-choice"));
+        assertEquals(10, batch.get().size());
+        assertEquals(2, service.getRepairedQuestionCount());
+    }
+
+    @Test
+    public void batchReplacesInvalidQuestionsAndDropsDuplicates() throws Exception {
+        // The follow-up repeats a question that is already in the batch, so only one replacement is usable
+        String duplicateAndNew = "[" + question("Question 0?", 0) + "," + question("Replacement 0?", 2) + "]";
+        server.thenRespondWith(batchWithTwoInvalid(), duplicateAndNew);
+
+        AtomicReference<List<QuizQuestion>> batch = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(1);
+        service.generateQuizQuestions("Science", "Medium", 10, null, ModelRouter.Mode.TOPIC, callback(batch, done));
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        List<QuizQuestion> questions = batch.get();
+        assertEquals(9, questions.size());
+        assertEquals("Replacement 0?", questions.get(8).getQuestion());
+        assertEquals(2, server.requestCount());
+    }
+
+    @Test
+    public void validBatchSendsNoFollowUp() throws Exception {
+        server.respondWith(FakeGeminiServer.questionsJson(10));
+
+        AtomicReference<List<QuizQuestion>> batch = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(1);
+        service.generateQuizQuestions("Science", "Medium", 10, null, ModelRouter.Mode.TOPIC, callback(batch, done));
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(10, batch.get().size());
+        assertEquals(1, server.requestCount());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void batchIsCutToTheRequestedCountAndImmutable() throws Exception {
+        server.respondWith(FakeGeminiServer.questionsJson(12));
+
+        AtomicReference<List<QuizQuestion>> batch = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(1);
+        service.generateQuizQuestions("Science", "Medium", 10, null, ModelRouter.Mode.TOPIC, callback(batch, done));
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(10, batch.get().size());
+        batch.get().clear();
+    }
+
+    @Test
+    public void truncatedBatchKeepsCompleteQuestionsAndTopsUpTheRest() throws Exception {
+        // Cut right after the options of the 8th question: the text ends with ']' but is not a complete array
+        String full = FakeGeminiServer.questionsJson(10);
+        server.thenRespondWith(full, replacements(3)).truncateNext(1, full.indexOf(']', nthIndexOf(full, "\"options\"", 8)) + 1);
+
+        AtomicReference<List<QuizQuestion>> batch = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(1);
+        service.generateQuizQuestions("Science", "Medium", 10, null, ModelRouter.Mode.TOPIC, callback(batch, done));
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        List<QuizQuestion> questions = batch.get();
+        assertEquals(10, questions.size());
+        assertEquals("Replacement 0?", questions.get(7).getQuestion());
+        assertEquals(2, server.requestCount());
+        assertTrue(server.requestBodies().get(1).contains("Generate exactly 3 multiple-choice"));
+        assertTrue(service.getSalvagedQuestionCount() >= 7);
+    }
+
+    @Test
+    public void truncatedStreamTopsUpTheQuestionsItCutOff() throws Exception {
+        String full = FakeGeminiServer.questionsJson(10);
+        server.thenRespondWith(full, replacements(2)).streamChunks(60, 0).truncateNext(1, nthIndexOf(full, "\"options\"", 9));
+
+        List<QuizQuestion> received = new CopyOnWriteArrayList<>();
+        AtomicReference<List<QuizQuestion>> batch = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(1);
+        service.streamQuizQuestions("Science", "Medium", 10, null, ModelRouter.Mode.TOPIC,
+                (question, index) -> received.add(question),
+                callback(batch, done));
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(10, received.size());
+        assertEquals("Replacement 1?", received.get(9).getQuestion());
+        assertTrue(server.requestBodies().get(1).contains("Generate exactly 2 multiple-choice"));
+    }
+
+    @Test
+    public void truncatedBatchWithoutACompleteQuestionFails() throws Exception {
+        server.respondWith(FakeGeminiServer.questionsJson(10)).truncateNext(1, 20); // Cut inside the first question
+
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(1);
+        service.generateQuizQuestions("Science", "Medium", 10, null, ModelRouter.Mode.TOPIC, new GeminiApiService.GeminiCallback() {
+            @Override
+            public void onSuccess(List<QuizQuestion> questions) {
+                done.countDown();
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                error.set(throwable);
+                done.countDown();
+            }
+        });
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertNotNull(error.get());
+        assertEquals(0, service.getSalvagedQuestionCount());
+    }
+
+    private static GeminiApiService.GeminiCallback callback(AtomicReference<List<QuizQuestion>> result, CountDownLatch done) {
+        return new GeminiApiService.GeminiCallback() {
+            @Override
+            public void onSuccess(List<QuizQuestion> questions) {
+                result.set(questions);
+                done.countDown();
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                fail("Unexpected error: " + throwable);
+            }
+        };
+    }
+
+    // Eight valid questions, one with three options and one with an out-of-range answer index
+    private static String batchWithTwoInvalid() {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < 8; i++) {
+            sb.append(question("Question " + i + "?", i % 4)).append(',');
+        }
+        sb.append("{\"question\": \"Three options?\", \"options\": [\"A\", \"B\", \"C\"], \"correctAnswerIndex\": 0},");
+        sb.append("{\"question\": \"Bad index?\", \"options\": [\"A\", \"B\", \"C\", \"D\"], \"correctAnswerIndex\": 9}");
+        return sb.append("]").toString();
+    }
+
+    private static String replacements(int count) {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < count; i++) {
+            if (i > 0) sb.append(',');
+            sb.append(question("Replacement " + i + "?", 1));
+        }
+        return sb.append("]").toString();
+    }
+
+    private static String question(String text, int correctIndex) {
+        return "{\"question\": \"" + text + "\", \"options\": [\"A\", \"B\", \"C\", \"D\"], \"correctAnswerIndex\": " + correctIndex + "}";
+    }
+
+    private static int nthIndexOf(String text, String part, int n) {
+        int index = -1;
+        for (int i = 0; i < n; i++) index = text.indexOf(part, index + 1);
+        return index;
+    }
+}
@@ -0,0 +1,197 @@
+package com.shaivites.quizion.networking;
+
+import com.shaivites.quizion.models.QuizQuestion;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class GeminiApiServiceRetryTest {
+
+    private FakeGeminiServer server;
+    private GeminiApiService service;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new FakeGeminiServer();
+        server.respondWith(FakeGeminiServer.questionsJson(3));
+        service = new GeminiApiService("test-key", server.baseUrl(), new UrlConnectionTransport(true));
+        service.setRetryPolicy(new RetryPolicy(3, 20, 100));
+    }
+
+    @After
+    public void tearDown() {
+        service.shutdown();
+        server.close();
+    }
+
+    @Test
+    public void serverErrorsAreRetriedUntilSuccess() throws Exception {
+        server.failNext(2, 503);
+
+        Outcome outcome = generate();
+
+        assertEquals(3, outcome.questions.size());
+        assertEquals(3, server.requestCount());
+        assertEquals(2, service.getRetryCount());
+    }
+
+    @Test
+    public void droppedConnectionIsRetried() throws Exception {
+        server.dropNext(1);
+
+        Outcome outcome = generate();
+
+        assertEquals(3, outcome.questions.size());
+        assertEquals(2, server.requestCount());
+        assertEquals(1, service.getRetryCount());
+    }
+
+    @Test
+    public void clientErrorsFailWithoutRetry() throws Exception {
+        server.failNext(1, 400);
+
+        Outcome outcome = generate();
+
+        assertNotNull(outcome.error);
+        assertTrue(outcome.error.getMessage().contains("400"));
+        assertEquals(1, server.requestCount());
+        assertEquals(0, service.getRetryCount());
+    }
+
+    @Test
+    public void givesUpAfterMaxAttempts() throws Exception {
+        server.failNext(5, 503);
+
+        Outcome outcome = generate();
+
+        assertTrue(outcome.error instanceof TransientHttpException);
+        assertTrue(outcome.error.getMessage().contains("503"));
+        assertEquals(3, server.requestCount());
+    }
+
+    @Test
+    public void streamIsRetriedBeforeAnyQuestionArrived() throws Exception {
+        server.respondWith(FakeGeminiServer.questionsJson(10)).failNext(1, 500);
+        AtomicInteger questions = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(1);
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        service.streamQuizQuestions("Science", "Medium", 10, null, ModelRouter.Mode.TOPIC,
+                (question, index) -> questions.incrementAndGet(), callback(new AtomicReference<>(), error, done));
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertNull(error.get());
+        assertEquals(10, questions.get());
+        assertEquals(2, server.requestCount());
+    }
+
+    @Test
+    public void cancellingDuringBackoffStopsRetrying() throws Exception {
+        service.setRetryPolicy(new RetryPolicy(3, 5000, 5000));
+        server.failNext(5, 503);
+        CountDownLatch done = new CountDownLatch(1);
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        RequestHandle handle = service.generateQuizQuestions("Science", "Medium", 3, null, ModelRouter.Mode.TOPIC,
+                callback(new AtomicReference<>(), error, done));
+        Thread.sleep(300);
+
+        handle.cancel();
+        Thread.sleep(300);
+
+        // The backoff would hold the worker for at least 2.5 seconds had it not been interrupted
+        assertEquals(0, service.getScheduler().getRunningCount());
+        assertEquals(1, server.requestCount());
+        assertEquals(1, done.getCount());
+    }
+
+    @Test
+    public void stalledRequestIsHedgedAndTheDuplicateWins() throws Exception {
+        service.setHedgingEnabled(true);
+        for (int i = 0; i < 10; i++) {
+            assertNotNull(generate().questions); // Builds the latency history hedging is based on
+        }
+        server.stallNext(1, 5000);
+
+        long start = System.nanoTime();
+        Outcome outcome = generate();
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertEquals(3, outcome.questions.size());
+        assertTrue("answered after " + elapsedMs + "ms", elapsedMs < 2000);
+        assertEquals(12, server.requestCount());
+        assertEquals(1, service.getHedgedRequestCount());
+        assertEquals(1, service.getHedgeWinCount());
+    }
+
+    @Test
+    public void backoffGrowsExponentiallyWithJitter() {
+        RetryPolicy policy = new RetryPolicy(5, 100, 400, new Random(42));
+        for (int i = 0; i < 100; i++) {
+            assertBetween(50, 100, policy.backoffMillis(1));
+            assertBetween(100, 200, policy.backoffMillis(2));
+            assertBetween(200, 400, policy.backoffMillis(3));
+            assertBetween(200, 400, policy.backoffMillis(4)); // Capped
+        }
+    }
+
+    @Test
+    public void onlyTransientFailuresAreRetryable() {
+        RetryPolicy policy = new RetryPolicy(3, 100, 400);
+        assertTrue(policy.isRetryable(new TransientHttpException(503, "unavailable")));
+        assertTrue(policy.isRetryable(new SocketTimeoutException("read timed out")));
+        assertTrue(policy.isRetryable(new SocketException("Connection reset")));
+        assertFalse(policy.isRetryable(new QuotaExceededException("limit", false, 1000)));
+        assertFalse(policy.isRetryable(new IOException("Malformed Gemini response envelope")));
+        assertFalse(policy.shouldRetry(new TransientHttpException(503, "unavailable"), 3));
+    }
+
+    private static void assertBetween(long min, long max, long actual) {
+        assertTrue(actual + " not in [" + min + ", " + max + "]", actual >= min && actual <= max);
+    }
+
+    private Outcome generate() throws InterruptedException {
+        Outcome outcome = new Outcome();
+        AtomicReference<List<QuizQuestion>> questions = new AtomicReference<>();
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(1);
+        service.generateQuizQuestions("Science", "Medium", 3, null, ModelRouter.Mode.TOPIC, callback(questions, error, done));
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        outcome.questions = questions.get();
+        outcome.error = error.get();
+        return outcome;
+    }
+
+    private static GeminiApiService.GeminiCallback callback(AtomicReference<List<QuizQuestion>> result,
+                                                            AtomicReference<Throwable> error, CountDownLatch done) {
+        return new GeminiApiService.GeminiCallback() {
+            @Override
+            public void onSuccess(List<QuizQuestion> questions) {
+                result.set(questions);
+                done.countDown();
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                error.set(throwable);
+                done.countDown();
+            }
+        };
+    }
+
+    private static class Outcome {
+        List<QuizQuestion> questions;
+        Throwable error;
+    }
+}
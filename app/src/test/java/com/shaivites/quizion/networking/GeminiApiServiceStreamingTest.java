@@ -0,0 +1,100 @@
+package com.shaivites.quizion.networking;
+
+import com.shaivites.quizion.models.QuizQuestion;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class GeminiApiServiceStreamingTest {
+
+    private FakeGeminiServer server;
+    private GeminiApiService service;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new FakeGeminiServer();
+        service = new GeminiApiService("test-key", server.baseUrl(), new UrlConnectionTransport(true));
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
+
+    @Test
+    public void deliversEachQuestionBeforeBatchCompletes() throws Exception {
+        server.respondWith(FakeGeminiServer.questionsJson(10)).streamChunks(25, 20);
+
+        List<QuizQuestion> received = new CopyOnWriteArrayList<>();
+        AtomicLong firstQuestionAt = new AtomicLong();
+        AtomicLong completedAt = new AtomicLong();
+        AtomicReference<List<QuizQuestion>> batch = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(1);
+
+        service.streamQuizQuestions("Science", "Medium", 10, null, ModelRouter.Mode.TOPIC,
+                (question, index) -> {
+                    if (index == 0) firstQuestionAt.set(System.nanoTime());
+                    assertEquals(received.size(), index);
+                    received.add(question);
+                },
+                new GeminiApiService.GeminiCallback() {
+                    @Override
+                    public void onSuccess(List<QuizQuestion> questions) {
+                        completedAt.set(System.nanoTime());
+                        batch.set(questions);
+                        done.countDown();
+                    }
+
+                    @Override
+                    public void onError(Throwable throwable) {
+                        fail("Unexpected error: " + throwable);
+                    }
+                });
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(10, received.size());
+        assertEquals("Question 3 with {braces} and \"quotes\"?", received.get(3).getQuestion());
+        assertEquals(3, received.get(3).getCorrectAnswerIndex());
+        assertEquals(4, received.get(9).getOptions().size());
+        assertEquals(received, batch.get());
+        // The first question must arrive well before the whole batch has been streamed
+        long firstMs = TimeUnit.NANOSECONDS.toMillis(completedAt.get() - firstQuestionAt.get());
+        assertTrue("first question only " + firstMs + "ms before completion", firstMs > 200);
+    }
+
+    @Test
+    public void safetyStopReportsErrorAfterQuestionsSoFar() throws Exception {
+        server.respondWith(FakeGeminiServer.questionsJson(2)).streamChunks(1000, 0).finishReason("SAFETY");
+
+        CountDownLatch done = new CountDownLatch(1);
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        service.streamQuizQuestions("Science", "Medium", 2, null, ModelRouter.Mode.TOPIC,
+                (question, index) -> { },
+                new GeminiApiService.GeminiCallback() {
+                    @Override
+                    public void onSuccess(List<QuizQuestion> questions) {
+                        done.countDown();
+                    }
+
+                    @Override
+                    public void onError(Throwable throwable) {
+                        error.set(throwable);
+                        done.countDown();
+                    }
+                });
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertNotNull(error.get());
+        assertTrue(error.get().getMessage().contains("SAFETY"));
+    }
+}
@@ -0,0 +1,127 @@
+package com.shaivites.quizion.networking;
+
+import com.shaivites.quizion.models.QuizQuestion;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class GeminiLoadRunTest {
+
+    private FakeGeminiServer server;
+    private GeminiApiService service;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new FakeGeminiServer();
+        service = new GeminiApiService("test-key", server.baseUrl(), new UrlConnectionTransport(true));
+        service.setRetryPolicy(new RetryPolicy(3, 20, 100));
+    }
+
+    @After
+    public void tearDown() {
+        service.shutdown();
+        server.close();
+    }
+
+    @Test
+    public void blockedPromptFailsBothEndpoints() throws Exception {
+        server.respondWith(FakeGeminiServer.questionsJson(3)).blockNext(2, "SAFETY");
+
+        AtomicReference<Throwable> generateError = new AtomicReference<>();
+        AtomicReference<Throwable> streamError = new AtomicReference<>();
+        CountDownLatch generated = new CountDownLatch(1);
+        service.generateQuizQuestions("Science", "Medium", 3, null, ModelRouter.Mode.TOPIC, callback(generateError, generated));
+        assertTrue(generated.await(10, TimeUnit.SECONDS));
+        CountDownLatch streamed = new CountDownLatch(1);
+        service.streamQuizQuestions("History", "Medium", 3, null, ModelRouter.Mode.TOPIC, (question, index) -> { }, callback(streamError, streamed));
+
+        assertTrue(streamed.await(10, TimeUnit.SECONDS));
+        assertNotNull(generateError.get());
+        assertTrue(streamError.get().getMessage().contains("SAFETY"));
+        assertEquals(2, server.requestCount()); // A block is an answer, not a transient failure
+    }
+
+    @Test
+    public void latencyAndTokenPacingSplitIntoFirstByteAndTransfer() throws Exception {
+        String questions = FakeGeminiServer.questionsJson(4);
+        server.respondWith(questions).latency(100).paceTokens(1000).streamChunks(40, 0).usageTokens(300, 120);
+        long generationMillis = questions.length() * 1000L / (4 * 1000);
+
+        CountDownLatch done = new CountDownLatch(1);
+        service.streamQuizQuestions("Science", "Medium", 4, null, ModelRouter.Mode.TOPIC, (question, index) -> { },
+                callback(new AtomicReference<Throwable>(), done));
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+
+        RequestMetrics metrics = service.getMetrics();
+        assertTrue(metrics.getHistogram(RequestMetrics.Metric.TTFB_MS).getMax() >= 100);
+        assertTrue(metrics.getHistogram(RequestMetrics.Metric.TRANSFER_MS).getMax() >= generationMillis / 2);
+        assertEquals(300, metrics.getHistogram(RequestMetrics.Metric.PROMPT_TOKENS).getMax());
+        assertEquals(120, metrics.getHistogram(RequestMetrics.Metric.CANDIDATE_TOKENS).getMax());
+    }
+
+    /**
+     * Load run: 24 quiz requests on distinct topics, half streamed, against 80 ms of first-byte latency,
+     * 2000 output tokens/s and two 503s. Prints the latency percentiles the metrics recorded; asserts that
+     * every request got its questions.
+     */
+    @Test
+    @Category(Benchmark.class)
+    public void loadRunReportsLatencyPercentiles() throws Exception {
+        server.generateRequestedCount(0).latency(80).paceTokens(2000).streamChunks(60, 0).usageTokens(400, 300).failNext(2, 503);
+        int requests = 24;
+        AtomicInteger failures = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(requests);
+        long start = System.nanoTime();
+        for (int i = 0; i < requests; i++) {
+            GeminiApiService.GeminiCallback callback = new GeminiApiService.GeminiCallback() {
+                @Override
+                public void onSuccess(List<QuizQuestion> questions) {
+                    done.countDown();
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                    failures.incrementAndGet();
+                    done.countDown();
+                }
+            };
+            if (i % 2 == 0) {
+                service.streamQuizQuestions("Topic " + i, "Medium", 5, null, ModelRouter.Mode.TOPIC, (question, index) -> { }, callback);
+            } else {
+                service.generateQuizQuestions("Topic " + i, "Medium", 5, null, ModelRouter.Mode.TOPIC, callback);
+            }
+        }
+
+        assertTrue(done.await(60, TimeUnit.SECONDS));
+        assertEquals(0, failures.get());
+        RequestMetrics metrics = service.getMetrics();
+        assertEquals(requests, metrics.getHistogram(RequestMetrics.Metric.BATCH_MS).getCount());
+        BenchmarkHarness.report("Load run: %d requests in %dms%n%s", requests,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), metrics);
+    }
+
+    private static GeminiApiService.GeminiCallback callback(AtomicReference<Throwable> error, CountDownLatch done) {
+        return new GeminiApiService.GeminiCallback() {
+            @Override
+            public void onSuccess(List<QuizQuestion> questions) {
+                done.countDown();
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                error.set(throwable);
+                done.countDown();
+            }
+        };
+    }
+}
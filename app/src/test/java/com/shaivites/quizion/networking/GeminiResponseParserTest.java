@@ -0,0 +1,114 @@
+package com.shaivites.quizion.networking;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class GeminiResponseParserTest {
+
+    @Test
+    public void extractsFirstCandidateTextAndFinishReason() throws IOException {
+        String body = "{\"candidates\": [{\"content\": {\"parts\": [{\"text\": \"[{\\\"a\\\": \\\"x\\\\n  y\\\"}]\"}], \"role\": \"model\"},"
+                + " \"finishReason\": \"STOP\", \"index\": 0, \"safetyRatings\": [{\"category\": \"HARM_CATEGORY_HARASSMENT\", \"probability\": \"NEGLIGIBLE\"}]},"
+                + " {\"content\": {\"parts\": [{\"text\": \"second\"}]}}],"
+                + " \"usageMetadata\": {\"promptTokenCount\": 10, \"candidatesTokenCount\": 20}, \"modelVersion\": \"x\"}";
+        GeminiResponseParser.Envelope envelope = GeminiResponseParser.parse(stream(body));
+        assertTrue(envelope.hasCandidates);
+        assertEquals("[{\"a\": \"x\\n  y\"}]", envelope.text); // Whitespace inside string values is preserved
+        assertEquals("STOP", envelope.finishReason);
+        assertEquals("HARM_CATEGORY_HARASSMENT=NEGLIGIBLE", envelope.safetyRatings);
+        assertNull(envelope.blockReason);
+        assertEquals(30, envelope.totalTokenCount); // Summed when totalTokenCount is absent
+    }
+
+    @Test
+    public void readsBlockReasonAndErrorMessage() throws IOException {
+        GeminiResponseParser.Envelope blocked = GeminiResponseParser.parse(
+                "{\"promptFeedback\": {\"blockReason\": \"SAFETY\", \"safetyRatings\": []}}");
+        assertEquals("SAFETY", blocked.blockReason);
+        assertFalse(blocked.hasCandidates);
+
+        GeminiResponseParser.Envelope error = GeminiResponseParser.parse(
+                "{\"error\": {\"code\": 429, \"message\": \"Resource has been exhausted\", \"status\": \"RESOURCE_EXHAUSTED\"}}");
+        assertEquals("Resource has been exhausted", error.errorMessage);
+
+        GeminiResponseParser.Envelope quota = GeminiResponseParser.parse(
+                "{\"error\": {\"code\": 429, \"message\": \"Quota exceeded\", \"details\": ["
+                        + "{\"@type\": \"type.googleapis.com/google.rpc.QuotaFailure\", \"violations\": []},"
+                        + " {\"@type\": \"type.googleapis.com/google.rpc.RetryInfo\", \"retryDelay\": \"37s\"}]}}");
+        assertEquals("37s", quota.retryDelay);
+    }
+
+    @Test(expected = IOException.class)
+    public void malformedEnvelopeThrowsIOException() throws IOException {
+        GeminiResponseParser.parse("{\"candidates\": [{\"content\": ");
+    }
+
+    /**
+     * Compares the streaming parser with the previous readLine/trim + JsonParser tree path on a large
+     * pretty-printed response. Prints parse time and heap growth; only correctness is asserted. The
+     * streaming parser wins on heap growth; parse times are within noise of each other, and the tree path
+     * is sometimes the faster one.
+     */
+    @Test
+    @Category(Benchmark.class)
+    public void benchmarkAgainstTreeParsing() throws Exception {
+        String body = largeResponse(4000);
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        String expected = GeminiResponseParser.parse(stream(body)).text;
+        assertEquals(expected, legacyExtract(new ByteArrayInputStream(bytes)));
+
+        BenchmarkHarness.Measurement<String> streaming =
+                BenchmarkHarness.measure(() -> GeminiResponseParser.parse(new ByteArrayInputStream(bytes)).text);
+        BenchmarkHarness.Measurement<String> tree = BenchmarkHarness.measure(() -> legacyExtract(new ByteArrayInputStream(bytes)));
+        assertEquals(expected, streaming.result);
+        assertEquals(expected, tree.result);
+        BenchmarkHarness.report("Envelope parse of %d KB: streaming %d us / +%d KB heap, tree %d us / +%d KB heap",
+                bytes.length / 1024, streaming.micros, streaming.heapBytes / 1024, tree.micros, tree.heapBytes / 1024);
+    }
+
+    // The pre-streaming implementation: trimmed lines into a String, then a full tree
+    private static String legacyExtract(InputStream inputStream) throws IOException {
+        StringBuilder response = new StringBuilder();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                response.append(line.trim());
+            }
+        }
+        JsonObject root = JsonParser.parseString(response.toString()).getAsJsonObject();
+        return root.getAsJsonArray("candidates").get(0).getAsJsonObject()
+                .getAsJsonObject("content").getAsJsonArray("parts").get(0).getAsJsonObject()
+                .get("text").getAsString();
+    }
+
+    private static String largeResponse(int questions) {
+        JsonObject root = JsonParser.parseString(FakeGeminiServer.envelope(FakeGeminiServer.questionsJson(questions), "STOP")).getAsJsonObject();
+        JsonArray ratings = new JsonArray();
+        for (int i = 0; i < 4; i++) {
+            JsonObject rating = new JsonObject();
+            rating.addProperty("category", "HARM_CATEGORY_" + i);
+            rating.addProperty("probability", "NEGLIGIBLE");
+            ratings.add(rating);
+        }
+        root.getAsJsonArray("candidates").get(0).getAsJsonObject().add("safetyRatings", ratings);
+        return new GsonBuilder().setPrettyPrinting().create().toJson(root);
+    }
+
+    private static InputStream stream(String body) {
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,65 @@
+package com.shaivites.quizion.networking;
+
+import org.junit.Test;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class HedgedRequestTest {
+
+    @Test
+    public void fullExecutorSkipsTheHedgeInsteadOfGrowing() throws Exception {
+        ThreadPoolExecutor oneThread = new ThreadPoolExecutor(0, 1, 1, TimeUnit.SECONDS, new SynchronousQueue<Runnable>());
+        AtomicInteger attempts = new AtomicInteger();
+        try {
+            HedgedRequest hedged = new HedgedRequest(oneThread, new RequestToken());
+            TransportResponse response = hedged.send(attemptToken -> {
+                attempts.incrementAndGet();
+                sleep(300); // Stalls past the hedge delay while holding the only thread
+                return response(200);
+            }, 50);
+
+            assertEquals(200, response.getCode());
+            assertEquals(1, attempts.get());
+            assertFalse(hedged.wasHedged());
+            assertTrue(hedged.wasHedgeSkipped());
+            assertEquals(1, oneThread.getLargestPoolSize());
+        } finally {
+            oneThread.shutdownNow();
+        }
+    }
+
+    @Test
+    public void rejectedOriginalIsSentOnTheCallingThread() throws Exception {
+        Thread caller = Thread.currentThread();
+        HedgedRequest hedged = new HedgedRequest(command -> {
+            throw new RejectedExecutionException();
+        }, new RequestToken());
+
+        TransportResponse response = hedged.send(attemptToken -> {
+            assertSame(caller, Thread.currentThread());
+            return response(204);
+        }, 50);
+
+        assertEquals(204, response.getCode());
+        assertFalse(hedged.wasHedged());
+    }
+
+    private static TransportResponse response(int code) {
+        long now = System.nanoTime();
+        return new TransportResponse(code, null, name -> null, now, now, false, () -> { });
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
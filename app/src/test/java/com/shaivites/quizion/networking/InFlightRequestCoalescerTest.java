@@ -0,0 +1,184 @@
+package com.shaivites.quizion.networking;
+
+import com.shaivites.quizion.models.QuizQuestion;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class InFlightRequestCoalescerTest {
+
+    private FakeGeminiServer server;
+    private GeminiApiService service;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new FakeGeminiServer().respondWith(FakeGeminiServer.questionsJson(10)).streamChunks(60, 30);
+        service = new GeminiApiService("test-key", server.baseUrl(), new UrlConnectionTransport(true));
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
+
+    @Test
+    public void concurrentIdenticalStreamsShareOneRequest() throws Exception {
+        CountDownLatch done = new CountDownLatch(3);
+        List<QuizQuestion> first = new CopyOnWriteArrayList<>();
+        List<QuizQuestion> second = new CopyOnWriteArrayList<>();
+        List<QuizQuestion> third = new CopyOnWriteArrayList<>();
+
+        service.streamQuizQuestions("Science", "Medium", 10, null, ModelRouter.Mode.TOPIC, (q, i) -> first.add(q), latchCallback(done));
+        service.streamQuizQuestions("Science", "Medium", 10, null, ModelRouter.Mode.TOPIC, (q, i) -> second.add(q), latchCallback(done));
+        Thread.sleep(150); // Third caller joins mid-stream and gets earlier questions replayed
+        service.streamQuizQuestions("Science", "Medium", 10, null, ModelRouter.Mode.TOPIC, (q, i) -> third.add(q), latchCallback(done));
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(1, server.requestCount());
+        assertEquals(2, service.getCoalescedRequestCount());
+        assertEquals(10, first.size());
+        assertEquals(10, second.size());
+        assertEquals(10, third.size());
+        assertSame(first.get(4), third.get(4)); // One parsed result shared by all callers
+    }
+
+    @Test
+    public void differentStatsOrCompletedCallsAreNotShared() throws Exception {
+        CountDownLatch firstDone = new CountDownLatch(2);
+        service.generateQuizQuestions("Science", "Medium", 10, stats(1, 2), ModelRouter.Mode.TOPIC, latchCallback(firstDone));
+        service.generateQuizQuestions("Science", "Medium", 10, stats(2, 2), ModelRouter.Mode.TOPIC, latchCallback(firstDone));
+        assertTrue(firstDone.await(10, TimeUnit.SECONDS));
+
+        CountDownLatch secondDone = new CountDownLatch(1);
+        service.generateQuizQuestions("Science", "Medium", 10, stats(1, 2), ModelRouter.Mode.TOPIC, latchCallback(secondDone));
+        assertTrue(secondDone.await(10, TimeUnit.SECONDS));
+
+        assertEquals(3, server.requestCount());
+        assertEquals(0, service.getCoalescedRequestCount());
+    }
+
+    @Test
+    public void streamsBatchesAndPrioritiesAreNotShared() throws Exception {
+        CountDownLatch done = new CountDownLatch(3);
+        List<QuizQuestion> streamed = new CopyOnWriteArrayList<>();
+        service.generateQuizQuestions("Science", "Medium", 10, null, ModelRouter.Mode.TOPIC, RequestScheduler.Priority.BACKGROUND, latchCallback(done));
+        service.generateQuizQuestions("Science", "Medium", 10, null, ModelRouter.Mode.TOPIC, latchCallback(done));
+        service.streamQuizQuestions("Science", "Medium", 10, null, ModelRouter.Mode.TOPIC, (q, i) -> streamed.add(q), latchCallback(done));
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(3, server.requestCount());
+        assertEquals(0, service.getCoalescedRequestCount());
+        assertEquals(10, streamed.size());
+    }
+
+    @Test
+    public void differentQuizModesAreNotShared() throws Exception {
+        CountDownLatch done = new CountDownLatch(2);
+        service.generateQuizQuestions("Science", "Medium", 10, null, ModelRouter.Mode.QUICK, latchCallback(done));
+        service.generateQuizQuestions("Science", "Medium", 10, null, ModelRouter.Mode.AI_CHALLENGE, latchCallback(done));
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(2, server.requestCount()); // The mode picks the model, so each needs its own request
+        assertEquals(0, service.getCoalescedRequestCount());
+        assertNotEquals(InFlightRequestCoalescer.key("Science", "Medium", 10, null, ModelRouter.Mode.QUICK,
+                        RequestScheduler.Priority.INTERACTIVE, false),
+                InFlightRequestCoalescer.key("Science", "Medium", 10, null, ModelRouter.Mode.AI_CHALLENGE,
+                        RequestScheduler.Priority.INTERACTIVE, false));
+    }
+
+    @Test
+    public void callbacksMayCancelOrJoinWithoutDeadlocking() throws Exception {
+        CountDownLatch done = new CountDownLatch(2);
+        List<QuizQuestion> joined = new CopyOnWriteArrayList<>();
+        AtomicBoolean joinReturned = new AtomicBoolean();
+        RequestHandle[] first = new RequestHandle[1];
+        first[0] = service.streamQuizQuestions("Science", "Medium", 10, null, ModelRouter.Mode.TOPIC, (q, i) -> {
+            if (i != 2) return;
+            // Another thread joins while this subscriber is being called, then this subscriber leaves
+            Thread joiner = new Thread(() -> service.streamQuizQuestions("Science", "Medium", 10, null, ModelRouter.Mode.TOPIC,
+                    (question, index) -> joined.add(question), latchCallback(done)));
+            joiner.start();
+            try {
+                joiner.join(5000);
+                joinReturned.set(!joiner.isAlive());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            first[0].cancel();
+            done.countDown();
+        }, latchCallback(new CountDownLatch(1)));
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(1, server.requestCount());
+        assertTrue(joinReturned.get()); // The replay did not wait for the subscriber being called
+        assertEquals(10, joined.size());
+    }
+
+    @Test
+    public void cancelledCallsLeaveTheKeyFreeForTheNextCaller() throws Exception {
+        InFlightRequestCoalescer coalescer = new InFlightRequestCoalescer();
+        int threads = 4;
+        int rounds = 500;
+        CountDownLatch finished = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            new Thread(() -> {
+                for (int i = 0; i < rounds; i++) {
+                    coalescer.joinOrStart("key", null, latchCallback(new CountDownLatch(1))).cancel();
+                }
+                finished.countDown();
+            }).start();
+        }
+        assertTrue(finished.await(10, TimeUnit.SECONDS));
+        assertEquals(threads * rounds, coalescer.getStartedRequestCount() + coalescer.getCoalescedRequestCount());
+
+        RequestHandle last = coalescer.joinOrStart("key", null, latchCallback(new CountDownLatch(1)));
+        assertTrue(last.startsRequest()); // Every earlier call was abandoned and already left inFlight
+    }
+
+    @Test
+    public void fingerprintIgnoresMapOrder() {
+        Map<String, Map<String, String>> a = new LinkedHashMap<>();
+        a.put("Science", stats(1, 2).get("Science"));
+        a.put("History", stats(3, 4).get("Science"));
+        Map<String, Map<String, String>> b = new LinkedHashMap<>();
+        b.put("History", stats(3, 4).get("Science"));
+        b.put("Science", stats(1, 2).get("Science"));
+        assertEquals(InFlightRequestCoalescer.statsFingerprint(a), InFlightRequestCoalescer.statsFingerprint(b));
+        assertNotEquals(InFlightRequestCoalescer.statsFingerprint(a), InFlightRequestCoalescer.statsFingerprint(stats(1, 2)));
+    }
+
+    private static GeminiApiService.GeminiCallback latchCallback(CountDownLatch latch) {
+        return new GeminiApiService.GeminiCallback() {
+            @Override
+            public void onSuccess(List<QuizQuestion> questions) {
+                latch.countDown();
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                fail("Unexpected error: " + throwable);
+            }
+        };
+    }
+
+    private static Map<String, Map<String, String>> stats(int correct, int total) {
+        Map<String, String> topicStats = new HashMap<>();
+        topicStats.put("correct", String.valueOf(correct));
+        topicStats.put("total", String.valueOf(total));
+        Map<String, Map<String, String>> all = new HashMap<>();
+        all.put("Science", topicStats);
+        return all;
+    }
+}
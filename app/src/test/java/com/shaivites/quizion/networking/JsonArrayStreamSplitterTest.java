@@ -0,0 +1,53 @@
+package com.shaivites.quizion.networking;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class JsonArrayStreamSplitterTest {
+
+    @Test
+    public void splitsElementsAcrossArbitraryFragments() {
+        String json = FakeGeminiServer.questionsJson(5);
+        JsonArrayStreamSplitter splitter = new JsonArrayStreamSplitter();
+        List<String> elements = new ArrayList<>();
+        for (int i = 0; i < json.length(); i += 3) {
+            elements.addAll(splitter.feed(json.substring(i, Math.min(json.length(), i + 3))));
+        }
+        assertEquals(5, elements.size());
+        assertEquals(5, splitter.getEmittedCount());
+        assertTrue(elements.get(2).startsWith("{\"question\": \"Question 2"));
+        assertTrue(elements.get(2).endsWith("}"));
+        assertFalse(splitter.hasPartialElement());
+    }
+
+    @Test
+    public void bracesAndEscapedQuotesInsideStringsDoNotCloseElement() {
+        JsonArrayStreamSplitter splitter = new JsonArrayStreamSplitter();
+        List<String> first = splitter.feed("[{\"question\": \"What is \\\"}\\\" in {json}?\", ");
+        assertTrue(first.isEmpty());
+        assertTrue(splitter.hasPartialElement());
+        List<String> second = splitter.feed("\"options\": [\"]\", \"b\", \"c\", \"d\"]}]");
+        assertEquals(1, second.size());
+    }
+
+    @Test
+    public void splitsPositionalArrayElements() {
+        JsonArrayStreamSplitter splitter = new JsonArrayStreamSplitter();
+        List<String> first = splitter.feed("[[\"Is ] a bracket?\", \"a\", \"b\", \"c\", \"d\", \"0\"], [\"Next");
+        assertEquals(1, first.size());
+        assertTrue(first.get(0).endsWith("\"0\"]"));
+        assertTrue(splitter.hasPartialElement());
+        assertEquals(1, splitter.feed("?\", \"a\", \"b\", \"c\", \"d\", \"1\"]]").size());
+    }
+
+    @Test
+    public void ignoresMarkdownFenceAroundArray() {
+        JsonArrayStreamSplitter splitter = new JsonArrayStreamSplitter();
+        List<String> elements = splitter.feed("```json\n[{\"a\": 1}, {\"a\": 2}]\n```");
+        assertEquals(2, elements.size());
+    }
+}
@@ -0,0 +1,112 @@
+package com.shaivites.quizion.networking;
+
+import com.shaivites.quizion.models.QuizQuestion;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ModelRouterTest {
+
+    @Test
+    public void routesByModeAndBatchSize() {
+        ModelRouter router = new ModelRouter();
+
+        assertEquals(ModelRouter.FLASH_8B, router.route(ModelRouter.Mode.QUICK, 10));
+        assertEquals(ModelRouter.FLASH, router.route(ModelRouter.Mode.TOPIC, 10));
+        assertEquals(ModelRouter.PRO, router.route(ModelRouter.Mode.AI_CHALLENGE, 4));
+        assertEquals(ModelRouter.FLASH, router.route(ModelRouter.Mode.AI_CHALLENGE, 10));
+        assertEquals(ModelRouter.Mode.QUICK, ModelRouter.Mode.parse(null));
+        assertEquals(ModelRouter.Mode.AI_CHALLENGE, ModelRouter.Mode.parse("AI_CHALLENGE"));
+        assertEquals(Integer.valueOf(2), router.getRoutedCounts().get(ModelRouter.FLASH));
+    }
+
+    @Test
+    public void demotesASlowModelAndRetriesItLater() throws Exception {
+        ModelRouter router = new ModelRouter(Arrays.asList(
+                new ModelRouter.Model("slow", 100, "fast"),
+                new ModelRouter.Model("fast", 100, null)),
+                Arrays.asList(new ModelRouter.Route(ModelRouter.Mode.TOPIC, Integer.MAX_VALUE, "slow")), 200);
+
+        for (int i = 0; i < ModelRouter.MIN_SAMPLES - 1; i++) router.recordLatency("slow", 500);
+        assertEquals("slow", router.route(ModelRouter.Mode.TOPIC, 10)); // Too few samples to judge
+        router.recordLatency("slow", 50);
+        assertEquals("fast", router.route(ModelRouter.Mode.TOPIC, 10));
+        assertEquals(1, router.getDemotionCount());
+        assertEquals(500, router.getLatencyPercentile("slow", 0.95));
+
+        for (int i = 0; i < 10; i++) router.recordLatency("fast", 1000);
+        assertFalse(router.isModelDemoted("fast")); // The last resort is never demoted
+
+        Thread.sleep(250);
+        assertEquals("slow", router.route(ModelRouter.Mode.TOPIC, 10));
+        assertEquals(0, router.getLatencyPercentile("slow", 0.5)); // Probation starts with a fresh window
+    }
+
+    @Test
+    public void oneSlowBatchAmongFastOnesDoesNotDemote() {
+        ModelRouter router = new ModelRouter(Arrays.asList(
+                new ModelRouter.Model("slow", 100, "fast"),
+                new ModelRouter.Model("fast", 100, null)),
+                Arrays.asList(new ModelRouter.Route(ModelRouter.Mode.TOPIC, Integer.MAX_VALUE, "slow")), 60000);
+
+        router.recordLatency("slow", 5000); // e.g. a cold TLS handshake plus a retry
+        for (int i = 0; i < ModelRouter.MIN_SAMPLES * 2; i++) router.recordLatency("slow", 50);
+        assertFalse(router.isModelDemoted("slow"));
+
+        router.recordLatency("slow", 5000);
+        router.recordLatency("slow", 5000);
+        assertTrue(router.isModelDemoted("slow")); // Two slow batches in one window are a trend
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsRoutesToUnknownModels() {
+        new ModelRouter(Arrays.asList(new ModelRouter.Model("a", 100, null)),
+                Arrays.asList(new ModelRouter.Route(ModelRouter.Mode.QUICK, 10, "b")), 1000);
+    }
+
+    @Test
+    public void serviceSendsEachModeToItsModelAndFallsBackWhenSlow() throws Exception {
+        try (FakeGeminiServer server = new FakeGeminiServer().respondWith(FakeGeminiServer.questionsJson(3))) {
+            GeminiApiService service = new GeminiApiService("test-key", server.baseUrl(), new UrlConnectionTransport(true));
+            service.setModelRouter(new ModelRouter(Arrays.asList(
+                    new ModelRouter.Model("big", 100, "small"),
+                    new ModelRouter.Model("small", 100, null)),
+                    Arrays.asList(new ModelRouter.Route(ModelRouter.Mode.AI_CHALLENGE, Integer.MAX_VALUE, "big"),
+                            new ModelRouter.Route(ModelRouter.Mode.QUICK, Integer.MAX_VALUE, "small")), 60000));
+
+            generate(service, ModelRouter.Mode.QUICK);
+            assertEquals("/v1beta/models/small:generateContent", server.requestPaths().get(0));
+
+            server.stallNext(ModelRouter.MIN_SAMPLES, 150);
+            for (int i = 0; i < ModelRouter.MIN_SAMPLES; i++) generate(service, ModelRouter.Mode.AI_CHALLENGE);
+            assertTrue(server.requestPaths().get(1).endsWith("/big:generateContent"));
+            assertTrue(service.getModelRouter().getLatencyPercentile("big", 0.5) >= 150);
+
+            generate(service, ModelRouter.Mode.AI_CHALLENGE);
+            assertTrue(server.requestPaths().get(ModelRouter.MIN_SAMPLES + 1).endsWith("/small:generateContent"));
+            assertTrue(service.getModelRouter().toString().contains("big: routed=" + ModelRouter.MIN_SAMPLES));
+        }
+    }
+
+    private static void generate(GeminiApiService service, ModelRouter.Mode mode) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        service.generateQuizQuestions("Science", "Medium", 3, null, mode, new GeminiApiService.GeminiCallback() {
+            @Override
+            public void onSuccess(List<QuizQuestion> questions) {
+                done.countDown();
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                done.countDown();
+            }
+        });
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+    }
+}
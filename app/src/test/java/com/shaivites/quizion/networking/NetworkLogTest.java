@@ -0,0 +1,100 @@
+package com.shaivites.quizion.networking;
+
+import android.util.Log;
+
+import com.shaivites.quizion.BuildConfig;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class NetworkLogTest {
+
+    private static final String URL = "https://generativelanguage.googleapis.com/v1beta/models/gemini-1.5-flash-latest:generateContent?key=AIzaSecret123";
+
+    @After
+    public void restoreDefaults() {
+        NetworkLog.configure(BuildConfig.DEBUG ? Log.DEBUG : Log.INFO, BuildConfig.DEBUG);
+    }
+
+    @Test
+    public void redactsKeyParametersOnly() {
+        assertEquals("https://host/m:generateContent?key=REDACTED", NetworkLog.redact("https://host/m:generateContent?key=AIzaSecret123"));
+        assertEquals("/cachedContents?alt=sse&key=REDACTED&x=1", NetworkLog.redact("/cachedContents?alt=sse&key=abc&x=1"));
+        assertEquals("{\"monkey=banana\"}", NetworkLog.redact("{\"monkey=banana\"}"));
+    }
+
+    @Test
+    public void previewsAreCappedAndReleaseBuildsOnlyShowTheLength() {
+        NetworkLog.configure(Log.DEBUG, true);
+        String body = repeat('x', 5000);
+        String preview = NetworkLog.preview(body);
+        assertTrue(preview.startsWith(repeat('x', NetworkLog.PREVIEW_CHARS) + "..."));
+        assertTrue(preview.endsWith("[5000 chars]"));
+        assertFalse(NetworkLog.preview(URL).contains("AIzaSecret123"));
+
+        NetworkLog.configure(Log.INFO, false);
+        assertEquals("[5000 chars]", NetworkLog.preview(body));
+    }
+
+    @Test
+    public void messagesAreOnlyBuiltWhenTheirLevelIsEnabled() {
+        AtomicInteger built = new AtomicInteger();
+        NetworkLog.configure(Log.INFO, false);
+        NetworkLog.d("Test", () -> "debug " + built.incrementAndGet());
+        NetworkLog.i("Test", () -> "info " + built.incrementAndGet());
+        assertEquals(1, built.get());
+        NetworkLog.configure(Log.WARN, false);
+        NetworkLog.i("Test", () -> "info " + built.incrementAndGet());
+        assertEquals(1, built.get());
+        NetworkLog.w("Test", () -> "warn " + built.incrementAndGet());
+        assertEquals(2, built.get());
+        NetworkLog.configure(Log.ERROR, false);
+        NetworkLog.w("Test", () -> "warn " + built.incrementAndGet(), new RuntimeException());
+        assertEquals(2, built.get());
+    }
+
+    /**
+     * Bytes allocated by the logging of one 10-question request: the previous eager Log.d of the URL, request
+     * body and raw response text against the facade in debug (previews) and release builds. Prints the
+     * numbers; only that release logging allocates less is asserted.
+     */
+    @Test
+    @Category(Benchmark.class)
+    public void benchmarkLoggingAllocationsPerRequest() {
+        if (!BenchmarkHarness.canCountAllocations()) return; // Not measurable on this JVM
+        String requestBody = "{\"contents\":[{\"parts\":[{\"text\":\"" + repeat('p', 1300) + "\"}]}]}";
+        String rawText = repeat('q', 1600); // Roughly a verbose 10-question batch
+        int rounds = 2000;
+
+        long eager = BenchmarkHarness.allocatedBytesPerRound(rounds, () -> {
+            Log.d("Test", "Request URL: " + URL);
+            Log.d("Test", "Request Body: " + requestBody);
+            Log.d("Test", "Raw text from Gemini part: " + rawText);
+        });
+        NetworkLog.configure(Log.DEBUG, true);
+        long debug = BenchmarkHarness.allocatedBytesPerRound(rounds, () -> lazyRequestLogging(requestBody, rawText));
+        NetworkLog.configure(Log.INFO, false);
+        long release = BenchmarkHarness.allocatedBytesPerRound(rounds, () -> lazyRequestLogging(requestBody, rawText));
+
+        assertTrue(release < eager);
+        BenchmarkHarness.report("Logging per request: eager %d bytes, lazy debug %d bytes, lazy release %d bytes",
+                eager, debug, release);
+    }
+
+    private static void lazyRequestLogging(String requestBody, String rawText) {
+        NetworkLog.d("Test", () -> "Request URL: " + NetworkLog.redact(URL));
+        NetworkLog.body("Test", "Request Body", requestBody);
+        NetworkLog.body("Test", "Raw text from Gemini part", rawText);
+    }
+
+    private static String repeat(char c, int count) {
+        StringBuilder sb = new StringBuilder(count);
+        for (int i = 0; i < count; i++) sb.append(c);
+        return sb.toString();
+    }
+}
@@ -0,0 +1,181 @@
+package com.shaivites.quizion.networking;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import com.shaivites.quizion.models.QuizQuestion;
+import com.shaivites.quizion.tools.QuestionBankPacker;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class OfflineQuestionBankTest {
+
+    private static final String ASSET = "src/main/assets/" + OfflineQuestionBank.ASSET_NAME;
+    private static final String JSON_SOURCE = "questions/offline_questions.json";
+    private static final String[] HOME_TOPICS = {"General Knowledge", "Science", "History", "Movies", "Technology", "Mathematics"};
+
+    @Test
+    public void bundledBankCoversEveryHomeTopicWithValidQuestions() throws Exception {
+        OfflineQuestionBank bank = new OfflineQuestionBank(map(new File(ASSET)));
+        for (String topic : HOME_TOPICS) {
+            assertTrue(topic, bank.hasTopic(topic));
+            assertEquals(topic, 10, bank.getQuestions(topic, 10).size());
+        }
+        assertEquals(60, bank.size()); // No bundled question was rejected as invalid
+    }
+
+    @Test
+    public void bundledAssetIsPackedFromCurrentJson() throws Exception {
+        ByteBuffer expected;
+        try (Reader reader = new InputStreamReader(new FileInputStream(new File(JSON_SOURCE)), StandardCharsets.UTF_8)) {
+            expected = QuestionBankPacker.pack(reader);
+        }
+        assertEquals("Stale asset, run ./gradlew :app:packOfflineQuestions", expected, map(new File(ASSET)));
+    }
+
+    @Test
+    public void packedQuestionsRoundTrip() {
+        Map<String, List<QuizQuestion>> topics = new LinkedHashMap<>();
+        StringBuilder longText = new StringBuilder("Which of these is the longest question? ");
+        for (int i = 0; i < 40; i++) longText.append("W\u00F6rter ");
+        topics.put("Science", Collections.singletonList(
+                question(longText.toString().trim(), Arrays.asList("\u00C4", "B", "\u03A9", "B"), 3)));
+        OfflineQuestionBank bank = bank(topics);
+
+        QuizQuestion question = bank.getQuestions("Science", 1).get(0);
+
+        assertEquals(longText.toString().trim(), question.getQuestion()); // Multi-byte varint length
+        assertEquals(Arrays.asList("\u00C4", "B", "\u03A9", "B"), question.getOptions());
+        assertEquals(3, question.getCorrectAnswerIndex());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsDataThatIsNotAPackedBank() {
+        new OfflineQuestionBank(ByteBuffer.wrap("{\"Science\": []}".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void returnsDistinctQuestionsOfTheTopicIgnoringCase() {
+        OfflineQuestionBank bank = new OfflineQuestionBank(QuestionBankPacker.pack(new StringReader(
+                "{\"Science\": [" + question("S1") + "," + question("S2") + "," + question("S3") + "],"
+                        + " \"History\": [" + question("H1") + "]}")));
+
+        List<QuizQuestion> questions = bank.getQuestions("science", 2);
+
+        assertEquals(2, questions.size());
+        Set<String> texts = new HashSet<>();
+        for (QuizQuestion question : questions) {
+            assertTrue(question.getQuestion().startsWith("S"));
+            texts.add(question.getQuestion());
+        }
+        assertEquals(2, texts.size());
+    }
+
+    @Test
+    public void unknownTopicDrawsFromAllTopicsAndInvalidQuestionsAreDropped() {
+        OfflineQuestionBank bank = new OfflineQuestionBank(QuestionBankPacker.pack(new StringReader(
+                "{\"Science\": [" + question("S1") + ", {\"question\": \"Bad\", \"options\": [\"A\"], \"correctAnswerIndex\": 0}],"
+                        + " \"History\": [" + question("H1") + "]}")));
+
+        assertEquals(2, bank.size());
+        assertEquals(2, bank.getQuestions("Mixed AI Questions", 10).size());
+    }
+
+    /**
+     * Startup cost of a bank of 12000 questions: Gson parsing the JSON against mapping the packed file, each
+     * followed by drawing one quiz. Prints time and heap growth; only correctness is asserted.
+     */
+    @Test
+    @Category(Benchmark.class)
+    public void benchmarkPackedAgainstGson() throws Exception {
+        Map<String, List<QuizQuestion>> topics = new LinkedHashMap<>();
+        for (int t = 0; t < 30; t++) {
+            List<QuizQuestion> questions = new ArrayList<>();
+            for (int i = 0; i < 400; i++) {
+                questions.add(question("Topic " + t + " question number " + i + ", which option is right?",
+                        Arrays.asList("Option A " + i, "Option B " + i, "Option C", "Option D"), i % 4));
+            }
+            topics.put("Topic " + t, questions);
+        }
+        File json = File.createTempFile("questions", ".json");
+        File packed = File.createTempFile("questions", ".qbank");
+        try {
+            try (Writer writer = new OutputStreamWriter(new FileOutputStream(json), StandardCharsets.UTF_8)) {
+                new Gson().toJson(topics, writer);
+            }
+            try (Reader reader = new StringReader(new Gson().toJson(topics));
+                 OutputStream out = new FileOutputStream(packed)) {
+                QuestionBankPacker.pack(reader, out);
+            }
+
+            BenchmarkHarness.Measurement<List<QuizQuestion>> gson = BenchmarkHarness.measure(() -> loadWithGson(json));
+            BenchmarkHarness.Measurement<List<QuizQuestion>> mapped =
+                    BenchmarkHarness.measure(() -> new OfflineQuestionBank(map(packed)).getQuestions("Topic 7", 10));
+            assertEquals(10, gson.result.size());
+            assertEquals(10, mapped.result.size());
+            BenchmarkHarness.report("Offline bank of %d questions (%d KB JSON, %d KB packed): "
+                            + "Gson %d us / +%d KB heap, mapped %d us / +%d KB heap", 12000, json.length() / 1024,
+                    packed.length() / 1024, gson.micros, gson.heapBytes / 1024, mapped.micros, mapped.heapBytes / 1024);
+        } finally {
+            json.delete();
+            packed.delete();
+        }
+    }
+
+    // The previous loading path: the whole dump parsed into memory, then one quiz drawn from it
+    private static List<QuizQuestion> loadWithGson(File json) throws IOException {
+        Map<String, List<QuizQuestion>> topics;
+        try (Reader reader = new InputStreamReader(new FileInputStream(json), StandardCharsets.UTF_8)) {
+            topics = new Gson().fromJson(reader, new TypeToken<Map<String, List<QuizQuestion>>>() { }.getType());
+        }
+        List<QuizQuestion> shuffled = new ArrayList<>(topics.get("Topic 7"));
+        Collections.shuffle(shuffled);
+        return shuffled.subList(0, 10);
+    }
+
+    private static OfflineQuestionBank bank(Map<String, List<QuizQuestion>> topics) {
+        return new OfflineQuestionBank(QuestionBankPacker.pack(new StringReader(new Gson().toJson(topics))));
+    }
+
+    private static ByteBuffer map(File file) throws IOException {
+        try (FileInputStream in = new FileInputStream(file)) {
+            return in.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+        }
+    }
+
+    private static QuizQuestion question(String text, List<String> options, int correctAnswerIndex) {
+        QuizQuestion question = new QuizQuestion();
+        question.setQuestion(text);
+        question.setOptions(options);
+        question.setCorrectAnswerIndex(correctAnswerIndex);
+        return question;
+    }
+
+    private static String question(String text) {
+        return "{\"question\": \"" + text + "?\", \"options\": [\"A\", \"B\", \"C\", \"D\"], \"correctAnswerIndex\": 1}";
+    }
+}
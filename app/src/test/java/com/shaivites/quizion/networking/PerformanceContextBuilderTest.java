@@ -0,0 +1,144 @@
+package com.shaivites.quizion.networking;
+
+import com.shaivites.quizion.models.QuizQuestion;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class PerformanceContextBuilderTest {
+
+    private static final long NOW = 1_700_000_000_000L;
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+    @Test
+    public void ranksRelatedWeakAndRecentTopicsFirst() {
+        Map<String, Map<String, String>> stats = new HashMap<>();
+        stats.put("World History", stats(9, 10, NOW - 30 * DAY));
+        stats.put("Ancient History", stats(2, 10, NOW - 30 * DAY));
+        stats.put("Chemistry", stats(5, 10, NOW - 2 * DAY));
+        stats.put("Music", stats(9, 10, NOW - 90 * DAY));
+        stats.put("Geography", stats(0, 0, NOW)); // Never answered, left out
+
+        String context = new PerformanceContextBuilder(1000).build("History", stats, NOW);
+
+        assertTrue(context.indexOf("Ancient History (2:10)") < context.indexOf("World History (9:10)"));
+        assertTrue(context.indexOf("World History") < context.indexOf("Chemistry (5:10)"));
+        assertTrue(context.indexOf("Chemistry") < context.indexOf("Music (9:10)"));
+        assertFalse(context.contains("Geography"));
+        assertTrue(context.endsWith("Music (9:10)."));
+    }
+
+    @Test
+    public void staysWithinTheTokenBudget() {
+        Map<String, Map<String, String>> stats = manyTopics(200);
+        PerformanceContextBuilder builder = new PerformanceContextBuilder(30);
+
+        String context = builder.build("Topic 7", stats, NOW);
+
+        assertTrue(context.length() <= 30 * PerformanceContextBuilder.CHARS_PER_TOKEN);
+        assertTrue(context.contains("Topic 7 (")); // The requested topic itself always ranks first
+        assertEquals("", builder.build("Topic 7", new HashMap<String, Map<String, String>>(), NOW));
+        assertEquals("", new PerformanceContextBuilder(5).build("Topic 7", stats, NOW)); // Not even one entry fits
+    }
+
+    @Test
+    public void rendersAgainOnlyWhenTopicOrStatsChange() {
+        Map<String, Map<String, String>> stats = manyTopics(10);
+        PerformanceContextBuilder builder = new PerformanceContextBuilder();
+
+        String first = builder.build("Topic 1", stats, NOW);
+        assertSame(first, builder.build("Topic 1", manyTopics(10), NOW)); // Equal stats in a fresh map
+        assertEquals(1, builder.getRenderCount());
+
+        builder.build("Topic 2", stats, NOW);
+        stats.put("Topic 3", stats(0, 1, NOW));
+        builder.build("Topic 2", stats, NOW);
+        assertEquals(3, builder.getRenderCount());
+    }
+
+    @Test
+    public void promptCarriesTheRankedContext() throws Exception {
+        try (FakeGeminiServer server = new FakeGeminiServer().respondWith(FakeGeminiServer.questionsJson(3))) {
+            GeminiApiService service = new GeminiApiService("test-key", server.baseUrl(), new UrlConnectionTransport(true));
+            Map<String, Map<String, String>> stats = manyTopics(50);
+            CountDownLatch done = new CountDownLatch(1);
+            service.generateQuizQuestions("Topic 42", "Medium", 3, stats, ModelRouter.Mode.TOPIC, new GeminiApiService.GeminiCallback() {
+                @Override
+                public void onSuccess(List<QuizQuestion> questions) {
+                    done.countDown();
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                    done.countDown();
+                }
+            });
+
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+            assertTrue(server.requestBodies().get(0).contains("(correct answers:total questions): Topic 42 ("));
+        }
+    }
+
+    /**
+     * Prompt context for a user with 200 played topics: the previous rendering (first 5 HashMap entries,
+     * String.format each) against the ranked, budgeted one, uncached and cached. Prints context size,
+     * estimated tokens and build time; only correctness is asserted.
+     */
+    @Test
+    @Category(Benchmark.class)
+    public void benchmarkContextAgainstFirstFiveEntries() {
+        Map<String, Map<String, String>> stats = manyTopics(200);
+        int rounds = 2000;
+        String legacy = legacyContext(stats);
+        String ranked = new PerformanceContextBuilder().build("Topic 7", stats, NOW);
+        long legacyNanos = BenchmarkHarness.nanosPerRound(rounds, () -> legacyContext(stats));
+        long rankedNanos = BenchmarkHarness.nanosPerRound(rounds, () -> new PerformanceContextBuilder().build("Topic 7", stats, NOW));
+        PerformanceContextBuilder cached = new PerformanceContextBuilder();
+        long cachedNanos = BenchmarkHarness.nanosPerRound(rounds, () -> cached.build("Topic 7", stats, NOW));
+
+        assertTrue(ranked.contains("Topic 7 ("));
+        BenchmarkHarness.report(
+                "Performance context: first 5 entries %d chars / ~%d tokens / %d us, ranked %d chars / ~%d tokens / %d us, cached %d us",
+                legacy.length(), legacy.length() / 4, legacyNanos / 1000, ranked.length(), ranked.length() / 4,
+                rankedNanos / 1000, cachedNanos / 1000);
+    }
+
+    // The context as buildRequestBody rendered it before ranking
+    private static String legacyContext(Map<String, Map<String, String>> allTopicStats) {
+        StringBuilder sb = new StringBuilder(" User's current performance in various topics (correct answers:total questions): ");
+        int count = 0;
+        for (Map.Entry<String, Map<String, String>> entry : allTopicStats.entrySet()) {
+            if (count >= 5) break;
+            Map<String, String> stats = entry.getValue();
+            sb.append(String.format(Locale.US, "%s (%s:%s), ", entry.getKey(), stats.get("correct"), stats.get("total")));
+            count++;
+        }
+        sb.setLength(sb.length() - 2);
+        return sb.append(".").toString();
+    }
+
+    private static Map<String, Map<String, String>> manyTopics(int count) {
+        Map<String, Map<String, String>> stats = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            stats.put("Topic " + i, stats(i % 7, 10 + i % 5, NOW - i * DAY));
+        }
+        return stats;
+    }
+
+    private static Map<String, String> stats(int correct, int total, long lastPlayed) {
+        Map<String, String> stats = new HashMap<>();
+        stats.put("correct", String.valueOf(correct));
+        stats.put("total", String.valueOf(total));
+        stats.put("lastPlayed", String.valueOf(lastPlayed));
+        return stats;
+    }
+}
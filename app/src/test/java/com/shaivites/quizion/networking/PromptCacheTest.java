@@ -0,0 +1,159 @@
+package com.shaivites.quizion.networking;
+
+import com.shaivites.quizion.models.QuizQuestion;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class PromptCacheTest {
+
+    private static final String FORMAT_RULES = "Format the output STRICTLY";
+
+    private FakeGeminiServer server;
+    private GeminiApiService service;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new FakeGeminiServer().respondWith(FakeGeminiServer.questionsJson(3));
+        service = new GeminiApiService("test-key", server.baseUrl(), new UrlConnectionTransport(true));
+        service.setPromptCaching(true);
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
+
+    @Test
+    public void prefixIsSentInlineUntilCachedThenReferencedByName() throws Exception {
+        assertNotNull(generate());
+        String inline = lastGenerateBody();
+        assertTrue(inline.contains(FORMAT_RULES));
+        awaitCreated(1);
+        assertTrue(server.requestBodies().toString().contains("\"ttl\":\"1800s\""));
+
+        assertNotNull(generate());
+        String cached = lastGenerateBody();
+        assertTrue(cached.contains("\"cachedContent\":\"cachedContents/1\""));
+        assertFalse(cached.contains(FORMAT_RULES));
+        assertTrue(cached.contains("Generate exactly 3"));
+        assertEquals(1, server.cachedContentCount());
+        assertTrue(cached.length() < inline.length());
+    }
+
+    @Test
+    public void expiredPrefixIsResentInlineAndCachedAgain() throws Exception {
+        generate();
+        awaitCreated(1);
+        server.expireCachedContents();
+
+        assertNotNull(generate()); // 404 for the expired name, answered by an inline retry
+        assertTrue(lastGenerateBody().contains(FORMAT_RULES));
+        awaitCreated(2);
+
+        List<String> received = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(1);
+        service.streamQuizQuestions("Science", "Medium", 3, null, ModelRouter.Mode.TOPIC, (question, index) -> received.add(question.getQuestion()),
+                callback(new AtomicReference<List<QuizQuestion>>(), done));
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(3, received.size());
+        assertTrue(lastGenerateBody().contains("\"cachedContent\":\"cachedContents/2\""));
+    }
+
+    @Test
+    public void otherClientErrorsKeepTheCachedPrefix() throws Exception {
+        generate();
+        awaitCreated(1);
+        int requests = server.requestCount();
+        server.failNext(2, 400);
+
+        assertNull(generate()); // Not about the cached content: no inline retry
+        List<String> received = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(1);
+        service.streamQuizQuestions("Science", "Medium", 3, null, ModelRouter.Mode.TOPIC, (question, index) -> received.add(question.getQuestion()),
+                callback(new AtomicReference<List<QuizQuestion>>(), done));
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertTrue(received.isEmpty());
+        assertEquals(requests + 2, server.requestCount());
+
+        assertNotNull(generate());
+        assertTrue(lastGenerateBody().contains("\"cachedContent\":\"cachedContents/1\""));
+        assertTrue(GeminiApiService.isCachedPrefixRejected(403,
+                "{\"error\": {\"code\": 403, \"message\": \"CachedContent not found (or permission denied)\"}}"));
+    }
+
+    @Test
+    public void refusedPrefixIsNotUploadedAgainDuringBackoff() throws Exception {
+        server.refuseCachedContents();
+        generate();
+        awaitUploadAttempts(1);
+
+        assertNotNull(generate());
+        assertNotNull(generate());
+
+        assertTrue(lastGenerateBody().contains(FORMAT_RULES));
+        assertEquals(1, uploadAttempts());
+        assertEquals(0, service.getPromptCache().getCreatedCount());
+    }
+
+    private List<QuizQuestion> generate() throws InterruptedException {
+        AtomicReference<List<QuizQuestion>> batch = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(1);
+        service.generateQuizQuestions("Science", "Medium", 3, null, ModelRouter.Mode.TOPIC, callback(batch, done));
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        return batch.get();
+    }
+
+    private String lastGenerateBody() {
+        for (int i = server.requestPaths().size() - 1; i >= 0; i--) {
+            if (!server.requestPaths().get(i).endsWith("/cachedContents")) return server.requestBodies().get(i);
+        }
+        throw new AssertionError("No generate request");
+    }
+
+    private int uploadAttempts() {
+        int attempts = 0;
+        for (String path : server.requestPaths()) {
+            if (path.endsWith("/cachedContents")) attempts++;
+        }
+        return attempts;
+    }
+
+    // The upload runs in the background after the first request
+    private void awaitCreated(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (service.getPromptCache().getCreatedCount() < count && System.currentTimeMillis() < deadline) Thread.sleep(10);
+        assertEquals(count, service.getPromptCache().getCreatedCount());
+    }
+
+    private void awaitUploadAttempts(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (uploadAttempts() < count && System.currentTimeMillis() < deadline) Thread.sleep(10);
+        Thread.sleep(50); // Let the refusal be recorded
+        assertEquals(count, uploadAttempts());
+    }
+
+    private static GeminiApiService.GeminiCallback callback(AtomicReference<List<QuizQuestion>> batch, CountDownLatch done) {
+        return new GeminiApiService.GeminiCallback() {
+            @Override
+            public void onSuccess(List<QuizQuestion> questions) {
+                batch.set(questions);
+                done.countDown();
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                done.countDown();
+            }
+        };
+    }
+}
@@ -0,0 +1,80 @@
+package com.shaivites.quizion.networking;
+
+import com.shaivites.quizion.models.QuizQuestion;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class QuestionBatchPipelineTest {
+
+    private final QuestionBatchPipeline pipeline = new QuestionBatchPipeline();
+
+    @Test
+    public void processDropsInvalidQuestionsAndNormalizesText() {
+        String json = "["
+                + "{\"question\":\"  What is   2+2? \",\"options\":[\" 3\",\"4 \",\"5\",\"6\"],\"correctAnswerIndex\":1},"
+                + "{\"question\":\"Too few options\",\"options\":[\"a\",\"b\",\"c\"],\"correctAnswerIndex\":0},"
+                + "{\"question\":\"Index out of range\",\"options\":[\"a\",\"b\",\"c\",\"d\"],\"correctAnswerIndex\":4},"
+                + "{\"question\":\"Blank option\",\"options\":[\"a\",\" \",\"c\",\"d\"],\"correctAnswerIndex\":0},"
+                + "{\"question\":\" \",\"options\":[\"a\",\"b\",\"c\",\"d\"],\"correctAnswerIndex\":0}"
+                + "]";
+
+        QuestionBatchPipeline.Result result = pipeline.process(json);
+
+        List<QuizQuestion> questions = result.getQuestions();
+        assertEquals(1, questions.size());
+        assertEquals("What is 2+2?", questions.get(0).getQuestion());
+        assertEquals("3", questions.get(0).getOptions().get(0));
+        assertEquals("4", questions.get(0).getOptions().get(1));
+        assertEquals(4, result.getTimings().getRejectedCount());
+    }
+
+    @Test
+    public void undecodableElementIsRejectedWithoutLosingTheBatch() {
+        String json = "["
+                + "{\"question\":\"Kept\",\"options\":[\"a\",\"b\",\"c\",\"d\"],\"correctAnswerIndex\":2},"
+                + "{\"question\":\"Word index\",\"options\":[\"a\",\"b\",\"c\",\"d\"],\"correctAnswerIndex\":\"two\"},"
+                + "{\"question\":\"String options\",\"options\":\"a, b, c, d\",\"correctAnswerIndex\":0},"
+                + "{\"question\":\"No index\",\"options\":[\"a\",\"b\",\"c\",\"d\"]}"
+                + "]";
+
+        QuestionBatchPipeline.Result result = pipeline.process(json);
+
+        assertEquals(1, result.getQuestions().size());
+        assertEquals("Kept", result.getQuestions().get(0).getQuestion());
+        assertEquals(3, result.getTimings().getRejectedCount());
+        assertNull(pipeline.processSingle("{\"question\":\"No index\",\"options\":[\"a\",\"b\",\"c\",\"d\"]}",
+                new QuestionBatchPipeline.StageTimings()));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void processedBatchIsImmutable() {
+        List<QuizQuestion> questions = pipeline.process(FakeGeminiServer.questionsJson(2)).getQuestions();
+        assertEquals(2, questions.size());
+        questions.clear();
+    }
+
+    @Test
+    public void malformedBatchYieldsEmptyList() {
+        assertTrue(pipeline.process("[{\"question\": ").getQuestions().isEmpty());
+        assertTrue(pipeline.process(null).getQuestions().isEmpty());
+    }
+
+    @Test
+    public void processSingleAccumulatesStageTimings() {
+        QuestionBatchPipeline.StageTimings timings = new QuestionBatchPipeline.StageTimings();
+
+        QuizQuestion valid = pipeline.processSingle(
+                "{\"question\":\"Q\",\"options\":[\"a\",\"b\",\"c\",\"d\"],\"correctAnswerIndex\":3}", timings);
+        QuizQuestion invalid = pipeline.processSingle("{\"question\":\"Q\",\"options\":[]}", timings);
+
+        assertNotNull(valid);
+        assertNull(invalid);
+        assertEquals(1, timings.getRejectedCount());
+        assertTrue(timings.decodeNanos > 0);
+        assertTrue(QuestionBatchPipeline.getTotals().getRejectedCount() >= 1);
+    }
+}
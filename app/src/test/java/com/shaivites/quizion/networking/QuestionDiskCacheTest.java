@@ -0,0 +1,107 @@
+package com.shaivites.quizion.networking;
+
+import com.shaivites.quizion.models.QuizQuestion;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class QuestionDiskCacheTest {
+
+    private File directory;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("question_cache").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) file.delete();
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void storesOnlyValidQuestionsAndCountsHitsAndMisses() {
+        QuestionDiskCache cache = new QuestionDiskCache(directory, 64 * 1024, 60000);
+        List<QuizQuestion> batch = batch("Science", 3);
+        batch.add(question("Broken", 7));
+        cache.put("Science", "Medium", batch);
+
+        assertNull(cache.get("History", "Medium"));
+        List<QuizQuestion> cached = cache.get("Science", "Medium");
+        assertNotNull(cached);
+        assertEquals(3, cached.size());
+        assertEquals("Science 1?", cached.get(1).getQuestion());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(0.5, cache.getHitRatio(), 0.001);
+    }
+
+    @Test
+    public void takenBatchIsNotServedAgain() {
+        QuestionDiskCache cache = new QuestionDiskCache(directory, 64 * 1024, 60000);
+        cache.put("Science", "Medium", batch("Science", 3));
+
+        assertEquals(3, cache.take("Science", "Medium").size());
+        assertNull(cache.take("Science", "Medium"));
+        assertEquals(0, cache.getEntryCount());
+        assertNull(new QuestionDiskCache(directory, 64 * 1024, 60000).get("Science", "Medium"));
+    }
+
+    @Test
+    public void expiredEntriesAreMisses() throws Exception {
+        QuestionDiskCache cache = new QuestionDiskCache(directory, 64 * 1024, 60000);
+        cache.put("Science", "Medium", batch("Science", 2), 1);
+        Thread.sleep(20);
+        assertNull(cache.get("Science", "Medium"));
+        assertEquals(0, cache.getEntryCount());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedPastSizeBoundAndSurvivesRestart() {
+        QuestionDiskCache cache = new QuestionDiskCache(directory, 64 * 1024, 60000);
+        cache.put("Science", "Medium", batch("Science", 2));
+        long entrySize = cache.getSizeBytes();
+
+        QuestionDiskCache bounded = new QuestionDiskCache(directory, entrySize * 2 + entrySize / 2, 60000);
+        bounded.put("History", "Medium", batch("History", 2));
+        assertNotNull(bounded.get("Science", "Medium")); // Science becomes most recently used
+        bounded.put("Movies", "Medium", batch("Movies", 2)); // Over the bound: History is evicted
+
+        assertEquals(2, bounded.getEntryCount());
+        assertTrue(bounded.getSizeBytes() <= entrySize * 2 + entrySize / 2);
+
+        QuestionDiskCache reopened = new QuestionDiskCache(directory, 64 * 1024, 60000);
+        assertNull(reopened.get("History", "Medium"));
+        assertNotNull(reopened.get("Science", "Medium"));
+        assertNotNull(reopened.get("Movies", "Medium"));
+    }
+
+    private static List<QuizQuestion> batch(String topic, int count) {
+        List<QuizQuestion> questions = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            questions.add(question(topic + " " + i + "?", i % 4));
+        }
+        return questions;
+    }
+
+    private static QuizQuestion question(String text, int correctAnswerIndex) {
+        QuizQuestion question = new QuizQuestion();
+        question.setQuestion(text);
+        question.setOptions(Arrays.asList("A", "B", "C", "D"));
+        question.setCorrectAnswerIndex(correctAnswerIndex);
+        return question;
+    }
+}
@@ -0,0 +1,133 @@
+package com.shaivites.quizion.networking;
+
+import com.shaivites.quizion.models.QuizQuestion;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class QuizPrefetcherTest {
+
+    private FakeGeminiServer server;
+    private GeminiApiService service;
+    private QuizPrefetcher prefetcher;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new FakeGeminiServer().respondWith(FakeGeminiServer.questionsJson(10));
+        service = new GeminiApiService("test-key", server.baseUrl(), new UrlConnectionTransport(true));
+        prefetcher = new QuizPrefetcher();
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
+
+    @Test
+    public void prefetchedBatchIsServedOnceForSameTopic() throws Exception {
+        Map<String, Map<String, String>> stats = stats("Science", 7, 10);
+        prefetcher.prefetch(service, "Science", "Medium", 10, stats, ModelRouter.Mode.TOPIC);
+        prefetcher.prefetch(service, "Science", "Medium", 10, stats, ModelRouter.Mode.TOPIC); // Already in flight, not sent again
+
+        List<QuizQuestion> batch = awaitBatch("Science", stats("Science", 9, 13));
+        assertNotNull(batch);
+        assertEquals(10, batch.size());
+        assertEquals(1, server.requestCount());
+        assertNull(prefetcher.takeBatch("Science", "Medium", 10, stats));
+    }
+
+    @Test
+    public void servedBatchIsRemovedFromTheDiskCache() throws Exception {
+        File directory = Files.createTempDirectory("question_cache").toFile();
+        try {
+            QuestionDiskCache diskCache = new QuestionDiskCache(directory, 64 * 1024, 60000);
+            prefetcher.setDiskCache(diskCache);
+            prefetcher.prefetch(service, "Science", "Medium", 10, null, ModelRouter.Mode.TOPIC);
+
+            assertNotNull(awaitBatch("Science", null));
+            assertEquals(0, diskCache.getEntryCount());
+        } finally {
+            File[] files = directory.listFiles();
+            if (files != null) {
+                for (File file : files) file.delete();
+            }
+            directory.delete();
+        }
+    }
+
+    @Test
+    public void batchForOtherTopicIsNotServed() throws Exception {
+        prefetcher.prefetch(service, "Science", "Medium", 10, stats("Science", 1, 2), ModelRouter.Mode.TOPIC);
+        awaitRequests(1);
+        Thread.sleep(200);
+        assertNull(prefetcher.takeBatch("History", "Medium", 10, stats("Science", 1, 2)));
+    }
+
+    @Test
+    public void resetProgressInvalidatesTheBatchAndItsDiskCopy() throws Exception {
+        File directory = Files.createTempDirectory("question_cache").toFile();
+        try {
+            QuestionDiskCache diskCache = new QuestionDiskCache(directory, 64 * 1024, 60000);
+            prefetcher.setDiskCache(diskCache);
+            prefetcher.prefetch(service, "Science", "Medium", 10, stats("Science", 7, 10), ModelRouter.Mode.TOPIC);
+            awaitRequests(1);
+            for (int i = 0; i < 100 && diskCache.getEntryCount() == 0; i++) Thread.sleep(50);
+            Thread.sleep(100); // The batch is published right after its disk copy is written
+
+            prefetcher.invalidateIfStale(stats("Science", 8, 11)); // Still fresh
+            assertEquals(1, diskCache.getEntryCount());
+            prefetcher.invalidateIfStale(new HashMap<String, Map<String, String>>()); // Progress was reset
+            assertEquals(0, diskCache.getEntryCount());
+            assertNull(prefetcher.takeBatch("Science", "Medium", 10, new HashMap<String, Map<String, String>>()));
+        } finally {
+            File[] files = directory.listFiles();
+            if (files != null) {
+                for (File file : files) file.delete();
+            }
+            directory.delete();
+        }
+    }
+
+    @Test
+    public void driftDetectsEnoughNewAnswersOrAccuracyShift() {
+        Map<String, Map<String, String>> before = stats("Science", 5, 10);
+        assertFalse(QuizPrefetcher.isStatsDrifted(before, stats("Science", 7, 13), "Science"));
+        assertTrue(QuizPrefetcher.isStatsDrifted(before, stats("Science", 8, 16), "Science"));
+        assertTrue(QuizPrefetcher.isStatsDrifted(stats("Science", 1, 10), stats("Science", 6, 15), "Science"));
+        assertTrue(QuizPrefetcher.isStatsDrifted(before, new HashMap<String, Map<String, String>>(), "Science"));
+        assertFalse(QuizPrefetcher.isStatsDrifted(before, before, "Science"));
+    }
+
+    private List<QuizQuestion> awaitBatch(String topic, Map<String, Map<String, String>> currentStats) throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            List<QuizQuestion> batch = prefetcher.takeBatch(topic, "Medium", 10, currentStats);
+            if (batch != null) return batch;
+            Thread.sleep(50);
+        }
+        return null;
+    }
+
+    private void awaitRequests(int count) throws InterruptedException {
+        for (int i = 0; i < 100 && server.requestCount() < count; i++) {
+            Thread.sleep(50);
+        }
+    }
+
+    private static Map<String, Map<String, String>> stats(String topic, int correct, int total) {
+        Map<String, String> topicStats = new HashMap<>();
+        topicStats.put("correct", String.valueOf(correct));
+        topicStats.put("total", String.valueOf(total));
+        Map<String, Map<String, String>> all = new HashMap<>();
+        all.put(topic, topicStats);
+        return all;
+    }
+}
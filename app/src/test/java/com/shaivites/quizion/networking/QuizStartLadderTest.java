@@ -0,0 +1,127 @@
+package com.shaivites.quizion.networking;
+
+import com.shaivites.quizion.models.QuizQuestion;
+import com.shaivites.quizion.tools.QuestionBankPacker;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class QuizStartLadderTest {
+
+    private File directory;
+    private QuestionDiskCache diskCache;
+    private OfflineQuestionBank offlineBank;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("question_cache").toFile();
+        diskCache = new QuestionDiskCache(directory, 64 * 1024, 60000);
+        offlineBank = new OfflineQuestionBank(QuestionBankPacker.pack(new StringReader("{\"Science\": ["
+                + "{\"question\": \"Offline 1?\", \"options\": [\"A\", \"B\", \"C\", \"D\"], \"correctAnswerIndex\": 0},"
+                + "{\"question\": \"Offline 2?\", \"options\": [\"A\", \"B\", \"C\", \"D\"], \"correctAnswerIndex\": 1}]}")));
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) file.delete();
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void prefersPrefetchedThenDiskCacheThenOfflineBank() throws Exception {
+        try (FakeGeminiServer server = new FakeGeminiServer().respondWith(FakeGeminiServer.questionsJson(10))) {
+            QuizPrefetcher prefetcher = new QuizPrefetcher();
+            QuizStartLadder ladder = new QuizStartLadder(prefetcher, diskCache, offlineBank);
+            diskCache.put("Science", "Medium", batch("Cached", 10));
+            prefetcher.prefetch(new GeminiApiService("test-key", server.baseUrl(), new UrlConnectionTransport(true)),
+                    "Science", "Medium", 10, null, ModelRouter.Mode.TOPIC);
+            for (int i = 0; i < 100 && server.requestCount() == 0; i++) Thread.sleep(50);
+            Thread.sleep(200);
+
+            QuizStartLadder.Start start = ladder.takeLocalStart("Science", "Medium", 10, null);
+            assertEquals(QuizStartLadder.Source.PREFETCHED, start.source);
+            assertEquals(10, start.questions.size());
+
+            start = ladder.takeLocalStart("Science", "Medium", 10, null);
+            assertEquals(QuizStartLadder.Source.DISK_CACHE, start.source);
+
+            diskCache.clear();
+            start = ladder.takeLocalStart("Science", "Medium", 10, null);
+            assertEquals(QuizStartLadder.Source.OFFLINE_BANK, start.source);
+            assertEquals(2, start.questions.size());
+        }
+    }
+
+    @Test
+    public void seenQuestionsAreDroppedFromEverySource() {
+        SeenQuestionFilter seen = new SeenQuestionFilter(1 << 14, 4, 100);
+        for (QuizQuestion question : batch("Cached", 10)) seen.add("Science", question);
+        seen.add("Science", question("Offline 1?"));
+        QuizStartLadder ladder = new QuizStartLadder(new QuizPrefetcher(), diskCache, offlineBank, seen);
+        diskCache.put("Science", "Medium", batch("Cached", 10));
+
+        // Every cached question was answered already, so the cache is skipped for the offline bank
+        QuizStartLadder.Start start = ladder.takeLocalStart("Science", "Medium", 1, null);
+        assertEquals(QuizStartLadder.Source.OFFLINE_BANK, start.source);
+        assertEquals(Collections.singletonList("Offline 2?"), texts(start.questions));
+
+        // The bank is the last resort: seen questions fill up the quiz once the unseen ones run out
+        start = ladder.takeLocalStart("Science", "Medium", 2, null);
+        assertEquals(Arrays.asList("Offline 2?", "Offline 1?"), texts(start.questions));
+    }
+
+    @Test
+    public void returnsNullWhenNoSourceHasQuestions() {
+        QuizStartLadder ladder = new QuizStartLadder(new QuizPrefetcher(), diskCache,
+                OfflineQuestionBank.empty());
+        assertNull(ladder.takeLocalStart("Science", "Medium", 10, null));
+    }
+
+    @Test
+    public void liveQuestionsReplaceOnlyUnplayedLocalQuestions() {
+        List<QuizQuestion> questions = batch("Local", 3);
+
+        assertTrue(QuizStartLadder.mergeLive(questions, question("Live 0?"), 2, 4));
+        assertFalse(QuizStartLadder.mergeLive(questions, question(" local 0? "), 3, 4)); // Already played
+        assertTrue(QuizStartLadder.mergeLive(questions, question("Live 1?"), 3, 4)); // Fills up a short local batch
+        assertFalse(QuizStartLadder.mergeLive(questions, question("Live 2?"), 4, 4)); // Quiz is full
+
+        assertEquals(Arrays.asList("Local 0?", "Local 1?", "Live 0?", "Live 1?"), texts(questions));
+    }
+
+    private static List<QuizQuestion> batch(String prefix, int count) {
+        List<QuizQuestion> questions = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            questions.add(question(prefix + " " + i + "?"));
+        }
+        return questions;
+    }
+
+    private static QuizQuestion question(String text) {
+        QuizQuestion question = new QuizQuestion();
+        question.setQuestion(text);
+        question.setOptions(Arrays.asList("A", "B", "C", "D"));
+        question.setCorrectAnswerIndex(0);
+        return question;
+    }
+
+    private static List<String> texts(List<QuizQuestion> questions) {
+        List<String> texts = new ArrayList<>();
+        for (QuizQuestion question : questions) texts.add(question.getQuestion());
+        return texts;
+    }
+}
@@ -0,0 +1,183 @@
+package com.shaivites.quizion.networking;
+
+import com.shaivites.quizion.models.QuizQuestion;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class RateLimiterTest {
+
+    @Test
+    public void burstIsSmoothedByQueueingInsteadOfFailing() throws Exception {
+        RateLimiter limiter = new RateLimiter(2, 600, Long.MAX_VALUE, 5000); // One permit per 100ms after a burst of 2
+        int requests = 5;
+        CountDownLatch done = new CountDownLatch(requests);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < requests; i++) {
+            new Thread(() -> {
+                try {
+                    limiter.acquire(null);
+                } catch (Exception e) {
+                    failure.set(e);
+                }
+                done.countDown();
+            }).start();
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertNull(failure.get());
+        assertTrue("finished after " + elapsedMs + "ms", elapsedMs >= 250);
+        assertEquals(3, limiter.getDelayedRequestCount());
+        assertTrue(limiter.getMaxQueueDepth() >= 3);
+        assertEquals(0, limiter.getQueueDepth());
+    }
+
+    @Test
+    public void waitLongerThanLimitFailsWithRetryHint() throws Exception {
+        RateLimiter limiter = new RateLimiter(1, 1, Long.MAX_VALUE, 1000);
+        limiter.acquire(null);
+        try {
+            limiter.acquire(null);
+            fail("Expected the second request to give up");
+        } catch (QuotaExceededException expected) {
+            assertFalse(expected.isDailyBudget());
+            assertTrue(expected.getRetryAfterMillis() > 50000);
+        }
+    }
+
+    @Test
+    public void cancellingWaitingRequestLeavesTheQueue() throws Exception {
+        RateLimiter limiter = new RateLimiter(1, 6, Long.MAX_VALUE, 60000);
+        limiter.acquire(null);
+        RequestToken token = new RequestToken();
+        new Thread(() -> {
+            sleep(200);
+            token.cancel();
+        }).start();
+
+        long start = System.nanoTime();
+        try {
+            limiter.acquire(token);
+            fail("Expected the waiting request to be aborted");
+        } catch (InterruptedIOException expected) {
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+        }
+        assertEquals(0, limiter.getQueueDepth());
+    }
+
+    @Test
+    public void serviceWaitsForRetryAfterAndRetriesThrottledRequest() throws Exception {
+        try (FakeGeminiServer server = new FakeGeminiServer()) {
+            server.respondWith(FakeGeminiServer.questionsJson(3)).throttleNext(1, "1");
+            RateLimiter limiter = new RateLimiter(5, 600, Long.MAX_VALUE, 10000);
+            GeminiApiService service = new GeminiApiService("test-key", server.baseUrl(), new UrlConnectionTransport(true), limiter);
+            try {
+                long start = System.nanoTime();
+                List<QuizQuestion> questions = generate(service);
+                long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+                assertEquals(3, questions.size());
+                assertEquals(2, server.requestCount());
+                assertEquals(1, limiter.getServerThrottleCount());
+                assertTrue("retried after " + elapsedMs + "ms", elapsedMs >= 1000);
+            } finally {
+                service.shutdown();
+            }
+        }
+    }
+
+    @Test
+    public void spentDailyBudgetFailsFastWithoutCallingTheApi() throws Exception {
+        try (FakeGeminiServer server = new FakeGeminiServer()) {
+            server.respondWith(FakeGeminiServer.questionsJson(3)).usageTokens(1500);
+            RateLimiter limiter = new RateLimiter(5, 600, 1000, 10000);
+            GeminiApiService service = new GeminiApiService("test-key", server.baseUrl(), new UrlConnectionTransport(true), limiter);
+            try {
+                generate(service);
+                assertEquals(1500, limiter.getTokensUsedToday());
+                assertEquals(0, limiter.getRemainingDailyTokens());
+                try {
+                    generate(service);
+                    fail("Expected the daily budget to be exhausted");
+                } catch (QuotaExceededException expected) {
+                    assertTrue(expected.isDailyBudget());
+                }
+                assertEquals(1, server.requestCount());
+            } finally {
+                service.shutdown();
+            }
+        }
+    }
+
+    @Test
+    public void dailyUsageSurvivesRestartThroughUsageFile() throws Exception {
+        File file = File.createTempFile("token_usage", null);
+        try {
+            assertTrue(file.delete());
+            RateLimiter first = new RateLimiter(5, 60, 10000, 1000);
+            first.setUsageFile(file);
+            first.recordUsage(1500);
+            first.recordUsage(2500);
+            first.awaitPersisted();
+
+            RateLimiter restarted = new RateLimiter(5, 60, 10000, 1000);
+            restarted.setUsageFile(file);
+            restarted.awaitPersisted();
+            assertEquals(4000, restarted.getTokensUsedToday());
+            assertEquals(6000, restarted.getRemainingDailyTokens());
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void parsesRetryAfterFormats() {
+        long now = 1700000000000L; // Tue, 14 Nov 2023 22:13:20 GMT
+        assertEquals(30000, RateLimiter.parseRetryAfter("30", null, now));
+        assertEquals(40000, RateLimiter.parseRetryAfter("Tue, 14 Nov 2023 22:14:00 GMT", null, now));
+        assertEquals(1500, RateLimiter.parseRetryAfter(null, "1.5s", now));
+        assertEquals(30000, RateLimiter.parseRetryAfter("30", "5s", now)); // The header wins
+        assertEquals(RateLimiter.DEFAULT_RETRY_AFTER_MS, RateLimiter.parseRetryAfter("soon", null, now));
+        assertEquals(RateLimiter.DEFAULT_RETRY_AFTER_MS, RateLimiter.parseRetryAfter(null, null, now));
+    }
+
+    private static List<QuizQuestion> generate(GeminiApiService service) throws Exception {
+        CountDownLatch done = new CountDownLatch(1);
+        AtomicReference<List<QuizQuestion>> result = new AtomicReference<>();
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        service.generateQuizQuestions("Science", "Medium", 3, null, ModelRouter.Mode.TOPIC, new GeminiApiService.GeminiCallback() {
+            @Override
+            public void onSuccess(List<QuizQuestion> questions) {
+                result.set(questions);
+                done.countDown();
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                error.set(throwable);
+                done.countDown();
+            }
+        });
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        if (error.get() instanceof Exception) throw (Exception) error.get();
+        return result.get();
+    }
+
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.shaivites.quizion.networking;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.DefaultLifecycleObserver;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleObserver;
+import androidx.lifecycle.LifecycleOwner;
+
+import com.shaivites.quizion.models.QuizQuestion;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class RequestHandleTest {
+
+    private FakeGeminiServer server;
+    private GeminiApiService service;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new FakeGeminiServer();
+        // About 3 seconds of streaming for the whole batch
+        server.respondWith(FakeGeminiServer.questionsJson(10)).streamChunks(25, 50);
+        service = new GeminiApiService("test-key", server.baseUrl(), new UrlConnectionTransport(true));
+    }
+
+    @After
+    public void tearDown() {
+        service.shutdown();
+        server.close();
+    }
+
+    @Test
+    public void cancelAbortsStreamWithoutFurtherBytesOrCallbacks() throws Exception {
+        CountDownLatch firstQuestion = new CountDownLatch(1);
+        AtomicInteger questions = new AtomicInteger();
+        AtomicInteger completions = new AtomicInteger();
+        RequestHandle handle = service.streamQuizQuestions("Science", "Medium", 10, null, ModelRouter.Mode.TOPIC,
+                (question, index) -> {
+                    questions.incrementAndGet();
+                    firstQuestion.countDown();
+                },
+                countingCallback(completions));
+
+        assertTrue(firstQuestion.await(5, TimeUnit.SECONDS));
+        handle.cancel();
+        int questionsAtCancel = questions.get();
+        Thread.sleep(300); // Let anything already in the socket buffers settle
+        long bytesAfterCancel = server.streamedBytes();
+        Thread.sleep(1000);
+
+        assertTrue(handle.isCancelled());
+        assertEquals(questionsAtCancel, questions.get());
+        assertEquals(0, completions.get());
+        assertEquals(bytesAfterCancel, server.streamedBytes());
+        assertTrue(server.streamedBytes() < FakeGeminiServer.questionsJson(10).length());
+    }
+
+    @Test
+    public void cancelledCallerIsNotReachableFromNetworkingLayer() throws Exception {
+        Object activity = new Object(); // Stands in for the Activity captured by the callbacks
+        WeakReference<Object> activityRef = new WeakReference<>(activity);
+        RequestHandle handle = startStreamCapturing(activity);
+        activity = null;
+
+        handle.cancel();
+        for (int i = 0; i < 20 && activityRef.get() != null; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+
+        assertNull("caller leaked after cancel", activityRef.get());
+    }
+
+    @Test
+    public void cancellingOneJoinedCallerKeepsTheSharedRequestForOthers() throws Exception {
+        AtomicInteger cancelledCompletions = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(1);
+        List<QuizQuestion> received = new ArrayList<>();
+        server.streamChunks(200, 10);
+
+        RequestHandle first = service.streamQuizQuestions("Science", "Medium", 10, null, ModelRouter.Mode.TOPIC,
+                (question, index) -> { }, countingCallback(cancelledCompletions));
+        service.streamQuizQuestions("Science", "Medium", 10, null, ModelRouter.Mode.TOPIC,
+                (question, index) -> received.add(question),
+                new GeminiApiService.GeminiCallback() {
+                    @Override
+                    public void onSuccess(List<QuizQuestion> questions) {
+                        done.countDown();
+                    }
+
+                    @Override
+                    public void onError(Throwable throwable) {
+                        fail("Unexpected error: " + throwable);
+                    }
+                });
+        first.cancel();
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(10, received.size());
+        assertEquals(0, cancelledCompletions.get());
+        assertEquals(1, server.requestCount());
+    }
+
+    @Test
+    public void lifecycleDestroyCancelsBoundRequest() throws Exception {
+        TestLifecycleOwner owner = new TestLifecycleOwner();
+        AtomicInteger completions = new AtomicInteger();
+        RequestHandle handle = service.streamQuizQuestions("Science", "Medium", 10, null, ModelRouter.Mode.TOPIC,
+                (question, index) -> { }, countingCallback(completions)).bindTo(owner);
+
+        owner.destroy();
+
+        assertTrue(handle.isCancelled());
+        assertTrue(owner.observers.isEmpty());
+        Thread.sleep(300);
+        assertEquals(0, completions.get());
+    }
+
+    // Separate method so no local in the test keeps the captured object alive
+    private RequestHandle startStreamCapturing(final Object capture) {
+        return service.streamQuizQuestions("Science", "Medium", 10, null, ModelRouter.Mode.TOPIC,
+                (question, index) -> capture.hashCode(),
+                new GeminiApiService.GeminiCallback() {
+                    @Override
+                    public void onSuccess(List<QuizQuestion> questions) {
+                        capture.hashCode();
+                    }
+
+                    @Override
+                    public void onError(Throwable throwable) {
+                        capture.hashCode();
+                    }
+                });
+    }
+
+    private static GeminiApiService.GeminiCallback countingCallback(AtomicInteger completions) {
+        return new GeminiApiService.GeminiCallback() {
+            @Override
+            public void onSuccess(List<QuizQuestion> questions) {
+                completions.incrementAndGet();
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                completions.incrementAndGet();
+            }
+        };
+    }
+
+    private static class TestLifecycleOwner implements LifecycleOwner {
+        final List<LifecycleObserver> observers = new ArrayList<>();
+        private Lifecycle.State state = Lifecycle.State.RESUMED;
+
+        private final Lifecycle lifecycle = new Lifecycle() {
+            @Override
+            public void addObserver(@NonNull LifecycleObserver observer) {
+                observers.add(observer);
+            }
+
+            @Override
+            public void removeObserver(@NonNull LifecycleObserver observer) {
+                observers.remove(observer);
+            }
+
+            @NonNull
+            @Override
+            public Lifecycle.State getCurrentState() {
+                return state;
+            }
+        };
+
+        @NonNull
+        @Override
+        public Lifecycle getLifecycle() {
+            return lifecycle;
+        }
+
+        void destroy() {
+            state = Lifecycle.State.DESTROYED;
+            for (LifecycleObserver observer : new ArrayList<>(observers)) {
+                ((DefaultLifecycleObserver) observer).onDestroy(this);
+            }
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.shaivites.quizion.networking;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.shaivites.quizion.models.QuizQuestion;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class RequestMetricsTest {
+
+    @Test
+    public void histogramEstimatesPercentilesFromItsBuckets() {
+        Histogram histogram = new Histogram(10, 25, 50, 100);
+        for (int i = 1; i <= 100; i++) histogram.record(i);
+        histogram.record(400); // Overflow bucket
+
+        assertEquals(101, histogram.getCount());
+        assertEquals(10, histogram.percentile(0.05));
+        assertEquals(100, histogram.percentile(0.5));
+        assertEquals(400, histogram.percentile(1.0));
+        assertArrayEquals(new long[] {10, 15, 25, 50, 1}, histogram.getBucketCounts());
+
+        Histogram copy = histogram.copyAndReset();
+        assertEquals(101, copy.getCount());
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.percentile(0.95));
+        histogram.record(3);
+        assertEquals(3, histogram.percentile(0.95)); // Capped at the largest value, not the bucket bound
+    }
+
+    @Test
+    public void generateCallRecordsEveryStageAndTheTokens() throws Exception {
+        try (FakeGeminiServer server = new FakeGeminiServer()) {
+            server.respondWith(FakeGeminiServer.questionsJson(3)).usageTokens(420);
+            GeminiApiService service = new GeminiApiService("test-key", server.baseUrl(), new UrlConnectionTransport(true));
+            CountDownLatch done = new CountDownLatch(1);
+            service.generateQuizQuestions("Science", "Medium", 3, null, ModelRouter.Mode.TOPIC, new GeminiApiService.GeminiCallback() {
+                @Override
+                public void onSuccess(List<QuizQuestion> questions) {
+                    done.countDown();
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                    done.countDown();
+                }
+            });
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+
+            RequestMetrics metrics = service.getMetrics();
+            for (RequestMetrics.Metric metric : new RequestMetrics.Metric[] {RequestMetrics.Metric.CONNECT_MS,
+                    RequestMetrics.Metric.TTFB_MS, RequestMetrics.Metric.TRANSFER_MS, RequestMetrics.Metric.ENVELOPE_US,
+                    RequestMetrics.Metric.DECODE_US, RequestMetrics.Metric.BATCH_MS, RequestMetrics.Metric.TOTAL_TOKENS}) {
+                assertEquals(metric.name(), 1, metrics.getHistogram(metric).getCount());
+            }
+            assertEquals(420, metrics.getHistogram(RequestMetrics.Metric.TOTAL_TOKENS).getMax());
+            assertEquals(0, metrics.getHistogram(RequestMetrics.Metric.FIRST_QUESTION_MS).getCount()); // Streams only
+        }
+    }
+
+    @Test
+    public void streamRecordsTimeToFirstQuestionAndTransfer() throws Exception {
+        try (FakeGeminiServer server = new FakeGeminiServer()) {
+            server.respondWith(FakeGeminiServer.questionsJson(4)).streamChunks(40, 30);
+            GeminiApiService service = new GeminiApiService("test-key", server.baseUrl(), new UrlConnectionTransport(true));
+            AtomicInteger questions = new AtomicInteger();
+            CountDownLatch done = new CountDownLatch(1);
+            service.streamQuizQuestions("Science", "Medium", 4, null, ModelRouter.Mode.TOPIC, (question, index) -> questions.incrementAndGet(),
+                    new GeminiApiService.GeminiCallback() {
+                        @Override
+                        public void onSuccess(List<QuizQuestion> questions) {
+                            done.countDown();
+                        }
+
+                        @Override
+                        public void onError(Throwable throwable) {
+                            done.countDown();
+                        }
+                    });
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+
+            assertEquals(4, questions.get());
+            RequestMetrics metrics = service.getMetrics();
+            long firstQuestion = metrics.getHistogram(RequestMetrics.Metric.FIRST_QUESTION_MS).getMax();
+            long batch = metrics.getHistogram(RequestMetrics.Metric.BATCH_MS).getMax();
+            assertTrue(firstQuestion + " < " + batch, firstQuestion < batch);
+            // Chunks arrive 30 ms apart, and that wait is body transfer, not time to first byte
+            assertTrue(metrics.getHistogram(RequestMetrics.Metric.TRANSFER_MS).getMax() >= 60);
+        }
+    }
+
+    @Test
+    public void dumpAppendsOneLinePerReleaseAndStartsOver() throws Exception {
+        File file = File.createTempFile("request_metrics", ".jsonl");
+        try {
+            RequestMetrics metrics = new RequestMetrics();
+            metrics.record(RequestMetrics.Metric.QUIZ_START_MS, 800);
+            metrics.record(RequestMetrics.Metric.QUIZ_START_MS, 1200);
+            metrics.dump(file, "1.0 (1)");
+            metrics.dump(file, "1.0 (1)"); // Nothing new, nothing written
+            metrics.record(RequestMetrics.Metric.TTFB_MS, 90);
+            metrics.dump(file, "1.1 (2)");
+
+            List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+            assertEquals(2, lines.size());
+            JsonObject first = JsonParser.parseString(lines.get(0)).getAsJsonObject();
+            assertEquals("1.0 (1)", first.get("release").getAsString());
+            JsonObject quizStart = first.getAsJsonObject("metrics").getAsJsonObject("quiz_start_ms");
+            assertEquals(2, quizStart.get("count").getAsInt());
+            assertEquals(1000, quizStart.get("p50").getAsLong());
+            JsonObject second = JsonParser.parseString(lines.get(1)).getAsJsonObject().getAsJsonObject("metrics");
+            assertFalse(second.has("quiz_start_ms"));
+            assertEquals(1, second.getAsJsonObject("ttfb_ms").get("count").getAsInt());
+            assertEquals(0, metrics.getHistogram(RequestMetrics.Metric.TTFB_MS).getCount());
+        } finally {
+            assertTrue(file.delete());
+        }
+    }
+
+    @Test
+    public void reportsAreDumpedInTheBackgroundEveryFewScreens() throws Exception {
+        File file = File.createTempFile("request_metrics", ".jsonl");
+        assertTrue(file.delete());
+        GeminiApiService service = new GeminiApiService("test-key", "http://127.0.0.1:1/", new UrlConnectionTransport(true));
+        try {
+            service.getMetrics().record(RequestMetrics.Metric.QUIZ_START_MS, 800);
+            for (int i = 1; i < GeminiApiService.METRICS_DUMP_INTERVAL; i++) service.reportMetrics(file, "1.0 (1)");
+            Thread.sleep(100);
+            assertFalse(file.exists());
+
+            service.reportMetrics(file, "1.0 (1)");
+            for (int i = 0; i < 100 && file.length() == 0; i++) Thread.sleep(50);
+            assertEquals(1, Files.readAllLines(file.toPath(), StandardCharsets.UTF_8).size());
+        } finally {
+            service.shutdown();
+            file.delete();
+        }
+    }
+}
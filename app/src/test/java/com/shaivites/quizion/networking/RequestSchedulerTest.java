@@ -0,0 +1,148 @@
+package com.shaivites.quizion.networking;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.InterruptedIOException;
+import java.net.URL;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class RequestSchedulerTest {
+
+    private final RequestScheduler scheduler = new RequestScheduler(1);
+
+    @After
+    public void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void interactiveWorkJumpsQueuedBackgroundWork() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(3);
+        List<String> order = new CopyOnWriteArrayList<>();
+        scheduler.submit(RequestScheduler.Priority.INTERACTIVE, false, token -> {
+            await(release);
+            done.countDown();
+        });
+        scheduler.submit(RequestScheduler.Priority.BACKGROUND, true, token -> {
+            order.add("background");
+            done.countDown();
+        });
+        scheduler.submit(RequestScheduler.Priority.INTERACTIVE, false, token -> {
+            order.add("interactive");
+            done.countDown();
+        });
+
+        Thread.sleep(50);
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals("interactive", order.get(0));
+        assertEquals("background", order.get(1));
+        assertTrue(scheduler.getMaxQueueMillis(RequestScheduler.Priority.BACKGROUND) >= 50);
+        assertEquals(2, scheduler.getStartedCount(RequestScheduler.Priority.INTERACTIVE));
+    }
+
+    @Test
+    public void interactiveRequestPreemptsRunningBackgroundRequest() throws Exception {
+        AtomicInteger backgroundRuns = new AtomicInteger();
+        CountDownLatch backgroundStarted = new CountDownLatch(1);
+        CountDownLatch backgroundCompleted = new CountDownLatch(1);
+        CountDownLatch interactiveRan = new CountDownLatch(1);
+        List<String> order = new CopyOnWriteArrayList<>();
+
+        scheduler.submit(RequestScheduler.Priority.BACKGROUND, true, token -> {
+            int run = backgroundRuns.incrementAndGet();
+            if (run == 1) {
+                // Stands in for a blocked HTTP read that the abort action tears down
+                CountDownLatch connection = new CountDownLatch(1);
+                token.addAbortAction(connection::countDown);
+                backgroundStarted.countDown();
+                await(connection);
+                return;
+            }
+            if (token.tryComplete()) {
+                order.add("background");
+                backgroundCompleted.countDown();
+            }
+        });
+        assertTrue(backgroundStarted.await(5, TimeUnit.SECONDS));
+
+        scheduler.submit(RequestScheduler.Priority.INTERACTIVE, false, token -> {
+            order.add("interactive");
+            interactiveRan.countDown();
+        });
+
+        assertTrue(interactiveRan.await(5, TimeUnit.SECONDS));
+        assertTrue(backgroundCompleted.await(5, TimeUnit.SECONDS));
+        assertEquals(2, backgroundRuns.get());
+        assertEquals("interactive", order.get(0));
+        assertEquals(1, scheduler.getPreemptedCount());
+    }
+
+    @Test
+    public void cancelledQueuedWorkOnlyReportsCancellation() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+        AtomicBoolean sawCancelled = new AtomicBoolean();
+        scheduler.submit(RequestScheduler.Priority.INTERACTIVE, false, token -> await(release));
+        RequestToken queued = scheduler.submit(RequestScheduler.Priority.BACKGROUND, true, token -> {
+            sawCancelled.set(token.isCancelled() && !token.tryComplete());
+            done.countDown();
+        });
+
+        queued.cancel();
+        release.countDown();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(sawCancelled.get());
+        assertEquals(1, scheduler.getCancelledCount());
+        assertEquals(0, scheduler.getStartedCount(RequestScheduler.Priority.BACKGROUND));
+    }
+
+    @Test
+    public void cancellingTokenAbortsInFlightHttpRequest() throws Exception {
+        try (FakeGeminiServer server = new FakeGeminiServer()) {
+            server.generateRequestedCount(1000); // Ten questions take ten seconds to "generate"
+            UrlConnectionTransport transport = new UrlConnectionTransport(true);
+            URL url = new URL(server.baseUrl() + "model:generateContent");
+            RequestToken token = new RequestToken();
+            new Thread(() -> {
+                sleep(200);
+                token.cancel();
+            }).start();
+
+            long start = System.nanoTime();
+            try {
+                transport.post(url, "{\"text\": \"Generate exactly 10 questions\"}", "application/json", token).close();
+                fail("Expected the request to be aborted");
+            } catch (InterruptedIOException expected) {
+                long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                assertTrue("aborted after " + elapsedMs + "ms", elapsedMs < 2000);
+            }
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
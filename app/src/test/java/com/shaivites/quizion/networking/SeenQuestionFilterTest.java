@@ -0,0 +1,155 @@
+package com.shaivites.quizion.networking;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import com.shaivites.quizion.models.QuizQuestion;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class SeenQuestionFilterTest {
+
+    private static final String SEEN = "Which planet in our solar system has the largest number of known moons?";
+
+    @Test
+    public void detectsRepeatsAndSlightRewordings() {
+        SeenQuestionFilter filter = new SeenQuestionFilter(1 << 14, 4, 100);
+        filter.add("Science", question(SEEN));
+
+        assertTrue(filter.mightHaveSeen(question("  which planet in our Solar System has the largest number of known moons ")));
+        assertTrue(filter.mightHaveSeen(question("Which planet in our solar system has the largest number of known moons today?")));
+        assertFalse(filter.mightHaveSeen(question("Which planet in our solar system has the shortest day?")));
+        assertFalse(filter.mightHaveSeen(question("Who painted the Mona Lisa?")));
+    }
+
+    @Test
+    public void forgetsTheOldestGenerationAndStaysTheSameSize() {
+        SeenQuestionFilter filter = new SeenQuestionFilter(1 << 14, 4, 2);
+        int memory = filter.getMemoryBytes();
+        for (int i = 0; i < 5; i++) {
+            filter.add("History", question("In which year did event number " + i + " of the list happen?"));
+        }
+
+        assertFalse(filter.mightHaveSeen(question("In which year did event number 0 of the list happen?")));
+        assertTrue(filter.mightHaveSeen(question("In which year did event number 3 of the list happen?")));
+        assertTrue(filter.mightHaveSeen(question("In which year did event number 4 of the list happen?")));
+        assertEquals(memory, filter.getMemoryBytes());
+        assertEquals(SeenQuestionFilter.AVOID_HINTS_PER_TOPIC, filter.getAvoidHints("history").size());
+        assertTrue(filter.getAvoidHints("History").get(0).contains("number 4"));
+    }
+
+    @Test
+    public void clearForgetsEverythingAndDeletesTheFile() throws Exception {
+        File file = File.createTempFile("seen_questions", ".bin");
+        try {
+            SeenQuestionFilter filter = new SeenQuestionFilter(1 << 14, 4, 100);
+            filter.setFile(file);
+            filter.add("Science", question(SEEN));
+            filter.saveIfChanged();
+
+            filter.clear();
+
+            assertFalse(filter.mightHaveSeen(question(SEEN)));
+            assertTrue(filter.getAvoidHints("Science").isEmpty());
+            assertFalse(file.exists());
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void survivesRestartThroughItsFile() throws Exception {
+        File file = File.createTempFile("seen_questions", ".bin");
+        try {
+            SeenQuestionFilter filter = new SeenQuestionFilter(1 << 14, 4, 100);
+            filter.setFile(file);
+            filter.add("Science", question(SEEN));
+            filter.saveIfChanged();
+
+            SeenQuestionFilter restored = new SeenQuestionFilter(1 << 14, 4, 100);
+            restored.setFile(file);
+
+            assertTrue(restored.mightHaveSeen(question(SEEN)));
+            assertEquals(Arrays.asList(SEEN), restored.getAvoidHints("Science"));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void streamDropsSeenQuestionsAndAsksToAvoidThem() throws Exception {
+        try (FakeGeminiServer server = new FakeGeminiServer()) {
+            server.thenRespondWith(FakeGeminiServer.questionsJson(0, 3), FakeGeminiServer.questionsJson(3, 1)).streamChunks(60, 0);
+            GeminiApiService service = new GeminiApiService("test-key", server.baseUrl(), new UrlConnectionTransport(true));
+            SeenQuestionFilter filter = new SeenQuestionFilter(1 << 14, 4, 100);
+            filter.add("Science", generated(FakeGeminiServer.questionsJson(1, 1)).get(0));
+            service.setSeenQuestionFilter(filter);
+
+            List<QuizQuestion> received = new CopyOnWriteArrayList<>();
+            CountDownLatch done = new CountDownLatch(1);
+            service.streamQuizQuestions("Science", "Medium", 3, null, ModelRouter.Mode.TOPIC,
+                    (question, index) -> received.add(question), callback(new AtomicReference<List<QuizQuestion>>(), done));
+
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+            assertEquals(3, received.size());
+            assertTrue(received.get(1).getQuestion().startsWith("Question 2"));
+            assertTrue(received.get(2).getQuestion().startsWith("Question 3")); // Topped up like a rejected question
+            assertEquals(1, service.getRepeatedQuestionCount());
+            assertTrue(server.requestBodies().get(0).contains("do not repeat them: \\\"Question 1 with"));
+        }
+    }
+
+    @Test
+    public void batchOfOnlyRepeatsIsStillServed() throws Exception {
+        try (FakeGeminiServer server = new FakeGeminiServer().respondWith(FakeGeminiServer.questionsJson(2))) {
+            GeminiApiService service = new GeminiApiService("test-key", server.baseUrl(), new UrlConnectionTransport(true));
+            SeenQuestionFilter filter = new SeenQuestionFilter(1 << 14, 4, 100);
+            for (QuizQuestion question : generated(FakeGeminiServer.questionsJson(2))) filter.add("Science", question);
+            service.setSeenQuestionFilter(filter);
+
+            AtomicReference<List<QuizQuestion>> batch = new AtomicReference<>();
+            CountDownLatch done = new CountDownLatch(1);
+            service.generateQuizQuestions("Science", "Medium", 2, null, ModelRouter.Mode.TOPIC, callback(batch, done));
+
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+            assertEquals(2, batch.get().size());
+            assertEquals(2, server.requestCount()); // One replacement attempt, which only repeated them again
+        }
+    }
+
+    private static GeminiApiService.GeminiCallback callback(AtomicReference<List<QuizQuestion>> batch, CountDownLatch done) {
+        return new GeminiApiService.GeminiCallback() {
+            @Override
+            public void onSuccess(List<QuizQuestion> questions) {
+                batch.set(questions);
+                done.countDown();
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                done.countDown();
+            }
+        };
+    }
+
+    private static List<QuizQuestion> generated(String json) {
+        return new Gson().fromJson(json, new TypeToken<List<QuizQuestion>>() { }.getType());
+    }
+
+    private static QuizQuestion question(String text) {
+        QuizQuestion question = new QuizQuestion();
+        question.setQuestion(text);
+        question.setOptions(Arrays.asList("A", "B", "C", "D"));
+        question.setCorrectAnswerIndex(0);
+        return question;
+    }
+}
@@ -0,0 +1,87 @@
+package com.shaivites.quizion.networking;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.net.URL;
+
+import static org.junit.Assert.*;
+
+public class UrlConnectionTransportTest {
+
+    private static final int REQUESTS = 5;
+
+    private FakeGeminiServer server;
+    private URL url;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new FakeGeminiServer().respondWith(FakeGeminiServer.questionsJson(3));
+        url = new URL(server.baseUrl() + "gemini-1.5-flash-latest:generateContent?key=test-key");
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
+
+    @Test
+    public void pooledTransportReusesOneConnection() throws Exception {
+        UrlConnectionTransport transport = new UrlConnectionTransport(true);
+        sendRequests(transport);
+        assertEquals(REQUESTS, server.requestCount());
+        assertEquals(1, server.connectionCount());
+    }
+
+    @Test
+    public void oneShotTransportOpensConnectionPerRequest() throws Exception {
+        UrlConnectionTransport transport = new UrlConnectionTransport(false);
+        sendRequests(transport);
+        assertEquals(REQUESTS, server.requestCount());
+        assertEquals(REQUESTS, server.connectionCount());
+    }
+
+    @Test
+    public void warmUpOpensConnectionUsedByNextRequest() throws Exception {
+        UrlConnectionTransport transport = new UrlConnectionTransport(true);
+        transport.warmUp(url);
+        assertEquals(1, server.connectionCount());
+        try (TransportResponse response = transport.post(url, "{}", "application/json")) {
+            assertEquals(200, response.getCode());
+            assertTrue(response.isReusedConnection());
+        }
+        assertEquals(1, server.connectionCount());
+        assertEquals(2, server.requestCount());
+    }
+
+    @Test
+    public void shortUnreadBodyIsDrainedButALongOneDropsTheConnection() throws Exception {
+        UrlConnectionTransport transport = new UrlConnectionTransport(true);
+        transport.post(url, "{}", "application/json").close(); // A few hundred bytes left unread
+        assertEquals(1, server.connectionCount());
+
+        server.respondWith(FakeGeminiServer.questionsJson(200));
+        transport.post(url, "{}", "application/json").close(); // Far more than MAX_DRAIN_BYTES left unread
+        try (TransportResponse response = transport.post(url, "{}", "application/json")) {
+            assertEquals(200, response.getCode());
+        }
+        assertEquals(2, server.connectionCount());
+    }
+
+    private void sendRequests(UrlConnectionTransport transport) throws Exception {
+        for (int i = 0; i < REQUESTS; i++) {
+            try (TransportResponse response = transport.post(url, "{}", "application/json")) {
+                assertEquals(200, response.getCode());
+                InputStream body = response.getBody();
+                assertNotNull(body);
+                byte[] buffer = new byte[1024];
+                while (body.read(buffer) != -1) {
+                    // Consume like GeminiApiService does
+                }
+                assertTrue(response.getTimeToFirstByteMillis() >= 0);
+            }
+        }
+    }
+}
@@ -0,0 +1,18 @@
+// Build-time tool: packs the offline question JSON into the asset read by OfflineQuestionBank.
+// A plain JVM module, so nothing of it ships in the APK. Run through ./gradlew :app:packOfflineQuestions
+plugins {
+    application
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_1_8
+    targetCompatibility = JavaVersion.VERSION_1_8
+}
+
+application {
+    mainClass.set("com.shaivites.quizion.tools.QuestionBankPacker")
+}
+
+dependencies {
+    implementation("com.google.code.gson:gson:2.12.1")
+}
@@ -0,0 +1,185 @@
+package com.shaivites.quizion.tools;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Converts a JSON question dump ({@code {"Topic": [question, ...], ...}}) into the packed format read by the
+ * app's {@code OfflineQuestionBank}. Runs at build time through the {@code :app:packOfflineQuestions} Gradle task:
+ * <pre>
+ * header         magic, version, topic count, question count, string table offset  (5 x u32)
+ * topic index    per topic: name ref, first question, question count                (3 x u32 each)
+ * question index per question: absolute offset of its record                        (u32 each)
+ * records        per question: varint text ref, varint option count, varint option refs, u8 correct index
+ * string table   per distinct string: varint UTF-8 length, UTF-8 bytes
+ * </pre>
+ * Refs are varint offsets into the string table, so repeated options are stored once. The fixed-width
+ * indexes give random access to question N of a topic without reading any other question.
+ * Questions the app would reject (see {@code QuestionBatchPipeline.isValid}) are dropped, and so are topics
+ * left without questions. The constants below must match the ones {@code OfflineQuestionBank} checks.
+ */
+public class QuestionBankPacker {
+
+    static final int MAGIC = 0x51424E4B; // "QBNK"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 5 * 4;
+    static final int TOPIC_ENTRY_BYTES = 3 * 4;
+    static final int OPTION_COUNT = 4;
+
+    private QuestionBankPacker() { }
+
+    /** Usage: QuestionBankPacker &lt;questions.json&gt; &lt;output.qbank&gt; */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: QuestionBankPacker <questions.json> <output.qbank>");
+            System.exit(2);
+        }
+        File output = new File(args[1]);
+        File parent = output.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Could not create " + parent);
+        }
+        try (Reader reader = new InputStreamReader(new FileInputStream(args[0]), StandardCharsets.UTF_8);
+             OutputStream out = new FileOutputStream(output)) {
+            pack(reader, out);
+        }
+        System.out.println("Packed " + output + " (" + output.length() + " bytes)");
+    }
+
+    /** Packs a JSON question dump into memory; the app's tests build their banks with this. */
+    public static ByteBuffer pack(Reader json) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            pack(json, out);
+        } catch (IOException e) {
+            throw new AssertionError(e); // In-memory stream
+        }
+        return ByteBuffer.wrap(out.toByteArray());
+    }
+
+    public static void pack(Reader json, OutputStream output) throws IOException {
+        Type type = new TypeToken<Map<String, List<Question>>>() { }.getType();
+        Map<String, List<Question>> topics = new Gson().fromJson(json, type);
+        write(topics, output);
+    }
+
+    static void write(Map<String, List<Question>> topics, OutputStream output) throws IOException {
+        Map<String, List<Question>> valid = new LinkedHashMap<>();
+        if (topics != null) {
+            for (Map.Entry<String, List<Question>> topic : topics.entrySet()) {
+                List<Question> questions = new ArrayList<>();
+                if (topic.getValue() != null) {
+                    for (Question question : topic.getValue()) {
+                        if (isValid(question)) questions.add(question);
+                    }
+                }
+                if (!questions.isEmpty()) valid.put(topic.getKey(), questions);
+            }
+        }
+
+        StringTable strings = new StringTable();
+        ByteArrayOutputStream records = new ByteArrayOutputStream();
+        List<Integer> recordOffsets = new ArrayList<>();
+        int[] nameRefs = new int[valid.size()];
+        int topicIndex = 0;
+        for (Map.Entry<String, List<Question>> topic : valid.entrySet()) {
+            nameRefs[topicIndex++] = strings.ref(topic.getKey());
+            for (Question question : topic.getValue()) {
+                recordOffsets.add(records.size());
+                writeVarint(records, strings.ref(question.question));
+                writeVarint(records, question.options.size());
+                for (String option : question.options) {
+                    writeVarint(records, strings.ref(option));
+                }
+                records.write(question.correctAnswerIndex);
+            }
+        }
+
+        int questionCount = recordOffsets.size();
+        int recordsStart = HEADER_BYTES + valid.size() * TOPIC_ENTRY_BYTES + questionCount * 4;
+        DataOutputStream out = new DataOutputStream(output);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(valid.size());
+        out.writeInt(questionCount);
+        out.writeInt(recordsStart + records.size());
+        int firstQuestion = 0;
+        topicIndex = 0;
+        for (List<Question> questions : valid.values()) {
+            out.writeInt(nameRefs[topicIndex++]);
+            out.writeInt(firstQuestion);
+            out.writeInt(questions.size());
+            firstQuestion += questions.size();
+        }
+        for (int offset : recordOffsets) {
+            out.writeInt(recordsStart + offset);
+        }
+        records.writeTo(out);
+        strings.bytes.writeTo(out);
+        out.flush();
+    }
+
+    // The same rules as QuestionBatchPipeline.isValid in the app
+    static boolean isValid(Question question) {
+        if (question == null || isBlank(question.question)) return false;
+        if (question.options == null || question.options.size() != OPTION_COUNT) return false;
+        for (String option : question.options) {
+            if (isBlank(option)) return false;
+        }
+        return question.correctAnswerIndex >= 0 && question.correctAnswerIndex < OPTION_COUNT;
+    }
+
+    private static boolean isBlank(String text) {
+        return text == null || text.trim().isEmpty();
+    }
+
+    static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    // One question of the JSON dump, with the keys of the app's QuizQuestion
+    static class Question {
+        String question;
+        List<String> options;
+        int correctAnswerIndex;
+    }
+
+    // Distinct strings in first-use order, each stored once as a varint length and its UTF-8 bytes
+    private static class StringTable {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final Map<String, Integer> refs = new LinkedHashMap<>();
+
+        int ref(String value) {
+            Integer ref = refs.get(value);
+            if (ref == null) {
+                ref = bytes.size();
+                byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+                writeVarint(bytes, utf8.length);
+                bytes.write(utf8, 0, utf8.length);
+                refs.put(value, ref);
+            }
+            return ref;
+        }
+    }
+}
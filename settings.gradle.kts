@@ -15,3 +15,4 @@ dependencyResolutionManagement {
 
 rootProject.name = "Quizion"
 include(":app")
+include(":questionbank-tool")